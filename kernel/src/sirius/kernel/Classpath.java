@@ -97,21 +97,32 @@ public class Classpath {
      */
     public void find(final Pattern pattern, final Collector<Matcher> collector) {
         for (URL url : getComponentRoots()) {
-            scan(url, new BasicCollector<String>() {
+            find(url, pattern, collector);
+        }
+    }
 
-                @Override
-                public void add(String relativePath) {
-                    Matcher matcher = pattern.matcher(relativePath);
-                    if (matcher.matches()) {
-                        try {
-                            collector.add(matcher);
-                        } catch (Throwable e) {
-                            LOG.SEVERE(e);
-                        }
+    /**
+     * Scans the given component root for files which relative path match the given pattern
+     *
+     * @param root      the component root to scan, as returned by {@link #getComponentRoots()}
+     * @param pattern   the pattern for the relative path used to filter files
+     * @param collector will be provided with all files below the given root matching the given pattern
+     */
+    public void find(URL root, final Pattern pattern, final Collector<Matcher> collector) {
+        scan(root, new BasicCollector<String>() {
+
+            @Override
+            public void add(String relativePath) {
+                Matcher matcher = pattern.matcher(relativePath);
+                if (matcher.matches()) {
+                    try {
+                        collector.add(matcher);
+                    } catch (Throwable e) {
+                        LOG.SEVERE(e);
                     }
                 }
-            });
-        }
+            }
+        });
     }
 
     /*
@@ -19,8 +19,9 @@ import sirius.kernel.health.Log;
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 import java.util.*;
-import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Static helper for managing and scheduling asynchronus background tasks.
@@ -79,10 +80,7 @@ public class Async {
             synchronized (executors) {
                 exec = executors.get(wrapper.category);
                 if (exec == null) {
-                    Extension config = Extensions.getExtension("async.executor", wrapper.category);
-                    exec = new AsyncExecutor(wrapper.category,
-                                             config.get("poolSize").asInt(10),
-                                             config.get("queueLength").asInt(0));
+                    exec = createExecutor(wrapper.category);
                     executors.put(wrapper.category, exec);
                 }
             }
@@ -90,6 +88,33 @@ public class Async {
         exec.execute(wrapper);
     }
 
+    /*
+     * Creates the executor for the given category based on the type given in the config
+     */
+    private static AsyncExecutor createExecutor(String category) {
+        Extension config = Extensions.getExtension("async.executor", category);
+        String type = config.get("type").asString(ThreadPoolAsyncExecutor.TYPE);
+        if (ForkJoinAsyncExecutor.TYPE.equals(type)) {
+            return new ForkJoinAsyncExecutor(category,
+                                             config.get("poolSize").asInt(0),
+                                             config.get("queueLength").asInt(0));
+        }
+        if (VirtualThreadAsyncExecutor.TYPE.equals(type)) {
+            return new VirtualThreadAsyncExecutor(category,
+                                                  config.get("poolSize").asInt(0),
+                                                  config.get("queueLength").asInt(0));
+        }
+        if (!ThreadPoolAsyncExecutor.TYPE.equals(type)) {
+            LOG.WARN("Unknown executor type '%s' for category '%s' - using '%s'",
+                     type,
+                     category,
+                     ThreadPoolAsyncExecutor.TYPE);
+        }
+        return new ThreadPoolAsyncExecutor(category,
+                                           config.get("poolSize").asInt(10),
+                                           config.get("queueLength").asInt(0));
+    }
+
     /**
      * Forks the given computation and returns a {@link Promise} for the computed value.
      * <p>
@@ -190,41 +215,45 @@ public class Async {
      */
     public static <V> Promise<List<V>> sequence(List<Promise<V>> list) {
         final Promise<List<V>> result = promise();
-
-        // Create a list with the correct length
-        final List<V> resultList = new ArrayList<V>();
-        for (int i = 0; i < list.size(); i++) {
-            resultList.add(null);
+        if (list.isEmpty()) {
+            result.success(new ArrayList<V>());
+            return result;
         }
 
-        // Keep track when we're finished
-        final CountDownLatch latch = new CountDownLatch(list.size());
+        // Each handler writes only its own slot. The decrement of the countdown publishes these writes to the
+        // handler which brings the counter to zero and therefore builds the result list. As only successful
+        // promises count down, the counter only reaches zero if all promises succeeded.
+        final Object[] values = new Object[list.size()];
+        final AtomicInteger remaining = new AtomicInteger(list.size());
+
+        // Ensures that only the first failure completes the result, even if several promises fail concurrently.
+        // Otherwise each further call of fail would report its error as the result is already completed.
+        final AtomicBoolean completed = new AtomicBoolean();
 
-        // Iterate over all promises and create a completion handler, which either forwards a failure or which placesy
+        // Iterate over all promises and create a completion handler, which either forwards a failure or which places
         // a successfully computed in the created result list
         int index = 0;
         for (Promise<V> promise : list) {
             final int currentIndex = index;
             promise.onComplete(new CompletionHandler<V>() {
                 @Override
+                @SuppressWarnings("unchecked")
                 public void onSuccess(V value) throws Exception {
-                    if (!result.isFailed()) {
-                        // onSuccess can be called from any thread -> sync on resultList...
-                        synchronized (resultList) {
-                            resultList.set(currentIndex, value);
-                        }
-
-                        // Keep track how many results we're waiting for and forward the result when we're finished.
-                        latch.countDown();
-                        if (latch.getCount() <= 0) {
-                            result.success(resultList);
+                    values[currentIndex] = value;
+                    if (remaining.decrementAndGet() == 0 && completed.compareAndSet(false, true)) {
+                        List<V> resultList = new ArrayList<V>(values.length);
+                        for (Object obj : values) {
+                            resultList.add((V) obj);
                         }
+                        result.success(resultList);
                     }
                 }
 
                 @Override
                 public void onFailure(Throwable throwable) throws Exception {
-                    result.fail(throwable);
+                    if (completed.compareAndSet(false, true)) {
+                        result.fail(throwable);
+                    }
                 }
             });
             index++;
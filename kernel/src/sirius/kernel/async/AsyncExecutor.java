@@ -8,11 +8,11 @@
 
 package sirius.kernel.async;
 
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import sirius.kernel.commons.Strings;
 import sirius.kernel.health.Exceptions;
 
-import java.util.concurrent.*;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Represents an executor used by sirius to schedule background tasks.
@@ -20,39 +20,63 @@ import java.util.concurrent.*;
  * Instances of this class are created and managed by {@link Async}. This class is only made public so it can be
  * accessed for statistical reasons like ({@link #getBlocked()} or {@link #getDropped()}.
  * </p>
+ * <p>
+ * The actual execution is performed by a backend which is selected via <tt>async.executor.[category].type</tt>.
+ * Currently <tt>threadpool</tt> (a fixed pool of threads sharing one queue), <tt>forkjoin</tt> (a work
+ * stealing pool with one queue per thread) and <tt>virtual</tt> (a thread per task limited by a semaphore) are
+ * supported.
+ * </p>
  *
  * @author Andreas Haufler (aha@scireum.de)
  * @since 2013/08
  */
-public class AsyncExecutor extends ThreadPoolExecutor implements RejectedExecutionHandler {
-
-    private ThreadPoolExecutor executor;
-    private String category;
-    private int blocked;
-    private int dropped;
-
-    AsyncExecutor(String category, int poolSize, int queueLength) {
-        super(poolSize,
-              poolSize,
-              10L,
-              TimeUnit.SECONDS,
-              queueLength > 0 ? new LinkedBlockingQueue<Runnable>(queueLength) : new LinkedBlockingQueue<Runnable>());
+public abstract class AsyncExecutor {
+
+    protected final String category;
+    private final AtomicInteger blocked = new AtomicInteger();
+    private final AtomicInteger dropped = new AtomicInteger();
+
+    /**
+     * Creates a new executor for the given category.
+     *
+     * @param category the category of tasks executed by this executor
+     */
+    protected AsyncExecutor(String category) {
         this.category = category;
-        setThreadFactory(new ThreadFactoryBuilder().setNameFormat(category + "-%d").build());
-        setRejectedExecutionHandler(this);
     }
 
-    @Override
-    public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+    /**
+     * Submits the given task for execution.
+     * <p>
+     * If the executor is overloaded, {@link #handleOverload(ExecutionBuilder.TaskWrapper)} has to be invoked.
+     * </p>
+     *
+     * @param wrapper the task to execute
+     */
+    abstract void execute(ExecutionBuilder.TaskWrapper wrapper);
+
+    /**
+     * Stops all running tasks and shuts the executor down.
+     */
+    abstract void shutdownNow();
+
+    /**
+     * Handles a task which cannot be executed due to system overload conditions.
+     * <p>
+     * If the task has a <tt>dropHandler</tt>, it is dropped, otherwise it is executed by the calling thread.
+     * </p>
+     *
+     * @param wrapper the task which cannot be scheduled
+     */
+    protected void handleOverload(ExecutionBuilder.TaskWrapper wrapper) {
         try {
-            ExecutionBuilder.TaskWrapper wrapper = (ExecutionBuilder.TaskWrapper) r;
             if (wrapper.dropHandler != null) {
                 wrapper.dropHandler.run();
                 wrapper.promise.fail(new RejectedExecutionException());
-                dropped++;
+                dropped.incrementAndGet();
             } else {
                 wrapper.run();
-                blocked++;
+                blocked.incrementAndGet();
             }
         } catch (Throwable t) {
             Exceptions.handle(Async.LOG, t);
@@ -64,10 +88,10 @@ public class AsyncExecutor extends ThreadPoolExecutor implements RejectedExecuti
         return Strings.apply("%s - Active: %d, Queued: %d, Executed: %d, Blocked: %d, Rejected: %d",
                              category,
                              getActiveCount(),
-                             getQueue().size(),
-                             getCompletedTaskCount(),
-                             blocked,
-                             dropped);
+                             getQueued(),
+                             getExecuted(),
+                             getBlocked(),
+                             getDropped());
     }
 
     /**
@@ -79,6 +103,34 @@ public class AsyncExecutor extends ThreadPoolExecutor implements RejectedExecuti
         return category;
     }
 
+    /**
+     * Returns the type of backend used by this executor.
+     *
+     * @return the type of this executor as used in the config (<tt>async.executor.[category].type</tt>)
+     */
+    public abstract String getType();
+
+    /**
+     * Returns the (approximate) number of tasks being executed right now.
+     *
+     * @return the number of active tasks
+     */
+    public abstract int getActiveCount();
+
+    /**
+     * Returns the (approximate) number of tasks waiting to be executed.
+     *
+     * @return the number of queued tasks
+     */
+    public abstract int getQueued();
+
+    /**
+     * Returns the (approximate) number of tasks which were executed so far.
+     *
+     * @return the number of completed tasks
+     */
+    public abstract long getExecuted();
+
     /**
      * The number of tasks which were executed by blocking the caller due to system overload conditions.
      * <p>
@@ -88,7 +140,7 @@ public class AsyncExecutor extends ThreadPoolExecutor implements RejectedExecuti
      * @return the number of blocking task executions so far.
      */
     public int getBlocked() {
-        return blocked;
+        return blocked.get();
     }
 
     /**
@@ -102,6 +154,6 @@ public class AsyncExecutor extends ThreadPoolExecutor implements RejectedExecuti
      * @return the number of dropped tasks so far.
      */
     public int getDropped() {
-        return dropped;
+        return dropped.get();
     }
 }
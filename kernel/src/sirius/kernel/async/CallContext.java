@@ -156,6 +156,19 @@ public class CallContext {
         return Tuple.fromMap(mdc);
     }
 
+    /**
+     * Copies the current mapped diagnostic context (MDC) into the given map.
+     * <p>
+     * This is used by {@link sirius.kernel.health.AsyncLogging} to capture the MDC of a log message into a
+     * preallocated map.
+     * </p>
+     *
+     * @param target the map to which all name-value pairs of the mdc are added
+     */
+    public void copyMDC(Map<String, String> target) {
+        target.putAll(mdc);
+    }
+
     /**
      * Returns the value of the named variable in the mdc.
      *
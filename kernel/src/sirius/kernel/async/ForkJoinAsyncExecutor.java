@@ -0,0 +1,121 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.async;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executes tasks using a work stealing {@link ForkJoinPool}.
+ * <p>
+ * In contrast to {@link ThreadPoolAsyncExecutor}, each worker thread has its own queue so that producers don't
+ * contend on a single queue lock. Idle workers steal tasks from busy ones. This is selected by
+ * <tt>async.executor.[category].type = "forkjoin"</tt> and is best suited for CPU bound tasks.
+ * </p>
+ * <p>
+ * As a fork join pool has no bounded queue, the <tt>queueLength</tt> is enforced by counting the tasks which
+ * were submitted but not started yet. Once this limit is reached, tasks are dropped or executed by the caller,
+ * just like for a thread pool.
+ * </p>
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ * @since 2014/02
+ */
+class ForkJoinAsyncExecutor extends AsyncExecutor {
+
+    /**
+     * Name of this executor type as used in the config
+     */
+    static final String TYPE = "forkjoin";
+
+    private final ForkJoinPool pool;
+    private final int queueLength;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong executed = new AtomicLong();
+
+    ForkJoinAsyncExecutor(final String category, int parallelism, int queueLength) {
+        super(category);
+        this.queueLength = queueLength;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors(),
+                                     new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+                                         private AtomicInteger counter = new AtomicInteger();
+
+                                         @Override
+                                         public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                                             ForkJoinWorkerThread thread =
+                                                     ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(
+                                                             pool);
+                                             thread.setName(category + "-" + counter.getAndIncrement());
+                                             return thread;
+                                         }
+                                     },
+                                     null,
+                                     true);
+    }
+
+    @Override
+    void execute(final ExecutionBuilder.TaskWrapper wrapper) {
+        if (queueLength > 0 && queued.incrementAndGet() > queueLength) {
+            queued.decrementAndGet();
+            handleOverload(wrapper);
+            return;
+        }
+        try {
+            pool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (queueLength > 0) {
+                        queued.decrementAndGet();
+                    }
+                    active.incrementAndGet();
+                    try {
+                        wrapper.run();
+                    } finally {
+                        active.decrementAndGet();
+                        executed.incrementAndGet();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            if (queueLength > 0) {
+                queued.decrementAndGet();
+            }
+            handleOverload(wrapper);
+        }
+    }
+
+    @Override
+    void shutdownNow() {
+        pool.shutdownNow();
+    }
+
+    @Override
+    public String getType() {
+        return TYPE;
+    }
+
+    @Override
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    @Override
+    public int getQueued() {
+        return (int) Math.min(Integer.MAX_VALUE, pool.getQueuedSubmissionCount() + pool.getQueuedTaskCount());
+    }
+
+    @Override
+    public long getExecuted() {
+        return executed.get();
+    }
+}
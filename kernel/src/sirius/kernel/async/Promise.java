@@ -16,8 +16,7 @@ import sirius.kernel.health.Log;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * Represents a value which is computed by another task or thread.
@@ -38,10 +37,51 @@ import java.util.List;
  */
 public class Promise<V> {
 
-    private ValueHolder<V> value;
-    private Throwable failure;
-    private boolean hasFailureHandler;
-    private List<CompletionHandler<V>> handlers = new ArrayList<CompletionHandler<V>>(1);
+    /*
+     * Contains the complete state of this promise. While the promise is pending, this is either null or the head
+     * of a stack of HandlerNodes. Once the promise is completed, this is either a ValueHolder (success) or a
+     * Failure. As all transitions are performed via CAS, no handler can be lost or notified twice.
+     */
+    private volatile Object state;
+    private volatile boolean hasFailureHandler;
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<Promise, Object> STATE =
+            AtomicReferenceFieldUpdater.newUpdater(Promise.class, Object.class, "state");
+
+    /*
+     * Shared holder used for all promises which are successfully completed with null
+     */
+    private static final ValueHolder<Object> NULL_VALUE = new ValueHolder<Object>(null);
+
+    /*
+     * Returned by complete(...) if the promise was already completed by another call
+     */
+    private static final Object ALREADY_COMPLETED = new Object();
+
+    /*
+     * Represents an element in the lock-free stack of handlers waiting for the promise to complete
+     */
+    private static final class HandlerNode<V> {
+        private final CompletionHandler<V> handler;
+        private HandlerNode<V> next;
+
+        private HandlerNode(CompletionHandler<V> handler, HandlerNode<V> next) {
+            this.handler = handler;
+            this.next = next;
+        }
+    }
+
+    /*
+     * Represents the state of a failed promise
+     */
+    private static final class Failure {
+        private final Throwable error;
+
+        private Failure(Throwable error) {
+            this.error = error;
+        }
+    }
 
     /**
      * Returns the value of the promise or <tt>null</tt> if not completed yet.
@@ -49,22 +89,71 @@ public class Promise<V> {
      * @return the value of the promised computation. This method will not block, so <tt>null</tt>  is returned if
      *         the computation has not finished (or failed) yet.
      */
+    @SuppressWarnings("unchecked")
     public V get() {
-        return value != null ? value.get() : null;
+        Object current = state;
+        return current instanceof ValueHolder ? ((ValueHolder<V>) current).get() : null;
     }
 
     /**
      * Marks the promise as successful and completed with the given value.
+     * <p>
+     * A promise can only be completed once. If it is already completed, the given value is ignored.
+     * </p>
      *
      * @param value the value to be used as promised result.
      */
+    @SuppressWarnings("unchecked")
     public void success(@Nullable final V value) {
-        this.value = new ValueHolder<V>(value);
-        for (final CompletionHandler<V> handler : handlers) {
-            completeHandler(value, handler);
+        Object pending = complete(value == null ? NULL_VALUE : new ValueHolder<V>(value));
+        if (pending == ALREADY_COMPLETED) {
+            return;
+        }
+        for (HandlerNode<V> node = reverse((HandlerNode<V>) pending); node != null; node = node.next) {
+            completeHandler(value, node.handler);
         }
     }
 
+    /*
+     * Atomically swaps the pending state with the given result. Returns the previous state (the stack of
+     * registered handlers or null) or ALREADY_COMPLETED if the promise was completed by another call.
+     */
+    private Object complete(Object result) {
+        while (true) {
+            Object current = state;
+            if (isCompleted(current)) {
+                return ALREADY_COMPLETED;
+            }
+            if (STATE.compareAndSet(this, current, result)) {
+                return current;
+            }
+        }
+    }
+
+    /*
+     * Handlers are pushed onto a stack, therefore we reverse it to notify them in the order they were added.
+     * Once the state is swapped, the stack is exclusively owned by the completing thread and can be reversed
+     * in place.
+     */
+    private HandlerNode<V> reverse(HandlerNode<V> head) {
+        HandlerNode<V> result = null;
+        HandlerNode<V> node = head;
+        while (node != null) {
+            HandlerNode<V> next = node.next;
+            node.next = result;
+            result = node;
+            node = next;
+        }
+        return result;
+    }
+
+    /*
+     * Determines if the given state represents a completed promise.
+     */
+    private static boolean isCompleted(Object state) {
+        return state instanceof ValueHolder || state instanceof Failure;
+    }
+
     /*
      * Invokes the onSuccess method of given CompletionHandler.
      */
@@ -78,18 +167,26 @@ public class Promise<V> {
 
     /**
      * Marks the promise as failed due to the given error.
+     * <p>
+     * A promise can only be completed once. If it is already completed, the given error is only logged.
+     * </p>
      *
      * @param exception the error to be used as reason for failure.
      */
+    @SuppressWarnings("unchecked")
     public void fail(@Nonnull final Throwable exception) {
-        this.failure = exception;
+        Object pending = complete(new Failure(exception));
+        if (pending == ALREADY_COMPLETED) {
+            Exceptions.handle(Async.LOG, exception);
+            return;
+        }
         if (!hasFailureHandler) {
             Exceptions.handle(Async.LOG, exception);
         } else if (Async.LOG.isFINE() && !(exception instanceof HandledException)) {
             Async.LOG.FINE(Exceptions.createHandled().error(exception));
         }
-        for (final CompletionHandler<V> handler : handlers) {
-            failHandler(exception, handler);
+        for (HandlerNode<V> node = reverse((HandlerNode<V>) pending); node != null; node = node.next) {
+            failHandler(exception, node.handler);
         }
     }
 
@@ -110,7 +207,7 @@ public class Promise<V> {
      * @return <tt>true</tt> if the promise has either successfully completed or failed yet, <tt>false</tt> otherwise.
      */
     public boolean isCompleted() {
-        return isFailed() || isSuccessful();
+        return isCompleted(state);
     }
 
     /**
@@ -119,7 +216,7 @@ public class Promise<V> {
      * @return <tt>true</tt> if the promise failed, <tt>false</tt> otherwise.
      */
     public boolean isFailed() {
-        return failure != null;
+        return state instanceof Failure;
     }
 
     /**
@@ -128,7 +225,7 @@ public class Promise<V> {
      * @return <tt>true</tt> if the promise was successfully completed, <tt>false</tt> otherwise.
      */
     public boolean isSuccessful() {
-        return value != null;
+        return state instanceof ValueHolder;
     }
 
     /**
@@ -138,7 +235,8 @@ public class Promise<V> {
      *         completed yet.
      */
     public Throwable getFailure() {
-        return failure;
+        Object current = state;
+        return current instanceof Failure ? ((Failure) current).error : null;
     }
 
     /**
@@ -287,19 +385,32 @@ public class Promise<V> {
      * @return <tt>this</tt> for fluent method chaining
      */
     @Nonnull
+    @SuppressWarnings("unchecked")
     public Promise<V> onComplete(@Nonnull CompletionHandler<V> handler) {
-        if (handler != null) {
-            if (isSuccessful()) {
-                completeHandler(get(), handler);
-            } else if (isFailed()) {
-                failHandler(getFailure(), handler);
+        if (handler == null) {
+            return this;
+        }
+        hasFailureHandler = true;
+        HandlerNode<V> node = null;
+        while (true) {
+            Object current = state;
+            if (current instanceof ValueHolder) {
+                completeHandler(((ValueHolder<V>) current).get(), handler);
+                return this;
+            }
+            if (current instanceof Failure) {
+                failHandler(((Failure) current).error, handler);
+                return this;
+            }
+            if (node == null) {
+                node = new HandlerNode<V>(handler, (HandlerNode<V>) current);
             } else {
-                this.handlers.add(handler);
+                node.next = (HandlerNode<V>) current;
+            }
+            if (STATE.compareAndSet(this, current, node)) {
+                return this;
             }
-            hasFailureHandler = true;
         }
-
-        return this;
     }
 
     /**
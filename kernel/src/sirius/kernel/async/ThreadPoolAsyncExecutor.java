@@ -0,0 +1,83 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.async;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes tasks using a fixed pool of threads which share a single (optionally bounded) queue.
+ * <p>
+ * This is the default backend, selected by <tt>async.executor.[category].type = "threadpool"</tt>.
+ * </p>
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ * @since 2013/08
+ */
+class ThreadPoolAsyncExecutor extends AsyncExecutor implements RejectedExecutionHandler {
+
+    /**
+     * Name of this executor type as used in the config
+     */
+    static final String TYPE = "threadpool";
+
+    private final ThreadPoolExecutor executor;
+
+    ThreadPoolAsyncExecutor(String category, int poolSize, int queueLength) {
+        super(category);
+        executor = new ThreadPoolExecutor(poolSize,
+                                          poolSize,
+                                          10L,
+                                          TimeUnit.SECONDS,
+                                          queueLength > 0 ?
+                                          new LinkedBlockingQueue<Runnable>(queueLength) :
+                                          new LinkedBlockingQueue<Runnable>());
+        executor.setThreadFactory(new ThreadFactoryBuilder().setNameFormat(category + "-%d").build());
+        executor.setRejectedExecutionHandler(this);
+    }
+
+    @Override
+    void execute(ExecutionBuilder.TaskWrapper wrapper) {
+        executor.execute(wrapper);
+    }
+
+    @Override
+    void shutdownNow() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+        handleOverload((ExecutionBuilder.TaskWrapper) r);
+    }
+
+    @Override
+    public String getType() {
+        return TYPE;
+    }
+
+    @Override
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    @Override
+    public int getQueued() {
+        return executor.getQueue().size();
+    }
+
+    @Override
+    public long getExecuted() {
+        return executor.getCompletedTaskCount();
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.async;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.lang.reflect.Method;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executes each task in its own (virtual) thread while limiting the number of concurrently running tasks by a
+ * semaphore instead of a fixed pool size.
+ * <p>
+ * This is selected by <tt>async.executor.[category].type = "virtual"</tt> and is intended for tasks which spend
+ * most of their time waiting (e.g. for a JDBC connection). The <tt>poolSize</tt> determines the number of tasks
+ * which may run concurrently, <tt>queueLength</tt> determines how many tasks may wait for a permit before
+ * tasks are dropped or executed by the caller.
+ * </p>
+ * <p>
+ * If the JVM supports virtual threads (<tt>Thread.ofVirtual()</tt>), these are used. Otherwise an unbounded
+ * cached thread pool is used as fallback.
+ * </p>
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ * @since 2014/02
+ */
+class VirtualThreadAsyncExecutor extends AsyncExecutor {
+
+    /**
+     * Name of this executor type as used in the config
+     */
+    static final String TYPE = "virtual";
+
+    private final ExecutorService threads;
+    private final boolean virtual;
+    private final Semaphore permits;
+    private final int queueLength;
+    private final Queue<ExecutionBuilder.TaskWrapper> queue = new ConcurrentLinkedQueue<ExecutionBuilder.TaskWrapper>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong executed = new AtomicLong();
+
+    VirtualThreadAsyncExecutor(String category, int maxConcurrency, int queueLength) {
+        super(category);
+        this.permits = new Semaphore(maxConcurrency > 0 ? maxConcurrency : Integer.MAX_VALUE);
+        this.queueLength = queueLength;
+        ExecutorService virtualThreads = createVirtualThreadExecutor(category);
+        this.virtual = virtualThreads != null;
+        this.threads = virtual ?
+                       virtualThreads :
+                       Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat(category + "-%d")
+                                                                               .build());
+    }
+
+    /*
+     * Uses reflection to create an executor which starts a virtual thread per task, as these are not available
+     * on all supported JVMs. Returns null if virtual threads are not supported.
+     */
+    private static ExecutorService createVirtualThreadExecutor(String category) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, category + "-", 0L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            Method newExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) newExecutor.invoke(null, factory);
+        } catch (Throwable e) {
+            Async.LOG.FINE("Virtual threads are not available for '%s': %s", category, e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    void execute(ExecutionBuilder.TaskWrapper wrapper) {
+        if (permits.tryAcquire()) {
+            start(wrapper);
+            return;
+        }
+        if (queueLength > 0 && queued.get() >= queueLength) {
+            handleOverload(wrapper);
+            return;
+        }
+        queued.incrementAndGet();
+        queue.offer(wrapper);
+
+        // A permit might have been released between our tryAcquire and offer, in which case nobody would pick
+        // up the queued task...
+        if (permits.tryAcquire()) {
+            ExecutionBuilder.TaskWrapper next = nextOrRelease();
+            if (next != null) {
+                start(next);
+            }
+        }
+    }
+
+    /*
+     * Starts a thread which executes the given task and then all queued tasks, as long as there are any.
+     * The caller must hold a permit which is released once the queue is drained.
+     */
+    private void start(final ExecutionBuilder.TaskWrapper first) {
+        try {
+            threads.execute(new Runnable() {
+                @Override
+                public void run() {
+                    ExecutionBuilder.TaskWrapper task = first;
+                    while (task != null) {
+                        active.incrementAndGet();
+                        try {
+                            task.run();
+                        } finally {
+                            active.decrementAndGet();
+                            executed.incrementAndGet();
+                        }
+                        task = nextOrRelease();
+                    }
+                }
+            });
+        } catch (Throwable e) {
+            permits.release();
+            handleOverload(first);
+        }
+    }
+
+    /*
+     * Fetches the next queued task while holding a permit. If the queue is empty, the permit is released.
+     */
+    private ExecutionBuilder.TaskWrapper nextOrRelease() {
+        while (true) {
+            ExecutionBuilder.TaskWrapper next = queue.poll();
+            if (next != null) {
+                queued.decrementAndGet();
+                return next;
+            }
+            permits.release();
+            // Re-check, as a task might have been queued right before we released our permit
+            if (queue.isEmpty() || !permits.tryAcquire()) {
+                return null;
+            }
+        }
+    }
+
+    @Override
+    void shutdownNow() {
+        threads.shutdownNow();
+    }
+
+    @Override
+    public String getType() {
+        return virtual ? TYPE : TYPE + " (fallback)";
+    }
+
+    @Override
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    @Override
+    public int getQueued() {
+        return queued.get();
+    }
+
+    @Override
+    public long getExecuted() {
+        return executed.get();
+    }
+}
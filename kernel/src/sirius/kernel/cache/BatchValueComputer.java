@@ -0,0 +1,38 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.cache;
+
+import javax.annotation.Nonnull;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Computes the values for several keys at once if they are not found in a cache
+ * <p>
+ * Can be supplied to {@link CacheManager#createCache(String, ValueComputer, ValueVerifier)} instead of a
+ * plain <tt>ValueComputer</tt>. {@link Cache#getAll(java.util.Collection)} will then compute all missing values
+ * with a single call (e.g. a single database query) instead of invoking {@link #compute(Object)} for each key.
+ * </p>
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ * @since 2014/02
+ */
+public interface BatchValueComputer<K, V> extends ValueComputer<K, V> {
+
+    /**
+     * Computes the values for the given keys
+     *
+     * @param keys the keys which were not found in the cache
+     * @return a map containing the values for the given keys. Keys which are absent in the map are cached
+     *         with a value of <tt>null</tt>
+     */
+    @Nonnull
+    Map<K, V> computeAll(@Nonnull Collection<K> keys);
+
+}
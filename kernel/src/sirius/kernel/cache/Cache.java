@@ -13,9 +13,11 @@ import sirius.kernel.commons.Tuple;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.Collection;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Provides a cache which can be used to store and access values.
@@ -93,6 +95,24 @@ public interface Cache<K, V> {
      */
     List<Long> getHitRateHistory();
 
+    /**
+     * Returns the number of bytes used by the off-heap tier of this cache.
+     * <p>
+     * The off-heap tier is enabled via <tt>cache.[cacheName].offHeapSize</tt>.
+     * </p>
+     *
+     * @return the number of bytes used to store serialized values outside of the heap
+     */
+    long getOffHeapBytes();
+
+    /**
+     * Returns the hit-rate (in percent) of the off-heap tier.
+     *
+     * @return the percentage of lookups which missed the heap but were found in the off-heap tier since the last
+     *         eviction
+     */
+    Long getOffHeapHitRate();
+
     /**
      * Returns the date of the last eviction run.
      *
@@ -109,6 +129,29 @@ public interface Cache<K, V> {
      */
     void runEviction();
 
+    /**
+     * Removes all expired entries from the cache.
+     * <p>
+     * This is called every ten seconds by the {@link CacheEvictionTimer} and only visits entries which actually
+     * expired. Therefore this does not need to be called manually.
+     * </p>
+     */
+    void runExpiry();
+
+    /**
+     * Returns the number of entries which were removed as their time to live expired.
+     *
+     * @return the number of expired entries removed so far
+     */
+    long getNumExpired();
+
+    /**
+     * Returns the average delay between the expiry of an entry and its removal.
+     *
+     * @return the average delay (in milliseconds) for the last removed entries
+     */
+    double getExpiryLag();
+
     /**
      * Clears the complete cache
      */
@@ -136,6 +179,28 @@ public interface Cache<K, V> {
     @Nullable
     V get(@Nonnull K key, @Nullable ValueComputer<K, V> computer);
 
+    /**
+     * Returns the values associated with the given keys.
+     * <p>
+     * Values which are not found in the cache are computed by the {@link ValueComputer} of this cache. If it is
+     * a {@link BatchValueComputer}, all missing values are computed by a single call. Keys which are currently
+     * being loaded by another thread are not computed again, but their value is awaited instead.
+     * </p>
+     *
+     * @param keys the keys used to retrieve the values in the cache
+     * @return a map containing the cached or computed values for the given keys (in the order of the given
+     *         collection). Keys for which neither a valid value was found, nor one could be computed are absent.
+     */
+    @Nonnull
+    Map<K, V> getAll(@Nonnull Collection<K> keys);
+
+    /**
+     * Returns the average number of keys computed by a single call of a {@link BatchValueComputer}.
+     *
+     * @return the average batch size of the last batch computations
+     */
+    double getAvgBatchSize();
+
     /**
      * Stores the given key value mapping in the cache
      *
@@ -52,6 +52,12 @@ public class CacheEntry<K, V> {
      * Timestamp of the next verification
      */
     protected long nextVerification;
+    /*
+     * Links used by the ExpiryIndex - guarded by the index
+     */
+    CacheEntry<K, V> expiryPrev;
+    CacheEntry<K, V> expiryNext;
+    boolean indexed;
 
     /**
      * Returns the number of "hits" of this entries
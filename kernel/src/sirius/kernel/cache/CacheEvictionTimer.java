@@ -10,11 +10,13 @@ package sirius.kernel.cache;
 
 import sirius.kernel.di.std.Register;
 import sirius.kernel.timer.EveryTenMinutes;
+import sirius.kernel.timer.EveryTenSeconds;
 
 /**
  * Invoked regularly to remove outdated entries from the system caches
  * <p>
- * This class is responsible to run the cache evictions of all known caches.
+ * This class is responsible to run the cache evictions of all known caches. Additionally the inner class
+ * {@link ExpiryTimer} removes expired entries every ten seconds.
  * </p>
  *
  * @author Andreas Haufler (aha@scireum.de)
@@ -32,4 +34,18 @@ public class CacheEvictionTimer implements EveryTenMinutes {
 
     }
 
+    /**
+     * Removes expired entries from all known caches every ten seconds.
+     */
+    @Register
+    public static class ExpiryTimer implements EveryTenSeconds {
+
+        @Override
+        public void runTimer() throws Exception {
+            for (Cache<?, ?> cache : CacheManager.getCaches()) {
+                cache.runExpiry();
+            }
+        }
+    }
+
 }
@@ -8,11 +8,21 @@
 
 package sirius.kernel.cache;
 
+import com.google.common.base.Charsets;
+import com.typesafe.config.Config;
+import sirius.kernel.Sirius;
+import sirius.kernel.commons.Strings;
 import sirius.kernel.commons.ValueProvider;
+import sirius.kernel.di.Lifecycle;
+import sirius.kernel.di.std.Register;
+import sirius.kernel.health.Exceptions;
 import sirius.kernel.health.Log;
 
+import java.net.InetSocketAddress;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -25,6 +35,10 @@ import java.util.concurrent.TimeUnit;
  * Additionally instances of {@link InlineCache} can be created, which can be used to compute a single value,
  * which is then cached for a given amount of time.
  * </p>
+ * <p>
+ * If a transport is configured in <tt>cacheInvalidation</tt>, an {@link InvalidationBus} is started, which
+ * notifies other nodes about removed or replaced entries of caches having <tt>invalidation</tt> enabled.
+ * </p>
  *
  * @author Andreas Haufler (aha@scireum.de)
  * @since 2013/08
@@ -48,6 +62,11 @@ public class CacheManager {
      */
     private static List<Cache<?, ?>> caches = new ArrayList<Cache<?, ?>>();
 
+    /*
+     * Contains the bus used to distribute invalidations to other nodes (if enabled)
+     */
+    private static volatile InvalidationBus invalidationBus;
+
     /**
      * Returns a list of all known caches
      *
@@ -72,6 +91,14 @@ public class CacheManager {
      * <li><tt>ttl</tt>: a duration specifying the max lifetime of a cached entry.</li>
      * <li><tt>verification</tt>: a duration specifying in which interval a verification of a value will
      * take place (if possible)</li>
+     * <li><tt>refreshAhead</tt>: if <tt>true</tt>, expired entries are still served while their value is
+     * re-computed in the background</li>
+     * <li><tt>offHeapSize</tt>: the number of bytes used to keep serialized entries outside of the heap, once
+     * they are evicted due to the <tt>maxSize</tt> limit. This memory is allocated up front</li>
+     * <li><tt>invalidation</tt>: if <tt>true</tt>, removed or replaced entries are also invalidated on all other
+     * nodes via the {@link InvalidationBus}</li>
+     * <li><tt>snapshot</tt>: if <tt>true</tt>, the contents of the cache are written to disk on shutdown and
+     * restored on the next start (see {@link CacheSnapshots})</li>
      * </ul>
      * </p>
      *
@@ -133,4 +160,131 @@ public class CacheManager {
     public static <E> InlineCache<E> createTenSecondsInlineCache(ValueProvider<E> computer) {
         return new InlineCache<E>(computer, TimeUnit.MILLISECONDS.convert(10, TimeUnit.SECONDS));
     }
+
+    /**
+     * Returns the bus used to distribute invalidations to other nodes.
+     *
+     * @return the invalidation bus or <tt>null</tt> if no transport is configured or the system is not started yet
+     */
+    public static InvalidationBus getInvalidationBus() {
+        return invalidationBus;
+    }
+
+    /*
+     * Used to sign packets of the loopback transport if no secret is configured
+     */
+    private static final String LOOPBACK_SECRET = UUID.randomUUID().toString();
+
+    /*
+     * Creates the transport as configured in cacheInvalidation.transport or returns null if the bus is disabled
+     */
+    private static InvalidationTransport createInvalidationTransport(Config config) {
+        String type = config.getString("transport");
+        if (LoopbackInvalidationTransport.NAME.equals(type)) {
+            return new LoopbackInvalidationTransport();
+        }
+        String bindAddress = config.getString("bindAddress");
+        int port = config.getInt("port");
+        List<InetSocketAddress> nodes = getInvalidationNodes(config, port);
+        if (UdpInvalidationTransport.NAME.equals(type)) {
+            return new UdpInvalidationTransport(bindAddress, port, nodes);
+        }
+        if (TcpInvalidationTransport.NAME.equals(type)) {
+            return new TcpInvalidationTransport(bindAddress, port, nodes);
+        }
+        if (Strings.isFilled(type) && !"none".equals(type)) {
+            LOG.WARN("Unknown cache invalidation transport: %s", type);
+        }
+        return null;
+    }
+
+    /*
+     * Reads the nodes from cacheInvalidation.nodes or uses the hosts of health.cluster.nodes if no nodes are given
+     */
+    private static List<InetSocketAddress> getInvalidationNodes(Config config, int port) {
+        List<InetSocketAddress> result = new ArrayList<InetSocketAddress>();
+        List<String> nodes = new ArrayList<String>(config.getStringList("nodes"));
+        if (nodes.isEmpty() && Sirius.getConfig().hasPath("health.cluster.nodes")) {
+            for (String endpoint : Sirius.getConfig().getStringList("health.cluster.nodes")) {
+                try {
+                    nodes.add(new URL(endpoint).getHost());
+                } catch (Throwable e) {
+                    Exceptions.handle(LOG, e);
+                }
+            }
+        }
+        for (String node : nodes) {
+            int colon = node.lastIndexOf(':');
+            if (colon > 0) {
+                result.add(new InetSocketAddress(node.substring(0, colon),
+                                                 Integer.parseInt(node.substring(colon + 1))));
+            } else {
+                result.add(new InetSocketAddress(node, port));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Starts and stops the {@link InvalidationBus} along with the framework.
+     */
+    @Register
+    public static class InvalidationBusLifecycle implements Lifecycle {
+
+        @Override
+        public void started() {
+            Config config = Sirius.getConfig().getConfig("cacheInvalidation");
+            InvalidationTransport transport = createInvalidationTransport(config);
+            if (transport == null) {
+                return;
+            }
+            String secret = config.getString("secret");
+            if (Strings.isEmpty(secret)) {
+                if (!LoopbackInvalidationTransport.NAME.equals(transport.getName())) {
+                    LOG.WARN("Not starting the cache invalidation bus (%s): cacheInvalidation.secret is empty",
+                             transport.getName());
+                    return;
+                }
+                // Buses connected via the loopback transport share a JVM and can therefore share a random secret
+                secret = LOOPBACK_SECRET;
+            }
+            InvalidationBus bus = new InvalidationBus(transport,
+                                                      config.getMilliseconds("flushInterval"),
+                                                      config.getInt("maxKeysPerCache"),
+                                                      secret.getBytes(Charsets.UTF_8));
+            try {
+                bus.start();
+            } catch (Throwable e) {
+                Exceptions.handle()
+                          .to(LOG)
+                          .error(e)
+                          .withSystemErrorMessage("Cannot start the cache invalidation bus (%s): %s (%s)",
+                                                  transport.getName())
+                          .handle();
+                return;
+            }
+            invalidationBus = bus;
+            // Caches which were initialized before the bus was available have to be registered now
+            for (Cache<?, ?> cache : caches) {
+                if (cache instanceof ManagedCache && ((ManagedCache<?, ?>) cache).isInvalidationEnabled()) {
+                    bus.register((ManagedCache<?, ?>) cache);
+                }
+            }
+            LOG.INFO("Started cache invalidation bus using: %s", transport.getName());
+        }
+
+        @Override
+        public void stopped() {
+            InvalidationBus bus = invalidationBus;
+            invalidationBus = null;
+            if (bus != null) {
+                bus.stop();
+            }
+        }
+
+        @Override
+        public String getName() {
+            return "cache-invalidation (Cache Invalidation Bus)";
+        }
+    }
 }
@@ -0,0 +1,235 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.cache;
+
+import sirius.kernel.async.Async;
+import sirius.kernel.di.Lifecycle;
+import sirius.kernel.di.std.ConfigValue;
+import sirius.kernel.di.std.Register;
+import sirius.kernel.health.Exceptions;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the contents of caches to disk when the system stops and restores them on the next start.
+ * <p>
+ * This is only done for caches which have <tt>snapshot</tt> enabled in their config. For each of those caches,
+ * all entries with a serializable key and value are written along with their remaining TTL into a file in
+ * <tt>cacheSnapshots.basedir</tt>. Once the system is started again, all present snapshots are loaded in parallel
+ * (using the executor <tt>cache-snapshots</tt>) so that the caches are warm without hitting the underlying
+ * data sources. Each snapshot is deleted once it was loaded.
+ * </p>
+ * <p>
+ * Note that only caches which already exist once the system is started (e.g. static fields of registered parts)
+ * can be restored.
+ * </p>
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ * @since 2014/02
+ */
+@Register
+public class CacheSnapshots implements Lifecycle {
+
+    /*
+     * Marks the file format and its version
+     */
+    private static final int MAGIC = 0x53434331;
+
+    /*
+     * Executor category used to load snapshots
+     */
+    private static final String EXECUTOR = "cache-snapshots";
+
+    /*
+     * Number of entries after which the object stream is reset to not keep references to all written objects
+     */
+    private static final int RESET_INTERVAL = 1000;
+
+    @ConfigValue("cacheSnapshots.basedir")
+    private String basedir;
+
+    @Override
+    public void started() {
+        final long start = System.currentTimeMillis();
+        final AtomicInteger pending = new AtomicInteger(1);
+        final AtomicLong restored = new AtomicLong();
+        for (Cache<?, ?> cache : CacheManager.getCaches()) {
+            if (cache instanceof ManagedCache && ((ManagedCache<?, ?>) cache).isSnapshotEnabled()) {
+                final ManagedCache<?, ?> managedCache = (ManagedCache<?, ?>) cache;
+                final File file = getFile(managedCache);
+                if (file.exists()) {
+                    pending.incrementAndGet();
+                    Async.executor(EXECUTOR).start(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                restored.addAndGet(restore(managedCache, file));
+                            } finally {
+                                if (pending.decrementAndGet() == 0) {
+                                    reportRestored(restored.get(), start);
+                                }
+                            }
+                        }
+                    }).execute();
+                }
+            }
+        }
+        if (pending.decrementAndGet() == 0) {
+            reportRestored(restored.get(), start);
+        }
+    }
+
+    private void reportRestored(long entries, long start) {
+        if (entries > 0) {
+            CacheManager.LOG.INFO("Restored %d cache entries from snapshots in %d ms",
+                                  entries,
+                                  System.currentTimeMillis() - start);
+        }
+    }
+
+    @Override
+    public void stopped() {
+        for (Cache<?, ?> cache : CacheManager.getCaches()) {
+            if (cache instanceof ManagedCache && ((ManagedCache<?, ?>) cache).isSnapshotEnabled()) {
+                write((ManagedCache<?, ?>) cache, getFile((ManagedCache<?, ?>) cache));
+            }
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "cache-snapshots (Cache Warm-Start Snapshots)";
+    }
+
+    private File getFile(ManagedCache<?, ?> cache) {
+        return new File(basedir, cache.getName().replaceAll("[^a-zA-Z0-9_\\-.]", "_") + ".snapshot");
+    }
+
+    /**
+     * Writes all entries of the given cache which are serializable and not expired into the given file.
+     *
+     * @param cache the cache to write
+     * @param file  the file to write to. The file is replaced once the snapshot was written successfully.
+     * @return the number of entries written
+     */
+    static <K, V> int write(ManagedCache<K, V> cache, File file) {
+        long now = System.currentTimeMillis();
+        int written = 0;
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try {
+            file.getAbsoluteFile().getParentFile().mkdirs();
+            try (ObjectOutputStream out = new ObjectOutputStream(new GZIPOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(tmp))))) {
+                out.writeInt(MAGIC);
+                out.writeLong(now);
+                for (CacheEntry<K, V> entry : cache.getContents()) {
+                    if (isSerializable(entry) && (entry.getMaxAge() == 0 || entry.getMaxAge() > now)) {
+                        out.writeBoolean(true);
+                        out.writeObject(entry.getKey());
+                        out.writeObject(entry.getValue());
+                        out.writeLong(entry.getMaxAge() == 0 ? -1 : entry.getMaxAge() - now);
+                        out.writeLong(Math.max(0, entry.getNextVerification() - now));
+                        if (++written % RESET_INTERVAL == 0) {
+                            out.reset();
+                        }
+                    }
+                }
+                out.writeBoolean(false);
+            }
+            if (file.exists() && !file.delete()) {
+                throw new IOException("Cannot replace " + file.getAbsolutePath());
+            }
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Cannot rename " + tmp.getAbsolutePath());
+            }
+            CacheManager.LOG.FINE("Wrote %d entries of cache %s to %s", written, cache.getName(), file);
+        } catch (Throwable e) {
+            tmp.delete();
+            Exceptions.handle()
+                      .to(CacheManager.LOG)
+                      .error(e)
+                      .withSystemErrorMessage("Cannot write a snapshot of cache %s: %s (%s)", cache.getName())
+                      .handle();
+        }
+        return written;
+    }
+
+    private static boolean isSerializable(CacheEntry<?, ?> entry) {
+        return entry.getKey() instanceof Serializable
+               && (entry.getValue() == null || entry.getValue() instanceof Serializable);
+    }
+
+    /**
+     * Loads all entries of the given file which are not expired yet into the given cache and deletes the file.
+     * <p>
+     * Entries which are already present in the cache are not overwritten.
+     * </p>
+     *
+     * @param cache the cache to fill
+     * @param file  the snapshot to read
+     * @return the number of entries restored
+     */
+    @SuppressWarnings("unchecked")
+    static <K, V> int restore(ManagedCache<K, V> cache, File file) {
+        long start = System.currentTimeMillis();
+        int restored = 0;
+        try (ObjectInputStream in = new ObjectInputStream(new GZIPInputStream(new BufferedInputStream(
+                new FileInputStream(file))))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Invalid file format");
+            }
+            long written = in.readLong();
+            long downtime = Math.max(0, start - written);
+            while (in.readBoolean()) {
+                K key = (K) in.readObject();
+                V value = (V) in.readObject();
+                long ttl = in.readLong();
+                long verification = in.readLong();
+                if (ttl >= 0 && ttl <= downtime) {
+                    continue;
+                }
+                long now = System.currentTimeMillis();
+                CacheEntry<K, V> entry = new CacheEntry<K, V>(key,
+                                                              value,
+                                                              ttl < 0 ? 0 : now + ttl - downtime,
+                                                              now + Math.max(0, verification - downtime));
+                if (cache.restore(entry)) {
+                    restored++;
+                }
+            }
+            CacheManager.LOG.INFO("Restored %d entries of cache %s in %d ms",
+                                  restored,
+                                  cache.getName(),
+                                  System.currentTimeMillis() - start);
+        } catch (Throwable e) {
+            Exceptions.handle()
+                      .to(CacheManager.LOG)
+                      .error(e)
+                      .withSystemErrorMessage("Cannot restore the snapshot of cache %s: %s (%s)", cache.getName())
+                      .handle();
+        } finally {
+            if (!file.delete()) {
+                CacheManager.LOG.WARN("Cannot delete cache snapshot: %s", file.getAbsolutePath());
+            }
+        }
+        return restored;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the entries of a {@link ManagedCache} ordered by their expiry timestamp.
+ * <p>
+ * The entries themselves form an intrusive doubly linked list, therefore adding and removing an entry is O(1).
+ * As all entries of a cache share the same time to live, new entries almost always belong to the end of the
+ * list, which is checked first. Collecting expired entries only visits the expired head of the list, so its
+ * cost is proportional to the number of expired entries and not to the size of the cache.
+ * </p>
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ * @since 2014/02
+ */
+class ExpiryIndex<K, V> {
+
+    private CacheEntry<K, V> head;
+    private CacheEntry<K, V> tail;
+    private int size;
+
+    /**
+     * Adds the given entry to the index.
+     * <p>
+     * Entries without a max age (which never expire) are ignored.
+     * </p>
+     *
+     * @param entry the entry to add
+     */
+    synchronized void add(CacheEntry<K, V> entry) {
+        if (entry.getMaxAge() <= 0 || entry.indexed) {
+            return;
+        }
+        CacheEntry<K, V> predecessor = tail;
+        while (predecessor != null && predecessor.getMaxAge() > entry.getMaxAge()) {
+            predecessor = predecessor.expiryPrev;
+        }
+        entry.expiryPrev = predecessor;
+        if (predecessor == null) {
+            entry.expiryNext = head;
+            head = entry;
+        } else {
+            entry.expiryNext = predecessor.expiryNext;
+            predecessor.expiryNext = entry;
+        }
+        if (entry.expiryNext == null) {
+            tail = entry;
+        } else {
+            entry.expiryNext.expiryPrev = entry;
+        }
+        entry.indexed = true;
+        size++;
+    }
+
+    /**
+     * Removes the given entry from the index.
+     * <p>
+     * Removing an entry which is not in the index is a no-op.
+     * </p>
+     *
+     * @param entry the entry to remove
+     */
+    synchronized void remove(CacheEntry<K, V> entry) {
+        if (!entry.indexed) {
+            return;
+        }
+        unlink(entry);
+    }
+
+    /**
+     * Removes and returns all entries which expired before the given timestamp.
+     *
+     * @param now the current timestamp
+     * @return a list of all expired entries, ordered by their expiry
+     */
+    synchronized List<CacheEntry<K, V>> pollExpired(long now) {
+        List<CacheEntry<K, V>> result = new ArrayList<CacheEntry<K, V>>();
+        while (head != null && head.getMaxAge() < now) {
+            result.add(head);
+            unlink(head);
+        }
+        return result;
+    }
+
+    /**
+     * Removes all entries from the index.
+     */
+    synchronized void clear() {
+        while (head != null) {
+            unlink(head);
+        }
+    }
+
+    /**
+     * Returns the number of indexed entries.
+     *
+     * @return the number of entries which will expire
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    private void unlink(CacheEntry<K, V> entry) {
+        if (entry.expiryPrev == null) {
+            head = entry.expiryNext;
+        } else {
+            entry.expiryPrev.expiryNext = entry.expiryNext;
+        }
+        if (entry.expiryNext == null) {
+            tail = entry.expiryPrev;
+        } else {
+            entry.expiryNext.expiryPrev = entry.expiryPrev;
+        }
+        entry.expiryPrev = null;
+        entry.expiryNext = null;
+        entry.indexed = false;
+        size--;
+    }
+}
@@ -0,0 +1,484 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.cache;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import sirius.kernel.health.Average;
+import sirius.kernel.health.Counter;
+import sirius.kernel.health.Exceptions;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Distributes removed or replaced cache entries to all other nodes of a cluster.
+ * <p>
+ * Once a key of a cache which has <tt>invalidation</tt> enabled is removed, replaced or the whole cache is cleared,
+ * the invalidation is published on this bus. Invalidations are collected for a short period
+ * (<tt>cacheInvalidation.flushInterval</tt>) and then sent as one batch using the {@link InvalidationTransport}.
+ * Within a batch, invalidations are coalesced: each key is only sent once and if a cache is cleared, or too many
+ * keys of a single cache are pending, only a clear of the whole cache is sent.
+ * </p>
+ * <p>
+ * Keys are encoded explicitly and only strings and boxed primitives are supported. For a key of any other type, the
+ * whole cache is cleared on the other nodes. Each packet is signed using a HMAC based on a secret shared by all
+ * nodes. Received packets which do not carry a valid signature are dropped before their contents are parsed.
+ * </p>
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ * @since 2014/02
+ */
+public class InvalidationBus {
+
+    /*
+     * Version of the packet format
+     */
+    private static final byte VERSION = 2;
+
+    /*
+     * Algorithm used to sign packets
+     */
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+
+    /*
+     * Type tags used to encode keys
+     */
+    private static final byte TYPE_STRING = 0;
+    private static final byte TYPE_INTEGER = 1;
+    private static final byte TYPE_LONG = 2;
+    private static final byte TYPE_SHORT = 3;
+    private static final byte TYPE_BYTE = 4;
+    private static final byte TYPE_CHARACTER = 5;
+    private static final byte TYPE_BOOLEAN = 6;
+    private static final byte TYPE_DOUBLE = 7;
+    private static final byte TYPE_FLOAT = 8;
+
+    /*
+     * Larger packets are re-encoded by clearing all affected caches so that a batch always fits into a datagram
+     */
+    private static final int MAX_PACKET_SIZE = 60000;
+
+    private final String sender = UUID.randomUUID().toString();
+    private final InvalidationTransport transport;
+    private final SecretKeySpec secret;
+    private final long flushInterval;
+    private final int maxKeysPerCache;
+    private final Map<String, ManagedCache<?, ?>> caches = Maps.newConcurrentMap();
+    private Map<String, Set<Object>> pendingKeys = Maps.newHashMap();
+    private Set<String> pendingClears = Sets.newHashSet();
+    private long oldestPending;
+    private Counter sent = new Counter();
+    private Counter received = new Counter();
+    private Counter dropped = new Counter();
+    private Average lag = new Average();
+    private volatile Thread flusher;
+
+    /**
+     * Creates a new bus which is not started yet.
+     *
+     * @param transport       the transport used to exchange batches with other nodes
+     * @param flushInterval   the number of milliseconds invalidations are collected before they are sent
+     * @param maxKeysPerCache the max number of keys per cache and batch. If more keys are pending, the whole cache
+     *                        is cleared instead.
+     * @param secret          the secret shared by all nodes which is used to sign and verify packets
+     */
+    public InvalidationBus(InvalidationTransport transport, long flushInterval, int maxKeysPerCache, byte[] secret) {
+        if (secret == null || secret.length == 0) {
+            throw new IllegalArgumentException("secret must not be empty");
+        }
+        this.transport = transport;
+        this.secret = new SecretKeySpec(secret, MAC_ALGORITHM);
+        this.flushInterval = Math.max(1, flushInterval);
+        this.maxKeysPerCache = maxKeysPerCache;
+    }
+
+    /**
+     * Registers the given cache, so that invalidations received for its name are applied to it.
+     *
+     * @param cache the cache to register
+     */
+    void register(ManagedCache<?, ?> cache) {
+        caches.put(cache.getName(), cache);
+    }
+
+    /**
+     * Publishes that the given key of the given cache was removed or replaced.
+     *
+     * @param cacheName the name of the cache
+     * @param key       the key which is now invalid
+     */
+    public void publish(String cacheName, Object key) {
+        synchronized (this) {
+            markPending();
+            if (pendingClears.contains(cacheName)) {
+                return;
+            }
+            if (!isSupportedKey(key)) {
+                publishClear(cacheName);
+                return;
+            }
+            Set<Object> keys = pendingKeys.get(cacheName);
+            if (keys == null) {
+                keys = Sets.newHashSet();
+                pendingKeys.put(cacheName, keys);
+            }
+            keys.add(key);
+            if (keys.size() > maxKeysPerCache) {
+                publishClear(cacheName);
+            }
+        }
+    }
+
+    /**
+     * Publishes that the given cache was cleared completely.
+     *
+     * @param cacheName the name of the cache
+     */
+    public void publishClear(String cacheName) {
+        synchronized (this) {
+            markPending();
+            pendingKeys.remove(cacheName);
+            pendingClears.add(cacheName);
+        }
+    }
+
+    /*
+     * Determines if the given key can be encoded by writeKey
+     */
+    private static boolean isSupportedKey(Object key) {
+        return key instanceof String ||
+               key instanceof Integer ||
+               key instanceof Long ||
+               key instanceof Short ||
+               key instanceof Byte ||
+               key instanceof Character ||
+               key instanceof Boolean ||
+               key instanceof Double ||
+               key instanceof Float;
+    }
+
+    /*
+     * Remembers when the first invalidation of the current batch was published, so that the lag reported by the
+     * receivers includes the time spent waiting for the flush.
+     */
+    private void markPending() {
+        if (oldestPending == 0) {
+            oldestPending = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Sends all pending invalidations as one batch.
+     * <p>
+     * This is invoked regularly by the bus itself, but can also be called to send pending invalidations right away.
+     * </p>
+     */
+    public void flush() {
+        Map<String, Set<Object>> keys;
+        Set<String> clears;
+        long timestamp;
+        synchronized (this) {
+            if (oldestPending == 0) {
+                return;
+            }
+            keys = pendingKeys;
+            clears = pendingClears;
+            timestamp = oldestPending;
+            pendingKeys = Maps.newHashMap();
+            pendingClears = Sets.newHashSet();
+            oldestPending = 0;
+        }
+        try {
+            byte[] packet = encode(timestamp, keys, clears);
+            if (packet.length > MAX_PACKET_SIZE) {
+                clears.addAll(keys.keySet());
+                packet = encode(timestamp, Maps.<String, Set<Object>>newHashMap(), clears);
+            }
+            transport.send(packet);
+            sent.inc();
+        } catch (IOException e) {
+            dropped.inc();
+            CacheManager.LOG.FINE("Cannot send cache invalidations via %s: %s", transport.getName(), e.getMessage());
+        } catch (Throwable e) {
+            dropped.inc();
+            Exceptions.handle(CacheManager.LOG, e);
+        }
+    }
+
+    private byte[] encode(long timestamp, Map<String, Set<Object>> keys, Set<String> clears) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+        out.writeByte(VERSION);
+        out.writeUTF(sender);
+        out.writeLong(timestamp);
+        out.writeInt(clears.size() + keys.size());
+        for (String cacheName : clears) {
+            out.writeUTF(cacheName);
+            out.writeInt(-1);
+        }
+        for (Map.Entry<String, Set<Object>> entry : keys.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeInt(entry.getValue().size());
+            for (Object key : entry.getValue()) {
+                writeKey(out, key);
+            }
+        }
+        out.close();
+        byte[] payload = buffer.toByteArray();
+        byte[] signature = sign(payload, 0, payload.length);
+        byte[] packet = Arrays.copyOf(signature, signature.length + payload.length);
+        System.arraycopy(payload, 0, packet, signature.length, payload.length);
+        return packet;
+    }
+
+    /*
+     * Writes a type tag followed by the value of the given key (which was checked by isSupportedKey)
+     */
+    private static void writeKey(DataOutputStream out, Object key) throws IOException {
+        if (key instanceof String) {
+            out.writeByte(TYPE_STRING);
+            out.writeUTF((String) key);
+        } else if (key instanceof Integer) {
+            out.writeByte(TYPE_INTEGER);
+            out.writeInt((Integer) key);
+        } else if (key instanceof Long) {
+            out.writeByte(TYPE_LONG);
+            out.writeLong((Long) key);
+        } else if (key instanceof Short) {
+            out.writeByte(TYPE_SHORT);
+            out.writeShort((Short) key);
+        } else if (key instanceof Byte) {
+            out.writeByte(TYPE_BYTE);
+            out.writeByte((Byte) key);
+        } else if (key instanceof Character) {
+            out.writeByte(TYPE_CHARACTER);
+            out.writeChar((Character) key);
+        } else if (key instanceof Boolean) {
+            out.writeByte(TYPE_BOOLEAN);
+            out.writeBoolean((Boolean) key);
+        } else if (key instanceof Double) {
+            out.writeByte(TYPE_DOUBLE);
+            out.writeDouble((Double) key);
+        } else if (key instanceof Float) {
+            out.writeByte(TYPE_FLOAT);
+            out.writeFloat((Float) key);
+        } else {
+            throw new IOException("Unsupported key type: " + key.getClass().getName());
+        }
+    }
+
+    /*
+     * Reads a key written by writeKey
+     */
+    private static Object readKey(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case TYPE_STRING:
+                return in.readUTF();
+            case TYPE_INTEGER:
+                return in.readInt();
+            case TYPE_LONG:
+                return in.readLong();
+            case TYPE_SHORT:
+                return in.readShort();
+            case TYPE_BYTE:
+                return in.readByte();
+            case TYPE_CHARACTER:
+                return in.readChar();
+            case TYPE_BOOLEAN:
+                return in.readBoolean();
+            case TYPE_DOUBLE:
+                return in.readDouble();
+            case TYPE_FLOAT:
+                return in.readFloat();
+            default:
+                throw new IOException("Unknown key type: " + type);
+        }
+    }
+
+    /*
+     * Computes the HMAC of the given range using the shared secret
+     */
+    private byte[] sign(byte[] data, int offset, int length) throws IOException {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(secret);
+            mac.update(data, offset, length);
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /*
+     * Determines if the packet starts with a valid HMAC of the remaining bytes
+     */
+    private boolean isSigned(byte[] packet, int macLength) throws IOException {
+        if (packet.length <= macLength) {
+            return false;
+        }
+        byte[] expected = sign(packet, macLength, packet.length - macLength);
+        return MessageDigest.isEqual(expected, Arrays.copyOf(packet, macLength));
+    }
+
+    /**
+     * Applies a batch of invalidations which was received by the transport.
+     * <p>
+     * Batches sent by this bus itself are ignored. Packets without a valid signature are dropped without looking
+     * at their contents.
+     * </p>
+     *
+     * @param packet the encoded batch as sent by another bus
+     */
+    public void receive(byte[] packet) {
+        try {
+            int macLength = Mac.getInstance(MAC_ALGORITHM).getMacLength();
+            if (!isSigned(packet, macLength)) {
+                dropped.inc();
+                CacheManager.LOG.FINE("Dropped a cache invalidation packet with an invalid signature");
+                return;
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(packet,
+                                                                              macLength,
+                                                                              packet.length - macLength));
+            if (in.readByte() != VERSION) {
+                dropped.inc();
+                return;
+            }
+            if (sender.equals(in.readUTF())) {
+                return;
+            }
+            received.inc();
+            lag.addValue(Math.max(0, System.currentTimeMillis() - in.readLong()));
+            int numCaches = in.readInt();
+            for (int i = 0; i < numCaches; i++) {
+                ManagedCache<?, ?> cache = caches.get(in.readUTF());
+                int numKeys = in.readInt();
+                if (numKeys < 0) {
+                    if (cache != null) {
+                        cache.clearLocally();
+                    }
+                }
+                for (int k = 0; k < numKeys; k++) {
+                    Object key = readKey(in);
+                    if (cache != null) {
+                        cache.removeLocally(key);
+                    }
+                }
+            }
+        } catch (Throwable e) {
+            dropped.inc();
+            CacheManager.LOG.FINE("Received a malformed cache invalidation packet: %s", e.getMessage());
+        }
+    }
+
+    /**
+     * Starts the transport and the thread which regularly sends pending invalidations.
+     *
+     * @throws IOException in case the transport cannot be started
+     */
+    public void start() throws IOException {
+        transport.start(this);
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (flusher == Thread.currentThread()) {
+                    try {
+                        Thread.sleep(flushInterval);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    flush();
+                }
+            }
+        });
+        thread.setName("cache-invalidation");
+        thread.setDaemon(true);
+        flusher = thread;
+        thread.start();
+    }
+
+    /**
+     * Sends all pending invalidations and stops the bus.
+     */
+    public void stop() {
+        Thread thread = flusher;
+        flusher = null;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        flush();
+        transport.stop();
+    }
+
+    /**
+     * Returns the transport used by this bus.
+     *
+     * @return the transport used to exchange batches with other nodes
+     */
+    public InvalidationTransport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Returns the number of batches sent.
+     *
+     * @return the number of batches successfully handed to the transport
+     */
+    public long getNumSent() {
+        return sent.getCount();
+    }
+
+    /**
+     * Returns the number of batches received from other nodes.
+     *
+     * @return the number of batches applied to the local caches
+     */
+    public long getNumReceived() {
+        return received.getCount();
+    }
+
+    /**
+     * Returns the number of dropped batches.
+     * <p>
+     * A batch is dropped if it cannot be sent or if a received packet has an invalid signature or cannot be
+     * decoded.
+     * </p>
+     *
+     * @return the number of batches which were lost
+     */
+    public long getNumDropped() {
+        return dropped.getCount();
+    }
+
+    /**
+     * Returns the average lag of received invalidations.
+     * <p>
+     * This is the time between the first invalidation of a batch on the sending node and applying the batch
+     * on this node. Note that this relies on synchronized clocks.
+     * </p>
+     *
+     * @return the average lag in milliseconds
+     */
+    public double getLag() {
+        return lag.getAvg();
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.cache;
+
+import java.io.IOException;
+
+/**
+ * Transfers batches of cache invalidations between the {@link InvalidationBus} instances of several nodes.
+ * <p>
+ * A transport only moves opaque packets. Encoding, batching and applying invalidations is handled by the bus.
+ * Packets received from other nodes are handed to {@link InvalidationBus#receive(byte[])}.
+ * </p>
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ * @since 2014/02
+ */
+public interface InvalidationTransport {
+
+    /**
+     * Returns the name of the transport as used in the config (<tt>cacheInvalidation.transport</tt>).
+     *
+     * @return the name of this transport
+     */
+    String getName();
+
+    /**
+     * Starts to receive packets for the given bus.
+     *
+     * @param bus the bus which is notified about incoming packets
+     * @throws IOException in case of an error while opening the required sockets
+     */
+    void start(InvalidationBus bus) throws IOException;
+
+    /**
+     * Sends the given packet to all other nodes.
+     *
+     * @param packet the encoded batch of invalidations
+     * @throws IOException in case the packet could not be delivered to at least one node
+     */
+    void send(byte[] packet) throws IOException;
+
+    /**
+     * Stops receiving packets and releases all resources.
+     */
+    void stop();
+}
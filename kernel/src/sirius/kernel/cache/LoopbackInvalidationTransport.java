@@ -0,0 +1,62 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.cache;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Connects all {@link InvalidationBus} instances within the same JVM.
+ * <p>
+ * Packets are handed directly to all other started buses which use this transport. This permits to test the
+ * distribution of invalidations on a single machine.
+ * </p>
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ * @since 2014/02
+ */
+public class LoopbackInvalidationTransport implements InvalidationTransport {
+
+    /**
+     * Contains the name of this transport as used in the config
+     */
+    public static final String NAME = "loopback";
+
+    /*
+     * Contains all buses which are currently connected via this transport
+     */
+    private static final List<InvalidationBus> buses = new CopyOnWriteArrayList<InvalidationBus>();
+
+    private InvalidationBus bus;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void start(InvalidationBus bus) {
+        this.bus = bus;
+        buses.add(bus);
+    }
+
+    @Override
+    public void send(byte[] packet) {
+        for (InvalidationBus other : buses) {
+            if (other != bus) {
+                other.receive(packet);
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        buses.remove(bus);
+    }
+}
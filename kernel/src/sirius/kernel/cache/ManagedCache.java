@@ -9,22 +9,32 @@
 package sirius.kernel.cache;
 
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
 import com.google.common.cache.RemovalListener;
 import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.SettableFuture;
+import sirius.kernel.async.Async;
 import sirius.kernel.commons.Callback;
 import sirius.kernel.commons.Tuple;
 import sirius.kernel.extensions.Extension;
 import sirius.kernel.extensions.Extensions;
+import sirius.kernel.health.Average;
 import sirius.kernel.health.Counter;
 import sirius.kernel.health.Exceptions;
 
 import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map.Entry;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Implementation of <tt>Cache</tt> used by the <tt>CacheManager</tt>
@@ -45,17 +55,36 @@ class ManagedCache<K, V> implements Cache<K, V>, RemovalListener<Object, Object>
     protected com.google.common.cache.Cache<K, CacheEntry<K, V>> data;
     protected Counter hits = new Counter();
     protected Counter misses = new Counter();
+    protected ExpiryIndex<K, V> expiryIndex = new ExpiryIndex<K, V>();
+    protected Counter expired = new Counter();
+    protected Average expiryLag = new Average();
     protected Date lastEvictionRun = null;
     protected final String name;
     protected long timeToLive;
     protected final ValueVerifier<V> verifier;
     protected long verificationInterval;
     protected Callback<Tuple<K, V>> removeListener;
+    protected boolean refreshAhead;
+    protected Set<K> refreshing = Collections.newSetFromMap(new ConcurrentHashMap<K, Boolean>());
+    protected OffHeapStore<K, V> offHeap;
+    protected ConcurrentMap<K, SettableFuture<CacheEntry<K, V>>> loading = Maps.newConcurrentMap();
+    protected Average batchSizes = new Average();
+    protected boolean invalidation;
+    protected boolean snapshot;
 
     private static final String EXTENSION_TYPE_CACHE = "cache";
     private static final String CONFIG_KEY_MAX_SIZE = "maxSize";
     private static final String CONFIG_KEY_TTL = "ttl";
     private static final String CONFIG_KEY_VERIFICATION = "verification";
+    private static final String CONFIG_KEY_REFRESH_AHEAD = "refreshAhead";
+    private static final String CONFIG_KEY_OFF_HEAP_SIZE = "offHeapSize";
+    private static final String CONFIG_KEY_INVALIDATION = "invalidation";
+    private static final String CONFIG_KEY_SNAPSHOT = "snapshot";
+
+    /*
+     * Executor category used to refresh expired entries in the background
+     */
+    private static final String REFRESH_EXECUTOR = "cache-refresh";
 
     /**
      * Creates a new cache. This is not intended to be called outside of <tt>CacheManager</tt>.
@@ -89,11 +118,71 @@ class ManagedCache<K, V> implements Cache<K, V>, RemovalListener<Object, Object>
         this.verificationInterval = cacheInfo.getMilliseconds(CONFIG_KEY_VERIFICATION);
         this.timeToLive = cacheInfo.getMilliseconds(CONFIG_KEY_TTL);
         this.maxSize = cacheInfo.get(CONFIG_KEY_MAX_SIZE).asInt(100);
+        this.refreshAhead = cacheInfo.get(CONFIG_KEY_REFRESH_AHEAD).asBoolean(false);
+        long offHeapSize = cacheInfo.getBytes(CONFIG_KEY_OFF_HEAP_SIZE);
+        if (offHeapSize > 0 && maxSize > 0) {
+            this.offHeap = new OffHeapStore<K, V>(name, offHeapSize);
+        }
         if (maxSize > 0) {
             this.data = CacheBuilder.newBuilder().maximumSize(maxSize).removalListener(this).build();
         } else {
             this.data = CacheBuilder.newBuilder().removalListener(this).build();
         }
+        this.invalidation = cacheInfo.get(CONFIG_KEY_INVALIDATION).asBoolean(false);
+        this.snapshot = cacheInfo.get(CONFIG_KEY_SNAPSHOT).asBoolean(false);
+        InvalidationBus bus = CacheManager.getInvalidationBus();
+        if (invalidation && bus != null) {
+            bus.register(this);
+        }
+    }
+
+    /*
+     * Determines if changes of this cache are published on the invalidation bus
+     */
+    boolean isInvalidationEnabled() {
+        return invalidation;
+    }
+
+    /*
+     * Determines if the contents of this cache are written to disk on shutdown and restored on startup
+     */
+    boolean isSnapshotEnabled() {
+        if (data == null) {
+            init();
+        }
+        return snapshot;
+    }
+
+    /*
+     * Adds an entry which was loaded from a snapshot, unless the key is already present
+     */
+    boolean restore(CacheEntry<K, V> entry) {
+        if (data == null) {
+            init();
+        }
+        if (data.asMap().putIfAbsent(entry.getKey(), entry) != null) {
+            return false;
+        }
+        expiryIndex.add(entry);
+        return true;
+    }
+
+    /*
+     * Publishes the invalidation of the given key (or of the whole cache if null is given) to all other nodes
+     */
+    private void publishInvalidation(@Nullable K key) {
+        if (!invalidation) {
+            return;
+        }
+        InvalidationBus bus = CacheManager.getInvalidationBus();
+        if (bus == null) {
+            return;
+        }
+        if (key == null) {
+            bus.publishClear(name);
+        } else {
+            bus.publish(name, key);
+        }
     }
 
     @Override
@@ -146,19 +235,28 @@ class ManagedCache<K, V> implements Cache<K, V>, RemovalListener<Object, Object>
         }
         hits.reset();
         misses.reset();
+        if (offHeap != null) {
+            offHeap.resetStatistics();
+        }
         lastEvictionRun = new Date();
-        if (timeToLive <= 0) {
+        runExpiry();
+    }
+
+    @Override
+    public void runExpiry() {
+        if (data == null || timeToLive <= 0) {
             return;
         }
-        // Remove all outdated entries...
         long now = System.currentTimeMillis();
+        // In refresh ahead mode, expired entries are still served (while being re-computed) for another ttl
+        long limit = refreshAhead ? now - timeToLive : now;
         int numEvicted = 0;
-        Iterator<Entry<K, CacheEntry<K, V>>> iter = data.asMap().entrySet().iterator();
-        while (iter.hasNext()) {
-            Entry<K, CacheEntry<K, V>> next = iter.next();
-            if (next.getValue().getMaxAge() > now) {
-                iter.remove();
+        for (CacheEntry<K, V> entry : expiryIndex.pollExpired(limit)) {
+            // The entry might have already been replaced - in this case the new entry remains in the cache
+            if (data.asMap().remove(entry.getKey(), entry)) {
                 numEvicted++;
+                expired.inc();
+                expiryLag.addValue(limit - entry.getMaxAge());
             }
         }
         if (numEvicted > 0 && CacheManager.LOG.isFINE()) {
@@ -166,12 +264,47 @@ class ManagedCache<K, V> implements Cache<K, V>, RemovalListener<Object, Object>
         }
     }
 
+    @Override
+    public long getOffHeapBytes() {
+        return offHeap == null ? 0 : offHeap.getUsedBytes();
+    }
+
+    @Override
+    public Long getOffHeapHitRate() {
+        return offHeap == null ? 0L : offHeap.getHitRate();
+    }
+
+    @Override
+    public long getNumExpired() {
+        return expired.getCount();
+    }
+
+    @Override
+    public double getExpiryLag() {
+        return expiryLag.getAvg();
+    }
+
     @Override
     public void clear() {
+        if (data == null) {
+            init();
+        }
+        clearLocally();
+        publishInvalidation(null);
+    }
+
+    /*
+     * Clears this cache without notifying other nodes (invoked by the InvalidationBus)
+     */
+    void clearLocally() {
         if (data == null) {
             return;
         }
         data.asMap().clear();
+        expiryIndex.clear();
+        if (offHeap != null) {
+            offHeap.clear();
+        }
         misses.reset();
         hits.reset();
         lastEvictionRun = new Date();
@@ -199,29 +332,29 @@ class ManagedCache<K, V> implements Cache<K, V>, RemovalListener<Object, Object>
             long now = System.currentTimeMillis();
             CacheEntry<K, V> entry = null;
             if (computer != null) {
-                entry = data.get(key, new Callable<CacheEntry<K, V>>() {
-                    @Override
-                    public CacheEntry<K, V> call() throws Exception {
-                        misses.inc();
-                        V value = computer.compute(key);
-                        return new CacheEntry<K, V>(key,
-                                                    value,
-                                                    timeToLive > 0 ? timeToLive + System.currentTimeMillis() : 0,
-                                                    verificationInterval + System.currentTimeMillis());
-                    }
-                });
+                entry = data.get(key, createLoader(key, computer));
             } else {
                 entry = data.getIfPresent(key);
+                if (entry == null && offHeap != null) {
+                    entry = offHeap.promote(key);
+                    if (entry != null) {
+                        data.put(key, entry);
+                        expiryIndex.add(entry);
+                    }
+                }
             }
             if (entry != null && entry.getMaxAge() > 0 && entry.getMaxAge() < now) {
-                data.invalidate(key);
-                entry = null;
-                if (computer != null) {
-                    V value = computer.compute(key);
-                    entry = new CacheEntry<K, V>(key,
-                                                value,
-                                                timeToLive > 0 ? timeToLive + System.currentTimeMillis() : 0,
-                                                verificationInterval + System.currentTimeMillis());
+                if (computer == null) {
+                    data.asMap().remove(key, entry);
+                    entry = null;
+                } else if (refreshAhead) {
+                    refreshInBackground(key, computer);
+                } else {
+                    // Only remove the entry if it wasn't already replaced by another thread. The loader of
+                    // the underlying cache then ensures that only one thread computes the new value while all
+                    // others wait for it.
+                    data.asMap().remove(key, entry);
+                    entry = data.get(key, createLoader(key, computer));
                 }
             }
             if (verifier != null && entry != null && verificationInterval > 0 && entry.getNextVerification() < now) {
@@ -244,24 +377,235 @@ class ManagedCache<K, V> implements Cache<K, V>, RemovalListener<Object, Object>
         }
     }
 
+    /*
+     * Creates a loader which computes a new entry for the given key
+     */
+    private Callable<CacheEntry<K, V>> createLoader(final K key, final ValueComputer<K, V> computer) {
+        return new Callable<CacheEntry<K, V>>() {
+            @Override
+            public CacheEntry<K, V> call() throws Exception {
+                if (offHeap != null) {
+                    CacheEntry<K, V> entry = offHeap.promote(key);
+                    if (entry != null) {
+                        expiryIndex.add(entry);
+                        return entry;
+                    }
+                }
+                SettableFuture<CacheEntry<K, V>> load = SettableFuture.create();
+                SettableFuture<CacheEntry<K, V>> currentLoad = loading.putIfAbsent(key, load);
+                if (currentLoad != null) {
+                    // The key is already being computed by getAll - wait for its result
+                    return currentLoad.get();
+                }
+                try {
+                    misses.inc();
+                    CacheEntry<K, V> entry = createEntry(key, computer.compute(key));
+                    expiryIndex.add(entry);
+                    load.set(entry);
+                    return entry;
+                } catch (Throwable e) {
+                    load.setException(e);
+                    throw Exceptions.handle(CacheManager.LOG, e);
+                } finally {
+                    loading.remove(key, load);
+                }
+            }
+        };
+    }
+
+    /*
+     * Creates a new entry using the ttl and verification interval of this cache
+     */
+    private CacheEntry<K, V> createEntry(K key, V value) {
+        return new CacheEntry<K, V>(key,
+                                    value,
+                                    timeToLive > 0 ? timeToLive + System.currentTimeMillis() : 0,
+                                    verificationInterval + System.currentTimeMillis());
+    }
+
+    /*
+     * Re-computes the value for the given key in the background, while the expired value is still being served.
+     * Only one refresh per key is scheduled at a time.
+     */
+    private void refreshInBackground(final K key, final ValueComputer<K, V> computer) {
+        if (!refreshing.add(key)) {
+            return;
+        }
+        Async.executor(REFRESH_EXECUTOR).fork(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    misses.inc();
+                    CacheEntry<K, V> entry = createEntry(key, computer.compute(key));
+                    data.put(key, entry);
+                    expiryIndex.add(entry);
+                } finally {
+                    refreshing.remove(key);
+                }
+            }
+        }).dropOnOverload(new Runnable() {
+            @Override
+            public void run() {
+                refreshing.remove(key);
+            }
+        }).execute();
+    }
+
+    @Override
+    public Map<K, V> getAll(Collection<K> keys) {
+        try {
+            if (data == null) {
+                init();
+            }
+            long now = System.currentTimeMillis();
+            Map<K, V> found = Maps.newHashMap();
+            List<K> missing = new ArrayList<K>();
+            for (K key : keys) {
+                CacheEntry<K, V> entry = data.getIfPresent(key);
+                if (entry == null && offHeap != null) {
+                    entry = offHeap.promote(key);
+                    if (entry != null) {
+                        data.put(key, entry);
+                        expiryIndex.add(entry);
+                    }
+                }
+                if (entry != null && entry.getMaxAge() > 0 && entry.getMaxAge() < now) {
+                    if (refreshAhead && computer != null) {
+                        refreshInBackground(key, computer);
+                    } else {
+                        data.asMap().remove(key, entry);
+                        entry = null;
+                    }
+                }
+                if (verifier != null && entry != null && verificationInterval > 0
+                        && entry.getNextVerification() < now) {
+                    if (!verifier.valid(entry.getValue())) {
+                        data.asMap().remove(key, entry);
+                        entry = null;
+                    } else {
+                        entry.setNextVerification(verificationInterval + now);
+                    }
+                }
+                if (entry != null) {
+                    hits.inc();
+                    entry.getHits().inc();
+                    found.put(key, entry.getValue());
+                } else {
+                    missing.add(key);
+                }
+            }
+            if (computer instanceof BatchValueComputer) {
+                computeAll(missing, (BatchValueComputer<K, V>) computer, found);
+            } else {
+                for (K key : missing) {
+                    found.put(key, get(key));
+                }
+            }
+            Map<K, V> result = Maps.newLinkedHashMap();
+            for (K key : keys) {
+                V value = found.get(key);
+                if (value != null) {
+                    result.put(key, value);
+                }
+            }
+            return result;
+        } catch (Throwable e) {
+            throw Exceptions.handle(CacheManager.LOG, e);
+        }
+    }
+
+    /*
+     * Computes the given keys with a single call of the batch computer. Keys which are already being loaded
+     * by another thread are not computed again, instead their result is awaited.
+     */
+    private void computeAll(List<K> keys, BatchValueComputer<K, V> batchComputer, Map<K, V> result)
+            throws Exception {
+        if (keys.isEmpty()) {
+            return;
+        }
+        Map<K, SettableFuture<CacheEntry<K, V>>> ownLoads = Maps.newLinkedHashMap();
+        Map<K, SettableFuture<CacheEntry<K, V>>> foreignLoads = Maps.newLinkedHashMap();
+        for (K key : keys) {
+            SettableFuture<CacheEntry<K, V>> load = SettableFuture.create();
+            SettableFuture<CacheEntry<K, V>> currentLoad = loading.putIfAbsent(key, load);
+            if (currentLoad == null) {
+                ownLoads.put(key, load);
+            } else {
+                foreignLoads.put(key, currentLoad);
+            }
+        }
+        try {
+            if (!ownLoads.isEmpty()) {
+                batchSizes.addValue(ownLoads.size());
+                Map<K, V> computed = batchComputer.computeAll(new ArrayList<K>(ownLoads.keySet()));
+                for (Map.Entry<K, SettableFuture<CacheEntry<K, V>>> load : ownLoads.entrySet()) {
+                    misses.inc();
+                    CacheEntry<K, V> entry = createEntry(load.getKey(), computed.get(load.getKey()));
+                    data.put(load.getKey(), entry);
+                    expiryIndex.add(entry);
+                    if (offHeap != null) {
+                        offHeap.remove(load.getKey());
+                    }
+                    load.getValue().set(entry);
+                    result.put(load.getKey(), entry.getValue());
+                }
+            }
+        } catch (Throwable e) {
+            for (SettableFuture<CacheEntry<K, V>> load : ownLoads.values()) {
+                load.setException(e);
+            }
+            throw Exceptions.handle(CacheManager.LOG, e);
+        } finally {
+            for (Map.Entry<K, SettableFuture<CacheEntry<K, V>>> load : ownLoads.entrySet()) {
+                loading.remove(load.getKey(), load.getValue());
+            }
+        }
+        for (Map.Entry<K, SettableFuture<CacheEntry<K, V>>> load : foreignLoads.entrySet()) {
+            misses.inc();
+            result.put(load.getKey(), load.getValue().get().getValue());
+        }
+    }
+
+    @Override
+    public double getAvgBatchSize() {
+        return batchSizes.getAvg();
+    }
+
     @Override
     public void put(K key, V value) {
         if (data == null) {
             init();
         }
-        CacheEntry<K, V> cv = new CacheEntry<K, V>(key,
-                                                   value,
-                                                   timeToLive > 0 ? timeToLive + System.currentTimeMillis() : 0,
-                                                   verificationInterval + System.currentTimeMillis());
-        data.put(key, cv);
+        CacheEntry<K, V> entry = createEntry(key, value);
+        data.put(key, entry);
+        expiryIndex.add(entry);
+        if (offHeap != null) {
+            offHeap.remove(key);
+        }
+        publishInvalidation(key);
     }
 
     @Override
     public void remove(K key) {
+        if (data == null) {
+            init();
+        }
+        removeLocally(key);
+        publishInvalidation(key);
+    }
+
+    /*
+     * Removes the given key without notifying other nodes (invoked by the InvalidationBus)
+     */
+    @SuppressWarnings("unchecked")
+    void removeLocally(Object key) {
         if (data == null) {
             return;
         }
         data.invalidate(key);
+        if (offHeap != null) {
+            offHeap.remove((K) key);
+        }
     }
 
     @Override
@@ -297,10 +641,25 @@ class ManagedCache<K, V> implements Cache<K, V>, RemovalListener<Object, Object>
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public void onRemoval(RemovalNotification<Object, Object> notification) {
+        CacheEntry<K, V> entry = (CacheEntry<K, V>) notification.getValue();
+        if (entry != null) {
+            // If a loaded entry was already stored by a concurrent put (see getAll), it is "replaced" by itself
+            if (notification.getCause() == RemovalCause.REPLACED
+                && data.asMap().get(notification.getKey()) == entry) {
+                return;
+            }
+            expiryIndex.remove(entry);
+            // Entries evicted due to the size limit are moved into the off-heap tier (if enabled) and are
+            // therefore not reported as removed
+            if (offHeap != null && notification.getCause() == RemovalCause.SIZE) {
+                offHeap.demote(entry);
+                return;
+            }
+        }
         if (removeListener != null) {
             try {
-                CacheEntry<K, V> entry = (CacheEntry<K, V>) notification.getValue();
                 removeListener.invoke(Tuple.create(entry.getKey(), entry.getValue()));
             } catch (Throwable e) {
                 Exceptions.handle(e);
@@ -0,0 +1,293 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.cache;
+
+import sirius.kernel.health.Counter;
+import sirius.kernel.health.Exceptions;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Provides a second tier for a {@link ManagedCache} which keeps serialized values outside of the java heap.
+ * <p>
+ * Entries which are evicted from the on-heap cache due to its size limit are serialized into off-heap memory. Only
+ * the keys remain on the heap. If an entry is requested again, it is deserialized and promoted back into the on-heap
+ * cache.
+ * </p>
+ * <p>
+ * The whole budget is allocated up front as a few large direct {@link ByteBuffer}s (slabs), which are divided into
+ * blocks of {@link #BLOCK_SIZE} bytes. A serialized entry occupies as many blocks as required, which don't need to
+ * be adjacent. The blocks of an entry are tracked by a single <tt>int[]</tt> on the heap and returned to a free list
+ * once the entry is removed. Therefore no direct memory is allocated or released (by the garbage collector) while
+ * the store is in use. If not enough blocks are free, the least recently used entries are evicted.
+ * </p>
+ * <p>
+ * Only entries with a {@link Serializable} value (or <tt>null</tt>) can be stored. Other entries are simply
+ * dropped, as without this tier.
+ * </p>
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ * @since 2014/02
+ */
+class OffHeapStore<K, V> {
+
+    /**
+     * Contains the size of the blocks in which the slabs are divided
+     */
+    static final int BLOCK_SIZE = 128;
+
+    /*
+     * Contains the max. size of a single slab (64 MB)
+     */
+    private static final int MAX_SLAB_SIZE = 64 * 1024 * 1024;
+    private static final int BLOCKS_PER_SLAB = MAX_SLAB_SIZE / BLOCK_SIZE;
+
+    private final String name;
+    private final ByteBuffer[] slabs;
+
+    /*
+     * Stack of free block numbers. Block n is located in slabs[n / BLOCKS_PER_SLAB] at
+     * (n % BLOCKS_PER_SLAB) * BLOCK_SIZE
+     */
+    private final int[] freeBlocks;
+    private int numFreeBlocks;
+
+    /*
+     * Maps each key to an array which contains the length of the serialized entry, followed by the numbers of the
+     * blocks it occupies. Access order is used to evict the least recently used entries.
+     */
+    private final LinkedHashMap<K, int[]> entries = new LinkedHashMap<K, int[]>(16, 0.75f, true);
+    private Counter hits = new Counter();
+    private Counter misses = new Counter();
+
+    /**
+     * Creates a new store with the given budget.
+     * <p>
+     * The budget is immediately allocated as direct memory.
+     * </p>
+     *
+     * @param name     the name of the cache which owns this store (used for logging)
+     * @param maxBytes the max. number of bytes used to store serialized values
+     */
+    OffHeapStore(String name, long maxBytes) {
+        this.name = name;
+        int numBlocks = (int) Math.min(Integer.MAX_VALUE, maxBytes / BLOCK_SIZE);
+        this.freeBlocks = new int[numBlocks];
+        for (int i = 0; i < numBlocks; i++) {
+            freeBlocks[i] = numBlocks - 1 - i;
+        }
+        this.numFreeBlocks = numBlocks;
+        this.slabs = new ByteBuffer[(numBlocks + BLOCKS_PER_SLAB - 1) / BLOCKS_PER_SLAB];
+        for (int i = 0; i < slabs.length; i++) {
+            int blocksInSlab = Math.min(BLOCKS_PER_SLAB, numBlocks - i * BLOCKS_PER_SLAB);
+            slabs[i] = ByteBuffer.allocateDirect(blocksInSlab * BLOCK_SIZE);
+        }
+    }
+
+    /**
+     * Serializes and stores the given entry.
+     *
+     * @param entry the entry which was evicted from the on-heap cache
+     */
+    void demote(CacheEntry<K, V> entry) {
+        if (entry.getValue() != null && !(entry.getValue() instanceof Serializable)) {
+            return;
+        }
+        byte[] data = serialize(entry);
+        if (data == null) {
+            return;
+        }
+        int requiredBlocks = (data.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        synchronized (entries) {
+            release(entries.remove(entry.getKey()));
+            if (requiredBlocks > freeBlocks.length) {
+                return;
+            }
+            Iterator<int[]> iter = entries.values().iterator();
+            while (numFreeBlocks < requiredBlocks && iter.hasNext()) {
+                int[] evicted = iter.next();
+                iter.remove();
+                release(evicted);
+            }
+            int[] slot = new int[requiredBlocks + 1];
+            slot[0] = data.length;
+            for (int i = 1; i <= requiredBlocks; i++) {
+                int block = freeBlocks[--numFreeBlocks];
+                slot[i] = block;
+                ByteBuffer slab = slabs[block / BLOCKS_PER_SLAB];
+                slab.position((block % BLOCKS_PER_SLAB) * BLOCK_SIZE);
+                int offset = (i - 1) * BLOCK_SIZE;
+                slab.put(data, offset, Math.min(BLOCK_SIZE, data.length - offset));
+            }
+            entries.put(entry.getKey(), slot);
+        }
+    }
+
+    /*
+     * Returns the blocks of the given slot to the free list. Must be called while holding the lock on entries.
+     */
+    private void release(@Nullable int[] slot) {
+        if (slot == null) {
+            return;
+        }
+        for (int i = 1; i < slot.length; i++) {
+            freeBlocks[numFreeBlocks++] = slot[i];
+        }
+    }
+
+    /**
+     * Removes the entry for the given key from the store and returns it.
+     *
+     * @param key the key to lookup
+     * @return the deserialized entry or <tt>null</tt> if no entry was present
+     */
+    @Nullable
+    CacheEntry<K, V> promote(K key) {
+        byte[] data;
+        synchronized (entries) {
+            int[] slot = entries.remove(key);
+            if (slot == null) {
+                misses.inc();
+                return null;
+            }
+            data = new byte[slot[0]];
+            for (int i = 1; i < slot.length; i++) {
+                ByteBuffer slab = slabs[slot[i] / BLOCKS_PER_SLAB];
+                slab.position((slot[i] % BLOCKS_PER_SLAB) * BLOCK_SIZE);
+                int offset = (i - 1) * BLOCK_SIZE;
+                slab.get(data, offset, Math.min(BLOCK_SIZE, data.length - offset));
+            }
+            release(slot);
+        }
+        hits.inc();
+        return deserialize(key, data);
+    }
+
+    /**
+     * Removes the entry for the given key.
+     *
+     * @param key the key to remove
+     */
+    void remove(K key) {
+        synchronized (entries) {
+            release(entries.remove(key));
+        }
+    }
+
+    /**
+     * Removes all entries.
+     */
+    void clear() {
+        synchronized (entries) {
+            for (int[] slot : entries.values()) {
+                release(slot);
+            }
+            entries.clear();
+        }
+        hits.reset();
+        misses.reset();
+    }
+
+    /**
+     * Returns the number of stored entries.
+     *
+     * @return the number of entries in this store
+     */
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Returns the number of bytes used by the stored entries.
+     * <p>
+     * As entries occupy whole blocks, this is a multiple of {@link #BLOCK_SIZE}.
+     * </p>
+     *
+     * @return the number of bytes currently in use
+     */
+    long getUsedBytes() {
+        synchronized (entries) {
+            return (long) (freeBlocks.length - numFreeBlocks) * BLOCK_SIZE;
+        }
+    }
+
+    /**
+     * Returns the number of bytes allocated for this store.
+     *
+     * @return the capacity of all slabs in bytes
+     */
+    long getCapacity() {
+        return (long) freeBlocks.length * BLOCK_SIZE;
+    }
+
+    /**
+     * Returns the hit rate of this store (in percent).
+     *
+     * @return the percentage of lookups (misses of the on-heap cache) which were found in this store
+     */
+    long getHitRate() {
+        long h = hits.getCount();
+        long m = misses.getCount();
+        return h + m == 0L ? 0L : Math.round(100d * (double) h / (double) (h + m));
+    }
+
+    /**
+     * Resets the hit rate statistics.
+     */
+    void resetStatistics() {
+        hits.reset();
+        misses.reset();
+    }
+
+    private byte[] serialize(CacheEntry<K, V> entry) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            DataOutputStream dataOut = new DataOutputStream(out);
+            dataOut.writeLong(entry.created);
+            dataOut.writeLong(entry.getMaxAge());
+            dataOut.writeLong(entry.getNextVerification());
+            ObjectOutputStream objectOut = new ObjectOutputStream(dataOut);
+            objectOut.writeObject(entry.getValue());
+            objectOut.close();
+            return out.toByteArray();
+        } catch (Throwable e) {
+            CacheManager.LOG.FINE("Cannot move an entry of '%s' off-heap: %s", name, e.getMessage());
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private CacheEntry<K, V> deserialize(K key, byte[] data) {
+        try {
+            DataInputStream dataIn = new DataInputStream(new ByteArrayInputStream(data));
+            long created = dataIn.readLong();
+            long maxAge = dataIn.readLong();
+            long nextVerification = dataIn.readLong();
+            ObjectInputStream objectIn = new ObjectInputStream(dataIn);
+            CacheEntry<K, V> result = new CacheEntry<K, V>(key, (V) objectIn.readObject(), maxAge, nextVerification);
+            result.setCreated(created);
+            return result;
+        } catch (Throwable e) {
+            Exceptions.handle(CacheManager.LOG, e);
+            return null;
+        }
+    }
+}
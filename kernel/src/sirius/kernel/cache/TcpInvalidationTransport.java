@@ -0,0 +1,201 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.cache;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import sirius.kernel.commons.Strings;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Sends batches of invalidations via a persistent TCP connection to each other node.
+ * <p>
+ * Each batch is written as a length prefixed frame. Broken connections are re-opened on the next batch.
+ * </p>
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ * @since 2014/02
+ */
+class TcpInvalidationTransport implements InvalidationTransport {
+
+    /**
+     * Contains the name of this transport as used in the config
+     */
+    static final String NAME = "tcp";
+
+    /*
+     * Max time in milliseconds to wait for a connection to another node
+     */
+    private static final int CONNECT_TIMEOUT = 1000;
+
+    /*
+     * Frames larger than this are considered malformed and close the connection
+     */
+    private static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
+    private final String bindAddress;
+    private final int port;
+    private final List<InetSocketAddress> nodes;
+    private final Map<InetSocketAddress, Socket> connections = Maps.newHashMap();
+    private final Set<Socket> incoming = Collections.newSetFromMap(Maps.<Socket, Boolean>newConcurrentMap());
+    private volatile ServerSocket server;
+
+    /**
+     * Creates a new transport.
+     *
+     * @param bindAddress the local address to listen on or an empty string to listen on all interfaces
+     * @param port        the local port used to accept connections from other nodes
+     * @param nodes       the addresses of all other nodes
+     */
+    TcpInvalidationTransport(String bindAddress, int port, List<InetSocketAddress> nodes) {
+        this.bindAddress = bindAddress;
+        this.port = port;
+        this.nodes = nodes;
+    }
+
+    /*
+     * Determines the address to listen on. An empty bind address listens on all interfaces
+     */
+    private InetSocketAddress getLocalAddress() {
+        if (Strings.isEmpty(bindAddress)) {
+            return new InetSocketAddress(port);
+        }
+        return new InetSocketAddress(bindAddress, port);
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void start(final InvalidationBus bus) throws IOException {
+        final ServerSocket acceptor = new ServerSocket();
+        acceptor.bind(getLocalAddress());
+        server = acceptor;
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!acceptor.isClosed()) {
+                    try {
+                        receive(acceptor.accept(), bus);
+                    } catch (IOException e) {
+                        if (!acceptor.isClosed()) {
+                            CacheManager.LOG.FINE("Cannot accept cache invalidations: %s", e.getMessage());
+                        }
+                    }
+                }
+            }
+        });
+        thread.setName("cache-invalidation-tcp");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /*
+     * Reads frames from the given connection in a separate thread until it is closed
+     */
+    private void receive(final Socket socket, final InvalidationBus bus) {
+        incoming.add(socket);
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                    while (true) {
+                        int length = in.readInt();
+                        if (length <= 0 || length > MAX_FRAME_SIZE) {
+                            CacheManager.LOG.FINE("Received an invalid frame from %s", socket.getRemoteSocketAddress());
+                            return;
+                        }
+                        byte[] packet = new byte[length];
+                        in.readFully(packet);
+                        bus.receive(packet);
+                    }
+                } catch (IOException e) {
+                    // The connection was closed by either side...
+                    CacheManager.LOG.FINE(e);
+                } finally {
+                    close(socket);
+                    incoming.remove(socket);
+                }
+            }
+        });
+        thread.setName("cache-invalidation-tcp-" + socket.getRemoteSocketAddress());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public synchronized void send(byte[] packet) throws IOException {
+        IOException failure = null;
+        for (InetSocketAddress node : nodes) {
+            try {
+                Socket socket = connections.get(node);
+                if (socket == null) {
+                    socket = new Socket();
+                    socket.setTcpNoDelay(true);
+                    socket.connect(node, CONNECT_TIMEOUT);
+                    connections.put(node, socket);
+                }
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                out.writeInt(packet.length);
+                out.write(packet);
+                out.flush();
+            } catch (IOException e) {
+                close(connections.remove(node));
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (server != null) {
+            try {
+                server.close();
+            } catch (IOException e) {
+                CacheManager.LOG.FINE(e);
+            }
+        }
+        for (Socket socket : connections.values()) {
+            close(socket);
+        }
+        connections.clear();
+        for (Socket socket : Sets.newHashSet(incoming)) {
+            close(socket);
+        }
+    }
+
+    private void close(Socket socket) {
+        if (socket == null) {
+            return;
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            CacheManager.LOG.FINE(e);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.cache;
+
+import sirius.kernel.commons.Strings;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sends each batch of invalidations as a single datagram to all other nodes.
+ * <p>
+ * This is the cheapest transport, but datagrams might get lost without notice. Therefore caches using it should
+ * still have a reasonable TTL.
+ * </p>
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ * @since 2014/02
+ */
+class UdpInvalidationTransport implements InvalidationTransport {
+
+    /**
+     * Contains the name of this transport as used in the config
+     */
+    static final String NAME = "udp";
+
+    private final String bindAddress;
+    private final int port;
+    private final List<InetSocketAddress> nodes;
+    private volatile DatagramSocket socket;
+
+    /**
+     * Creates a new transport.
+     *
+     * @param bindAddress the local address to listen on or an empty string to listen on all interfaces
+     * @param port        the local port used to receive datagrams
+     * @param nodes       the addresses of all other nodes
+     */
+    UdpInvalidationTransport(String bindAddress, int port, List<InetSocketAddress> nodes) {
+        this.bindAddress = bindAddress;
+        this.port = port;
+        this.nodes = nodes;
+    }
+
+    /*
+     * Determines the address to listen on. An empty bind address listens on all interfaces
+     */
+    private InetSocketAddress getLocalAddress() {
+        if (Strings.isEmpty(bindAddress)) {
+            return new InetSocketAddress(port);
+        }
+        return new InetSocketAddress(bindAddress, port);
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void start(final InvalidationBus bus) throws IOException {
+        final DatagramSocket receiver = new DatagramSocket(getLocalAddress());
+        socket = receiver;
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                byte[] buffer = new byte[65535];
+                while (!receiver.isClosed()) {
+                    try {
+                        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                        receiver.receive(packet);
+                        bus.receive(Arrays.copyOf(packet.getData(), packet.getLength()));
+                    } catch (IOException e) {
+                        if (!receiver.isClosed()) {
+                            CacheManager.LOG.FINE("Cannot receive cache invalidations: %s", e.getMessage());
+                        }
+                    }
+                }
+            }
+        });
+        thread.setName("cache-invalidation-udp");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void send(byte[] packet) throws IOException {
+        IOException failure = null;
+        for (InetSocketAddress node : nodes) {
+            try {
+                socket.send(new DatagramPacket(packet, packet.length, node));
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (socket != null) {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.commons;
+
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.google.common.collect.Lists;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Keeps the most recently added elements up to a fixed capacity.
+ * <p>
+ * Adding an element overwrites the oldest one once the buffer is full, which is a constant time operation. Neither
+ * adding nor reading acquires any lock. Reads return a snapshot of the elements which were completely added when
+ * the read started, newest first.
+ * </p>
+ * <p>
+ * Each element is stored along with its sequence number, so that readers can detect (and skip) slots which were
+ * overwritten while reading.
+ * </p>
+ *
+ * @param <E> the type of the elements stored in the buffer
+ * @author Andreas Haufler (aha@scireum.de)
+ * @since 2014/02
+ */
+public class RingBuffer<E> {
+
+    /*
+     * Represents an element along with its sequence number
+     */
+    private static class Slot<E> {
+        private final long sequence;
+        private final E value;
+
+        private Slot(long sequence, E value) {
+            this.sequence = sequence;
+            this.value = value;
+        }
+    }
+
+    private final int capacity;
+    private final AtomicReferenceArray<Slot<E>> slots;
+    private final AtomicLong next = new AtomicLong();
+
+    /**
+     * Creates a new buffer which keeps up to <tt>capacity</tt> elements.
+     *
+     * @param capacity the maximal number of elements kept in the buffer
+     */
+    public RingBuffer(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.slots = new AtomicReferenceArray<Slot<E>>(this.capacity);
+    }
+
+    /**
+     * Adds the given element, replacing the oldest element if the buffer is full.
+     *
+     * @param value the element to add
+     * @return the element which was removed from the buffer to make room for the new one or <tt>null</tt> if there
+     *         was still room left
+     */
+    public E add(E value) {
+        long sequence = next.getAndIncrement();
+        int index = (int) (sequence % capacity);
+        Slot<E> slot = new Slot<E>(sequence, value);
+        while (true) {
+            Slot<E> current = slots.get(index);
+            if (current != null && current.sequence > sequence) {
+                // A writer which started later (one full round ahead) already used this slot
+                return value;
+            }
+            if (slots.compareAndSet(index, current, slot)) {
+                return current == null ? null : current.value;
+            }
+        }
+    }
+
+    /**
+     * Returns all elements currently in the buffer.
+     *
+     * @return a snapshot of the buffer, newest element first
+     */
+    public List<E> getAll() {
+        return get(0, capacity, Predicates.<E>alwaysTrue());
+    }
+
+    /**
+     * Returns a page of the elements currently in the buffer which match the given filter.
+     *
+     * @param offset the number of matching elements to skip (starting with the newest)
+     * @param limit  the maximal number of elements to return
+     * @param filter the filter which determines which elements are returned
+     * @return a snapshot of the requested elements, newest element first
+     */
+    public List<E> get(int offset, int limit, Predicate<? super E> filter) {
+        List<E> result = Lists.newArrayList();
+        long last = next.get() - 1;
+        long first = Math.max(0, last - capacity + 1);
+        for (long sequence = last; sequence >= first && result.size() < limit; sequence--) {
+            Slot<E> slot = slots.get((int) (sequence % capacity));
+            if (slot != null && slot.sequence == sequence && filter.apply(slot.value)) {
+                if (offset > 0) {
+                    offset--;
+                } else {
+                    result.add(slot.value);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of elements ever added to this buffer.
+     *
+     * @return the total number of calls to {@link #add(Object)}
+     */
+    public long getTotal() {
+        return next.get();
+    }
+
+    /**
+     * Returns the maximal number of elements kept in the buffer.
+     *
+     * @return the capacity of this buffer
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+}
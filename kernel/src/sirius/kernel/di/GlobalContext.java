@@ -70,6 +70,10 @@ public interface GlobalContext {
 
     /**
      * Returns all parts which are currently registered for the given lookup class.
+     * <p>
+     * Once the system is initialized, this returns an immutable snapshot. Use {@link #getPartCollection(Class)} to
+     * also see parts which are registered later on.
+     * </p>
      *
      * @param partInterface one of the lookup classes for which the parts of interest were registered
      * @return a collection of all parts registered for the given class. If no parts were found,
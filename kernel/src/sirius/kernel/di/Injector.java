@@ -8,6 +8,10 @@
 
 package sirius.kernel.di;
 
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import sirius.kernel.Classpath;
 import sirius.kernel.commons.BasicCollector;
 import sirius.kernel.commons.Callback;
@@ -16,8 +20,24 @@ import sirius.kernel.health.Log;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.annotation.Annotation;
+import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -36,6 +56,13 @@ import java.util.regex.Pattern;
  * annotation. Subclasses of <tt>ClassLoadAction</tt> are discovered automatically.
  * </p>
  * <p>
+ * If a component root contains an index generated by {@link PartIndexProcessor} at compile time, only the classes
+ * listed there are loaded. Otherwise each class of the component root is loaded and inspected. Loading classes and
+ * matching them against the triggers of the <tt>ClassLoadAction</tt>s is spread across all available cores. Static
+ * initializers are run and parts are registered by a single thread, in the order of the classes, so that the startup
+ * remains deterministic.
+ * </p>
+ * <p>
  * Accessing parts can be done in two ways. First, one can access the current {@link GlobalContext} via
  * {@link #context()}. This can be used to retrieve parts by class or by class and name. The second way
  * to access parts is to used marker annotations like {@link sirius.kernel.di.std.Part},
@@ -62,6 +89,18 @@ public class Injector {
 
     private static PartRegistry ctx = new PartRegistry();
 
+    private static final Pattern CLASS_FILE = Pattern.compile(".*?.class");
+
+    /*
+     * Contains the default number of threads used to load and inspect classes on startup
+     */
+    private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+    /*
+     * Contains the number of threads used by the current initialization
+     */
+    private static int threads = PARALLELISM;
+
     /**
      * Initializes the framework. Must be only called once on system startup.
      *
@@ -69,88 +108,350 @@ public class Injector {
      *                  parts to the given context.
      * @param classpath the classpath used to enumerate all classes to be scanned
      */
-    public static void init(@Nullable Callback<MutableGlobalContext> callback, @Nonnull final Classpath classpath) {
+    public static void init(@Nullable Callback<MutableGlobalContext> callback, @Nonnull Classpath classpath) {
+        init(callback, classpath, PARALLELISM);
+    }
+
+    /*
+     * Initializes the framework using the given number of threads. Using only one thread, all classes are
+     * loaded and inspected sequentially, which is used by tests as reference for the parallel startup
+     */
+    static void init(@Nullable Callback<MutableGlobalContext> callback,
+                     @Nonnull Classpath classpath,
+                     int parallelism) {
         ctx = new PartRegistry();
+        threads = Math.max(1, parallelism);
 
         final List<Class<?>> classes = new ArrayList<Class<?>>();
-        final List<ClassLoadAction> actions = new ArrayList<ClassLoadAction>();
+        List<ClassLoadAction> actions = new ArrayList<ClassLoadAction>();
         LOG.INFO("Initializing the MicroKernel....");
 
-        LOG.INFO("Stage 1: Scanning .class files...");
-        classpath.find(Pattern.compile(".*?.class"), new BasicCollector<Matcher>() {
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                                                                new ThreadFactoryBuilder().setNameFormat("injector-%d")
+                                                                                          .setDaemon(true)
+                                                                                          .build());
+        try {
+            LOG.INFO("Stage 1: Loading classes...");
+            loadClasses(classpath, executor, classes, actions);
+
+            LOG.INFO("Stage 2: Applying %d class load actions on %d classes...", actions.size(), classes.size());
+            applyActions(executor, classes, actions);
+
+            LOG.INFO("Stage 3: Enhancing context");
+            if (callback != null) {
+                try {
+                    callback.invoke(ctx);
+                } catch (Exception e) {
+                    LOG.SEVERE(e);
+                }
+            }
+
+            LOG.INFO("Stage 4: Initializing static parts-references...");
+            forEach(executor, classes.size(), new Callback<Integer>() {
+                @Override
+                public void invoke(Integer index) throws Exception {
+                    ctx.prepareClass(classes.get(index));
+                }
+            });
+            for (Class<?> clazz : classes) {
+                ctx.wireClass(clazz);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        LOG.INFO("Stage 5: Initializing parts...");
+        ctx.processAnnotations();
+        ctx.freeze();
+
+    }
+
+    /*
+     * Loads all classes listed in the index of a component root, or all classes of the component root if no index
+     * is present
+     */
+    private static void loadClasses(Classpath classpath,
+                                    ExecutorService executor,
+                                    List<Class<?>> classes,
+                                    List<ClassLoadAction> actions) {
+        long start = System.currentTimeMillis();
+        List<URL> indexedRoots = new ArrayList<URL>();
+        // Keeps the order of the component roots and their index files, just like scanning the classes does
+        Map<String, Set<String>> index = new LinkedHashMap<String, Set<String>>();
+        List<String> classNames = new ArrayList<String>();
+        for (URL root : classpath.getComponentRoots()) {
+            if (readIndex(root, index)) {
+                indexedRoots.add(root);
+            } else {
+                LOG.INFO("No %s found for %s - Scanning all .class files...", PartIndexProcessor.INDEX_FILE, root);
+                classNames.addAll(scan(classpath, root));
+            }
+        }
+        load(classpath, executor, classNames, classes, actions);
+        if (!indexedRoots.isEmpty()) {
+            loadIndexedClasses(classpath, executor, indexedRoots, index, classes, actions);
+        }
+        LOG.INFO("Loaded %d classes in %d ms using %d threads (%d of %d component roots were indexed)",
+                 classes.size(),
+                 System.currentTimeMillis() - start,
+                 threads,
+                 indexedRoots.size(),
+                 classpath.getComponentRoots().size());
+    }
+
+    /*
+     * Reads the index of the given component root (if present) into the given map
+     */
+    private static boolean readIndex(URL root, Map<String, Set<String>> index) {
+        try {
+            InputStream in = new URL(root, PartIndexProcessor.INDEX_FILE).openStream();
+            try {
+                PartIndexProcessor.parse(new BufferedReader(new InputStreamReader(in, Charsets.UTF_8)), index);
+                return true;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            // No index is present for this root
+            return false;
+        }
+    }
+
+    /*
+     * Loads all ClassLoadActions listed in the index, followed by all classes which wear one of their triggers or
+     * have static fields to be wired
+     */
+    private static void loadIndexedClasses(Classpath classpath,
+                                           ExecutorService executor,
+                                           List<URL> indexedRoots,
+                                           Map<String, Set<String>> index,
+                                           List<Class<?>> classes,
+                                           List<ClassLoadAction> actions) {
+        List<String> actionNames = new ArrayList<String>();
+        for (Map.Entry<String, Set<String>> entry : index.entrySet()) {
+            if (entry.getValue().contains(ClassLoadAction.class.getName())) {
+                actionNames.add(entry.getKey());
+            }
+        }
+        load(classpath, executor, actionNames, classes, actions);
+        Set<String> loaded = new HashSet<String>(actionNames);
+
+        Set<String> triggers = new HashSet<String>();
+        for (ClassLoadAction action : actions) {
+            if (action.getTrigger() == null) {
+                LOG.INFO("%s processes each class - Scanning all .class files...", action.getClass().getName());
+                List<String> classNames = new ArrayList<String>();
+                for (URL root : indexedRoots) {
+                    for (String className : scan(classpath, root)) {
+                        if (!loaded.contains(className)) {
+                            classNames.add(className);
+                        }
+                    }
+                }
+                load(classpath, executor, classNames, classes, actions);
+                return;
+            }
+            triggers.add(action.getTrigger().getName());
+        }
+        triggers.add(PartIndexProcessor.STATIC_FIELDS);
+
+        List<String> classNames = new ArrayList<String>();
+        for (Map.Entry<String, Set<String>> entry : index.entrySet()) {
+            if (!loaded.contains(entry.getKey()) && !Collections.disjoint(entry.getValue(), triggers)) {
+                classNames.add(entry.getKey());
+            }
+        }
+        load(classpath, executor, classNames, classes, actions);
+        loaded.addAll(classNames);
+        LOG.INFO("Loaded %d of %d indexed classes", loaded.size(), index.size());
+    }
+
+    /*
+     * Lists the names of all classes below the given root
+     */
+    private static List<String> scan(Classpath classpath, URL root) {
+        final List<String> result = new ArrayList<String>();
+        classpath.find(root, CLASS_FILE, new BasicCollector<Matcher>() {
             @Override
             public void add(Matcher matcher) {
                 String relativePath = matcher.group();
-                String className = relativePath.substring(0, relativePath.length() - 6).replace("/", ".");
+                result.add(relativePath.substring(0, relativePath.length() - 6).replace("/", "."));
+            }
+        });
+        return result;
+    }
+
+    /*
+     * Loads the given classes in parallel. Initializing the classes (running their static initializers) and
+     * instantiating ClassLoadActions is then performed by the calling thread in the given order. This keeps the
+     * startup deterministic and prevents deadlocks among static initializers which depend on each other.
+     */
+    private static void load(final Classpath classpath,
+                             ExecutorService executor,
+                             final List<String> classNames,
+                             List<Class<?>> classes,
+                             List<ClassLoadAction> actions) {
+        final Class<?>[] loaded = new Class<?>[classNames.size()];
+        forEach(executor, classNames.size(), new Callback<Integer>() {
+            @Override
+            public void invoke(Integer index) throws Exception {
+                String className = classNames.get(index);
                 try {
                     LOG.FINE("Found class: " + className);
-                    Class<?> clazz = Class.forName(className, true, classpath.getLoader());
+                    loaded[index] = Class.forName(className, false, classpath.getLoader());
+                } catch (Throwable e) {
+                    handleLoadError(className, e);
+                }
+            }
+        });
+
+        for (Class<?> clazz : loaded) {
+            if (clazz != null) {
+                try {
+                    Class.forName(clazz.getName(), true, classpath.getLoader());
                     if (ClassLoadAction.class.isAssignableFrom(clazz) && !clazz.isInterface()) {
-                        try {
-                            actions.add((ClassLoadAction) clazz.newInstance());
-                        } catch (Throwable e) {
-                            Exceptions.handle()
-                                      .error(e)
-                                      .to(LOG)
-                                      .withSystemErrorMessage("Failed to instantiate ClassLoadAction: %s - %s (%s)",
-                                                              className)
-                                      .handle();
-                        }
+                        instantiateAction(clazz, actions);
                     }
                     classes.add(clazz);
-                } catch (NoClassDefFoundError e) {
+                } catch (Throwable e) {
+                    handleLoadError(clazz.getName(), e);
+                }
+            }
+        }
+    }
+
+    private static void instantiateAction(Class<?> clazz, List<ClassLoadAction> actions) {
+        try {
+            actions.add((ClassLoadAction) clazz.newInstance());
+        } catch (Throwable e) {
+            Exceptions.handle()
+                      .error(e)
+                      .to(LOG)
+                      .withSystemErrorMessage("Failed to instantiate ClassLoadAction: %s - %s (%s)", clazz.getName())
+                      .handle();
+        }
+    }
+
+    private static void handleLoadError(String className, Throwable e) {
+        if (e instanceof NoClassDefFoundError) {
+            Exceptions.handle()
+                      .error(e)
+                      .to(LOG)
+                      .withSystemErrorMessage("Failed to load dependent class: %s", className)
+                      .handle();
+        } else if (e instanceof ClassNotFoundException) {
+            LOG.WARN("Class %s is listed in %s but does not exist. The index might be outdated!",
+                     className,
+                     PartIndexProcessor.INDEX_FILE);
+        } else {
+            Exceptions.handle()
+                      .error(e)
+                      .to(LOG)
+                      .withSystemErrorMessage("Failed to load class %s: %s (%s)", className)
+                      .handle();
+        }
+    }
+
+    /*
+     * Applies the matching ClassLoadActions to each class. Matching is performed in parallel, using a lookup table
+     * from trigger annotation to actions. The actions are then applied by the calling thread, in the order of the
+     * classes and the actions, so that parts are registered in a deterministic order.
+     */
+    private static void applyActions(ExecutorService executor,
+                                     final List<Class<?>> classes,
+                                     List<ClassLoadAction> actions) {
+        final Map<Class<? extends Annotation>, List<Integer>> actionsByTrigger = Maps.newHashMap();
+        final List<Integer> untriggeredActions = new ArrayList<Integer>();
+        for (int i = 0; i < actions.size(); i++) {
+            Class<? extends Annotation> trigger = actions.get(i).getTrigger();
+            if (trigger == null) {
+                untriggeredActions.add(i);
+            } else {
+                if (!actionsByTrigger.containsKey(trigger)) {
+                    actionsByTrigger.put(trigger, new ArrayList<Integer>());
+                }
+                actionsByTrigger.get(trigger).add(i);
+            }
+        }
+
+        final int[][] matches = new int[classes.size()][];
+        forEach(executor, classes.size(), new Callback<Integer>() {
+            @Override
+            public void invoke(Integer index) throws Exception {
+                List<Integer> result = new ArrayList<Integer>(untriggeredActions);
+                try {
+                    for (Annotation annotation : classes.get(index).getAnnotations()) {
+                        List<Integer> matchingActions = actionsByTrigger.get(annotation.annotationType());
+                        if (matchingActions != null) {
+                            result.addAll(matchingActions);
+                        }
+                    }
+                } catch (Throwable e) {
                     Exceptions.handle()
                               .error(e)
                               .to(LOG)
-                              .withSystemErrorMessage("Failed to load dependent class: %s", className)
+                              .withSystemErrorMessage("Failed to read the annotations of %s: %s (%s)",
+                                                      classes.get(index).getName())
                               .handle();
+                }
+                Collections.sort(result);
+                matches[index] = Ints.toArray(result);
+            }
+        });
+
+        for (int i = 0; i < classes.size(); i++) {
+            Class<?> clazz = classes.get(i);
+            for (int actionIndex : matches[i]) {
+                ClassLoadAction action = actions.get(actionIndex);
+                LOG.FINE("Auto-installing class: %s based on %s", clazz.getName(), action.getClass().getName());
+                try {
+                    action.handle(ctx, clazz);
                 } catch (Throwable e) {
                     Exceptions.handle()
                               .error(e)
                               .to(LOG)
-                              .withSystemErrorMessage("Failed to load class %s: %s (%s)", className)
+                              .withSystemErrorMessage("Failed to auto-load: %s with ClassLoadAction: %s: %s (%s)",
+                                                      clazz.getName(),
+                                                      action.getClass().getSimpleName())
                               .handle();
                 }
             }
-        });
+        }
+    }
 
-        LOG.INFO("Stage 2: Applying %d class load actions on %d classes...", actions.size(), classes.size());
-        for (Class<?> clazz : classes) {
-            for (ClassLoadAction action : actions) {
-                if (action.getTrigger() == null || clazz.isAnnotationPresent(action.getTrigger())) {
-                    LOG.FINE("Auto-installing class: %s based on %s", clazz.getName(), action.getClass().getName());
-                    try {
-                        action.handle(ctx, clazz);
-                    } catch (Throwable e) {
-                        Exceptions.handle()
-                                  .error(e)
-                                  .to(LOG)
-                                  .withSystemErrorMessage("Failed to auto-load: %s with ClassLoadAction: %s: %s (%s)",
-                                                          clazz.getName(),
-                                                          action.getClass().getSimpleName())
-                                  .handle();
+    /*
+     * Invokes the given callback for each index from 0 to count - 1, using all threads of the given executor. Each
+     * thread processes a contiguous range of indices. Returns once all invocations are completed.
+     */
+    private static void forEach(ExecutorService executor, int count, final Callback<Integer> callback) {
+        if (count == 0) {
+            return;
+        }
+        int chunkSize = (count + threads - 1) / threads;
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int start = 0; start < count; start += chunkSize) {
+            final int from = start;
+            final int to = Math.min(count, start + chunkSize);
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    for (int i = from; i < to; i++) {
+                        callback.invoke(i);
                     }
+                    return null;
                 }
-            }
+            });
         }
-
-        LOG.INFO("Stage 3: Enhancing context");
-        if (callback != null) {
-            try {
-                callback.invoke(ctx);
-            } catch (Exception e) {
-                LOG.SEVERE(e);
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Exceptions.handle(LOG, e);
+        } catch (ExecutionException e) {
+            Exceptions.handle(LOG, e.getCause());
         }
-
-        LOG.INFO("Stage 4: Initializing static parts-references...");
-        for (Class<?> clazz : classes) {
-            ctx.wireClass(clazz);
-        }
-
-        LOG.INFO("Stage 5: Initializing parts...");
-        ctx.processAnnotations();
-
     }
 
     /**
@@ -0,0 +1,245 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.di;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Writes an index of all classes which are of interest for the {@link Injector} at compile time.
+ * <p>
+ * On startup, the <tt>Injector</tt> would otherwise have to load each class of each component root, just to find
+ * the few which implement {@link ClassLoadAction}, wear one of their trigger annotations or have annotated static
+ * fields. Therefore this processor records exactly these classes in a file named {@link #INDEX_FILE}, which is put
+ * next to the <tt>component.marker</tt> in the output directory. Each line of the index contains a class name,
+ * followed by an equals sign and a comma separated list of its markers. A marker is either the name of a runtime
+ * annotation of the class, the name of <tt>ClassLoadAction</tt> if the class implements it or {@link #STATIC_FIELDS}
+ * if the class has non-final static fields with runtime annotations.
+ * </p>
+ * <p>
+ * As the modules of an application are commonly compiled one after another into the same directory, an existing
+ * index is merged with the classes of the current compilation. The processor is discovered by <tt>javac</tt>
+ * using <tt>META-INF/services</tt> once the kernel is on the classpath. Compiling the kernel itself requires to
+ * explicitly pass it via <tt>-processorpath</tt>. If no index is present for a component root, the
+ * <tt>Injector</tt> falls back to scanning all classes.
+ * </p>
+ * <p>
+ * Note that this class must not depend on any other class of the framework, as it is compiled separately before
+ * the kernel is built.
+ * </p>
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ * @since 2014/02
+ */
+@SupportedAnnotationTypes("*")
+public class PartIndexProcessor extends AbstractProcessor {
+
+    /**
+     * Contains the name of the index file which is placed in each component root
+     */
+    public static final String INDEX_FILE = "component.index";
+
+    /**
+     * Marks classes which have non-final static fields with runtime annotations
+     */
+    public static final String STATIC_FIELDS = "static";
+
+    private static final String CLASS_LOAD_ACTION = "sirius.kernel.di.ClassLoadAction";
+
+    /*
+     * Contains all classes compiled in this run along with their markers (which might be empty)
+     */
+    private final Map<String, Set<String>> entries = new TreeMap<String, Set<String>>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            if (!entries.isEmpty()) {
+                writeIndex();
+            }
+            return false;
+        }
+        TypeElement actionType = processingEnv.getElementUtils().getTypeElement(CLASS_LOAD_ACTION);
+        for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+            visit(type, actionType);
+        }
+        return false;
+    }
+
+    /*
+     * Records the markers of the given type and all of its nested types
+     */
+    private void visit(TypeElement type, TypeElement actionType) {
+        Set<String> markers = new TreeSet<String>();
+        for (AnnotationMirror annotation : processingEnv.getElementUtils().getAllAnnotationMirrors(type)) {
+            if (isRuntimeAnnotation(annotation)) {
+                markers.add(getName(annotation));
+            }
+        }
+        if (isClassLoadAction(type, actionType)) {
+            markers.add(CLASS_LOAD_ACTION);
+        }
+        for (Element field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            if (field.getModifiers().contains(Modifier.STATIC) &&
+                    !field.getModifiers().contains(Modifier.FINAL) &&
+                    hasRuntimeAnnotation(field)) {
+                markers.add(STATIC_FIELDS);
+            }
+        }
+        entries.put(processingEnv.getElementUtils().getBinaryName(type).toString(), markers);
+        for (TypeElement inner : ElementFilter.typesIn(type.getEnclosedElements())) {
+            visit(inner, actionType);
+        }
+    }
+
+    /*
+     * Determines if the given type is a class implementing ClassLoadAction (which might not be on the classpath)
+     */
+    private boolean isClassLoadAction(TypeElement type, TypeElement actionType) {
+        if (actionType == null || type.getKind() == ElementKind.INTERFACE) {
+            return false;
+        }
+        Types types = processingEnv.getTypeUtils();
+        return types.isAssignable(types.erasure(type.asType()), types.erasure(actionType.asType()));
+    }
+
+    private boolean hasRuntimeAnnotation(Element element) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            if (isRuntimeAnnotation(annotation)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Only annotations which are retained at runtime can be seen by the Injector
+     */
+    private boolean isRuntimeAnnotation(AnnotationMirror annotation) {
+        Retention retention = annotation.getAnnotationType().asElement().getAnnotation(Retention.class);
+        return retention != null && retention.value() == RetentionPolicy.RUNTIME;
+    }
+
+    private String getName(AnnotationMirror annotation) {
+        return processingEnv.getElementUtils()
+                            .getBinaryName((TypeElement) annotation.getAnnotationType().asElement())
+                            .toString();
+    }
+
+    /*
+     * Merges the classes of this compilation into an existing index and writes the result
+     */
+    private void writeIndex() {
+        Map<String, Set<String>> index = readIndex();
+        index.putAll(entries);
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_FILE);
+            Writer writer = file.openWriter();
+            try {
+                writer.write("# Generated by " + PartIndexProcessor.class.getName() + " - do not edit\n");
+                for (Map.Entry<String, Set<String>> entry : index.entrySet()) {
+                    if (!entry.getValue().isEmpty()) {
+                        writer.write(entry.getKey() + "=" + join(entry.getValue()) + "\n");
+                    }
+                }
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager()
+                         .printMessage(Diagnostic.Kind.WARNING,
+                                       "Cannot write " + INDEX_FILE + ": " + e.getMessage() + " - The classpath " +
+                                               "will be scanned on startup");
+        }
+    }
+
+    /*
+     * Reads the index left by a previous compilation into the same directory. Returns an empty map if none exists
+     */
+    private Map<String, Set<String>> readIndex() {
+        Map<String, Set<String>> result = new TreeMap<String, Set<String>>();
+        try {
+            FileObject file = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", INDEX_FILE);
+            Reader reader = file.openReader(true);
+            try {
+                parse(new BufferedReader(reader), result);
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            // No index exists yet
+            return result;
+        }
+        return result;
+    }
+
+    /**
+     * Parses the contents of an index file into the given map.
+     *
+     * @param reader the reader providing the contents of the index
+     * @param result the map to which each class is added along with its markers
+     * @throws IOException if the index cannot be read
+     */
+    public static void parse(BufferedReader reader, Map<String, Set<String>> result) throws IOException {
+        String line = reader.readLine();
+        while (line != null) {
+            line = line.trim();
+            int idx = line.indexOf('=');
+            if (!line.startsWith("#") && idx > 0) {
+                Set<String> markers = new HashSet<String>();
+                for (String marker : line.substring(idx + 1).split(",")) {
+                    if (!marker.trim().isEmpty()) {
+                        markers.add(marker.trim());
+                    }
+                }
+                result.put(line.substring(0, idx).trim(), markers);
+            }
+            line = reader.readLine();
+        }
+    }
+
+    private static String join(Set<String> markers) {
+        StringBuilder sb = new StringBuilder();
+        for (String marker : markers) {
+            if (sb.length() > 0) {
+                sb.append(",");
+            }
+            sb.append(marker);
+        }
+        return sb.toString();
+    }
+}
@@ -8,6 +8,10 @@
 
 package sirius.kernel.di;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import sirius.kernel.commons.MultiMap;
 import sirius.kernel.commons.Strings;
@@ -17,6 +21,7 @@ import javax.annotation.Nonnull;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.*;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * An instance of PartRegistry is kept by {@link sirius.kernel.di.Injector} to track all registered
@@ -39,10 +44,70 @@ class PartRegistry implements MutableGlobalContext {
      */
     private final Map<Class<?>, Map<String, Object>> namedParts = Collections.synchronizedMap(new HashMap<Class<?>, Map<String, Object>>());
 
+    /**
+     * Caches the fields to be wired for each class, so that its fields don't have to be inspected each time an
+     * object is wired.
+     */
+    private final ConcurrentMap<Class<?>, InjectionPoint[]> injectionPoints = Maps.newConcurrentMap();
+
+    /**
+     * Contains an immutable copy of all parts, which is created once the system is initialized (see
+     * {@link #freeze()}). This permits lookups without any locking or wrapping. Parts which are registered
+     * afterwards replace the snapshot by an updated copy.
+     */
+    private volatile Snapshot snapshot;
+
+    /*
+     * Immutable copy of parts and namedParts. As Class neither overrides equals nor hashCode, the maps below
+     * compare their keys by identity
+     */
+    private static class Snapshot {
+        private final ImmutableMap<Class<?>, ImmutableList<Object>> parts;
+        private final ImmutableMap<Class<?>, ImmutableMap<String, Object>> namedParts;
+        private final ImmutableMap<Class<?>, ImmutableList<Tuple<String, Object>>> namedPartTuples;
+
+        private Snapshot(ImmutableMap<Class<?>, ImmutableList<Object>> parts,
+                         ImmutableMap<Class<?>, ImmutableMap<String, Object>> namedParts,
+                         ImmutableMap<Class<?>, ImmutableList<Tuple<String, Object>>> namedPartTuples) {
+            this.parts = parts;
+            this.namedParts = namedParts;
+            this.namedPartTuples = namedPartTuples;
+        }
+    }
+
+    /*
+     * Represents a field which is filled by an annotation processor
+     */
+    private static class InjectionPoint {
+        private final Field field;
+        private final AnnotationProcessor processor;
+        private final boolean isStatic;
+
+        private InjectionPoint(Field field, AnnotationProcessor processor) {
+            this.field = field;
+            this.processor = processor;
+            this.isStatic = Modifier.isStatic(field.getModifiers());
+        }
+
+        private void inject(MutableGlobalContext ctx, Object object) {
+            try {
+                processor.handle(ctx, object, field);
+            } catch (Throwable e) {
+                Injector.LOG
+                        .WARN("Cannot process annotation %s on %s.%s: %s (%s)",
+                              processor.getTrigger().getName(),
+                              field.getDeclaringClass().getName(),
+                              field.getName(),
+                              e.getMessage(),
+                              e.getClass().getName());
+            }
+        }
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     public <P> P getPart(Class<P> clazz) {
-        Collection<?> items = parts.get(clazz);
+        Collection<?> items = getParts(clazz);
         if (items.isEmpty()) {
             return null;
         }
@@ -73,22 +138,35 @@ class PartRegistry implements MutableGlobalContext {
     @SuppressWarnings("unchecked")
     @Override
     public <P> Collection<P> getParts(Class<P> partInterface) {
+        Snapshot currentSnapshot = snapshot;
+        if (currentSnapshot != null) {
+            ImmutableList<Object> result = currentSnapshot.parts.get(partInterface);
+            return (Collection<P>) (result == null ? ImmutableList.of() : result);
+        }
         return (Collection<P>) parts.get(partInterface);
     }
 
     @SuppressWarnings("unchecked")
     @Override
     public <P> Collection<Tuple<String, P>> getNamedParts(@Nonnull Class<P> partInterface) {
-        return (Collection<Tuple<String, P>>) (Object)Tuple.fromMap(namedParts.get(partInterface));
+        Snapshot currentSnapshot = snapshot;
+        if (currentSnapshot != null) {
+            ImmutableList<Tuple<String, Object>> result = currentSnapshot.namedPartTuples.get(partInterface);
+            return (Collection<Tuple<String, P>>) (Object) (result == null ? ImmutableList.of() : result);
+        }
+        Map<String, Object> partsOfClass = namedParts.get(partInterface);
+        if (partsOfClass == null) {
+            return Collections.emptyList();
+        }
+        synchronized (partsOfClass) {
+            return (Collection<Tuple<String, P>>) (Object) Tuple.fromMap(partsOfClass);
+        }
     }
 
     @Override
     public <T> T wire(T object) {
-        // Wire....
-        Class<?> clazz = object.getClass();
-        while (clazz != null) {
-            wireClass(clazz, object);
-            clazz = clazz.getSuperclass();
+        for (InjectionPoint point : getInjectionPoints(object.getClass())) {
+            point.inject(this, object);
         }
 
         return object;
@@ -98,35 +176,60 @@ class PartRegistry implements MutableGlobalContext {
      * Called to initialize all static fields with annotations
      */
     void wireClass(Class<?> clazz) {
-        while (clazz != null) {
-            wireClass(clazz, null);
-            clazz = clazz.getSuperclass();
+        for (InjectionPoint point : getInjectionPoints(clazz)) {
+            if (point.isStatic) {
+                point.inject(this, null);
+            }
         }
     }
 
     /*
-     * Called to initialize all field of the given class in the given object
+     * Determines the injection points of the given class in advance, so that this can be done in parallel
      */
-    private void wireClass(Class<?> clazz, Object object) {
-        for (Field field : clazz.getDeclaredFields()) {
-            if ((!Modifier.isFinal(field.getModifiers())) && (object != null || Modifier.isStatic(field.getModifiers()))) {
-                field.setAccessible(true);
-                for (AnnotationProcessor proc : getParts(AnnotationProcessor.class)) {
-                    if (field.isAnnotationPresent(proc.getTrigger())) {
-                        try {
-                            proc.handle(this, object, field);
-                        } catch (Throwable e) {
-                            Injector.LOG
-                                    .WARN("Cannot process annotation %s on %s.%s: %s (%s)",
-                                          proc.getTrigger().getName(),
-                                          field.getDeclaringClass().getName(),
-                                          field.getName(),
-                                          e.getMessage(),
-                                          e.getClass().getName());
+    void prepareClass(Class<?> clazz) {
+        getInjectionPoints(clazz);
+    }
+
+    /*
+     * Returns all fields of the given class and its superclasses, which are handled by an annotation processor
+     */
+    private InjectionPoint[] getInjectionPoints(Class<?> clazz) {
+        InjectionPoint[] result = injectionPoints.get(clazz);
+        if (result == null) {
+            result = computeInjectionPoints(clazz);
+            injectionPoints.putIfAbsent(clazz, result);
+        }
+        return result;
+    }
+
+    private InjectionPoint[] computeInjectionPoints(Class<?> clazz) {
+        List<InjectionPoint> result = new ArrayList<InjectionPoint>();
+        Collection<AnnotationProcessor> processors = getParts(AnnotationProcessor.class);
+        while (clazz != null) {
+            for (Field field : clazz.getDeclaredFields()) {
+                if (!Modifier.isFinal(field.getModifiers())) {
+                    for (AnnotationProcessor proc : processors) {
+                        if (field.isAnnotationPresent(proc.getTrigger())) {
+                            field.setAccessible(true);
+                            result.add(new InjectionPoint(field, proc));
                         }
                     }
                 }
             }
+            clazz = clazz.getSuperclass();
+        }
+        return result.toArray(new InjectionPoint[result.size()]);
+    }
+
+    /*
+     * The injection points depend on the known annotation processors and therefore have to be re-computed if a new
+     * one is registered
+     */
+    private void checkForAnnotationProcessor(Class<?>... implementedInterfaces) {
+        for (Class<?> iFace : implementedInterfaces) {
+            if (iFace == AnnotationProcessor.class) {
+                injectionPoints.clear();
+            }
         }
     }
 
@@ -135,12 +238,17 @@ class PartRegistry implements MutableGlobalContext {
         for (Class<?> iFace : implementedInterfaces) {
             parts.put(iFace, part);
         }
+        checkForAnnotationProcessor(implementedInterfaces);
+        updateSnapshot();
     }
 
     @Override
     @SuppressWarnings("unchecked")
     public <P> P getPart(String uniqueName, Class<P> clazz) {
-        Map<String, Object> partsOfClass = namedParts.get(clazz);
+        Snapshot currentSnapshot = snapshot;
+        Map<String, Object> partsOfClass = currentSnapshot != null ?
+                                           currentSnapshot.namedParts.get(clazz) :
+                                           namedParts.get(clazz);
         if (partsOfClass == null) {
             return null;
         }
@@ -168,6 +276,8 @@ class PartRegistry implements MutableGlobalContext {
             partsOfClass.put(uniqueName, part);
             parts.put(clazz, part);
         }
+        checkForAnnotationProcessor(implementedInterfaces);
+        updateSnapshot();
     }
 
     @Override
@@ -179,6 +289,57 @@ class PartRegistry implements MutableGlobalContext {
         return part;
     }
 
+    /**
+     * Creates an immutable snapshot of all parts, which is used for all further lookups.
+     * <p>
+     * This is invoked once all parts are registered and initialized. Parts can still be registered later on, which
+     * will then replace the snapshot by a new one (copy on write).
+     * </p>
+     */
+    synchronized void freeze() {
+        snapshot = createSnapshot();
+    }
+
+    /*
+     * Replaces the snapshot (if already present) so that it contains newly registered parts
+     */
+    private synchronized void updateSnapshot() {
+        if (snapshot != null) {
+            snapshot = createSnapshot();
+        }
+    }
+
+    private Snapshot createSnapshot() {
+        ImmutableMap.Builder<Class<?>, ImmutableList<Object>> partsBuilder = ImmutableMap.builder();
+        Map<Class<?>, Collection<Object>> underlyingParts = parts.getUnderlyingMap();
+        synchronized (underlyingParts) {
+            for (Map.Entry<Class<?>, Collection<Object>> entry : underlyingParts.entrySet()) {
+                ImmutableList.Builder<Object> partsOfClass = ImmutableList.builder();
+                for (Object part : entry.getValue()) {
+                    if (part != null) {
+                        partsOfClass.add(part);
+                    }
+                }
+                partsBuilder.put(entry.getKey(), partsOfClass.build());
+            }
+        }
+
+        ImmutableMap.Builder<Class<?>, ImmutableMap<String, Object>> namedPartsBuilder = ImmutableMap.builder();
+        ImmutableMap.Builder<Class<?>, ImmutableList<Tuple<String, Object>>> tuplesBuilder = ImmutableMap.builder();
+        synchronized (namedParts) {
+            for (Map.Entry<Class<?>, Map<String, Object>> entry : namedParts.entrySet()) {
+                ImmutableMap<String, Object> partsOfClass;
+                synchronized (entry.getValue()) {
+                    partsOfClass = ImmutableSortedMap.copyOf(entry.getValue());
+                }
+                namedPartsBuilder.put(entry.getKey(), partsOfClass);
+                tuplesBuilder.put(entry.getKey(), ImmutableList.copyOf(Tuple.fromMap(partsOfClass)));
+            }
+        }
+
+        return new Snapshot(partsBuilder.build(), namedPartsBuilder.build(), tuplesBuilder.build());
+    }
+
     /**
      * Processes all annotations of all known parts.
      */
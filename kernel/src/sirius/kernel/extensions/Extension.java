@@ -81,6 +81,20 @@ public interface Extension {
      */
     long getMilliseconds(String path);
 
+    /**
+     * Returns the size in bytes defined for the given key.
+     * <p>
+     * If this extension doesn't provide a value for this key, but there is an extension with the name
+     * <tt>default</tt> which provides a value, this is used.
+     * </p>
+     *
+     * @param path the access path to retrieve the value
+     * @return the encoded size (like <tt>64m</tt>) as number of bytes.
+     * @throws sirius.kernel.health.HandledException
+     *          if an invalid value was given in the config
+     */
+    long getBytes(String path);
+
     /**
      * Returns the {@link Value} defined for the given key or throws a <tt>HandledException</tt> if no value was found
      * <p>
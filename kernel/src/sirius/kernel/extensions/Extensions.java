@@ -257,6 +257,17 @@ public class Extensions {
             }
         }
 
+        @Override
+        public long getBytes(String path) {
+            try {
+                return config.toConfig().getBytes(path);
+            } catch (ConfigException.Missing e) {
+                return def.toConfig().getBytes(path);
+            } catch (Exception e) {
+                throw Exceptions.handle(e);
+            }
+        }
+
         @Override
         public Value require(String path) {
             Value result = get(path);
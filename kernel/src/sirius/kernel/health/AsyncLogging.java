@@ -0,0 +1,362 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.health;
+
+import com.google.common.collect.Maps;
+import org.apache.log4j.Level;
+import sirius.kernel.async.CallContext;
+import sirius.kernel.di.Lifecycle;
+import sirius.kernel.di.std.ConfigValue;
+import sirius.kernel.di.std.Register;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Moves the formatting and writing of log messages from the calling thread to a background thread.
+ * <p>
+ * If enabled (<tt>health.async-logging.enabled</tt>), each call to {@link Log} only captures the level, the message
+ * along with its parameters, the MDC, the thread name and the timestamp into a preallocated slot of a ring buffer.
+ * A single consumer thread formats the messages and passes them to log4j and all {@link LogTap}s. Therefore
+ * logging doesn't block a request thread on IO (or on the locks within log4j).
+ * </p>
+ * <p>
+ * Note that the parameters of a message are formatted later, so mutable objects might be output with a newer state.
+ * </p>
+ * <p>
+ * If the buffer is full, the behaviour depends on <tt>health.async-logging.policy</tt>: Using <tt>block</tt> the
+ * caller waits until a slot is free (backpressure). Using <tt>drop</tt> the message is discarded and counted (see
+ * {@link #getNumDropped()}). Errors are never dropped. Messages below the level of their logger are skipped unless
+ * a {@link LogTap} is present. Even then, they are dropped instead of blocking the caller if the buffer is full.
+ * </p>
+ * <p>
+ * Once asynchronous logging is stopped, all messages which were already accepted by the buffer are written and all
+ * further messages are logged synchronously by the calling thread.
+ * </p>
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ * @since 2014/02
+ */
+public class AsyncLogging {
+
+    /**
+     * Contains the name of the policy which blocks the caller if the buffer is full
+     */
+    public static final String POLICY_BLOCK = "block";
+
+    /**
+     * Contains the name of the policy which drops messages if the buffer is full
+     */
+    public static final String POLICY_DROP = "drop";
+
+    @ConfigValue("health.async-logging.enabled")
+    private static boolean enabledOnStartup;
+
+    @ConfigValue("health.async-logging.bufferSize")
+    private static int bufferSize;
+
+    @ConfigValue("health.async-logging.policy")
+    private static String policy;
+
+    private static volatile RingBuffer buffer;
+    private static final Counter dropped = new Counter();
+    private static final Counter processed = new Counter();
+
+    /*
+     * Represents a slot of the ring buffer
+     */
+    private static class Entry {
+        /*
+         * Contains the sequence of the message in this slot once it is completely written
+         */
+        volatile long sequence = -1;
+        Log log;
+        Level level;
+        boolean wouldLog;
+        Object message;
+        Object[] params;
+        String thread;
+        long timestamp;
+        final Map<String, String> mdc = Maps.newHashMap();
+    }
+
+    /*
+     * A bounded multi producer / single consumer queue. Producers claim a sequence by incrementing head, fill the
+     * slot and publish it by setting its sequence. The consumer processes the slots in order and advances tail.
+     * If no message arrives for a short while, the consumer parks until the next producer wakes it up.
+     */
+    private static class RingBuffer implements Runnable {
+
+        /*
+         * Number of times the consumer checks for a new message before it parks
+         */
+        private static final int SPINS = 100;
+
+        /*
+         * Maximal time the consumer parks if it isn't woken up by a producer
+         */
+        private static final long MAX_PARK_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+        private final Entry[] entries;
+        private final int mask;
+        private final boolean dropWhenFull;
+        private final AtomicLong head = new AtomicLong();
+        private final AtomicLong tail = new AtomicLong();
+
+        /*
+         * Contains the number of producers currently within offer. The consumer only exits once none is left, so
+         * that a message of a producer which saw running == true is never lost.
+         */
+        private final AtomicInteger producers = new AtomicInteger();
+        private final Thread consumer;
+        private volatile boolean running = true;
+
+        /*
+         * Determines if the consumer is about to park or parked, as it ran out of messages. Each producer reads this
+         * after publishing its message, whereas the consumer checks for a new message after setting it. Therefore
+         * either the consumer sees the message or the producer wakes the consumer up.
+         */
+        private volatile boolean waiting;
+
+        RingBuffer(int size, boolean dropWhenFull) {
+            int capacity = Integer.highestOneBit(Math.max(2, size - 1)) << 1;
+            this.entries = new Entry[capacity];
+            for (int i = 0; i < capacity; i++) {
+                entries[i] = new Entry();
+            }
+            this.mask = capacity - 1;
+            this.dropWhenFull = dropWhenFull;
+            this.consumer = new Thread(this, "async-logging");
+            this.consumer.setDaemon(true);
+        }
+
+        boolean offer(Log log, Level level, boolean wouldLog, Object message, Object[] params) {
+            producers.incrementAndGet();
+            try {
+                if (!running) {
+                    return false;
+                }
+                long sequence;
+                while (true) {
+                    sequence = head.get();
+                    if (sequence - tail.get() >= entries.length) {
+                        // Messages which are only sent to the taps are dropped rather than blocking the caller
+                        if ((dropWhenFull || !wouldLog) && level != Level.ERROR) {
+                            dropped.inc();
+                            return true;
+                        }
+                        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+                    } else if (head.compareAndSet(sequence, sequence + 1)) {
+                        break;
+                    }
+                }
+                Entry entry = entries[(int) sequence & mask];
+                entry.log = log;
+                entry.level = level;
+                entry.wouldLog = wouldLog;
+                entry.message = message;
+                entry.params = params;
+                entry.thread = Thread.currentThread().getName();
+                entry.timestamp = System.currentTimeMillis();
+                CallContext.getCurrent().copyMDC(entry.mdc);
+                entry.sequence = sequence;
+                if (waiting) {
+                    LockSupport.unpark(consumer);
+                }
+                return true;
+            } finally {
+                producers.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void run() {
+            long next = tail.get();
+            // The order of the checks matters: A producer which is not counted in producers either saw running ==
+            // false or has already published its message (and therefore incremented head).
+            while (running || producers.get() > 0 || next < head.get()) {
+                Entry entry = entries[(int) next & mask];
+                if (entry.sequence != next) {
+                    await(entry, next);
+                    continue;
+                }
+                try {
+                    entry.log.dispatch(entry.level,
+                                       entry.wouldLog,
+                                       entry.message,
+                                       entry.params,
+                                       entry.mdc,
+                                       entry.thread,
+                                       entry.timestamp);
+                } catch (Throwable e) {
+                    // We cannot log this (as we're the logger), therefore we fall back to stderr
+                    e.printStackTrace();
+                }
+                processed.inc();
+                entry.log = null;
+                entry.message = null;
+                entry.params = null;
+                entry.mdc.clear();
+                next++;
+                tail.lazySet(next);
+            }
+        }
+
+        /*
+         * Waits until the given entry is published. Spins for a few iterations (as another message is likely to
+         * arrive while messages are logged) and then parks until a producer or stop wakes the consumer up.
+         */
+        private void await(Entry entry, long sequence) {
+            for (int i = 0; i < SPINS; i++) {
+                if (entry.sequence == sequence) {
+                    return;
+                }
+                Thread.yield();
+            }
+            if (!running) {
+                // A producer might still be within offer, without publishing a message
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+                return;
+            }
+            waiting = true;
+            try {
+                if (entry.sequence != sequence && running) {
+                    LockSupport.parkNanos(this, MAX_PARK_NANOS);
+                }
+            } finally {
+                waiting = false;
+            }
+        }
+
+        int size() {
+            return (int) (head.get() - tail.get());
+        }
+    }
+
+    /*
+     * Invoked by Log to hand over a message. Returns false if the message has to be logged synchronously.
+     */
+    static boolean submit(Log log, Level level, boolean wouldLog, Object message, Object[] params) {
+        RingBuffer currentBuffer = buffer;
+        if (currentBuffer == null || Thread.currentThread() == currentBuffer.consumer) {
+            return false;
+        }
+        if (!wouldLog && !Log.hasTaps()) {
+            // The message would neither be logged nor be seen by a tap
+            return true;
+        }
+        return currentBuffer.offer(log, level, wouldLog, message, params);
+    }
+
+    /**
+     * Enables asynchronous logging.
+     *
+     * @param size         the number of messages which can be buffered. Will be rounded up to the next power of two
+     * @param dropWhenFull <tt>true</tt> to drop messages if the buffer is full, <tt>false</tt> to block the caller
+     */
+    public static synchronized void start(int size, boolean dropWhenFull) {
+        stop();
+        RingBuffer newBuffer = new RingBuffer(size, dropWhenFull);
+        newBuffer.consumer.start();
+        buffer = newBuffer;
+    }
+
+    /**
+     * Disables asynchronous logging after all buffered messages have been written.
+     */
+    public static synchronized void stop() {
+        RingBuffer currentBuffer = buffer;
+        if (currentBuffer == null) {
+            return;
+        }
+        buffer = null;
+        currentBuffer.running = false;
+        LockSupport.unpark(currentBuffer.consumer);
+        try {
+            currentBuffer.consumer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Determines if asynchronous logging is enabled.
+     *
+     * @return <tt>true</tt> if log messages are written by a background thread, <tt>false</tt> otherwise
+     */
+    public static boolean isEnabled() {
+        return buffer != null;
+    }
+
+    /**
+     * Returns the number of buffered messages which have not been written yet.
+     *
+     * @return the number of messages waiting in the buffer
+     */
+    public static int getQueueDepth() {
+        RingBuffer currentBuffer = buffer;
+        return currentBuffer == null ? 0 : currentBuffer.size();
+    }
+
+    /**
+     * Returns the maximal number of messages which can be buffered.
+     *
+     * @return the capacity of the buffer or 0 if asynchronous logging is disabled
+     */
+    public static int getCapacity() {
+        RingBuffer currentBuffer = buffer;
+        return currentBuffer == null ? 0 : currentBuffer.entries.length;
+    }
+
+    /**
+     * Returns the number of messages which were dropped as the buffer was full.
+     *
+     * @return the total number of dropped messages
+     */
+    public static long getNumDropped() {
+        return dropped.getCount();
+    }
+
+    /**
+     * Returns the number of messages which were written by the background thread.
+     *
+     * @return the total number of processed messages
+     */
+    public static long getNumProcessed() {
+        return processed.getCount();
+    }
+
+    /**
+     * Enables asynchronous logging on startup if <tt>health.async-logging.enabled</tt> is set and flushes all
+     * buffered messages on shutdown.
+     */
+    @Register
+    public static class AsyncLoggingLifecycle implements Lifecycle {
+
+        @Override
+        public void started() {
+            if (enabledOnStartup) {
+                start(bufferSize, POLICY_DROP.equals(policy));
+            }
+        }
+
+        @Override
+        public void stopped() {
+            AsyncLogging.stop();
+        }
+
+        @Override
+        public String getName() {
+            return "async-logging (Asynchronous Logging)";
+        }
+    }
+}
@@ -9,19 +9,46 @@
 package sirius.kernel.health;
 
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 /**
  * Represents a counter for statistical use. Overflows to 0 instead to {@link Long#MIN_VALUE}
  * <p>
  * Counts up to <code>Long.MAX_VALUE - 1</code> starting at 0 and overflowing to 0.
  * </p>
+ * <p>
+ * The counter can be incremented by many threads concurrently without losing increments. As long as there is no
+ * contention, a single field is updated using compare and set. Once two threads collide, the counter switches to a
+ * set of stripes (one per cache line) and each thread increments the stripe selected by its thread id. Reading
+ * the counter sums up all stripes, therefore <tt>inc()</tt> is cheap while <tt>getCount()</tt> is a bit more
+ * expensive.
+ * </p>
  *
  * @author Andreas Haufler (aha@scireum.de)
  * @since 2013/08
  */
 public class Counter {
+
+    /*
+     * Number of longs per stripe so that each stripe uses its own cache line (64 bytes)
+     */
+    private static final int PADDING = 8;
+
+    /*
+     * Number of stripes used once contention is detected (the next power of two of the number of cores)
+     */
+    private static final int STRIPES =
+            Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1));
+
+    private static final AtomicLongFieldUpdater<Counter> BASE =
+            AtomicLongFieldUpdater.newUpdater(Counter.class, "base");
+    private static final AtomicLongFieldUpdater<Counter> START_TIME_MILLIS =
+            AtomicLongFieldUpdater.newUpdater(Counter.class, "startTimeMillis");
+
     private volatile long startTimeMillis = -1;
-    private volatile long count = 0;
+    private volatile long base = 0;
+    private volatile AtomicLongArray stripes;
     private final long max;
 
     /**
@@ -42,17 +69,34 @@ public class Counter {
 
     /**
      * Increments the counter by one
+     * <p>
+     * Once the counter is contended and uses stripes, the returned value is computed by summing up all stripes
+     * and is therefore only approximate, as other threads might increment the counter concurrently.
+     * </p>
+     *
+     * @return the value of the counter after it was incremented
      */
     public long inc() {
         if (startTimeMillis < 0) {
-            reset();
+            START_TIME_MILLIS.compareAndSet(this, -1, System.currentTimeMillis());
         }
-        if (count < max) {
-            count++;
-        } else {
-            count = 0;
+        AtomicLongArray currentStripes = stripes;
+        if (currentStripes == null) {
+            long current = base;
+            if (BASE.compareAndSet(this, current, current + 1)) {
+                return current + 1 > max ? (current + 1) % (max + 1) : current + 1;
+            }
+            currentStripes = createStripes();
         }
-        return count;
+        currentStripes.incrementAndGet(((int) Thread.currentThread().getId() & (STRIPES - 1)) * PADDING);
+        return getCount();
+    }
+
+    private synchronized AtomicLongArray createStripes() {
+        if (stripes == null) {
+            stripes = new AtomicLongArray(STRIPES * PADDING);
+        }
+        return stripes;
     }
 
     /**
@@ -62,7 +106,11 @@ public class Counter {
      * @return the average increment per given time unit
      */
     public double getAvgPer(TimeUnit unit) {
-        return (count) / getDuration(unit);
+        if (startTimeMillis < 0) {
+            return 0d;
+        }
+        long millis = Math.max(1, System.currentTimeMillis() - startTimeMillis);
+        return getCount() * (double) unit.toNanos(1) / (double) TimeUnit.MILLISECONDS.toNanos(millis);
     }
 
     /**
@@ -71,7 +119,14 @@ public class Counter {
      * @return the value of the counter
      */
     public long getCount() {
-        return count;
+        long result = base;
+        AtomicLongArray currentStripes = stripes;
+        if (currentStripes != null) {
+            for (int i = 0; i < STRIPES; i++) {
+                result += currentStripes.get(i * PADDING);
+            }
+        }
+        return result > max ? result % (max + 1) : result;
     }
 
     /**
@@ -81,15 +136,27 @@ public class Counter {
      * @return the time since the creation of the counter in the given time unit
      */
     public long getDuration(TimeUnit unit) {
+        if (startTimeMillis < 0) {
+            return 0;
+        }
         long delta = System.currentTimeMillis() - startTimeMillis;
-        return TimeUnit.MILLISECONDS.convert(delta, unit);
+        return unit.convert(delta, TimeUnit.MILLISECONDS);
     }
 
     /**
      * Resets the counter to zero
+     * <p>
+     * Increments which happen concurrently might or might not be counted.
+     * </p>
      */
     public void reset() {
         startTimeMillis = System.currentTimeMillis();
-        count = 0;
+        base = 0;
+        AtomicLongArray currentStripes = stripes;
+        if (currentStripes != null) {
+            for (int i = 0; i < STRIPES; i++) {
+                currentStripes.set(i * PADDING, 0);
+            }
+        }
     }
 }
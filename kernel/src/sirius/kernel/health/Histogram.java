@@ -0,0 +1,382 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.health;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records the distribution of values (like durations) to compute percentiles.
+ * <p>
+ * In contrast to {@link Average}, which only provides the mean of the last 100 values, this keeps track of all
+ * recorded values so that tail latencies (like the 99th percentile) become visible. Values are counted in
+ * logarithmic buckets: each power of two is split into 16 linear sub-buckets. Therefore a histogram has a fixed size
+ * (960 counters) and reported percentiles have a relative error of about 3%. The average and the maximal value are
+ * exact.
+ * </p>
+ * <p>
+ * Values can be recorded by many threads concurrently without any locking. {@link #getAndReset()} can be used to
+ * report values per interval (e.g. per minute). Values removed by a reset are still reported by {@link #getTotal()},
+ * which can be used by monitoring systems expecting monotonic counts.
+ * </p>
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ * @since 2014/02
+ */
+public class Histogram {
+
+    /*
+     * Each power of two is split into 2^SUB_BUCKET_BITS linear buckets
+     */
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int NUM_BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /*
+     * Contains all values which were removed by getAndReset, so that getTotal can report all values ever recorded
+     */
+    private final long[] totalCounts = new long[NUM_BUCKETS];
+    private long totalSum;
+    private long totalMax;
+
+    /**
+     * Records the given value.
+     * <p>
+     * Negative values are recorded as 0.
+     * </p>
+     *
+     * @param value the value to record
+     */
+    public void addValue(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        buckets.incrementAndGet(indexOf(value));
+        sum.addAndGet(value);
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    /*
+     * Computes the bucket for the given (non-negative) value
+     */
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    /*
+     * Computes the value reported for the given bucket (the middle of the range of values counted by the bucket)
+     */
+    static long valueOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lowerBound = (long) (index % SUB_BUCKETS + SUB_BUCKETS) << shift;
+        return lowerBound + ((1L << shift) - 1) / 2;
+    }
+
+    /**
+     * Returns the number of recorded values.
+     *
+     * @return the number of values recorded since the last reset
+     */
+    public long getCount() {
+        long result = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            result += buckets.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the average of all recorded values.
+     *
+     * @return the average of the values recorded since the last reset
+     */
+    public double getAvg() {
+        long count = getCount();
+        return count == 0 ? 0d : (double) sum.get() / count;
+    }
+
+    /**
+     * Returns the distribution of all values recorded so far.
+     *
+     * @return a snapshot of the current state
+     */
+    public Snapshot getSnapshot() {
+        long[] counts = new long[NUM_BUCKETS];
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+        }
+        return new Snapshot(counts, sum.get(), max.get());
+    }
+
+    /**
+     * Returns the distribution of all values recorded so far and resets the histogram.
+     * <p>
+     * Each value which is recorded concurrently is either contained in the returned snapshot or in the next one.
+     * </p>
+     *
+     * @return a snapshot of the state before the reset
+     */
+    public Snapshot getAndReset() {
+        long[] counts = new long[NUM_BUCKETS];
+        synchronized (totalCounts) {
+            for (int i = 0; i < NUM_BUCKETS; i++) {
+                counts[i] = buckets.getAndSet(i, 0);
+                totalCounts[i] += counts[i];
+            }
+            long currentSum = sum.getAndSet(0);
+            long currentMax = max.getAndSet(0);
+            totalSum += currentSum;
+            totalMax = Math.max(totalMax, currentMax);
+            return new Snapshot(counts, currentSum, currentMax);
+        }
+    }
+
+    /**
+     * Returns the distribution of all values ever recorded, ignoring any reset.
+     *
+     * @return a snapshot containing all values recorded since the histogram was created
+     */
+    public Snapshot getTotal() {
+        long[] counts = new long[NUM_BUCKETS];
+        synchronized (totalCounts) {
+            for (int i = 0; i < NUM_BUCKETS; i++) {
+                counts[i] = totalCounts[i] + buckets.get(i);
+            }
+            return new Snapshot(counts, totalSum + sum.get(), Math.max(totalMax, max.get()));
+        }
+    }
+
+    /**
+     * Resets the histogram.
+     * <p>
+     * The values recorded so far are still reported by {@link #getTotal()}.
+     * </p>
+     */
+    public void reset() {
+        getAndReset();
+    }
+
+    /**
+     * Represents the state of a {@link Histogram} at a given point in time.
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        Snapshot(long[] counts, long sum, long max) {
+            this.counts = counts;
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            this.count = total;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * Returns the number of recorded values.
+         *
+         * @return the number of values in this snapshot
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Returns the average of all recorded values.
+         *
+         * @return the average or 0 if no values were recorded
+         */
+        public double getAvg() {
+            return count == 0 ? 0d : (double) sum / count;
+        }
+
+        /**
+         * Returns the sum of all recorded values.
+         *
+         * @return the sum of all values in this snapshot
+         */
+        public long getSum() {
+            return sum;
+        }
+
+        /**
+         * Returns the number of recorded values which are less than or equal to the given limit.
+         * <p>
+         * As values are counted in buckets, this also includes values of the bucket containing <tt>limit</tt> which
+         * are up to 6% larger than the limit.
+         * </p>
+         *
+         * @param limit the upper bound of the values to count
+         * @return the (approximated) number of values less than or equal to the given limit
+         */
+        public long getCountUpTo(long limit) {
+            if (limit < 0) {
+                return 0;
+            }
+            long result = 0;
+            int lastIndex = indexOf(limit);
+            for (int i = 0; i <= lastIndex; i++) {
+                result += counts[i];
+            }
+            return result;
+        }
+
+        /**
+         * Returns the largest recorded value.
+         *
+         * @return the maximal value or 0 if no values were recorded
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * Returns the value below which the given percentage of all recorded values fall.
+         *
+         * @param percentile the percentile to compute (e.g. 99.9)
+         * @return the (approximated) value of the given percentile or 0 if no values were recorded
+         */
+        public long getPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100d * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(valueOf(i), max);
+                }
+            }
+            return max;
+        }
+
+        /**
+         * Returns the median of all recorded values.
+         *
+         * @return the 50th percentile
+         */
+        public long getP50() {
+            return getPercentile(50);
+        }
+
+        /**
+         * Returns the 90th percentile of all recorded values.
+         *
+         * @return the 90th percentile
+         */
+        public long getP90() {
+            return getPercentile(90);
+        }
+
+        /**
+         * Returns the 99th percentile of all recorded values.
+         *
+         * @return the 99th percentile
+         */
+        public long getP99() {
+            return getPercentile(99);
+        }
+
+        /**
+         * Returns the 99.9th percentile of all recorded values.
+         *
+         * @return the 99.9th percentile
+         */
+        public long getP999() {
+            return getPercentile(99.9);
+        }
+
+        /**
+         * Combines this snapshot with the given one, as if all values were recorded by a single histogram.
+         * <p>
+         * This can be used to compute percentiles across several histograms (e.g. of all nodes of a cluster).
+         * </p>
+         *
+         * @param other the snapshot to combine with this one
+         * @return a new snapshot containing the values of both snapshots
+         */
+        public Snapshot merge(Snapshot other) {
+            long[] mergedCounts = new long[NUM_BUCKETS];
+            for (int i = 0; i < NUM_BUCKETS; i++) {
+                mergedCounts[i] = counts[i] + other.counts[i];
+            }
+            return new Snapshot(mergedCounts, sum + other.sum, Math.max(max, other.max));
+        }
+
+        /**
+         * Encodes this snapshot into a compact string which only contains the non-empty buckets.
+         * <p>
+         * The format is <tt>sum;max;bucket:count,bucket:count...</tt> and can be parsed by {@link #parse(String)}.
+         * </p>
+         *
+         * @return a string representation of this snapshot which can be transferred to other nodes
+         */
+        public String toCompactString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(sum).append(';').append(max).append(';');
+            boolean first = true;
+            for (int i = 0; i < NUM_BUCKETS; i++) {
+                if (counts[i] > 0) {
+                    if (!first) {
+                        sb.append(',');
+                    }
+                    sb.append(i).append(':').append(counts[i]);
+                    first = false;
+                }
+            }
+            return sb.toString();
+        }
+
+        /**
+         * Parses a snapshot created by {@link #toCompactString()}.
+         *
+         * @param data the compact string representation of a snapshot
+         * @return the snapshot represented by the given string
+         * @throws IllegalArgumentException if the given string is not a valid representation of a snapshot
+         */
+        public static Snapshot parse(String data) {
+            try {
+                String[] parts = data.split(";", -1);
+                if (parts.length != 3) {
+                    throw new IllegalArgumentException(data);
+                }
+                long[] parsedCounts = new long[NUM_BUCKETS];
+                if (!parts[2].isEmpty()) {
+                    for (String bucket : parts[2].split(",")) {
+                        int separator = bucket.indexOf(':');
+                        parsedCounts[Integer.parseInt(bucket.substring(0, separator))] +=
+                                Long.parseLong(bucket.substring(separator + 1));
+                    }
+                }
+                return new Snapshot(parsedCounts, Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+            } catch (IndexOutOfBoundsException | NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid histogram snapshot: " + data, e);
+            }
+        }
+    }
+}
@@ -11,12 +11,17 @@ package sirius.kernel.health;
 
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.ThrowableInformation;
 import sirius.kernel.async.CallContext;
 import sirius.kernel.commons.Strings;
 import sirius.kernel.di.PartCollection;
 import sirius.kernel.di.std.Parts;
 import sirius.kernel.nls.NLS;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * The logging facade used by the system.
  * <p>
@@ -39,6 +44,10 @@ import sirius.kernel.nls.NLS;
  * Internally uses log4j to perform all logging operations. Still it is recommended to only log through this facade
  * and not to rely on any log4j specific behaviour.
  * </p>
+ * <p>
+ * If {@link AsyncLogging} is enabled, messages are only captured by the calling thread and then formatted and
+ * written by a background thread.
+ * </p>
  *
  * @author Andreas Haufler (aha@scireum.de)
  * @since 2013/08
@@ -82,6 +91,9 @@ public class Log {
      * @param msg the message to be logged
      */
     public void INFO(Object msg) {
+        if (AsyncLogging.submit(this, Level.INFO, logger.isInfoEnabled(), msg, null)) {
+            return;
+        }
         if (logger.isInfoEnabled()) {
             fixMDC();
             if (msg instanceof Throwable) {
@@ -102,21 +114,63 @@ public class Log {
      * Notify all log taps
      */
     private void tap(Object msg, boolean wouldLog, Level level) {
-        if (Boolean.TRUE.equals(frozen.get())) {
+        tap(msg, wouldLog, level, Thread.currentThread().getName(), System.currentTimeMillis());
+    }
+
+    private void tap(Object msg, boolean wouldLog, Level level, String thread, long timestamp) {
+        if (Boolean.TRUE.equals(frozen.get()) || taps == null) {
             return;
         }
         try {
             frozen.set(Boolean.TRUE);
-            if (taps != null) {
-                for (LogTap tap : taps) {
-                    tap.handleLogMessage(new LogMessage(NLS.toUserString(msg), level, this, wouldLog, Thread.currentThread().getName()));
+            LogMessage message = null;
+            for (LogTap tap : taps) {
+                if (message == null) {
+                    message = new LogMessage(NLS.toUserString(msg), level, this, wouldLog, thread, timestamp);
                 }
+                tap.handleLogMessage(message);
             }
         } finally {
             frozen.set(Boolean.FALSE);
         }
     }
 
+    /*
+     * Determines if any LogTap is present which needs to see messages which are not logged
+     */
+    static boolean hasTaps() {
+        return taps != null && !taps.getParts().isEmpty();
+    }
+
+    /*
+     * Invoked by the background thread of AsyncLogging to format and write a captured message
+     */
+    void dispatch(Level level,
+                  boolean wouldLog,
+                  Object msg,
+                  Object[] params,
+                  Map<String, String> mdc,
+                  String thread,
+                  long timestamp) {
+        Object message = params == null ? msg : Strings.apply((String) msg, params);
+        if (wouldLog) {
+            Throwable throwable = message instanceof Throwable ? (Throwable) message : null;
+            logger.callAppenders(new LoggingEvent(Log.class.getName(),
+                                                  logger,
+                                                  timestamp,
+                                                  level,
+                                                  throwable == null ?
+                                                  NLS.toUserString(message) :
+                                                  throwable.getMessage(),
+                                                  thread,
+                                                  throwable == null ? null : new ThrowableInformation(throwable),
+                                                  null,
+                                                  null,
+                                                  mdc.isEmpty() ? null : new HashMap<String, String>(mdc)));
+        }
+        tap(message, wouldLog, level, thread, timestamp);
+    }
+
     /*
      * Transfers our MDC to the one used by log4j
      */
@@ -134,11 +188,15 @@ public class Log {
      * @param params the parameters used to format the resulting log message
      */
     public void INFO(String msg, Object... params) {
+        if (AsyncLogging.submit(this, Level.INFO, logger.isInfoEnabled(), msg, params)) {
+            return;
+        }
+        String message = Strings.apply(msg, params);
         if (logger.isInfoEnabled()) {
             fixMDC();
-            logger.info(Strings.apply(msg, params));
+            logger.info(message);
         }
-        tap(Strings.apply(msg, params), logger.isInfoEnabled(), Level.INFO);
+        tap(message, logger.isInfoEnabled(), Level.INFO);
     }
 
     /**
@@ -152,6 +210,9 @@ public class Log {
      * @param msg the message to be logged
      */
     public void FINE(Object msg) {
+        if (AsyncLogging.submit(this, Level.DEBUG, logger.isDebugEnabled(), msg, null)) {
+            return;
+        }
         if (logger.isDebugEnabled()) {
             fixMDC();
             if (msg instanceof Throwable) {
@@ -174,11 +235,15 @@ public class Log {
      * @param params the parameters used to format the resulting log message
      */
     public void FINE(String msg, Object... params) {
+        if (AsyncLogging.submit(this, Level.DEBUG, logger.isDebugEnabled(), msg, params)) {
+            return;
+        }
+        String message = Strings.apply(msg, params);
         if (logger.isDebugEnabled()) {
             fixMDC();
-            logger.debug(Strings.apply(msg, params));
+            logger.debug(message);
         }
-        tap(Strings.apply(msg, params), logger.isDebugEnabled(), Level.DEBUG);
+        tap(message, logger.isDebugEnabled(), Level.DEBUG);
     }
 
     /**
@@ -191,6 +256,9 @@ public class Log {
      * @param msg the message to be logged
      */
     public void WARN(Object msg) {
+        if (AsyncLogging.submit(this, Level.WARN, true, msg, null)) {
+            return;
+        }
         fixMDC();
         if (msg instanceof Throwable) {
             logger.warn(((Throwable) msg).getMessage(), (Throwable) msg);
@@ -210,9 +278,13 @@ public class Log {
      * @param params the parameters used to format the resulting log message
      */
     public void WARN(String msg, Object... params) {
+        if (AsyncLogging.submit(this, Level.WARN, true, msg, params)) {
+            return;
+        }
+        String message = Strings.apply(msg, params);
         fixMDC();
-        logger.warn(Strings.apply(msg, params));
-        tap(Strings.apply(msg, params), true, Level.WARN);
+        logger.warn(message);
+        tap(message, true, Level.WARN);
     }
 
     /**
@@ -226,6 +298,9 @@ public class Log {
      * @param msg the message to be logged
      */
     public void SEVERE(Object msg) {
+        if (AsyncLogging.submit(this, Level.ERROR, true, msg, null)) {
+            return;
+        }
         fixMDC();
         if (msg instanceof Throwable) {
             logger.error(((Throwable) msg).getMessage(), (Throwable) msg);
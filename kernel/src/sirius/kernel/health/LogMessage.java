@@ -27,8 +27,17 @@ public class LogMessage {
     private String thread;
 
     protected LogMessage(String message, Level logLevel, Log receiver, boolean receiverWouldLog, String thread) {
+        this(message, logLevel, receiver, receiverWouldLog, thread, System.currentTimeMillis());
+    }
+
+    protected LogMessage(String message,
+                         Level logLevel,
+                         Log receiver,
+                         boolean receiverWouldLog,
+                         String thread,
+                         long timestamp) {
         this.thread = thread;
-        this.timestamp = System.currentTimeMillis();
+        this.timestamp = timestamp;
         this.message = message;
         this.logLevel = logLevel;
         this.receiver = receiver;
@@ -8,20 +8,31 @@
 
 package sirius.kernel.health;
 
-import sirius.kernel.commons.Strings;
+import com.google.common.base.Predicates;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import sirius.kernel.commons.RingBuffer;
 import sirius.kernel.di.std.ConfigValue;
 import sirius.kernel.di.std.Register;
 
-import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Provides a in-memory store for logs and exceptions.
  * <p>
  * This will be inherently limited in size but should always contain the most recent logs and errors.
  * </p>
+ * <p>
+ * Both are kept in a {@link RingBuffer}, so that recording a message or an incident is a constant time operation
+ * without any lock and reading never blocks writers. Incidents are deduplicated by their location: the buffer
+ * contains one slot per location, which always holds the most recent incident of this location. Therefore
+ * <tt>health.memory.max-errors</tt> limits the number of distinct locations. Once it is reached, the location
+ * which occurred first is dropped to make room for a new one.
+ * </p>
  *
  * @author Andreas Haufler (aha@scireum.de)
  * @since 2013/11
@@ -29,8 +40,23 @@ import java.util.List;
 @Register(classes = {MemoryBasedHealthMonitor.class, LogTap.class, ExceptionHandler.class})
 public class MemoryBasedHealthMonitor implements ExceptionHandler, LogTap {
 
-    private List<Incident> incidents = Collections.synchronizedList(new ArrayList<Incident>());
-    private List<LogMessage> messages = Collections.synchronizedList(new ArrayList<LogMessage>());
+    private volatile RingBuffer<AtomicReference<Incident>> incidents;
+    private volatile RingBuffer<LogMessage> messages;
+
+    /*
+     * Contains the slot of each location in the incident buffer
+     */
+    private final ConcurrentMap<String, AtomicReference<Incident>> incidentsByLocation = Maps.newConcurrentMap();
+
+    /*
+     * Sorts incidents by their timestamp, newest first
+     */
+    private static final Comparator<Incident> NEWEST_FIRST = new Comparator<Incident>() {
+        @Override
+        public int compare(Incident o1, Incident o2) {
+            return o1.getTimestamp() < o2.getTimestamp() ? 1 : (o1.getTimestamp() == o2.getTimestamp() ? 0 : -1);
+        }
+    };
 
     @ConfigValue("health.memory.max-errors")
     private int maxErrors;
@@ -41,55 +67,122 @@ public class MemoryBasedHealthMonitor implements ExceptionHandler, LogTap {
     private final Counter numUniqueIncidents = new Counter();
     private final Counter numLogMessages = new Counter();
 
-    @Override
-    public void handle(Incident incident) throws Exception {
-        synchronized (incidents) {
-            boolean unique = true;
-            Iterator<Incident> iter = incidents.iterator();
-            while (iter.hasNext()) {
-                if (Strings.areEqual(iter.next().getLocation(), incident.getLocation())) {
-                    iter.remove();
-                    unique = false;
+    /**
+     * Creates a new monitor which is limited by <tt>health.memory.max-errors</tt> and
+     * <tt>health.memory.max-logs</tt>.
+     */
+    public MemoryBasedHealthMonitor() {
+    }
+
+    /*
+     * Creates a monitor using the given limits instead of the configured ones
+     */
+    MemoryBasedHealthMonitor(int maxErrors, int maxMsg) {
+        this.maxErrors = maxErrors;
+        this.maxMsg = maxMsg;
+    }
+
+    /*
+     * The buffers are created lazily, as the config values are injected after the object was created
+     */
+    private RingBuffer<AtomicReference<Incident>> getIncidentBuffer() {
+        if (incidents == null) {
+            synchronized (this) {
+                if (incidents == null) {
+                    incidents = new RingBuffer<AtomicReference<Incident>>(maxErrors);
                 }
             }
-            incidents.add(0, incident);
-            numIncidents.inc();
-            if (unique) {
-                numUniqueIncidents.inc();
-            }
-            while (incidents.size() > maxErrors) {
-                incidents.remove(incidents.size() - 1);
+        }
+        return incidents;
+    }
+
+    private RingBuffer<LogMessage> getMessageBuffer() {
+        if (messages == null) {
+            synchronized (this) {
+                if (messages == null) {
+                    messages = new RingBuffer<LogMessage>(maxMsg);
+                }
             }
         }
+        return messages;
+    }
+
+    private static String getLocationKey(Incident incident) {
+        return incident.getLocation() == null ? "" : incident.getLocation();
     }
 
     @Override
-    public void handleLogMessage(LogMessage msg) {
-        synchronized (messages) {
-            messages.add(0, msg);
-            numLogMessages.inc();
-            while (messages.size() > maxMsg) {
-                messages.remove(messages.size() - 1);
+    public void handle(Incident incident) throws Exception {
+        numIncidents.inc();
+        String location = getLocationKey(incident);
+        AtomicReference<Incident> slot = incidentsByLocation.get(location);
+        if (slot == null) {
+            AtomicReference<Incident> newSlot = new AtomicReference<Incident>(incident);
+            slot = incidentsByLocation.putIfAbsent(location, newSlot);
+            if (slot == null) {
+                numUniqueIncidents.inc();
+                AtomicReference<Incident> removed = getIncidentBuffer().add(newSlot);
+                if (removed != null) {
+                    incidentsByLocation.remove(getLocationKey(removed.get()), removed);
+                }
+                return;
             }
         }
+        // The location is already known, therefore its slot is updated in place
+        slot.set(incident);
+    }
+
+    @Override
+    public void handleLogMessage(LogMessage msg) {
+        numLogMessages.inc();
+        getMessageBuffer().add(msg);
     }
 
     /**
      * Contains all recorded incidents.
      *
-     * @return all recorded incidents
+     * @return all recorded incidents (only the most recent one per location), newest first
      */
     public List<Incident> getIncidents() {
-        return incidents;
+        return getIncidents(0, maxErrors);
+    }
+
+    /**
+     * Returns a page of the recorded incidents.
+     *
+     * @param offset the number of incidents to skip
+     * @param limit  the maximal number of incidents to return
+     * @return the requested incidents (only the most recent one per location), newest first
+     */
+    public List<Incident> getIncidents(int offset, int limit) {
+        List<Incident> result = Lists.newArrayList();
+        for (AtomicReference<Incident> slot : getIncidentBuffer().getAll()) {
+            result.add(slot.get());
+        }
+        Collections.sort(result, NEWEST_FIRST);
+        int from = Math.min(offset, result.size());
+        int to = Math.min(result.size(), from + Math.min(limit, result.size()));
+        return Lists.newArrayList(result.subList(from, to));
     }
 
     /**
      * Contains all recorded log messages.
      *
-     * @return all recorded messages
+     * @return all recorded messages, newest first
      */
     public List<LogMessage> getMessages() {
-        return messages;
+        return getMessageBuffer().getAll();
+    }
+
+    /**
+     * Returns a page of the recorded log messages.
+     *
+     * @param offset the number of messages to skip
+     * @param limit  the maximal number of messages to return
+     * @return the requested messages, newest first
+     */
+    public List<LogMessage> getMessages(int offset, int limit) {
+        return getMessageBuffer().get(offset, limit, Predicates.alwaysTrue());
     }
 
     /**
@@ -8,12 +8,17 @@
 
 package sirius.kernel.health;
 
-import sirius.kernel.commons.Tuple;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.joda.time.Duration;
+import sirius.kernel.di.Lifecycle;
+import sirius.kernel.di.std.ConfigValue;
+import sirius.kernel.di.std.Register;
 
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Performance measurement framework which can be used in development as well as in production systems.
@@ -23,13 +28,20 @@ import java.util.Map;
  * </p>
  * <p>
  * Once the microtiming framework is enabled it will be notified by other frameworks as defined tasks are executed.
- * The execution times are combined and can be queried using {@link sirius.kernel.health.Microtiming#getTimings()}.
+ * The execution times are recorded in a {@link Histogram} per key and can be queried using
+ * {@link sirius.kernel.health.Microtiming#getTimings()}.
  * </p>
  * <p>
  * An example might be an SQL query which is executed in a loop to perform a file import. Since the SQL-Query is
  * always the same (in case or a prepared statement) the execution times will be added to an average which will
  * be stored until the next call to <tt>Microtiming.getTimings()</tt>.
  * </p>
+ * <p>
+ * Submitting a timing does not acquire any lock. To keep the framework enabled permanently in production systems,
+ * only a sample of all timings can be recorded: either every n-th timing (<tt>microtiming.sampling</tt>, chosen
+ * randomly) or at most one timing per key and interval (<tt>microtiming.samplingInterval</tt>). The number of
+ * submissions per key is always counted completely.
+ * </p>
  *
  * @author Andreas Haufler (aha@scireum.de)
  * @since 2013/08
@@ -38,8 +50,66 @@ public class Microtiming {
 
     private static volatile boolean enabled = false;
     private static volatile long lastReset;
-    private static Map<String, Average> timings = Collections.synchronizedMap(new HashMap<String, Average>());
-    private static Map<String, Average> liveSet = Collections.synchronizedMap(new HashMap<String, Average>());
+    private static final ConcurrentMap<String, Timing> timings = Maps.newConcurrentMap();
+
+    /*
+     * Timings submitted within the current generation are part of the "live set" returned by getTimings()
+     */
+    private static final AtomicLong generation = new AtomicLong();
+
+    @ConfigValue("microtiming.enabled")
+    private static boolean enabledOnStartup;
+
+    @ConfigValue("microtiming.sampling")
+    private static volatile int sampling = 1;
+
+    @ConfigValue("microtiming.samplingInterval")
+    private static volatile Duration samplingInterval;
+
+    /**
+     * Contains the statistics recorded for a key.
+     */
+    public static class Timing {
+        private final String key;
+        private final Histogram histogram = new Histogram();
+        private final Counter submissions = new Counter();
+        private volatile long generation;
+        private volatile long lastSample;
+
+        Timing(String key) {
+            this.key = key;
+        }
+
+        /**
+         * Returns the key of this timing.
+         *
+         * @return the key for which the timings were submitted
+         */
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * Returns the number of submitted timings.
+         * <p>
+         * This counts all submissions, including the ones skipped due to sampling.
+         * </p>
+         *
+         * @return the number of submitted timings for this key
+         */
+        public long getCount() {
+            return submissions.getCount();
+        }
+
+        /**
+         * Returns the distribution of the recorded (sampled) durations.
+         *
+         * @return a snapshot of all recorded durations in microseconds
+         */
+        public Histogram.Snapshot getSnapshot() {
+            return histogram.getSnapshot();
+        }
+    }
 
     /**
      * Returns a list of recorded timings.
@@ -50,19 +120,24 @@ public class Microtiming {
      * reasonable small results.
      * </p>
      *
-     * @return all keys along with their average execution time which where submitted since the last call to
+     * @return all keys along with their recorded execution times which where submitted since the last call to
      *         <tt>getTimings()</tt>
      */
-    public static List<Tuple<String, Average>> getTimings() {
-        List<Tuple<String, Average>> result = Tuple.fromMap(liveSet);
-        liveSet.clear();
+    public static List<Timing> getTimings() {
+        long liveGeneration = generation.getAndIncrement();
+        List<Timing> result = Lists.newArrayList();
+        for (Timing timing : timings.values()) {
+            if (timing.generation == liveGeneration) {
+                result.add(timing);
+            }
+        }
         return result;
     }
 
     /**
      * Submits a new timing for the given key.
      * <p>
-     * Adds the average to the "live set" which will be output on the next call to getTimings()
+     * Adds the timing to the "live set" which will be output on the next call to getTimings()
      * </p>
      * <p>
      * A convenient way to call this method is to use {@link sirius.kernel.commons.Watch#submitMicroTiming(String)}
@@ -75,13 +150,40 @@ public class Microtiming {
         if (!enabled) {
             return;
         }
-        Average avg = timings.get(key);
-        if (avg == null) {
-            avg = new Average();
-            timings.put(key, avg);
+        Timing timing = timings.get(key);
+        if (timing == null) {
+            timing = new Timing(key);
+            Timing other = timings.putIfAbsent(key, timing);
+            if (other != null) {
+                timing = other;
+            }
+        }
+        timing.submissions.inc();
+        long currentGeneration = generation.get();
+        if (timing.generation != currentGeneration) {
+            timing.generation = currentGeneration;
+        }
+        if (isSampled(timing)) {
+            timing.histogram.addValue(duration / 1000);
+        }
+    }
+
+    /*
+     * Determines if the current submission of the given timing should be recorded
+     */
+    private static boolean isSampled(Timing timing) {
+        if (sampling > 1 && ThreadLocalRandom.current().nextInt(sampling) != 0) {
+            return false;
         }
-        avg.addValue(duration / 1000);
-        liveSet.put(key, avg);
+        Duration interval = samplingInterval;
+        if (interval != null && interval.getMillis() > 0) {
+            long now = System.currentTimeMillis();
+            if (now - timing.lastSample < interval.getMillis()) {
+                return false;
+            }
+            timing.lastSample = now;
+        }
+        return true;
     }
 
     /**
@@ -101,12 +203,29 @@ public class Microtiming {
     public static void setEnabled(boolean enabled) {
         if (enabled && !Microtiming.enabled) {
             timings.clear();
-            liveSet.clear();
             lastReset = System.currentTimeMillis();
         }
         Microtiming.enabled = enabled;
     }
 
+    /**
+     * Returns the sampling rate.
+     *
+     * @return <tt>n</tt> if only every n-th timing is recorded or 1 if all timings are recorded
+     */
+    public static int getSampling() {
+        return Math.max(1, sampling);
+    }
+
+    /**
+     * Specifies that only every n-th timing (chosen randomly) is recorded.
+     *
+     * @param sampling the sampling rate. Use 1 to record all timings.
+     */
+    public static void setSampling(int sampling) {
+        Microtiming.sampling = Math.max(1, sampling);
+    }
+
     /**
      * Returns the timestamp of the last reset
      *
@@ -117,4 +236,26 @@ public class Microtiming {
         return lastReset;
     }
 
+    /**
+     * Enables the framework on startup if <tt>microtiming.enabled</tt> is set.
+     */
+    @Register
+    public static class MicrotimingLifecycle implements Lifecycle {
+
+        @Override
+        public void started() {
+            if (enabledOnStartup) {
+                setEnabled(true);
+            }
+        }
+
+        @Override
+        public void stopped() {
+        }
+
+        @Override
+        public String getName() {
+            return "microtiming (Performance Measurement)";
+        }
+    }
 }
@@ -0,0 +1,42 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.timer;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a {@link TimedTask} which must only be executed by one node of the cluster.
+ * <p>
+ * Before each execution, the {@link TimerService} tries to acquire a {@link Lease} for the task from the
+ * {@link LeaseStore} selected by <tt>timer.leases.store</tt>. Only the node which holds the lease executes the task,
+ * all others skip it. The lease is held until shortly before the next execution is due, so that the node which
+ * executed the task last also executes it next time. If this node fails, the lease expires and another node takes
+ * over.
+ * </p>
+ * <p>
+ * A task which takes longer than the interval of its schedule might lose its lease while running. Such tasks can
+ * use {@link TimerService#getCurrentLease()} and {@link LeaseStore#isValid(Lease)} (or the fencing token of the
+ * lease) to check if they still own the lease before writing any results.
+ * </p>
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ * @since 2014/02
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface ClusterSingleton {
+
+    /**
+     * Name of the lease. If empty, the class name of the task is used.
+     */
+    String value() default "";
+}
@@ -0,0 +1,202 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.timer;
+
+import org.joda.time.DateTime;
+import sirius.kernel.commons.Strings;
+
+/**
+ * Represents a cron expression like <tt>*&#47;15 8-18 * * 1-5</tt> which determines when a {@link ScheduledTask} is
+ * executed.
+ * <p>
+ * An expression consists of five fields: minute (0-59), hour (0-23), day of month (1-31), month (1-12) and day of
+ * week (0-7, where 0 and 7 are sunday). Each field is either <tt>*</tt>, a single value, a range like <tt>1-5</tt>
+ * or a list of these (separated by commas). A step can be appended to <tt>*</tt> or a range like <tt>*&#47;10</tt>.
+ * As in most cron implementations, if both, the day of month and the day of week are restricted, a day matches if
+ * either of both fields match. Additionally the shortcuts <tt>@hourly</tt>, <tt>@daily</tt>, <tt>@weekly</tt>,
+ * <tt>@monthly</tt> and <tt>@yearly</tt> are supported.
+ * </p>
+ * <p>
+ * All times are evaluated in the default time zone of the JVM.
+ * </p>
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ * @since 2014/02
+ */
+public class CronExpression {
+
+    /*
+     * If no matching minute is found within this many steps, the expression never matches (like "0 0 30 2 *")
+     */
+    private static final int MAX_ITERATIONS = 10000;
+
+    private final String expression;
+    private final long minutes;
+    private final long hours;
+    private final long daysOfMonth;
+    private final long months;
+    private final long daysOfWeek;
+    private final boolean dayOfMonthRestricted;
+    private final boolean dayOfWeekRestricted;
+
+    private CronExpression(String expression, String[] fields) {
+        this.expression = expression;
+        this.minutes = parseField(fields[0], 0, 59);
+        this.hours = parseField(fields[1], 0, 23);
+        this.daysOfMonth = parseField(fields[2], 1, 31);
+        this.months = parseField(fields[3], 1, 12);
+        long dow = parseField(fields[4], 0, 7);
+        // Both, 0 and 7 represent sunday
+        if ((dow & (1L | 1L << 7)) != 0) {
+            dow |= 1L | 1L << 7;
+        }
+        this.daysOfWeek = dow;
+        this.dayOfMonthRestricted = !fields[2].startsWith("*");
+        this.dayOfWeekRestricted = !fields[4].startsWith("*");
+    }
+
+    /**
+     * Parses the given cron expression.
+     *
+     * @param expression the expression to parse
+     * @return the parsed expression
+     * @throws IllegalArgumentException if the given expression is not a valid cron expression
+     */
+    public static CronExpression parse(String expression) {
+        if (expression == null) {
+            throw new IllegalArgumentException("A cron expression must not be null");
+        }
+        String effectiveExpression = expandShortcut(expression.trim());
+        String[] fields = effectiveExpression.split("\\s+");
+        if (fields.length != 5) {
+            throw new IllegalArgumentException(Strings.apply(
+                    "Invalid cron expression '%s': Expected five fields (minute hour day-of-month month day-of-week)",
+                    expression));
+        }
+        try {
+            return new CronExpression(expression.trim(), fields);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(Strings.apply("Invalid cron expression '%s': %s",
+                                                             expression,
+                                                             e.getMessage()), e);
+        }
+    }
+
+    private static String expandShortcut(String expression) {
+        if ("@hourly".equals(expression)) {
+            return "0 * * * *";
+        }
+        if ("@daily".equals(expression) || "@midnight".equals(expression)) {
+            return "0 0 * * *";
+        }
+        if ("@weekly".equals(expression)) {
+            return "0 0 * * 0";
+        }
+        if ("@monthly".equals(expression)) {
+            return "0 0 1 * *";
+        }
+        if ("@yearly".equals(expression) || "@annually".equals(expression)) {
+            return "0 0 1 1 *";
+        }
+        return expression;
+    }
+
+    /*
+     * Parses a field into a bit mask where bit n is set if the value n matches
+     */
+    private static long parseField(String field, int min, int max) {
+        long result = 0;
+        for (String part : field.split(",")) {
+            int step = 1;
+            int slash = part.indexOf('/');
+            if (slash >= 0) {
+                step = parseNumber(part.substring(slash + 1), 1, max);
+                part = part.substring(0, slash);
+            }
+            int from;
+            int to;
+            if ("*".equals(part)) {
+                from = min;
+                to = max;
+            } else {
+                int dash = part.indexOf('-');
+                if (dash >= 0) {
+                    from = parseNumber(part.substring(0, dash), min, max);
+                    to = parseNumber(part.substring(dash + 1), min, max);
+                } else {
+                    from = parseNumber(part, min, max);
+                    to = slash >= 0 ? max : from;
+                }
+            }
+            if (from > to) {
+                throw new IllegalArgumentException(Strings.apply("Invalid range: %s", part));
+            }
+            for (int i = from; i <= to; i += step) {
+                result |= 1L << i;
+            }
+        }
+        return result;
+    }
+
+    private static int parseNumber(String value, int min, int max) {
+        try {
+            int result = Integer.parseInt(value);
+            if (result < min || result > max) {
+                throw new IllegalArgumentException(Strings.apply("%d is not within %d..%d", result, min, max));
+            }
+            return result;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(Strings.apply("'%s' is not a number", value));
+        }
+    }
+
+    private static boolean matches(long mask, int value) {
+        return (mask & (1L << value)) != 0;
+    }
+
+    private boolean matchesDay(DateTime date) {
+        boolean dayOfMonth = matches(daysOfMonth, date.getDayOfMonth());
+        // Joda uses 1 (monday) to 7 (sunday) which is already fine for our mask
+        boolean dayOfWeek = matches(daysOfWeek, date.getDayOfWeek());
+        if (dayOfMonthRestricted && dayOfWeekRestricted) {
+            return dayOfMonth || dayOfWeek;
+        }
+        return dayOfMonth && dayOfWeek;
+    }
+
+    /**
+     * Computes the next point in time which matches this expression.
+     *
+     * @param after the timestamp (in milliseconds) after which the next match is searched
+     * @return the first matching timestamp (in milliseconds) which is strictly greater than <tt>after</tt> or
+     *         <tt>Long.MAX_VALUE</tt> if the expression never matches
+     */
+    public long next(long after) {
+        DateTime current = new DateTime(after).withSecondOfMinute(0).withMillisOfSecond(0).plusMinutes(1);
+        for (int i = 0; i < MAX_ITERATIONS; i++) {
+            if (!matches(months, current.getMonthOfYear())) {
+                current = current.withTimeAtStartOfDay().withDayOfMonth(1).plusMonths(1);
+            } else if (!matchesDay(current)) {
+                current = current.withTimeAtStartOfDay().plusDays(1);
+            } else if (!matches(hours, current.getHourOfDay())) {
+                current = current.plusHours(1).withMinuteOfHour(0);
+            } else if (!matches(minutes, current.getMinuteOfHour())) {
+                current = current.plusMinutes(1);
+            } else {
+                return current.getMillis();
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+}
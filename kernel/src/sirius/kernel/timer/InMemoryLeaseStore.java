@@ -0,0 +1,75 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.timer;
+
+import com.google.common.collect.Maps;
+import sirius.kernel.di.std.Register;
+
+import java.util.Map;
+
+/**
+ * Keeps all leases in memory.
+ * <p>
+ * This store only coordinates the nodes within a single JVM. It is used if no shared store is configured (so that
+ * each node executes all tasks) and permits to test the coordination of several nodes on a single machine.
+ * </p>
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ * @since 2014/02
+ */
+@Register(name = InMemoryLeaseStore.NAME, classes = LeaseStore.class)
+public class InMemoryLeaseStore implements LeaseStore {
+
+    /**
+     * Contains the name of this store as used in <tt>timer.leases.store</tt>
+     */
+    public static final String NAME = "memory";
+
+    private final Map<String, Lease> leases = Maps.newHashMap();
+
+    @Override
+    public synchronized Lease tryAcquire(String name, String owner, long expires) {
+        Lease current = leases.get(name);
+        long token = 1;
+        if (current != null) {
+            if (current.getOwner().equals(owner)) {
+                token = current.getToken();
+            } else if (!current.isExpired(System.currentTimeMillis())) {
+                return null;
+            } else {
+                token = current.getToken() + 1;
+            }
+        }
+        Lease lease = new Lease(name, owner, token, expires);
+        leases.put(name, lease);
+        return lease;
+    }
+
+    @Override
+    public synchronized void release(Lease lease) {
+        if (isHeldBy(leases.get(lease.getName()), lease)) {
+            leases.put(lease.getName(), new Lease(lease.getName(), lease.getOwner(), lease.getToken(), 0));
+        }
+    }
+
+    @Override
+    public synchronized boolean isValid(Lease lease) {
+        Lease current = leases.get(lease.getName());
+        return isHeldBy(current, lease) && !current.isExpired(System.currentTimeMillis());
+    }
+
+    /*
+     * Determines if the current lease was not passed on since the given one was acquired
+     */
+    private boolean isHeldBy(Lease current, Lease lease) {
+        return current != null &&
+                current.getToken() == lease.getToken() &&
+                current.getOwner().equals(lease.getOwner());
+    }
+}
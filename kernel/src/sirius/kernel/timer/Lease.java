@@ -0,0 +1,89 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.timer;
+
+/**
+ * Represents the exclusive right of a node to execute a {@link ClusterSingleton} task until the lease expires.
+ * <p>
+ * Each lease carries a fencing token, which is incremented each time the lease is passed on to another owner.
+ * Therefore a node which lost its lease (e.g. as it was paused for too long) can be detected by comparing the token
+ * with the current one, even if its clock is wrong.
+ * </p>
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ * @since 2014/02
+ */
+public class Lease {
+
+    private final String name;
+    private final String owner;
+    private final long token;
+    private final long expires;
+
+    /**
+     * Creates a new lease.
+     *
+     * @param name    the name of the lease
+     * @param owner   the name of the node which holds the lease
+     * @param token   the fencing token of the lease
+     * @param expires the timestamp (in milliseconds) when the lease expires
+     */
+    public Lease(String name, String owner, long token, long expires) {
+        this.name = name;
+        this.owner = owner;
+        this.token = token;
+        this.expires = expires;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the name of the node which holds the lease.
+     *
+     * @return the owner of the lease
+     */
+    public String getOwner() {
+        return owner;
+    }
+
+    /**
+     * Returns the fencing token of the lease.
+     *
+     * @return a number which is incremented each time the lease is acquired by another owner
+     */
+    public long getToken() {
+        return token;
+    }
+
+    /**
+     * Returns the timestamp when the lease expires.
+     *
+     * @return the expiry of the lease in milliseconds since epoch
+     */
+    public long getExpires() {
+        return expires;
+    }
+
+    /**
+     * Determines if the lease is expired at the given time.
+     *
+     * @param now the current timestamp in milliseconds
+     * @return <tt>true</tt> if the lease expired, <tt>false</tt> otherwise
+     */
+    public boolean isExpired(long now) {
+        return expires <= now;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + owner + ", token: " + token + ")";
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.timer;
+
+/**
+ * Stores the leases which determine which node executes a {@link ClusterSingleton} task.
+ * <p>
+ * Implementations are registered with a unique name for this interface and selected via
+ * <tt>timer.leases.store</tt>. To coordinate a cluster, the store has to be shared by all nodes (like a database).
+ * All operations must be atomic with regard to all nodes.
+ * </p>
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ * @since 2014/02
+ */
+public interface LeaseStore {
+
+    /**
+     * Tries to acquire or renew the lease with the given name.
+     * <p>
+     * The lease is granted if it doesn't exist yet, if it is expired or if it is already held by the given owner.
+     * The fencing token is incremented if the lease was held by another owner before.
+     * </p>
+     *
+     * @param name    the name of the lease
+     * @param owner   the name of the node which wants to hold the lease
+     * @param expires the timestamp (in milliseconds) until which the lease is held
+     * @return the acquired lease or <tt>null</tt> if the lease is held by another owner
+     * @throws Exception in case of an error while accessing the store
+     */
+    Lease tryAcquire(String name, String owner, long expires) throws Exception;
+
+    /**
+     * Releases the given lease, so that other nodes can acquire it immediately.
+     * <p>
+     * Nothing happens if the lease was already acquired by another owner.
+     * </p>
+     *
+     * @param lease the lease to release
+     * @throws Exception in case of an error while accessing the store
+     */
+    void release(Lease lease) throws Exception;
+
+    /**
+     * Determines if the given lease is still held, so that its owner can continue its work.
+     *
+     * @param lease the lease to check
+     * @return <tt>true</tt> if the lease is neither expired nor acquired by another owner, <tt>false</tt> otherwise
+     * @throws Exception in case of an error while accessing the store
+     */
+    boolean isValid(Lease lease) throws Exception;
+}
@@ -0,0 +1,248 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Describes when a {@link ScheduledTask} is executed.
+ * <p>
+ * A schedule is either based on a fixed interval (see {@link #every(long, java.util.concurrent.TimeUnit)}) or on a
+ * cron expression (see {@link #cron(String)}). Additionally a random jitter can be added to each execution (so that
+ * not all nodes of a cluster or all tasks with the same interval start at the very same time), a policy for missed
+ * executions can be specified and overlapping executions can be permitted.
+ * </p>
+ * <p>
+ * A schedule is created using fluent method calls:
+ * <code>Schedule.every(5, TimeUnit.MINUTES).withJitter(30, TimeUnit.SECONDS)</code>.
+ * </p>
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ * @since 2014/02
+ */
+public class Schedule {
+
+    /**
+     * Determines what happens if one or more executions were missed, as the system was paused or overloaded.
+     */
+    public static enum CatchUp {
+        /**
+         * Missed executions are dropped. If the task is fired after the following execution time already passed, it
+         * is not executed at all but waits for its next regular execution
+         */
+        SKIP,
+
+        /**
+         * The task is executed once, no matter how many executions were missed
+         */
+        RUN_ONCE,
+
+        /**
+         * The task is executed once for each missed execution (up to {@link TimerService#MAX_CATCH_UP_RUNS})
+         */
+        RUN_ALL
+    }
+
+    private final long interval;
+    private final CronExpression cron;
+    private long initialDelay = -1;
+    private long jitter;
+    private CatchUp catchUp = CatchUp.RUN_ONCE;
+    private boolean overlapAllowed;
+
+    private Schedule(long interval, CronExpression cron) {
+        this.interval = interval;
+        this.cron = cron;
+    }
+
+    /**
+     * Creates a schedule which executes a task in the given interval.
+     * <p>
+     * The first execution takes place once the interval has elapsed after the timer was started, unless a different
+     * delay is specified using {@link #startingAfter(long, java.util.concurrent.TimeUnit)}.
+     * </p>
+     *
+     * @param amount the length of the interval
+     * @param unit   the unit of <tt>amount</tt>
+     * @return a new schedule using the given interval
+     */
+    public static Schedule every(long amount, TimeUnit unit) {
+        long millis = unit.toMillis(amount);
+        if (millis <= 0) {
+            throw new IllegalArgumentException("The interval of a schedule must be at least one millisecond");
+        }
+        return new Schedule(millis, null);
+    }
+
+    /**
+     * Creates a schedule which executes a task whenever the given cron expression matches.
+     *
+     * @param expression the cron expression to use. See {@link CronExpression} for the supported syntax
+     * @return a new schedule using the given cron expression
+     * @throws IllegalArgumentException if the given expression is invalid
+     */
+    public static Schedule cron(String expression) {
+        return new Schedule(0, CronExpression.parse(expression));
+    }
+
+    /**
+     * Specifies the delay of the first execution for interval based schedules.
+     *
+     * @param amount the delay of the first execution after the timer was started
+     * @param unit   the unit of <tt>amount</tt>
+     * @return the schedule itself for fluent method calls
+     */
+    public Schedule startingAfter(long amount, TimeUnit unit) {
+        this.initialDelay = unit.toMillis(amount);
+        return this;
+    }
+
+    /**
+     * Specifies a maximal random delay which is added to each execution.
+     * <p>
+     * The jitter does not accumulate, as each execution time is computed based on the schedule alone.
+     * </p>
+     *
+     * @param amount the maximal random delay
+     * @param unit   the unit of <tt>amount</tt>
+     * @return the schedule itself for fluent method calls
+     */
+    public Schedule withJitter(long amount, TimeUnit unit) {
+        this.jitter = unit.toMillis(amount);
+        return this;
+    }
+
+    /**
+     * Specifies how missed executions are handled. The default is {@link CatchUp#RUN_ONCE}.
+     *
+     * @param catchUp the policy to use for missed executions
+     * @return the schedule itself for fluent method calls
+     */
+    public Schedule withCatchUp(CatchUp catchUp) {
+        this.catchUp = catchUp;
+        return this;
+    }
+
+    /**
+     * Permits to start an execution even if the previous one is still running.
+     * <p>
+     * By default, an execution is skipped if the previous one has not completed yet.
+     * </p>
+     *
+     * @return the schedule itself for fluent method calls
+     */
+    public Schedule allowOverlap() {
+        this.overlapAllowed = true;
+        return this;
+    }
+
+    /**
+     * Returns the maximal random delay added to each execution.
+     *
+     * @return the jitter in milliseconds
+     */
+    public long getJitter() {
+        return jitter;
+    }
+
+    /**
+     * Returns the policy used for missed executions.
+     *
+     * @return the catch up policy of this schedule
+     */
+    public CatchUp getCatchUp() {
+        return catchUp;
+    }
+
+    /**
+     * Determines if an execution may start while the previous one is still running.
+     *
+     * @return <tt>true</tt> if overlapping executions are permitted, <tt>false</tt> otherwise
+     */
+    public boolean isOverlapAllowed() {
+        return overlapAllowed;
+    }
+
+    /*
+     * Computes the first execution time (without jitter) if the timer is started at the given time
+     */
+    long first(long now) {
+        if (cron != null) {
+            return cron.next(now);
+        }
+        return now + (initialDelay >= 0 ? initialDelay : interval);
+    }
+
+    /*
+     * Computes the execution time (without jitter) which follows the given one
+     */
+    long next(long previous) {
+        if (cron != null) {
+            return cron.next(previous);
+        }
+        return previous + interval;
+    }
+
+    /*
+     * Computes the first execution time (without jitter) after now, which is aligned to the given previous one
+     */
+    long nextAfter(long previous, long now) {
+        if (cron != null) {
+            return cron.next(now);
+        }
+        if (previous > now) {
+            return previous;
+        }
+        return previous + ((now - previous) / interval + 1) * interval;
+    }
+
+    /*
+     * Counts the execution times (without jitter) from the given one up to now
+     */
+    long count(long from, long now) {
+        if (from > now) {
+            return 0;
+        }
+        if (cron == null) {
+            return (now - from) / interval + 1;
+        }
+        long result = 0;
+        for (long current = from; current <= now; current = cron.next(current)) {
+            result++;
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        if (cron != null) {
+            sb.append("cron ").append(cron);
+        } else {
+            sb.append("every ").append(formatMillis(interval));
+        }
+        if (jitter > 0) {
+            sb.append(" ~").append(formatMillis(jitter));
+        }
+        return sb.toString();
+    }
+
+    private static String formatMillis(long millis) {
+        if (millis % TimeUnit.HOURS.toMillis(1) == 0) {
+            return TimeUnit.MILLISECONDS.toHours(millis) + "h";
+        }
+        if (millis % TimeUnit.MINUTES.toMillis(1) == 0) {
+            return TimeUnit.MILLISECONDS.toMinutes(millis) + "m";
+        }
+        if (millis % TimeUnit.SECONDS.toMillis(1) == 0) {
+            return TimeUnit.MILLISECONDS.toSeconds(millis) + "s";
+        }
+        return millis + "ms";
+    }
+}
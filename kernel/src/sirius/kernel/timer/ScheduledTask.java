@@ -0,0 +1,36 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.timer;
+
+/**
+ * Classes implementing this interface are executed according to their own {@link Schedule}.
+ * <p>
+ * In contrast to the fixed intervals of {@link EveryMinute} and the like, this permits arbitrary intervals, cron
+ * expressions, jitter and the other options provided by <tt>Schedule</tt>.
+ * </p>
+ * <p>
+ * The implementing class must wear a {@link sirius.kernel.di.std.Register} annotation like:
+ * <code>@Register(classes = ScheduledTask.class)</code>
+ * </p>
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ * @since 2014/02
+ */
+public interface ScheduledTask extends TimedTask {
+
+    /**
+     * Returns the schedule which determines when the task is executed.
+     * <p>
+     * This is invoked once, when the {@link TimerService} is started.
+     * </p>
+     *
+     * @return the schedule of this task
+     */
+    Schedule getSchedule();
+}
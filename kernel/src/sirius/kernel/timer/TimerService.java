@@ -1,28 +1,52 @@
 package sirius.kernel.timer;
 
+import com.google.common.collect.Lists;
 import org.joda.time.DateTime;
 import sirius.kernel.Sirius;
 import sirius.kernel.async.Async;
+import sirius.kernel.async.CallContext;
+import sirius.kernel.commons.Strings;
+import sirius.kernel.commons.Watch;
+import sirius.kernel.di.GlobalContext;
 import sirius.kernel.di.Lifecycle;
 import sirius.kernel.di.PartCollection;
+import sirius.kernel.di.std.ConfigValue;
+import sirius.kernel.di.std.Context;
 import sirius.kernel.di.std.Parts;
 import sirius.kernel.di.std.Register;
 import sirius.kernel.health.Exceptions;
+import sirius.kernel.health.Histogram;
 import sirius.kernel.health.Log;
 import sirius.kernel.nls.NLS;
 
+import java.util.Collections;
 import java.util.Date;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Internal service which is responsible for executing timers.
  * <p>
  * Other than for statistical reasons, this class does not need to be called directly. It automatically
- * discovers all parts registered for one of the timer interfaces (<tt>EveryMinute</tt>, <tt>EveryTenMinutes</tt>,
- * <tt>EveryHour</tt>, <tt>EveryDay</tt>) and invokes them appropriately.
+ * discovers all parts registered for one of the timer interfaces (<tt>EveryTenSeconds</tt>, <tt>EveryMinute</tt>,
+ * <tt>EveryTenMinutes</tt>, <tt>EveryHour</tt>, <tt>EveryDay</tt> and <tt>ScheduledTask</tt>) and invokes them
+ * appropriately.
+ * </p>
+ * <p>
+ * Each task is scheduled on its own in a hashed {@link TimingWheel} according to its {@link Schedule}. Once a task
+ * is due, it is handed over to the <tt>timer</tt> executor. This executor uses a single thread, so that tasks
+ * (which might share state, like the cluster and system monitoring) never run concurrently to each other. If the
+ * previous execution of a task is still running, the execution is skipped (unless the schedule permits overlapping
+ * executions). If executions were missed (e.g. as the JVM was paused), the {@link Schedule.CatchUp} policy of the
+ * schedule determines how many executions are performed. The duration of each execution is recorded per task
+ * (see {@link #getTasks()}).
+ * </p>
+ * <p>
+ * Tasks wearing a {@link ClusterSingleton} annotation are only executed by the node which holds their {@link Lease}.
  * </p>
  * <p>
  * To access this class, a <tt>Part</tt> annotation can be used on a field of type <tt>TimerService</tt>.
@@ -37,53 +61,207 @@ public class TimerService implements Lifecycle {
     protected static final Log LOG = Log.get("timer");
     private static final String TIMER = "timer";
 
+    /**
+     * Contains the maximal number of executions performed at once for a task using {@link Schedule.CatchUp#RUN_ALL}
+     */
+    public static final int MAX_CATCH_UP_RUNS = 100;
+
+    /*
+     * Accuracy and size of the timing wheel. Using 512 buckets of 100ms, tasks due within the next 51.2 seconds
+     * are placed in the bucket in which they are executed
+     */
+    private static final long TICK_MILLIS = 100;
+    private static final int TICKS_PER_WHEEL = 512;
+
+    /*
+     * The interval based timers are first executed after this delay, once the system is started
+     */
+    private static final long INITIAL_DELAY_SECONDS = 10;
+
     @Parts(EveryTenSeconds.class)
     private PartCollection<EveryTenSeconds> everyTenSeconds;
-    private long lastTenSecondsExecution = 0;
 
     @Parts(EveryMinute.class)
     private PartCollection<EveryMinute> everyMinute;
-    private long lastOneMinuteExecution = 0;
 
     @Parts(EveryTenMinutes.class)
     private PartCollection<EveryTenMinutes> everyTenMinutes;
-    private long lastTenMinutesExecution = 0;
 
     @Parts(EveryHour.class)
     private PartCollection<EveryHour> everyHour;
-    private long lastHourExecution = 0;
 
     @Parts(EveryDay.class)
     private PartCollection<EveryDay> everyDay;
 
-    private Timer timer;
+    @Parts(ScheduledTask.class)
+    private PartCollection<ScheduledTask> scheduledTasks;
+
+    @ConfigValue("timer.leases.store")
+    private String leaseStoreName;
+
+    @Context
+    private GlobalContext ctx;
+
+    private LeaseStore leaseStore;
+
+    /*
+     * Contains the lease held by the task executed by the current thread
+     */
+    private static final ThreadLocal<Lease> currentLease = new ThreadLocal<Lease>();
+
+    private volatile TimingWheel wheel;
+    private volatile List<TaskInfo> tasks;
     private ReentrantLock timerLock = new ReentrantLock();
 
-    private class InnerTimerTask extends TimerTask {
+    /**
+     * Represents a task which is executed by the timer along with its execution statistics.
+     */
+    public static class TaskInfo {
+        private final TimedTask task;
+        private final Class<? extends TimedTask> type;
+        private final Schedule schedule;
+        private final AtomicInteger active = new AtomicInteger();
+        private final Histogram durations = new Histogram();
+        private final AtomicLong executions = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong skipped = new AtomicLong();
+        private final AtomicLong overlaps = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicLong leaseMisses = new AtomicLong();
+        private final String leaseName;
+        private volatile Lease lease;
+        private volatile long lastExecution;
+        private volatile long nextExecution;
+        private long base;
 
-        @Override
-        public void run() {
-            try {
-                runTenSecondTimers();
-                if (TimeUnit.MINUTES
-                            .convert(System.currentTimeMillis() - lastOneMinuteExecution, TimeUnit.MILLISECONDS) >= 1) {
-                    runOneMinuteTimers();
-                }
-                if (TimeUnit.MINUTES
-                            .convert(System.currentTimeMillis() - lastTenMinutesExecution,
-                                     TimeUnit.MILLISECONDS) >= 10) {
-                    runTenMinuteTimers();
-                }
-                if (TimeUnit.MINUTES
-                            .convert(System.currentTimeMillis() - lastHourExecution, TimeUnit.MILLISECONDS) >= 60) {
-                    runOneHourTimers();
-                    runEveryDayTimers(false);
-                }
-            } catch (Throwable t) {
-                Exceptions.handle(LOG, t);
+        TaskInfo(TimedTask task, Class<? extends TimedTask> type, Schedule schedule) {
+            this.task = task;
+            this.type = type;
+            this.schedule = schedule;
+            ClusterSingleton singleton = task.getClass().getAnnotation(ClusterSingleton.class);
+            if (singleton == null) {
+                this.leaseName = null;
+            } else {
+                this.leaseName = Strings.isFilled(singleton.value()) ? singleton.value() : task.getClass().getName();
             }
         }
 
+        /**
+         * Returns the name of the task.
+         *
+         * @return the class name of the task
+         */
+        public String getName() {
+            return task.getClass().getName();
+        }
+
+        /**
+         * Returns the timer interface for which the task was registered.
+         *
+         * @return the interface (like <tt>EveryMinute</tt>) which determined the schedule of the task
+         */
+        public Class<? extends TimedTask> getType() {
+            return type;
+        }
+
+        public Schedule getSchedule() {
+            return schedule;
+        }
+
+        /**
+         * Returns the durations of all executions of this task in milliseconds.
+         *
+         * @return the histogram of the execution times
+         */
+        public Histogram getDurations() {
+            return durations;
+        }
+
+        public long getExecutions() {
+            return executions.get();
+        }
+
+        /**
+         * Returns the number of executions which threw an exception.
+         *
+         * @return the number of failed executions
+         */
+        public long getFailures() {
+            return failures.get();
+        }
+
+        /**
+         * Returns the number of executions which were missed and not caught up according to the
+         * {@link Schedule.CatchUp} policy.
+         *
+         * @return the number of skipped executions
+         */
+        public long getSkipped() {
+            return skipped.get();
+        }
+
+        /**
+         * Returns the number of executions which were skipped as the previous execution was still running.
+         *
+         * @return the number of skipped overlapping executions
+         */
+        public long getOverlaps() {
+            return overlaps.get();
+        }
+
+        /**
+         * Returns the number of executions which were dropped as the <tt>timer</tt> executor was overloaded.
+         *
+         * @return the number of dropped executions
+         */
+        public long getDropped() {
+            return dropped.get();
+        }
+
+        /**
+         * Determines if the task is only executed by the node holding its lease.
+         *
+         * @return <tt>true</tt> if the task wears a {@link ClusterSingleton} annotation, <tt>false</tt> otherwise
+         */
+        public boolean isClusterSingleton() {
+            return leaseName != null;
+        }
+
+        /**
+         * Returns the number of executions which were skipped as another node held the lease of this task.
+         *
+         * @return the number of executions left to other nodes
+         */
+        public long getLeaseMisses() {
+            return leaseMisses.get();
+        }
+
+        /**
+         * Returns the lease which was acquired by this node for the last execution.
+         *
+         * @return the last lease acquired for this task or <tt>null</tt> if it was never acquired by this node
+         */
+        public Lease getLease() {
+            return lease;
+        }
+
+        /**
+         * Returns the timestamp of the last execution.
+         *
+         * @return the timestamp in milliseconds when the last execution started or 0 if the task didn't run yet
+         */
+        public long getLastExecution() {
+            return lastExecution;
+        }
+
+        /**
+         * Returns the timestamp of the next scheduled execution.
+         *
+         * @return the timestamp in milliseconds of the next execution or 0 if the task is not scheduled
+         */
+        public long getNextExecution() {
+            return nextExecution;
+        }
     }
 
     /**
@@ -93,10 +271,7 @@ public class TimerService implements Lifecycle {
      *         run yet.
      */
     public String getLastTenSecondsExecution() {
-        if (lastTenSecondsExecution == 0) {
-            return "-";
-        }
-        return NLS.toUserString(new Date(lastTenSecondsExecution), true);
+        return getLastExecution(EveryTenSeconds.class);
     }
 
     /**
@@ -106,10 +281,7 @@ public class TimerService implements Lifecycle {
      *         run yet.
      */
     public String getLastOneMinuteExecution() {
-        if (lastOneMinuteExecution == 0) {
-            return "-";
-        }
-        return NLS.toUserString(new Date(lastOneMinuteExecution), true);
+        return getLastExecution(EveryMinute.class);
     }
 
     /**
@@ -119,10 +291,7 @@ public class TimerService implements Lifecycle {
      *         run yet.
      */
     public String getLastTenMinutesExecution() {
-        if (lastTenMinutesExecution == 0) {
-            return "-";
-        }
-        return NLS.toUserString(new Date(lastTenMinutesExecution), true);
+        return getLastExecution(EveryTenMinutes.class);
     }
 
     /**
@@ -132,25 +301,94 @@ public class TimerService implements Lifecycle {
      *         run yet.
      */
     public String getLastHourExecution() {
-        if (lastHourExecution == 0) {
+        return getLastExecution(EveryHour.class);
+    }
+
+    private String getLastExecution(Class<? extends TimedTask> type) {
+        long lastExecution = 0;
+        for (TaskInfo info : getTasks()) {
+            if (info.type == type) {
+                lastExecution = Math.max(lastExecution, info.lastExecution);
+            }
+        }
+        if (lastExecution == 0) {
             return "-";
         }
-        return NLS.toUserString(new Date(lastHourExecution), true);
+        return NLS.toUserString(new Date(lastExecution), true);
+    }
+
+    /**
+     * Returns all tasks known to the timer along with their execution statistics.
+     *
+     * @return a list of all tasks executed by the timer
+     */
+    public List<TaskInfo> getTasks() {
+        if (tasks == null) {
+            loadTasks();
+        }
+        return Collections.unmodifiableList(tasks);
     }
 
+    private synchronized void loadTasks() {
+        if (tasks == null) {
+            List<TaskInfo> result = Lists.newArrayList();
+            addTasks(result, everyTenSeconds, EveryTenSeconds.class, 10, TimeUnit.SECONDS);
+            addTasks(result, everyMinute, EveryMinute.class, 1, TimeUnit.MINUTES);
+            addTasks(result, everyTenMinutes, EveryTenMinutes.class, 10, TimeUnit.MINUTES);
+            addTasks(result, everyHour, EveryHour.class, 1, TimeUnit.HOURS);
+            for (EveryDay task : everyDay.getParts()) {
+                String key = "timer.daily." + task.getConfigKeyName();
+                if (!Sirius.getConfig().hasPath(key)) {
+                    LOG.WARN("Skipping daily timer %s as config key '%s' is missing!", task.getClass().getName(), key);
+                } else {
+                    result.add(new TaskInfo(task,
+                                            EveryDay.class,
+                                            Schedule.cron("0 " + Sirius.getConfig().getInt(key) + " * * *")));
+                }
+            }
+            for (ScheduledTask task : scheduledTasks.getParts()) {
+                try {
+                    result.add(new TaskInfo(task, ScheduledTask.class, task.getSchedule()));
+                } catch (Throwable e) {
+                    Exceptions.handle()
+                              .to(LOG)
+                              .error(e)
+                              .withSystemErrorMessage("Cannot determine the schedule of %s: %s (%s)",
+                                                      task.getClass().getName())
+                              .handle();
+                }
+            }
+            tasks = result;
+        }
+    }
+
+    private <T extends TimedTask> void addTasks(List<TaskInfo> result,
+                                                PartCollection<T> parts,
+                                                Class<T> type,
+                                                long interval,
+                                                TimeUnit unit) {
+        for (T task : parts.getParts()) {
+            result.add(new TaskInfo(task,
+                                    type,
+                                    Schedule.every(interval, unit)
+                                            .startingAfter(INITIAL_DELAY_SECONDS, TimeUnit.SECONDS)));
+        }
+    }
 
     @Override
     public void started() {
         try {
             timerLock.lock();
             try {
-                if (timer == null) {
-                    timer = new Timer(true);
-                } else {
-                    timer.cancel();
-                    timer = new Timer(true);
+                if (wheel != null) {
+                    wheel.stop();
+                }
+                wheel = new TimingWheel("timer-wheel", TICK_MILLIS, TimeUnit.MILLISECONDS, TICKS_PER_WHEEL);
+                long now = System.currentTimeMillis();
+                for (TaskInfo info : getTasks()) {
+                    start(info, now);
                 }
-                timer.schedule(new InnerTimerTask(), 1000 * 10, 1000 * 10);
+                wheel.start();
             } finally {
                 timerLock.unlock();
             }
@@ -164,9 +402,11 @@ public class TimerService implements Lifecycle {
         try {
             timerLock.lock();
             try {
-                if (timer != null) {
-                    timer.cancel();
+                if (wheel != null) {
+                    wheel.stop();
+                    wheel = null;
                 }
+                releaseLeases();
             } finally {
                 timerLock.unlock();
             }
@@ -180,62 +420,259 @@ public class TimerService implements Lifecycle {
         return "timer (System Timer Services)";
     }
 
-    /**
-     * Executes all one minute timers (implementing <tt>EveryTenSeconds</tt>) now (out of schedule).
+    /*
+     * Schedules the first execution of the given task as if the timer was started at the given time
      */
-    public void runTenSecondTimers() {
-        for (final TimedTask task : everyTenSeconds.getParts()) {
-            executeTask(task);
+    void start(TaskInfo info, long now) {
+        info.base = info.schedule.first(now);
+        schedule(info, now);
+    }
+
+    /*
+     * Schedules the next execution (info.base plus jitter) of the given task in the timing wheel
+     */
+    private void schedule(final TaskInfo info, long now) {
+        if (info.base == Long.MAX_VALUE) {
+            LOG.WARN("The schedule '%s' of %s never matches!", info.schedule, info.getName());
+            info.nextExecution = 0;
+            return;
         }
-        lastTenSecondsExecution = System.currentTimeMillis();
+        long jitter = info.schedule.getJitter();
+        info.nextExecution = info.base + (jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter + 1) : 0);
+        armTimeout(info, now);
     }
 
-    /**
-     * Executes all one minute timers (implementing <tt>EveryMinute</tt>) now (out of schedule).
+    private void armTimeout(final TaskInfo info, long now) {
+        TimingWheel currentWheel = wheel;
+        if (currentWheel != null) {
+            currentWheel.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    fire(info, System.currentTimeMillis());
+                }
+            }, info.nextExecution - now, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /*
+     * Invoked by the timing wheel once a task is due. Determines the number of executions, schedules the next one and
+     * hands the task over to the executor.
      */
-    public void runOneMinuteTimers() {
-        for (final TimedTask task : everyMinute.getParts()) {
-            executeTask(task);
+    void fire(TaskInfo info, long now) {
+        if (now < info.nextExecution - TICK_MILLIS) {
+            // The system clock was set back - wait until the execution is really due
+            armTimeout(info, now);
+            return;
+        }
+        int missed = 0;
+        long next = info.schedule.next(info.base);
+        while (next <= now && missed < MAX_CATCH_UP_RUNS) {
+            missed++;
+            next = info.schedule.next(next);
+        }
+        if (next <= now) {
+            // Executions beyond MAX_CATCH_UP_RUNS are always skipped
+            info.skipped.addAndGet(info.schedule.count(next, now));
+            next = info.schedule.nextAfter(next, now);
+        }
+        int runs = 1;
+        if (missed > 0) {
+            if (info.schedule.getCatchUp() == Schedule.CatchUp.SKIP) {
+                LOG.FINE("Skipping %s as %d executions were missed", info.getName(), missed);
+                info.skipped.addAndGet(missed + 1);
+                runs = 0;
+            } else if (info.schedule.getCatchUp() == Schedule.CatchUp.RUN_ONCE) {
+                info.skipped.addAndGet(missed);
+            } else {
+                runs += missed;
+            }
+        }
+        info.base = next;
+        schedule(info, now);
+        if (runs > 0) {
+            execute(info, runs);
+        }
+    }
+
+    /*
+     * Hands the given task over to the executor, unless the previous execution is still active
+     */
+    private void execute(final TaskInfo info, final int runs) {
+        if (info.schedule.isOverlapAllowed()) {
+            info.active.incrementAndGet();
+        } else if (!info.active.compareAndSet(0, 1)) {
+            LOG.FINE("Skipping %s as the previous execution is still active", info.getName());
+            info.overlaps.addAndGet(runs);
+            return;
         }
-        lastOneMinuteExecution = System.currentTimeMillis();
+        submit(info, runs);
     }
 
-    private void executeTask(final TimedTask task) {
+    /*
+     * Hands the given task over to the timer executor
+     */
+    void submit(final TaskInfo info, final int runs) {
         Async.executor(TIMER).start(new Runnable() {
             @Override
             public void run() {
-                try {
-                    task.runTimer();
-                } catch (Throwable t) {
-                    Exceptions.handle(LOG, t);
-                }
+                perform(info, runs);
             }
         }).dropOnOverload(new Runnable() {
             @Override
             public void run() {
-                LOG.INFO("Dropping timer tasks due to system overload!");
+                info.active.decrementAndGet();
+                info.dropped.addAndGet(runs);
+                LOG.INFO("Dropping timer task %s due to system overload!", info.getName());
             }
         }).execute();
     }
 
+    /*
+     * Executes the given task the given number of times and marks it as no longer active
+     */
+    void perform(TaskInfo info, int runs) {
+        try {
+            for (int i = 0; i < runs; i++) {
+                runTask(info);
+            }
+        } finally {
+            info.active.decrementAndGet();
+        }
+    }
+
+    private void runTask(TaskInfo info) {
+        if (info.leaseName != null) {
+            Lease lease = acquireLease(info);
+            if (lease == null) {
+                info.leaseMisses.incrementAndGet();
+                return;
+            }
+            currentLease.set(lease);
+        }
+        Watch w = Watch.start();
+        info.lastExecution = System.currentTimeMillis();
+        try {
+            info.task.runTimer();
+        } catch (Throwable t) {
+            info.failures.incrementAndGet();
+            Exceptions.handle(LOG, t);
+        } finally {
+            info.durations.addValue(w.elapsedMillis());
+            info.executions.incrementAndGet();
+            currentLease.remove();
+        }
+    }
+
+    /*
+     * Tries to acquire the lease of the given task. The lease is held until shortly before the next execution is
+     * due, so that the node which holds the lease also gets it the next time, while other nodes whose timers fire
+     * a bit later still see the lease as taken.
+     */
+    private Lease acquireLease(TaskInfo info) {
+        long now = System.currentTimeMillis();
+        long expires = now + Math.max(TICK_MILLIS, (info.nextExecution - now) * 4 / 5);
+        try {
+            Lease lease = getLeaseStore().tryAcquire(info.leaseName, CallContext.getNodeName(), expires);
+            if (lease == null) {
+                LOG.FINE("Skipping %s as the lease is held by another node", info.getName());
+            } else {
+                info.lease = lease;
+            }
+            return lease;
+        } catch (Throwable e) {
+            Exceptions.handle()
+                      .to(LOG)
+                      .error(e)
+                      .withSystemErrorMessage("Cannot acquire the lease for %s - skipping execution: %s (%s)",
+                                              info.getName())
+                      .handle();
+            return null;
+        }
+    }
+
+    /*
+     * Releases all leases held by this node so that other nodes can take over immediately
+     */
+    private void releaseLeases() {
+        for (TaskInfo info : getTasks()) {
+            Lease lease = info.lease;
+            if (lease != null) {
+                try {
+                    getLeaseStore().release(lease);
+                } catch (Throwable e) {
+                    Exceptions.handle(LOG, e);
+                }
+                info.lease = null;
+            }
+        }
+    }
+
+    /**
+     * Returns the lease store selected by <tt>timer.leases.store</tt>.
+     *
+     * @return the store used to coordinate {@link ClusterSingleton} tasks
+     */
+    public LeaseStore getLeaseStore() {
+        if (leaseStore == null) {
+            LeaseStore store = ctx.getPart(leaseStoreName, LeaseStore.class);
+            if (store == null) {
+                LOG.WARN("Unknown lease store '%s' - using '%s'. Cluster singletons will run on each node!",
+                         leaseStoreName,
+                         InMemoryLeaseStore.NAME);
+                store = ctx.findPart(InMemoryLeaseStore.NAME, LeaseStore.class);
+            }
+            leaseStore = store;
+        }
+        return leaseStore;
+    }
+
+    /**
+     * Returns the lease held by the {@link ClusterSingleton} task which is executed by the current thread.
+     *
+     * @return the lease of the currently executed task or <tt>null</tt> if the current thread doesn't execute a
+     *         cluster singleton task
+     */
+    public static Lease getCurrentLease() {
+        return currentLease.get();
+    }
+
+    /*
+     * Executes all tasks of the given type now (out of schedule)
+     */
+    private void runTasks(Class<? extends TimedTask> type) {
+        for (TaskInfo info : getTasks()) {
+            if (info.type == type) {
+                execute(info, 1);
+            }
+        }
+    }
+
+    /**
+     * Executes all ten second timers (implementing <tt>EveryTenSeconds</tt>) now (out of schedule).
+     */
+    public void runTenSecondTimers() {
+        runTasks(EveryTenSeconds.class);
+    }
+
+    /**
+     * Executes all one minute timers (implementing <tt>EveryMinute</tt>) now (out of schedule).
+     */
+    public void runOneMinuteTimers() {
+        runTasks(EveryMinute.class);
+    }
+
     /**
      * Executes all ten minutes timers (implementing <tt>EveryTenMinutes</tt>) now (out of schedule).
      */
     public void runTenMinuteTimers() {
-        for (final TimedTask task : everyTenMinutes.getParts()) {
-            executeTask(task);
-        }
-        lastTenMinutesExecution = System.currentTimeMillis();
+        runTasks(EveryTenMinutes.class);
     }
 
     /**
      * Executes all one hour timers (implementing <tt>EveryHour</tt>) now (out of schedule).
      */
     public void runOneHourTimers() {
-        for (final TimedTask task : everyHour.getParts()) {
-            executeTask(task);
-        }
-        lastHourExecution = System.currentTimeMillis();
+        runTasks(EveryHour.class);
     }
 
     /**
@@ -245,19 +682,29 @@ public class TimerService implements Lifecycle {
      *                      hour of day to execute this task, or if it should be executed in any case (<tt>true</tt>).
      */
     public void runEveryDayTimers(boolean outOfSchedule) {
-        for (final EveryDay task : everyDay.getParts()) {
-            int hour = -1;
-            if (!Sirius.getConfig().hasPath("timer.daily." + task.getConfigKeyName())) {
-                LOG.WARN("Skipping daily timer %s as config key '%s' is missing!",
-                         task.getClass().getName(),
-                         "timer.daily." + task.getConfigKeyName());
-            } else {
-                if (outOfSchedule || Sirius.getConfig()
-                                           .getInt("timer.daily." + task.getConfigKeyName()) == new DateTime().getHourOfDay()) {
-                    executeTask(task);
+        for (TaskInfo info : getTasks()) {
+            if (info.type == EveryDay.class) {
+                String key = "timer.daily." + ((EveryDay) info.task).getConfigKeyName();
+                if (outOfSchedule || Sirius.getConfig().getInt(key) == new DateTime().getHourOfDay()) {
+                    execute(info, 1);
                 }
             }
         }
     }
 
+    /**
+     * Executes the given scheduled task now (out of schedule).
+     *
+     * @param name the class name of the task to execute
+     * @return <tt>true</tt> if a task with the given name was found, <tt>false</tt> otherwise
+     */
+    public boolean runTask(String name) {
+        for (TaskInfo info : getTasks()) {
+            if (info.getName().equals(name)) {
+                execute(info, 1);
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -0,0 +1,212 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.timer;
+
+import sirius.kernel.health.Exceptions;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A hashed timing wheel which invokes tasks after a given delay.
+ * <p>
+ * The wheel consists of a fixed number of buckets. Each tick (e.g. every 100ms) a worker thread advances to the next
+ * bucket and runs all tasks in it which are due. A task with a delay longer than one revolution of the wheel is put
+ * into the bucket of its deadline along with the number of remaining rounds. Therefore scheduling and cancelling a
+ * task are constant time operations, independent of the number of scheduled tasks. The price to pay is that tasks
+ * are executed with an accuracy of one tick.
+ * </p>
+ * <p>
+ * Tasks are run by the worker thread itself, so they must not block but rather hand over any real work to an
+ * executor.
+ * </p>
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ * @since 2014/02
+ */
+class TimingWheel implements Runnable {
+
+    /**
+     * Represents a task which was scheduled in the wheel.
+     */
+    static class Timeout {
+        private final Runnable task;
+        private final long deadline;
+        private long remainingRounds;
+        private volatile boolean cancelled;
+
+        /*
+         * Timeouts in a bucket form a double linked list, which is only accessed by the worker thread
+         */
+        private Timeout next;
+        private Timeout prev;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Prevents the task from being run, if it didn't run yet.
+         */
+        void cancel() {
+            cancelled = true;
+        }
+    }
+
+    /*
+     * Contains all timeouts of a slot of the wheel
+     */
+    private static class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        private void add(Timeout timeout) {
+            if (tail == null) {
+                head = timeout;
+                tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        private Timeout remove(Timeout timeout) {
+            Timeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            } else {
+                head = next;
+            }
+            if (next != null) {
+                next.prev = timeout.prev;
+            } else {
+                tail = timeout.prev;
+            }
+            timeout.next = null;
+            timeout.prev = null;
+            return next;
+        }
+    }
+
+    private final Bucket[] wheel;
+    private final int mask;
+    private final long tickNanos;
+    private final long startTime = System.nanoTime();
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<Timeout>();
+    private final Thread worker;
+    private volatile boolean running;
+
+    /**
+     * Creates a new timing wheel.
+     *
+     * @param name          the name of the worker thread
+     * @param tickDuration  the duration of a tick (which is the accuracy of the wheel)
+     * @param unit          the unit of <tt>tickDuration</tt>
+     * @param ticksPerWheel the number of buckets. Will be rounded up to the next power of two
+     */
+    TimingWheel(String name, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        int size = Integer.highestOneBit(Math.max(2, ticksPerWheel - 1)) << 1;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.tickNanos = Math.max(1, unit.toNanos(tickDuration));
+        this.worker = new Thread(this, name);
+        this.worker.setDaemon(true);
+    }
+
+    /**
+     * Starts the worker thread.
+     */
+    void start() {
+        running = true;
+        worker.start();
+    }
+
+    /**
+     * Stops the worker thread. All tasks which did not run yet are discarded.
+     */
+    void stop() {
+        running = false;
+        LockSupport.unpark(worker);
+    }
+
+    /**
+     * Schedules the given task to be run after the given delay.
+     *
+     * @param task  the task to run. This must not block as it is run by the worker thread.
+     * @param delay the delay after which the task is run. Negative values are treated as 0
+     * @param unit  the unit of <tt>delay</tt>
+     * @return a handle which can be used to cancel the task
+     */
+    Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        Timeout timeout = new Timeout(task, System.nanoTime() - startTime + Math.max(0, unit.toNanos(delay)));
+        pending.add(timeout);
+        return timeout;
+    }
+
+    @Override
+    public void run() {
+        long tick = 0;
+        while (running) {
+            long deadline = tickNanos * (tick + 1);
+            long sleepNanos = deadline - (System.nanoTime() - startTime);
+            if (sleepNanos > 0) {
+                LockSupport.parkNanos(this, sleepNanos);
+                continue;
+            }
+            transferPending(tick);
+            expire(wheel[(int) (tick & mask)], deadline);
+            tick++;
+        }
+    }
+
+    /*
+     * Moves all newly scheduled timeouts into their bucket
+     */
+    private void transferPending(long tick) {
+        Timeout timeout = pending.poll();
+        while (timeout != null) {
+            if (!timeout.cancelled) {
+                long ticks = timeout.deadline / tickNanos;
+                timeout.remainingRounds = (ticks - tick) / wheel.length;
+                wheel[(int) (Math.max(ticks, tick) & mask)].add(timeout);
+            }
+            timeout = pending.poll();
+        }
+    }
+
+    /*
+     * Runs all timeouts of the given bucket which are due and counts down the remaining rounds of all others
+     */
+    private void expire(Bucket bucket, long deadline) {
+        Timeout timeout = bucket.head;
+        while (timeout != null) {
+            if (timeout.cancelled) {
+                timeout = bucket.remove(timeout);
+            } else if (timeout.remainingRounds <= 0 && timeout.deadline <= deadline) {
+                Timeout current = timeout;
+                timeout = bucket.remove(timeout);
+                try {
+                    current.task.run();
+                } catch (Throwable e) {
+                    Exceptions.handle(TimerService.LOG, e);
+                }
+            } else {
+                timeout.remainingRounds--;
+                timeout = timeout.next;
+            }
+        }
+    }
+}
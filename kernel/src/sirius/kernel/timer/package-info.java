@@ -11,7 +11,10 @@
  * <p>
  *     Provides a {@link sirius.kernel.timer.TimerService} which executes all parts in the
  *     {@link sirius.kernel.di.GlobalContext}, registered for one of the timer interfaces (<tt>EveryMinute</tt>,
- *     <tt>EveryTenMinutes</tt>, <tt>EveryHour</tt>, <tt>EveryDay</tt>) in their appropriate interval.
+ *     <tt>EveryTenMinutes</tt>, <tt>EveryHour</tt>, <tt>EveryDay</tt>) in their appropriate interval. Tasks which
+ *     need arbitrary intervals or cron expressions can implement {@link sirius.kernel.timer.ScheduledTask} and
+ *     provide their own {@link sirius.kernel.timer.Schedule}. Tasks wearing a
+ *     {@link sirius.kernel.timer.ClusterSingleton} annotation are only executed by one node of the cluster.
  * </p>
  * <p>
  *     As this framework is based on the dependency injection framework, the classes only need to implement the
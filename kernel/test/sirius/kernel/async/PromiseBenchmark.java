@@ -0,0 +1,180 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.async;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * JMH benchmark comparing handler registration and completion of {@link Promise} against the previous,
+ * unsynchronized implementation.
+ * <p>
+ * Run {@link #main(String[])} to execute all benchmarks with 1, 2, 4, 8, 16, 32 and 64 contending threads.
+ * Note that the legacy implementation may lose handlers or fail with a
+ * {@link java.util.ConcurrentModificationException} under contention - these errors are counted as regular
+ * operations to keep the benchmark running.
+ * </p>
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ */
+@State(Scope.Benchmark)
+public class PromiseBenchmark {
+
+    /*
+     * Number of handlers registered on a shared promise before it is completed and replaced
+     */
+    private static final int HANDLERS_PER_PROMISE = 64;
+
+    /*
+     * Copy of the previous implementation which keeps its state in plain fields
+     */
+    static class LegacyPromise<V> {
+        private V value;
+        private boolean completed;
+        private List<CompletionHandler<V>> handlers = new ArrayList<CompletionHandler<V>>(1);
+
+        public void success(V value) {
+            this.value = value;
+            this.completed = true;
+            for (CompletionHandler<V> handler : handlers) {
+                try {
+                    handler.onSuccess(value);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+
+        public LegacyPromise<V> onComplete(CompletionHandler<V> handler) {
+            if (completed) {
+                try {
+                    handler.onSuccess(value);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            } else {
+                handlers.add(handler);
+            }
+            return this;
+        }
+    }
+
+    private static final CompletionHandler<Object> NOOP = new CompletionHandler<Object>() {
+        @Override
+        public void onSuccess(Object value) throws Exception {
+        }
+
+        @Override
+        public void onFailure(Throwable throwable) throws Exception {
+        }
+    };
+
+    private Promise<Object> completedPromise;
+    private LegacyPromise<Object> completedLegacyPromise;
+    private AtomicReference<Promise<Object>> currentPromise;
+    private AtomicReference<LegacyPromise<Object>> currentLegacyPromise;
+
+    /**
+     * Per thread state which determines when a thread completes the shared promise.
+     */
+    @State(Scope.Thread)
+    public static class ThreadState {
+        int registrations;
+    }
+
+    @Setup
+    public void setup() {
+        completedPromise = new Promise<Object>();
+        completedPromise.success(this);
+        completedLegacyPromise = new LegacyPromise<Object>();
+        completedLegacyPromise.success(this);
+        currentPromise = new AtomicReference<Promise<Object>>(new Promise<Object>());
+        currentLegacyPromise = new AtomicReference<LegacyPromise<Object>>(new LegacyPromise<Object>());
+    }
+
+    @Benchmark
+    public Object registerOnCompleted() {
+        return completedPromise.onComplete(NOOP);
+    }
+
+    @Benchmark
+    public Object registerOnCompletedLegacy() {
+        return completedLegacyPromise.onComplete(NOOP);
+    }
+
+    @Benchmark
+    public void registerAndComplete(ThreadState threadState, Blackhole blackhole) {
+        Promise<Object> promise = currentPromise.get();
+        promise.onComplete(NOOP);
+        if (++threadState.registrations % HANDLERS_PER_PROMISE == 0) {
+            currentPromise.compareAndSet(promise, new Promise<Object>());
+            promise.success(threadState);
+        }
+        blackhole.consume(promise);
+    }
+
+    @Benchmark
+    public void registerAndCompleteLegacy(ThreadState threadState, Blackhole blackhole) {
+        LegacyPromise<Object> promise = currentLegacyPromise.get();
+        try {
+            promise.onComplete(NOOP);
+            if (++threadState.registrations % HANDLERS_PER_PROMISE == 0) {
+                currentLegacyPromise.compareAndSet(promise, new LegacyPromise<Object>());
+                promise.success(threadState);
+            }
+        } catch (RuntimeException e) {
+            blackhole.consume(e);
+        }
+        blackhole.consume(promise);
+    }
+
+    @Benchmark
+    public Object createAndComplete() {
+        Promise<Object> promise = new Promise<Object>();
+        promise.onComplete(NOOP);
+        promise.success(null);
+        return promise;
+    }
+
+    @Benchmark
+    public Object createAndCompleteLegacy() {
+        LegacyPromise<Object> promise = new LegacyPromise<Object>();
+        promise.onComplete(NOOP);
+        promise.success(null);
+        return promise;
+    }
+
+    /**
+     * Runs all benchmarks of this class with an increasing number of threads.
+     *
+     * @param args not used
+     * @throws Exception in case of an error while running the benchmarks
+     */
+    public static void main(String[] args) throws Exception {
+        for (int threads = 1; threads <= 64; threads *= 2) {
+            Options opt = new OptionsBuilder().include(PromiseBenchmark.class.getSimpleName())
+                                              .threads(threads)
+                                              .forks(1)
+                                              .warmupIterations(5)
+                                              .measurementIterations(5)
+                                              .build();
+            new Runner(opt).run();
+        }
+    }
+}
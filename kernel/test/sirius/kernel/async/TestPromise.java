@@ -0,0 +1,150 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.async;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+import sirius.kernel.commons.Callback;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link Promise}
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ */
+public class TestPromise {
+
+    @Test
+    public void handlersAreNotifiedExactlyOnce() throws Exception {
+        for (int run = 0; run < 100; run++) {
+            final Promise<Integer> promise = new Promise<Integer>();
+            final AtomicInteger notifications = new AtomicInteger();
+            final CountDownLatch start = new CountDownLatch(1);
+            final int numThreads = 4;
+            final int handlersPerThread = 100;
+            List<Thread> threads = Lists.newArrayList();
+            for (int i = 0; i < numThreads; i++) {
+                Thread t = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        for (int j = 0; j < handlersPerThread; j++) {
+                            promise.onComplete(new CompletionHandler<Integer>() {
+                                @Override
+                                public void onSuccess(Integer value) throws Exception {
+                                    notifications.incrementAndGet();
+                                }
+
+                                @Override
+                                public void onFailure(Throwable throwable) throws Exception {
+                                }
+                            });
+                        }
+                    }
+                });
+                t.start();
+                threads.add(t);
+            }
+            start.countDown();
+            promise.success(42);
+            promise.success(43);
+            for (Thread t : threads) {
+                t.join();
+            }
+            assertEquals(numThreads * handlersPerThread, notifications.get());
+            assertEquals(42, (int) promise.get());
+        }
+    }
+
+    @Test
+    public void sequence() {
+        Promise<String> a = Async.promise();
+        Promise<String> b = Async.promise();
+        List<Promise<String>> promises = Lists.newArrayList();
+        promises.add(a);
+        promises.add(b);
+        Promise<List<String>> result = Async.sequence(promises);
+        b.success("B");
+        assertFalse(result.isCompleted());
+        a.success("A");
+        assertTrue(result.isSuccessful());
+        assertEquals(Lists.newArrayList("A", "B"), result.get());
+
+        List<Promise<String>> empty = Lists.newArrayList();
+        assertTrue(Async.sequence(empty).isSuccessful());
+    }
+
+    @Test
+    public void sequenceFailsOnceIfPromisesFailConcurrently() throws Exception {
+        for (int run = 0; run < 100; run++) {
+            final Promise<String> a = Async.promise();
+            final Promise<String> b = Async.promise();
+            final Promise<String> c = Async.promise();
+            List<Promise<String>> promises = Lists.newArrayList();
+            promises.add(a);
+            promises.add(b);
+            promises.add(c);
+            Promise<List<String>> result = Async.sequence(promises);
+            final AtomicInteger failures = new AtomicInteger();
+            result.onFailure(new Callback<Throwable>() {
+                @Override
+                public void invoke(Throwable value) throws Exception {
+                    failures.incrementAndGet();
+                }
+            });
+            final CountDownLatch start = new CountDownLatch(1);
+            Thread failA = failAfter(start, a, new IllegalStateException("A"));
+            Thread failB = failAfter(start, b, new IllegalStateException("B"));
+            start.countDown();
+            c.success("C");
+            failA.join();
+            failB.join();
+            assertTrue(result.isFailed());
+            assertEquals(1, failures.get());
+        }
+    }
+
+    private Thread failAfter(final CountDownLatch start, final Promise<?> promise, final Throwable error) {
+        Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                promise.fail(error);
+            }
+        });
+        t.start();
+        return t;
+    }
+
+    @Test
+    public void sequenceDoesNotSucceedAfterFailure() {
+        Promise<String> a = Async.promise();
+        Promise<String> b = Async.promise();
+        List<Promise<String>> promises = Lists.newArrayList();
+        promises.add(a);
+        promises.add(b);
+        Promise<List<String>> result = Async.sequence(promises);
+        a.fail(new IllegalStateException("A"));
+        b.success("B");
+        assertTrue(result.isFailed());
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.cache;
+
+import com.google.common.cache.CacheBuilder;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link CacheSnapshots}
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ */
+public class TestCacheSnapshots {
+
+    /*
+     * Uses fixed settings instead of the system config
+     */
+    static class TestCache extends ManagedCache<String, Object> {
+        TestCache() {
+            super("test", null, null);
+        }
+
+        @Override
+        protected void init() {
+            if (data == null) {
+                timeToLive = 60000;
+                verificationInterval = 60000;
+                data = CacheBuilder.newBuilder().removalListener(this).build();
+            }
+        }
+    }
+
+    @Test
+    public void writeAndRestore() throws Exception {
+        File file = File.createTempFile("cache", ".snapshot");
+        TestCache cache = new TestCache();
+        cache.put("a", "A");
+        cache.put("b", 42);
+        cache.put("c", new Object());
+        assertEquals(2, CacheSnapshots.write(cache, file));
+
+        TestCache restored = new TestCache();
+        restored.put("b", 1);
+        assertEquals(1, CacheSnapshots.restore(restored, file));
+        assertEquals("A", restored.get("a"));
+        assertEquals(1, restored.get("b"));
+        assertNull(restored.get("c"));
+        assertTrue(restored.getContents().get(0).getMaxAge() > System.currentTimeMillis());
+        assertFalse(file.exists());
+    }
+}
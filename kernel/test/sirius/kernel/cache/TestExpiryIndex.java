@@ -0,0 +1,48 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.cache;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link ExpiryIndex}
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ */
+public class TestExpiryIndex {
+
+    @Test
+    public void pollExpired() {
+        ExpiryIndex<String, String> index = new ExpiryIndex<String, String>();
+        CacheEntry<String, String> a = new CacheEntry<String, String>("a", "A", 100, 0);
+        CacheEntry<String, String> b = new CacheEntry<String, String>("b", "B", 300, 0);
+        CacheEntry<String, String> c = new CacheEntry<String, String>("c", "C", 200, 0);
+        CacheEntry<String, String> d = new CacheEntry<String, String>("d", "D", 0, 0);
+        index.add(a);
+        index.add(b);
+        index.add(c);
+        index.add(d);
+        assertEquals(3, index.size());
+
+        List<CacheEntry<String, String>> expired = index.pollExpired(250);
+        assertEquals(2, expired.size());
+        assertSame(a, expired.get(0));
+        assertSame(c, expired.get(1));
+        assertEquals(1, index.size());
+
+        index.remove(b);
+        index.remove(b);
+        assertEquals(0, index.size());
+        assertTrue(index.pollExpired(1000).isEmpty());
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.cache;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link InvalidationBus} using the {@link LoopbackInvalidationTransport}
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ */
+public class TestInvalidationBus {
+
+    private static final byte[] SECRET = "secret".getBytes(Charsets.UTF_8);
+
+    /*
+     * Records all invalidations instead of applying them
+     */
+    static class RecordingCache extends ManagedCache<String, String> {
+        List<Object> removed = Lists.newArrayList();
+        int clears;
+
+        RecordingCache(String name) {
+            super(name, null, null);
+        }
+
+        @Override
+        void removeLocally(Object key) {
+            removed.add(key);
+        }
+
+        @Override
+        void clearLocally() {
+            clears++;
+        }
+    }
+
+    @Test
+    public void batchesAndCoalesces() throws Exception {
+        InvalidationBus sender = new InvalidationBus(new LoopbackInvalidationTransport(), 60000, 2, SECRET);
+        InvalidationBus receiver = new InvalidationBus(new LoopbackInvalidationTransport(), 60000, 2, SECRET);
+        RecordingCache senderCache = new RecordingCache("test");
+        RecordingCache receiverCache = new RecordingCache("test");
+        RecordingCache other = new RecordingCache("other");
+        sender.register(senderCache);
+        receiver.register(receiverCache);
+        receiver.register(other);
+        sender.start();
+        receiver.start();
+        try {
+            sender.publish("test", "a");
+            sender.publish("test", "a");
+            sender.publish("other", "x");
+            sender.publish("other", "y");
+            sender.publish("other", "z");
+            sender.flush();
+
+            assertEquals(1, sender.getNumSent());
+            assertEquals(1, receiver.getNumReceived());
+            assertEquals(Lists.<Object>newArrayList("a"), receiverCache.removed);
+            assertEquals(0, receiverCache.clears);
+            // More than two keys were pending for "other", therefore it is cleared completely
+            assertTrue(other.removed.isEmpty());
+            assertEquals(1, other.clears);
+            // The sender ignores its own batches
+            assertTrue(senderCache.removed.isEmpty());
+
+            sender.flush();
+            assertEquals(1, sender.getNumSent());
+            assertEquals(0, receiver.getNumDropped());
+        } finally {
+            sender.stop();
+            receiver.stop();
+        }
+    }
+
+    @Test
+    public void dropsMalformedPackets() {
+        InvalidationBus bus = new InvalidationBus(new LoopbackInvalidationTransport(), 60000, 10, SECRET);
+        bus.receive(new byte[]{1, 2, 3});
+        assertEquals(1, bus.getNumDropped());
+        assertEquals(0, bus.getNumReceived());
+    }
+
+    @Test
+    public void transfersTypedKeysAndClearsForOtherKeys() throws Exception {
+        InvalidationBus sender = new InvalidationBus(new LoopbackInvalidationTransport(), 60000, 10, SECRET);
+        InvalidationBus receiver = new InvalidationBus(new LoopbackInvalidationTransport(), 60000, 10, SECRET);
+        RecordingCache keys = new RecordingCache("keys");
+        RecordingCache other = new RecordingCache("other");
+        receiver.register(keys);
+        receiver.register(other);
+        sender.start();
+        receiver.start();
+        try {
+            sender.publish("keys", 42);
+            sender.publish("keys", 42L);
+            sender.publish("keys", "42");
+            sender.publish("keys", true);
+            sender.publish("other", Lists.newArrayList("a"));
+            sender.flush();
+
+            assertEquals(4, keys.removed.size());
+            assertTrue(keys.removed.contains(42));
+            assertTrue(keys.removed.contains(42L));
+            assertTrue(keys.removed.contains("42"));
+            assertTrue(keys.removed.contains(true));
+            assertEquals(0, keys.clears);
+            // Lists are not supported as keys, therefore the cache is cleared completely
+            assertTrue(other.removed.isEmpty());
+            assertEquals(1, other.clears);
+        } finally {
+            sender.stop();
+            receiver.stop();
+        }
+    }
+
+    @Test
+    public void dropsPacketsWithInvalidSignature() throws Exception {
+        InvalidationBus sender = new InvalidationBus(new LoopbackInvalidationTransport(),
+                                                     60000,
+                                                     10,
+                                                     "other".getBytes(Charsets.UTF_8));
+        InvalidationBus receiver = new InvalidationBus(new LoopbackInvalidationTransport(), 60000, 10, SECRET);
+        RecordingCache cache = new RecordingCache("test");
+        receiver.register(cache);
+        sender.start();
+        receiver.start();
+        try {
+            sender.publish("test", "a");
+            sender.flush();
+
+            assertEquals(1, sender.getNumSent());
+            assertEquals(0, receiver.getNumReceived());
+            assertEquals(1, receiver.getNumDropped());
+            assertTrue(cache.removed.isEmpty());
+        } finally {
+            sender.stop();
+            receiver.stop();
+        }
+    }
+}
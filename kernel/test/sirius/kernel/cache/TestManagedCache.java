@@ -0,0 +1,197 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.cache;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.junit.Test;
+import sirius.kernel.health.HandledException;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link ManagedCache}
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ */
+public class TestManagedCache {
+
+    /*
+     * Uses fixed settings instead of the system config
+     */
+    static class TestCache extends ManagedCache<String, String> {
+        TestCache(ValueComputer<String, String> computer) {
+            super("test", computer, null);
+        }
+
+        @Override
+        protected void init() {
+            if (data == null) {
+                timeToLive = 60000;
+                verificationInterval = 60000;
+                data = CacheBuilder.newBuilder().removalListener(this).build();
+            }
+        }
+    }
+
+    @Test
+    public void concurrentGetsComputeOnce() throws Exception {
+        final AtomicInteger computations = new AtomicInteger();
+        final CountDownLatch computing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final TestCache cache = new TestCache(new ValueComputer<String, String>() {
+            @Override
+            public String compute(String key) {
+                computations.incrementAndGet();
+                computing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return key.toUpperCase();
+            }
+        });
+
+        final List<String> results = Lists.newCopyOnWriteArrayList();
+        List<Thread> threads = Lists.newArrayList();
+        for (int i = 0; i < 8; i++) {
+            Thread t = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    results.add(cache.get("a"));
+                }
+            });
+            t.start();
+            threads.add(t);
+        }
+        assertTrue(computing.await(5, TimeUnit.SECONDS));
+        // Give all other threads the chance to run into the pending load
+        Thread.sleep(100);
+        release.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        assertEquals(1, computations.get());
+        assertEquals(8, results.size());
+        for (String result : results) {
+            assertEquals("A", result);
+        }
+    }
+
+    @Test
+    public void failedLoadIsRetried() {
+        final AtomicInteger computations = new AtomicInteger();
+        TestCache cache = new TestCache(new ValueComputer<String, String>() {
+            @Override
+            public String compute(String key) {
+                if (computations.incrementAndGet() == 1) {
+                    throw new IllegalStateException("first load fails");
+                }
+                return key.toUpperCase();
+            }
+        });
+
+        try {
+            cache.get("a");
+            fail("The failure of the computer should be reported");
+        } catch (HandledException e) {
+            // expected
+        }
+        assertFalse(cache.contains("a"));
+        assertEquals("A", cache.get("a"));
+        assertEquals("A", cache.get("a"));
+        assertEquals(2, computations.get());
+    }
+
+    /*
+     * Computes the upper case version of each key, except for keys starting with "x" and records each batch
+     */
+    static class RecordingBatchComputer implements BatchValueComputer<String, String> {
+        List<List<String>> batches = Lists.newArrayList();
+
+        @Override
+        public Map<String, String> computeAll(Collection<String> keys) {
+            batches.add(Lists.newArrayList(keys));
+            Map<String, String> result = Maps.newHashMap();
+            for (String key : keys) {
+                if (!key.startsWith("x")) {
+                    result.put(key, key.toUpperCase());
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public String compute(String key) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    @Test
+    public void getAllComputesOnlyMissingKeysInOneBatch() {
+        RecordingBatchComputer computer = new RecordingBatchComputer();
+        TestCache cache = new TestCache(computer);
+        cache.put("a", "cached");
+
+        Map<String, String> result = cache.getAll(Lists.newArrayList("c", "a", "b"));
+        assertEquals(Lists.newArrayList("c", "a", "b"), Lists.newArrayList(result.keySet()));
+        assertEquals("cached", result.get("a"));
+        assertEquals("B", result.get("b"));
+        assertEquals("C", result.get("c"));
+        assertEquals(1, computer.batches.size());
+        assertEquals(Lists.newArrayList("c", "b"), computer.batches.get(0));
+
+        cache.getAll(Lists.newArrayList("a", "b", "c"));
+        assertEquals(1, computer.batches.size());
+    }
+
+    @Test
+    public void getAllCachesKeysNotReturnedByTheBatchComputer() {
+        RecordingBatchComputer computer = new RecordingBatchComputer();
+        TestCache cache = new TestCache(computer);
+
+        Map<String, String> result = cache.getAll(Lists.newArrayList("b", "x1"));
+        assertEquals(1, result.size());
+        assertEquals("B", result.get("b"));
+        assertFalse(result.containsKey("x1"));
+        assertTrue(cache.contains("x1"));
+
+        assertFalse(cache.getAll(Lists.newArrayList("x1")).containsKey("x1"));
+        assertEquals(1, computer.batches.size());
+    }
+
+    @Test
+    public void getAllFallsBackToValueComputer() {
+        final List<String> computed = Lists.newArrayList();
+        TestCache cache = new TestCache(new ValueComputer<String, String>() {
+            @Override
+            public String compute(String key) {
+                computed.add(key);
+                return key.startsWith("x") ? null : key.toUpperCase();
+            }
+        });
+        cache.put("a", "cached");
+
+        Map<String, String> result = cache.getAll(Lists.newArrayList("a", "b", "x1"));
+        assertEquals(2, result.size());
+        assertEquals("cached", result.get("a"));
+        assertEquals("B", result.get("b"));
+        assertEquals(Lists.newArrayList("b", "x1"), computed);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.cache;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link OffHeapStore}
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ */
+public class TestOffHeapStore {
+
+    @Test
+    public void demoteAndPromote() {
+        OffHeapStore<String, String> store = new OffHeapStore<String, String>("test", 1024 * 1024);
+        store.demote(new CacheEntry<String, String>("a", "A", 100, 200));
+        assertEquals(1, store.size());
+        assertTrue(store.getUsedBytes() > 0);
+
+        CacheEntry<String, String> entry = store.promote("a");
+        assertNotNull(entry);
+        assertEquals("A", entry.getValue());
+        assertEquals(100, entry.getMaxAge());
+        assertEquals(200, entry.getNextVerification());
+        assertEquals(0, store.size());
+        assertEquals(0, store.getUsedBytes());
+        assertNull(store.promote("a"));
+        assertEquals(50, store.getHitRate());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        OffHeapStore<String, String> probe = new OffHeapStore<String, String>("test", 1024 * 1024);
+        probe.demote(new CacheEntry<String, String>("a", "A", 0, 0));
+        long entrySize = probe.getUsedBytes();
+
+        OffHeapStore<String, String> store = new OffHeapStore<String, String>("test", 2 * entrySize);
+        store.demote(new CacheEntry<String, String>("a", "A", 0, 0));
+        store.demote(new CacheEntry<String, String>("b", "B", 0, 0));
+        store.demote(new CacheEntry<String, String>("c", "C", 0, 0));
+        assertEquals(2, store.size());
+        assertNull(store.promote("a"));
+        assertNotNull(store.promote("c"));
+    }
+
+    @Test
+    public void largeEntriesSpanMultipleBlocks() {
+        OffHeapStore<String, String> store = new OffHeapStore<String, String>("test", 64 * 1024);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append(i);
+        }
+        store.demote(new CacheEntry<String, String>("a", sb.toString(), 0, 0));
+        store.demote(new CacheEntry<String, String>("b", "B", 0, 0));
+        assertTrue(store.getUsedBytes() > 2 * OffHeapStore.BLOCK_SIZE);
+        assertEquals(0, store.getUsedBytes() % OffHeapStore.BLOCK_SIZE);
+        assertEquals(sb.toString(), store.promote("a").getValue());
+        assertEquals("B", store.promote("b").getValue());
+        assertEquals(0, store.getUsedBytes());
+    }
+
+    @Test
+    public void capacityIsEnforcedAndBlocksAreReused() {
+        OffHeapStore<String, String> store = new OffHeapStore<String, String>("test", 4 * OffHeapStore.BLOCK_SIZE);
+        assertEquals(4 * OffHeapStore.BLOCK_SIZE, store.getCapacity());
+        for (int i = 0; i < 1000; i++) {
+            store.demote(new CacheEntry<String, String>(String.valueOf(i), "Value " + i, 0, 0));
+            assertTrue(store.getUsedBytes() <= store.getCapacity());
+        }
+        assertEquals(4, store.size());
+        assertEquals("Value 999", store.promote("999").getValue());
+        assertNull(store.promote("0"));
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append(i);
+        }
+        store.demote(new CacheEntry<String, String>("huge", sb.toString(), 0, 0));
+        assertNull(store.promote("huge"));
+        assertEquals(3, store.size());
+
+        store.clear();
+        assertEquals(0, store.size());
+        assertEquals(0, store.getUsedBytes());
+    }
+}
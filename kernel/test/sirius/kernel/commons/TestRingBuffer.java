@@ -0,0 +1,51 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.commons;
+
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link RingBuffer}
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ */
+public class TestRingBuffer {
+
+    @Test
+    public void keepsNewestElements() {
+        RingBuffer<Integer> buffer = new RingBuffer<Integer>(3);
+        assertNull(buffer.add(1));
+        assertNull(buffer.add(2));
+        assertNull(buffer.add(3));
+        assertEquals(Integer.valueOf(1), buffer.add(4));
+        assertEquals(Arrays.asList(4, 3, 2), buffer.getAll());
+        assertEquals(4, buffer.getTotal());
+    }
+
+    @Test
+    public void paging() {
+        RingBuffer<Integer> buffer = new RingBuffer<Integer>(10);
+        for (int i = 1; i <= 10; i++) {
+            buffer.add(i);
+        }
+        assertEquals(Arrays.asList(8, 7, 6), buffer.get(2, 3, Predicates.<Integer>alwaysTrue()));
+        assertEquals(Arrays.asList(6, 4), buffer.get(2, 2, new Predicate<Integer>() {
+            @Override
+            public boolean apply(Integer input) {
+                return input % 2 == 0;
+            }
+        }));
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.di;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import sirius.kernel.Classpath;
+import sirius.kernel.di.std.Register;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeNotNull;
+
+/**
+ * Test for {@link Injector} and {@link PartIndexProcessor}
+ * <p>
+ * Compiles a few sample classes using the <tt>PartIndexProcessor</tt> and initializes the <tt>Injector</tt> with
+ * a classpath consisting of the kernel and the samples.
+ * </p>
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ */
+public class TestInjector {
+
+    private static final String[][] SAMPLES = {{"Greeter", "public interface Greeter {}"},
+                                               {"HelloGreeter",
+                                                "@sirius.kernel.di.std.Register(name = \"hello\", " +
+                                                        "classes = Greeter.class)\n" +
+                                                        "public class HelloGreeter implements Greeter {}"},
+                                               {"PoliteGreeter",
+                                                "@sirius.kernel.di.std.Register(name = \"polite\", " +
+                                                        "classes = Greeter.class)\n" +
+                                                        "public class PoliteGreeter implements Greeter {\n" +
+                                                        "    @sirius.kernel.di.std.Part\n" +
+                                                        "    private Greeter first;\n" +
+                                                        "}"},
+                                               {"Greeters",
+                                                "public class Greeters {\n" +
+                                                        "    @sirius.kernel.di.std.Part\n" +
+                                                        "    private static Greeter greeter;\n" +
+                                                        "    @sirius.kernel.di.std.Parts(Greeter.class)\n" +
+                                                        "    private static java.util.Collection<Greeter> all;\n" +
+                                                        "}"},
+                                               {"Plain", "public class Plain {}"}};
+
+    private File sources;
+    private File root;
+
+    /*
+     * Loads the compiled samples and records which classes were requested. Only the samples and the kernel are
+     * reported as component roots
+     */
+    static class SampleLoader extends URLClassLoader {
+        private final Set<String> requested = Collections.synchronizedSet(Sets.<String>newHashSet());
+
+        SampleLoader(File root) throws IOException {
+            super(new URL[]{root.toURI().toURL()}, TestInjector.class.getClassLoader());
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            requested.add(name);
+            return super.loadClass(name, resolve);
+        }
+
+        @Override
+        public Enumeration<URL> getResources(String name) throws IOException {
+            List<URL> result = new ArrayList<URL>();
+            for (URL url : Collections.list(super.getResources(name))) {
+                if (exists(url, "sample/Greeter.class") || exists(url, "sirius/kernel/di/Injector.class")) {
+                    result.add(url);
+                }
+            }
+            return Collections.enumeration(result);
+        }
+
+        private boolean exists(URL root, String path) {
+            try {
+                new URL(root, path).openStream().close();
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+    }
+
+    @Before
+    public void compileSamples() throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assumeNotNull(compiler);
+        sources = Files.createTempDirectory("samples").toFile();
+        root = Files.createTempDirectory("component").toFile();
+        List<File> files = new ArrayList<File>();
+        for (String[] sample : SAMPLES) {
+            File file = new File(sources, sample[0] + ".java");
+            Files.write(file.toPath(), ("package sample;\n" + sample[1] + "\n").getBytes(Charsets.UTF_8));
+            files.add(file);
+        }
+        assertTrue(new File(root, "component.marker").createNewFile());
+
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, Charsets.UTF_8);
+        try {
+            List<String> options = Arrays.asList("-classpath",
+                                                 System.getProperty("java.class.path"),
+                                                 "-processor",
+                                                 PartIndexProcessor.class.getName(),
+                                                 "-d",
+                                                 root.getPath());
+            assertTrue(compiler.getTask(null,
+                                        fileManager,
+                                        null,
+                                        options,
+                                        null,
+                                        fileManager.getJavaFileObjectsFromFiles(files)).call());
+        } finally {
+            fileManager.close();
+        }
+    }
+
+    @After
+    public void deleteSamples() {
+        delete(sources);
+        delete(root);
+    }
+
+    private void delete(File file) {
+        if (file == null) {
+            return;
+        }
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private Map<String, Set<String>> readIndex() throws IOException {
+        Map<String, Set<String>> index = new LinkedHashMap<String, Set<String>>();
+        BufferedReader reader = Files.newBufferedReader(new File(root, PartIndexProcessor.INDEX_FILE).toPath(),
+                                                        Charsets.UTF_8);
+        try {
+            PartIndexProcessor.parse(reader, index);
+        } finally {
+            reader.close();
+        }
+        return index;
+    }
+
+    private SampleLoader init() throws IOException {
+        SampleLoader loader = new SampleLoader(root);
+        Injector.init(null, new Classpath(loader, "component.marker"));
+        return loader;
+    }
+
+    /*
+     * Initializes the Injector using the given number of threads and describes the discovered parts and their
+     * wiring, so that the results of several initializations can be compared
+     */
+    private List<String> discover(int parallelism) throws Exception {
+        SampleLoader loader = new SampleLoader(root);
+        Injector.init(null, new Classpath(loader, "component.marker"), parallelism);
+        GlobalContext context = Injector.context();
+        Class<?> greeterClass = loader.loadClass("sample.Greeter");
+        List<String> result = new ArrayList<String>();
+        for (Class<?> partInterface : new Class<?>[]{greeterClass, AnnotationProcessor.class, Lifecycle.class}) {
+            for (Object part : context.getParts(partInterface)) {
+                result.add(partInterface.getSimpleName() + ": " + part.getClass().getName());
+            }
+        }
+
+        Object hello = context.getPart("hello", greeterClass);
+        Object polite = context.getPart("polite", greeterClass);
+        Class<?> greeters = loader.loadClass("sample.Greeters");
+        assertSame(hello, getField(polite.getClass(), polite, "first"));
+        assertSame(hello, getField(greeters, null, "greeter"));
+        for (Object greeter : (Collection<?>) getField(greeters, null, "all")) {
+            result.add("all: " + greeter.getClass().getName());
+        }
+
+        // Wiring another object uses the injection points cached during the startup
+        Object wired = context.wire(polite.getClass().newInstance());
+        assertSame(hello, getField(polite.getClass(), wired, "first"));
+        return result;
+    }
+
+    private List<String> getGreeters(ClassLoader loader) throws Exception {
+        List<String> result = new ArrayList<String>();
+        for (Object greeter : Injector.context().getParts(loader.loadClass("sample.Greeter"))) {
+            result.add(greeter.getClass().getName());
+        }
+        return result;
+    }
+
+    private Object getField(Class<?> clazz, Object object, String name) throws Exception {
+        Field field = clazz.getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(object);
+    }
+
+    @Test
+    public void indexListsClassesOfInterest() throws Exception {
+        Map<String, Set<String>> index = readIndex();
+        assertEquals(Sets.newHashSet(Register.class.getName()), index.get("sample.HelloGreeter"));
+        assertEquals(Sets.newHashSet(Register.class.getName()), index.get("sample.PoliteGreeter"));
+        assertEquals(Sets.newHashSet(PartIndexProcessor.STATIC_FIELDS), index.get("sample.Greeters"));
+        assertFalse(index.containsKey("sample.Greeter"));
+        assertFalse(index.containsKey("sample.Plain"));
+    }
+
+    @Test
+    public void indexedPartsAreRegisteredAndWired() throws Exception {
+        SampleLoader loader = init();
+        assertFalse(loader.requested.contains("sample.Plain"));
+
+        Class<?> greeterClass = loader.loadClass("sample.Greeter");
+        Object hello = Injector.context().getPart("hello", greeterClass);
+        Object polite = Injector.context().getPart("polite", greeterClass);
+        assertEquals("sample.HelloGreeter", hello.getClass().getName());
+        assertEquals("sample.PoliteGreeter", polite.getClass().getName());
+        assertEquals(Lists.newArrayList("sample.HelloGreeter", "sample.PoliteGreeter"), getGreeters(loader));
+
+        assertSame(hello, getField(polite.getClass(), polite, "first"));
+        Class<?> greeters = loader.loadClass("sample.Greeters");
+        assertSame(hello, getField(greeters, null, "greeter"));
+        assertEquals(2, ((Collection<?>) getField(greeters, null, "all")).size());
+    }
+
+    @Test
+    public void partsAreRegisteredInTheOrderOfTheIndex() throws Exception {
+        List<String> lines = Files.readAllLines(new File(root, PartIndexProcessor.INDEX_FILE).toPath(),
+                                                Charsets.UTF_8);
+        Collections.reverse(lines);
+        Files.write(new File(root, PartIndexProcessor.INDEX_FILE).toPath(), lines, Charsets.UTF_8);
+
+        SampleLoader loader = init();
+        assertEquals(Lists.newArrayList("sample.PoliteGreeter", "sample.HelloGreeter"), getGreeters(loader));
+    }
+
+    @Test
+    public void parallelDiscoveryMatchesSequentialDiscovery() throws Exception {
+        List<String> sequential = discover(1);
+        assertTrue(sequential.contains("Greeter: sample.HelloGreeter"));
+        assertTrue(sequential.contains("AnnotationProcessor: sirius.kernel.di.std.PartAnnotationProcessor"));
+        for (int i = 0; i < 5; i++) {
+            assertEquals(sequential, discover(8));
+        }
+    }
+
+    @Test
+    public void rootsWithoutIndexAreScanned() throws Exception {
+        assertTrue(new File(root, PartIndexProcessor.INDEX_FILE).delete());
+        SampleLoader loader = init();
+        assertTrue(loader.requested.contains("sample.Plain"));
+        assertEquals(Sets.newHashSet("sample.HelloGreeter", "sample.PoliteGreeter"),
+                     Sets.newHashSet(getGreeters(loader)));
+    }
+}
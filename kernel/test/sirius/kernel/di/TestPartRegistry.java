@@ -0,0 +1,101 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.di;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+import sirius.kernel.commons.Tuple;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link PartRegistry}
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ */
+public class TestPartRegistry {
+
+    interface Service {
+    }
+
+    static class ServiceImpl implements Service {
+    }
+
+    private List<String> getNames(Collection<Tuple<String, Service>> namedParts) {
+        List<String> result = Lists.newArrayList();
+        for (Tuple<String, Service> namedPart : namedParts) {
+            result.add(namedPart.getFirst());
+        }
+        return result;
+    }
+
+    @Test
+    public void partsRegisteredAfterFreezeAreVisible() {
+        PartRegistry registry = new PartRegistry();
+        Service early = new ServiceImpl();
+        registry.registerPart("b", early, Service.class);
+        registry.freeze();
+        PartCollection<Service> collection = registry.getPartCollection(Service.class);
+        Collection<Service> before = registry.getParts(Service.class);
+
+        Service named = new ServiceImpl();
+        registry.registerPart("a", named, Service.class);
+        Service unnamed = new ServiceImpl();
+        registry.registerPart(unnamed, Service.class);
+
+        assertSame(named, registry.findPart("a", Service.class));
+        assertSame(early, registry.findPart("b", Service.class));
+        assertSame(early, registry.getPart(Service.class));
+        assertEquals(Lists.newArrayList(early, named, unnamed), Lists.newArrayList(registry.getParts(Service.class)));
+        assertEquals(Lists.newArrayList(early, named, unnamed), Lists.newArrayList(collection.getParts()));
+        assertEquals(Lists.newArrayList("a", "b"), getNames(registry.getNamedParts(Service.class)));
+
+        // Collections returned earlier are snapshots and therefore not modified
+        assertEquals(Lists.newArrayList(early), Lists.newArrayList(before));
+    }
+
+    @Test
+    public void partsOfNewInterfacesAreVisibleAfterFreeze() {
+        PartRegistry registry = new PartRegistry();
+        registry.freeze();
+        assertTrue(registry.getParts(Service.class).isEmpty());
+        assertNull(registry.getPart("a", Service.class));
+
+        Service part = new ServiceImpl();
+        registry.registerPart("a", part, Service.class);
+        assertSame(part, registry.findPart("a", Service.class));
+        assertEquals(Lists.newArrayList(part), Lists.newArrayList(registry.getParts(Service.class)));
+    }
+
+    @Test
+    public void namesStayUniqueAfterFreeze() {
+        PartRegistry registry = new PartRegistry();
+        Service part = new ServiceImpl();
+        registry.registerPart("a", part, Service.class);
+        registry.freeze();
+        try {
+            registry.registerPart("a", new ServiceImpl(), Service.class);
+            fail("A name must not be registered twice");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertSame(part, registry.findPart("a", Service.class));
+        assertEquals(1, registry.getParts(Service.class).size());
+        try {
+            registry.findPart("unknown", Service.class);
+            fail("Unknown parts must be reported");
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.health;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JMH benchmark comparing increments of the striped {@link Counter} against the previous implementation (a plain
+ * volatile field, which loses increments under contention) and a single {@link AtomicLong}.
+ * <p>
+ * Run {@link #main(String[])} to execute all benchmarks with 1, 2, 4, ... up to twice the number of cores
+ * contending threads.
+ * </p>
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ */
+@State(Scope.Benchmark)
+public class CounterBenchmark {
+
+    /*
+     * Copy of the previous implementation which uses a non-atomic increment on a volatile field
+     */
+    static class LegacyCounter {
+        private volatile long count = 0;
+
+        public long inc() {
+            if (count < Long.MAX_VALUE - 1) {
+                count++;
+            } else {
+                count = 0;
+            }
+            return count;
+        }
+    }
+
+    private Counter counter = new Counter();
+    private LegacyCounter legacyCounter = new LegacyCounter();
+    private AtomicLong atomicCounter = new AtomicLong();
+
+    @Benchmark
+    public void striped() {
+        counter.inc();
+    }
+
+    @Benchmark
+    public long legacy() {
+        return legacyCounter.inc();
+    }
+
+    @Benchmark
+    public long atomic() {
+        return atomicCounter.incrementAndGet();
+    }
+
+    @Benchmark
+    public long stripedRead() {
+        counter.inc();
+        return counter.getCount();
+    }
+
+    /**
+     * Runs all benchmarks of this class with an increasing number of threads.
+     *
+     * @param args not used
+     * @throws Exception in case of an error while running the benchmarks
+     */
+    public static void main(String[] args) throws Exception {
+        int maxThreads = Runtime.getRuntime().availableProcessors() * 2;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            Options opt = new OptionsBuilder().include(CounterBenchmark.class.getSimpleName())
+                                              .threads(threads)
+                                              .forks(1)
+                                              .warmupIterations(5)
+                                              .measurementIterations(5)
+                                              .build();
+            new Runner(opt).run();
+        }
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.health;
+
+import com.google.common.collect.Lists;
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link AsyncLogging}
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ */
+public class TestAsyncLogging {
+
+    /*
+     * Records all events. If a latch is given, the first event blocks the consumer until it is released.
+     */
+    static class RecordingAppender extends AppenderSkeleton {
+        final List<LoggingEvent> events = Collections.synchronizedList(Lists.<LoggingEvent>newArrayList());
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release;
+
+        RecordingAppender(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        protected void append(LoggingEvent event) {
+            events.add(event);
+            blocked.countDown();
+            if (release != null) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public boolean requiresLayout() {
+            return false;
+        }
+    }
+
+    private RecordingAppender install(String name, CountDownLatch release) {
+        RecordingAppender appender = new RecordingAppender(release);
+        Logger logger = Logger.getLogger(name);
+        logger.removeAllAppenders();
+        logger.setLevel(Level.INFO);
+        logger.setAdditivity(false);
+        logger.addAppender(appender);
+        return appender;
+    }
+
+    @Test
+    public void allMessagesAreWrittenInOrder() throws Exception {
+        RecordingAppender appender = install("async-test", null);
+        final Log log = Log.get("async-test");
+        AsyncLogging.start(16, false);
+        try {
+            Thread[] threads = new Thread[4];
+            for (int i = 0; i < threads.length; i++) {
+                threads[i] = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int j = 0; j < 500; j++) {
+                            log.INFO("%d", j);
+                            log.FINE("not logged");
+                        }
+                    }
+                }, "producer-" + i);
+                threads[i].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } finally {
+            AsyncLogging.stop();
+        }
+        assertFalse(AsyncLogging.isEnabled());
+        assertEquals(2000, appender.events.size());
+        int[] next = new int[4];
+        for (LoggingEvent event : appender.events) {
+            int thread = Integer.parseInt(event.getThreadName().substring("producer-".length()));
+            assertEquals(String.valueOf(next[thread]++), event.getRenderedMessage());
+        }
+    }
+
+    @Test
+    public void idleConsumerIsWokenUpByProducers() throws Exception {
+        RecordingAppender appender = install("async-idle", null);
+        Log log = Log.get("async-idle");
+        AsyncLogging.start(16, false);
+        try {
+            for (int i = 0; i < 3; i++) {
+                // Give the consumer the time to park, it must then be woken up way before its park timeout
+                Thread.sleep(100);
+                long start = System.currentTimeMillis();
+                log.INFO("%d", i);
+                while (appender.events.size() <= i && System.currentTimeMillis() - start < 5000) {
+                    Thread.sleep(1);
+                }
+                assertEquals(i + 1, appender.events.size());
+                assertTrue(System.currentTimeMillis() - start < 500);
+            }
+        } finally {
+            AsyncLogging.stop();
+        }
+    }
+
+    @Test
+    public void dropPolicyDiscardsMessagesIfFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingAppender appender = install("async-drop", release);
+        Log log = Log.get("async-drop");
+        long droppedBefore = AsyncLogging.getNumDropped();
+        AsyncLogging.start(4, true);
+        try {
+            log.INFO("first");
+            assertTrue(appender.blocked.await(5, TimeUnit.SECONDS));
+            // The consumer is blocked while still occupying the slot of the first message, therefore 3 more
+            // messages fill the buffer and the others are dropped
+            for (int i = 0; i < 10; i++) {
+                log.INFO("%d", i);
+            }
+            assertEquals(4, AsyncLogging.getQueueDepth());
+            assertEquals(7, AsyncLogging.getNumDropped() - droppedBefore);
+        } finally {
+            release.countDown();
+            AsyncLogging.stop();
+        }
+        assertEquals(4, appender.events.size());
+    }
+
+    @Test
+    public void blockPolicyWaitsForFreeSlots() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingAppender appender = install("async-block", release);
+        final Log log = Log.get("async-block");
+        long droppedBefore = AsyncLogging.getNumDropped();
+        AsyncLogging.start(4, false);
+        try {
+            log.INFO("first");
+            assertTrue(appender.blocked.await(5, TimeUnit.SECONDS));
+            Thread producer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10; i++) {
+                        log.INFO("%d", i);
+                    }
+                }
+            });
+            producer.start();
+            producer.join(200);
+            assertTrue(producer.isAlive());
+            assertEquals(4, AsyncLogging.getQueueDepth());
+
+            // Disabled messages must not block the caller, even if the buffer is full
+            Thread disabled = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10; i++) {
+                        log.FINE("%d", i);
+                    }
+                }
+            });
+            disabled.start();
+            disabled.join(5000);
+            assertFalse(disabled.isAlive());
+
+            release.countDown();
+            producer.join(5000);
+            assertFalse(producer.isAlive());
+        } finally {
+            release.countDown();
+            AsyncLogging.stop();
+        }
+        assertEquals(11, appender.events.size());
+        for (LoggingEvent event : appender.events) {
+            assertEquals(Level.INFO, event.getLevel());
+        }
+        assertEquals(0, AsyncLogging.getNumDropped() - droppedBefore - countDroppedTapMessages());
+    }
+
+    /*
+     * Disabled messages are only buffered (and therefore dropped if full) if a LogTap is present
+     */
+    private long countDroppedTapMessages() {
+        return Log.hasTaps() ? 10 : 0;
+    }
+
+    @Test
+    public void stopWritesOrLogsAllMessages() throws Exception {
+        RecordingAppender appender = install("async-stop", null);
+        final Log log = Log.get("async-stop");
+        final CountDownLatch started = new CountDownLatch(4);
+        AsyncLogging.start(8, false);
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    for (int j = 0; j < 5000; j++) {
+                        log.INFO("%d", j);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        // Stops while the producers are still logging. Each message is either written by the consumer or logged
+        // synchronously afterwards
+        AsyncLogging.stop();
+        assertFalse(AsyncLogging.isEnabled());
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(20000, appender.events.size());
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.health;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link Counter}
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ */
+public class TestCounter {
+
+    @Test
+    public void concurrentIncrements() throws Exception {
+        final Counter counter = new Counter();
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 100000; j++) {
+                        counter.inc();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(800000, counter.getCount());
+        counter.reset();
+        assertEquals(0, counter.getCount());
+    }
+
+    @Test
+    public void overflowsAndAverages() throws Exception {
+        Counter counter = new Counter(2);
+        assertEquals(0d, counter.getAvgPer(TimeUnit.SECONDS), 0d);
+        assertEquals(1, counter.inc());
+        assertEquals(2, counter.inc());
+        assertEquals(2, counter.getCount());
+        assertEquals(0, counter.inc());
+        assertEquals(0, counter.getCount());
+        assertEquals(1, counter.inc());
+        assertEquals(1, counter.getCount());
+        Thread.sleep(10);
+        assertTrue(counter.getDuration(TimeUnit.MILLISECONDS) >= 10);
+        assertTrue(counter.getAvgPer(TimeUnit.SECONDS) > 1d);
+    }
+}
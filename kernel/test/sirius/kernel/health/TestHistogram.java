@@ -0,0 +1,97 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.health;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link Histogram}
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ */
+public class TestHistogram {
+
+    @Test
+    public void bucketsCoverAllValues() {
+        int lastIndex = -1;
+        for (long value = 0; value < 100000; value++) {
+            int index = Histogram.indexOf(value);
+            assertTrue(index == lastIndex || index == lastIndex + 1);
+            lastIndex = index;
+        }
+        assertEquals(959, Histogram.indexOf(Long.MAX_VALUE));
+        for (int i = 0; i < 960; i++) {
+            assertEquals(i, Histogram.indexOf(Histogram.valueOf(i)));
+        }
+    }
+
+    @Test
+    public void percentiles() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.addValue(i);
+        }
+        Histogram.Snapshot snapshot = histogram.getSnapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(500.5d, snapshot.getAvg(), 0.001d);
+        assertEquals(1000, snapshot.getMax());
+        assertEquals(500, snapshot.getP50(), 500 * 0.04);
+        assertEquals(900, snapshot.getP90(), 900 * 0.04);
+        assertEquals(990, snapshot.getP99(), 990 * 0.04);
+        assertEquals(999, snapshot.getP999(), 999 * 0.04);
+    }
+
+    @Test
+    public void getAndReset() {
+        Histogram histogram = new Histogram();
+        histogram.addValue(10);
+        histogram.addValue(-5);
+        Histogram.Snapshot snapshot = histogram.getAndReset();
+        assertEquals(2, snapshot.getCount());
+        assertEquals(0, snapshot.getPercentile(50));
+        assertEquals(10, snapshot.getMax());
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getSnapshot().getP99());
+    }
+
+    @Test
+    public void totalIgnoresResets() {
+        Histogram histogram = new Histogram();
+        histogram.addValue(10);
+        histogram.addValue(100);
+        histogram.getAndReset();
+        histogram.addValue(1000);
+        Histogram.Snapshot total = histogram.getTotal();
+        assertEquals(3, total.getCount());
+        assertEquals(1110, total.getSum());
+        assertEquals(1000, total.getMax());
+        assertEquals(2, total.getCountUpTo(100));
+        assertEquals(1, histogram.getCount());
+    }
+
+    @Test
+    public void mergeAndTransfer() {
+        Histogram first = new Histogram();
+        Histogram second = new Histogram();
+        for (int i = 1; i <= 500; i++) {
+            first.addValue(i);
+            second.addValue(i + 500);
+        }
+        Histogram.Snapshot merged = Histogram.Snapshot.parse(first.getSnapshot().toCompactString())
+                                                      .merge(Histogram.Snapshot.parse(second.getSnapshot()
+                                                                                            .toCompactString()));
+        assertEquals(1000, merged.getCount());
+        assertEquals(500500, merged.getSum());
+        assertEquals(1000, merged.getMax());
+        assertEquals(990, merged.getP99(), 990 * 0.04);
+        assertEquals(0, Histogram.Snapshot.parse(new Histogram().getSnapshot().toCompactString()).getCount());
+    }
+}
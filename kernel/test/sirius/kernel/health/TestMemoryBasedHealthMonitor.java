@@ -0,0 +1,90 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.health;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.Test;
+import sirius.kernel.commons.Tuple;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link MemoryBasedHealthMonitor}
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ */
+public class TestMemoryBasedHealthMonitor {
+
+    private Incident incident(String location) throws InterruptedException {
+        // Ensures that each incident has its own timestamp
+        Thread.sleep(2);
+        return new Incident("test", location, Collections.<Tuple<String, String>>emptyList(), null);
+    }
+
+    private Set<String> getLocations(List<Incident> incidents) {
+        Set<String> result = Sets.newHashSet();
+        for (Incident incident : incidents) {
+            result.add(incident.getLocation());
+        }
+        return result;
+    }
+
+    @Test
+    public void repeatedLocationsDoNotEvictOtherIncidents() throws Exception {
+        MemoryBasedHealthMonitor monitor = new MemoryBasedHealthMonitor(3, 10);
+        monitor.handle(incident("a"));
+        monitor.handle(incident("b"));
+        monitor.handle(incident("c"));
+        Incident last = null;
+        for (int i = 0; i < 10; i++) {
+            last = incident("a");
+            monitor.handle(last);
+        }
+        List<Incident> incidents = monitor.getIncidents();
+        assertEquals(Sets.newHashSet("a", "b", "c"), getLocations(incidents));
+        assertSame(last, incidents.get(0));
+        assertEquals(13, monitor.getNumIncidents());
+        assertEquals(3, monitor.getNumUniqueIncidents());
+    }
+
+    @Test
+    public void capacityLimitsTheNumberOfLocations() throws Exception {
+        MemoryBasedHealthMonitor monitor = new MemoryBasedHealthMonitor(3, 10);
+        for (String location : new String[]{"a", "b", "c", "d"}) {
+            monitor.handle(incident(location));
+        }
+        assertEquals(Sets.newHashSet("b", "c", "d"), getLocations(monitor.getIncidents()));
+
+        // As "a" was dropped, it is unique again
+        monitor.handle(incident("a"));
+        assertEquals(Sets.newHashSet("a", "c", "d"), getLocations(monitor.getIncidents()));
+        assertEquals(5, monitor.getNumUniqueIncidents());
+    }
+
+    @Test
+    public void incidentsAreReturnedNewestFirst() throws Exception {
+        MemoryBasedHealthMonitor monitor = new MemoryBasedHealthMonitor(5, 10);
+        for (String location : new String[]{"a", "b", "c", "a"}) {
+            monitor.handle(incident(location));
+        }
+        List<String> locations = Lists.newArrayList();
+        for (Incident incident : monitor.getIncidents()) {
+            locations.add(incident.getLocation());
+        }
+        assertEquals(Lists.newArrayList("a", "c", "b"), locations);
+        assertEquals("c", monitor.getIncidents(1, 1).get(0).getLocation());
+        assertEquals(2, monitor.getIncidents(1, Integer.MAX_VALUE).size());
+        assertTrue(monitor.getIncidents(5, 1).isEmpty());
+    }
+}
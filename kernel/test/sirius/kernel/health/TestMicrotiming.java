@@ -0,0 +1,119 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.health;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link Microtiming}
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ */
+public class TestMicrotiming {
+
+    @Before
+    public void reset() {
+        Microtiming.setEnabled(false);
+        Microtiming.setSampling(1);
+        Microtiming.setEnabled(true);
+        Microtiming.getTimings();
+    }
+
+    @After
+    public void disable() {
+        Microtiming.setEnabled(false);
+        Microtiming.setSampling(1);
+    }
+
+    private Microtiming.Timing find(List<Microtiming.Timing> timings, String key) {
+        for (Microtiming.Timing timing : timings) {
+            if (key.equals(timing.getKey())) {
+                return timing;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void reportsAverages() {
+        Microtiming.submit("avg", 1000);
+        Microtiming.submit("avg", 2000);
+        Microtiming.submit("avg", 6000);
+        Microtiming.Timing timing = find(Microtiming.getTimings(), "avg");
+        assertNotNull(timing);
+        assertEquals(3, timing.getCount());
+        // Durations are submitted in nanoseconds but recorded in microseconds
+        assertEquals(3d, timing.getSnapshot().getAvg(), 0.001d);
+        assertEquals(6, timing.getSnapshot().getMax());
+    }
+
+    @Test
+    public void getTimingsOnlyReturnsTheLiveSet() {
+        Microtiming.submit("a", 1000);
+        List<Microtiming.Timing> timings = Microtiming.getTimings();
+        assertEquals(1, timings.size());
+        assertNotNull(find(timings, "a"));
+
+        // Nothing was submitted since the last call
+        assertTrue(Microtiming.getTimings().isEmpty());
+
+        Microtiming.submit("b", 1000);
+        timings = Microtiming.getTimings();
+        assertEquals(1, timings.size());
+        assertNotNull(find(timings, "b"));
+
+        // Recorded values survive a generation switch
+        Microtiming.submit("a", 3000);
+        Microtiming.Timing a = find(Microtiming.getTimings(), "a");
+        assertEquals(2, a.getCount());
+        assertEquals(2d, a.getSnapshot().getAvg(), 0.001d);
+    }
+
+    @Test
+    public void disablingIgnoresSubmissionsAndEnablingResets() {
+        Microtiming.submit("a", 1000);
+        Microtiming.setEnabled(false);
+        assertFalse(Microtiming.isEnabled());
+        Microtiming.submit("b", 1000);
+        List<Microtiming.Timing> timings = Microtiming.getTimings();
+        assertNotNull(find(timings, "a"));
+        assertNull(find(timings, "b"));
+
+        long before = Microtiming.getLastReset();
+        Microtiming.setEnabled(true);
+        assertTrue(Microtiming.getLastReset() >= before);
+        Microtiming.submit("b", 1000);
+        timings = Microtiming.getTimings();
+        assertNull(find(timings, "a"));
+        assertEquals(1, find(timings, "b").getCount());
+    }
+
+    @Test
+    public void samplingRecordsOnlyAFractionButCountsAll() {
+        Microtiming.setSampling(0);
+        assertEquals(1, Microtiming.getSampling());
+        Microtiming.setSampling(10);
+        assertEquals(10, Microtiming.getSampling());
+        for (int i = 0; i < 10000; i++) {
+            Microtiming.submit("sampled", 5000);
+        }
+        Microtiming.Timing timing = find(Microtiming.getTimings(), "sampled");
+        assertEquals(10000, timing.getCount());
+        long recorded = timing.getSnapshot().getCount();
+        // Samples are chosen randomly, therefore about 1000 of 10000 values should be recorded
+        assertTrue("Recorded: " + recorded, recorded > 700 && recorded < 1300);
+        assertEquals(5d, timing.getSnapshot().getAvg(), 0.001d);
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.timer;
+
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link CronExpression}
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ */
+public class TestCronExpression {
+
+    private static DateTime next(String expression, DateTime after) {
+        return new DateTime(CronExpression.parse(expression).next(after.getMillis()));
+    }
+
+    @Test
+    public void simpleExpressions() {
+        // 2014-02-10 is a monday
+        DateTime start = new DateTime(2014, 2, 10, 10, 17, 30);
+        assertEquals(new DateTime(2014, 2, 10, 10, 18, 0), next("* * * * *", start));
+        assertEquals(new DateTime(2014, 2, 10, 10, 30, 0), next("*/15 * * * *", start));
+        assertEquals(new DateTime(2014, 2, 11, 3, 0, 0), next("0 3 * * *", start));
+        assertEquals(new DateTime(2014, 2, 10, 18, 5, 0), next("5 8-18/10 * * *", start));
+        assertEquals(new DateTime(2014, 3, 1, 0, 0, 0), next("@monthly", start));
+        assertEquals(new DateTime(2014, 2, 16, 0, 0, 0), next("@weekly", start));
+    }
+
+    @Test
+    public void daysOfWeekAndMonth() {
+        DateTime friday = new DateTime(2014, 2, 14, 12, 0, 0);
+        assertEquals(new DateTime(2014, 2, 17, 6, 0, 0), next("0 6 * * 1-5", friday.plusHours(1)));
+        assertEquals(new DateTime(2014, 2, 16, 6, 0, 0), next("0 6 * * 7", friday));
+        assertEquals(new DateTime(2014, 2, 16, 6, 0, 0), next("0 6 * * 0", friday));
+        // If both are restricted, either one has to match
+        assertEquals(new DateTime(2014, 2, 15, 0, 0, 0), next("0 0 15 * 1", friday));
+        assertEquals(Long.MAX_VALUE, CronExpression.parse("0 0 30 2 *").next(friday.getMillis()));
+    }
+
+    @Test
+    public void invalidExpressions() {
+        for (String expression : new String[]{"* * * *", "60 * * * *", "a * * * *", "5-1 * * * *", "* * 0 * *"}) {
+            try {
+                CronExpression.parse(expression);
+                fail(expression);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.timer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link InMemoryLeaseStore}
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ */
+public class TestInMemoryLeaseStore {
+
+    @Test
+    public void onlyOneNodeHoldsALease() {
+        InMemoryLeaseStore store = new InMemoryLeaseStore();
+        long now = System.currentTimeMillis();
+        Lease first = store.tryAcquire("cleanup", "node1", now + 60000);
+        assertNotNull(first);
+        assertNull(store.tryAcquire("cleanup", "node2", now + 60000));
+        assertNotNull(store.tryAcquire("other-task", "node2", now + 60000));
+
+        // Renewing keeps the fencing token
+        Lease renewed = store.tryAcquire("cleanup", "node1", now + 120000);
+        assertEquals(first.getToken(), renewed.getToken());
+        assertTrue(store.isValid(renewed));
+    }
+
+    @Test
+    public void expiredLeasesArePassedOnWithANewToken() {
+        InMemoryLeaseStore store = new InMemoryLeaseStore();
+        long now = System.currentTimeMillis();
+        Lease first = store.tryAcquire("cleanup", "node1", now - 1);
+        assertFalse(store.isValid(first));
+        Lease second = store.tryAcquire("cleanup", "node2", now + 60000);
+        assertNotNull(second);
+        assertTrue(second.getToken() > first.getToken());
+
+        // The former owner must not release the lease of the new one
+        store.release(first);
+        assertTrue(store.isValid(second));
+        store.release(second);
+        assertFalse(store.isValid(second));
+        assertNotNull(store.tryAcquire("cleanup", "node1", now + 60000));
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.timer;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for the catch up and overlap handling of {@link TimerService}
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ */
+public class TestTimerService {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long START = 1000000000000L;
+
+    /*
+     * Records the submitted executions instead of handing them over to the timer executor
+     */
+    static class RecordingTimerService extends TimerService {
+        private final List<Integer> submitted = Lists.newArrayList();
+
+        @Override
+        void submit(TaskInfo info, int runs) {
+            submitted.add(runs);
+        }
+    }
+
+    static class CountingTask implements ScheduledTask {
+        private final AtomicInteger executions = new AtomicInteger();
+        private final Schedule schedule;
+
+        CountingTask(Schedule schedule) {
+            this.schedule = schedule;
+        }
+
+        @Override
+        public Schedule getSchedule() {
+            return schedule;
+        }
+
+        @Override
+        public void runTimer() throws Exception {
+            executions.incrementAndGet();
+        }
+    }
+
+    private RecordingTimerService timer = new RecordingTimerService();
+
+    private TimerService.TaskInfo start(Schedule schedule) {
+        TimerService.TaskInfo info =
+                new TimerService.TaskInfo(new CountingTask(schedule), ScheduledTask.class, schedule);
+        timer.start(info, START);
+        assertEquals(START + MINUTE, info.getNextExecution());
+        return info;
+    }
+
+    @Test
+    public void runsOnceWhenOnTime() {
+        TimerService.TaskInfo info = start(Schedule.every(1, TimeUnit.MINUTES));
+        timer.fire(info, START + MINUTE);
+        assertEquals(Lists.newArrayList(1), timer.submitted);
+        assertEquals(0, info.getSkipped());
+        assertEquals(START + 2 * MINUTE, info.getNextExecution());
+    }
+
+    @Test
+    public void waitsIfTheClockWasSetBack() {
+        TimerService.TaskInfo info = start(Schedule.every(1, TimeUnit.MINUTES));
+        timer.fire(info, START);
+        assertTrue(timer.submitted.isEmpty());
+        assertEquals(START + MINUTE, info.getNextExecution());
+    }
+
+    @Test
+    public void skipDropsAllMissedExecutions() {
+        TimerService.TaskInfo info =
+                start(Schedule.every(1, TimeUnit.MINUTES).withCatchUp(Schedule.CatchUp.SKIP));
+        // The executions at +1, +2, +3 and +4 minutes are due
+        timer.fire(info, START + 4 * MINUTE + MINUTE / 2);
+        assertTrue(timer.submitted.isEmpty());
+        assertEquals(4, info.getSkipped());
+        assertEquals(START + 5 * MINUTE, info.getNextExecution());
+    }
+
+    @Test
+    public void runOnceExecutesOnceForAllMissedExecutions() {
+        TimerService.TaskInfo info = start(Schedule.every(1, TimeUnit.MINUTES));
+        assertEquals(Schedule.CatchUp.RUN_ONCE, info.getSchedule().getCatchUp());
+        timer.fire(info, START + 4 * MINUTE + MINUTE / 2);
+        assertEquals(Lists.newArrayList(1), timer.submitted);
+        assertEquals(3, info.getSkipped());
+        assertEquals(START + 5 * MINUTE, info.getNextExecution());
+    }
+
+    @Test
+    public void runAllExecutesEachMissedExecution() {
+        TimerService.TaskInfo info =
+                start(Schedule.every(1, TimeUnit.MINUTES).withCatchUp(Schedule.CatchUp.RUN_ALL));
+        timer.fire(info, START + 4 * MINUTE + MINUTE / 2);
+        assertEquals(Lists.newArrayList(4), timer.submitted);
+        assertEquals(0, info.getSkipped());
+        assertEquals(START + 5 * MINUTE, info.getNextExecution());
+    }
+
+    @Test
+    public void runAllIsLimitedToMaxCatchUpRuns() {
+        TimerService.TaskInfo info =
+                start(Schedule.every(1, TimeUnit.MINUTES).withCatchUp(Schedule.CatchUp.RUN_ALL));
+        // 150 executions are due, the ones beyond MAX_CATCH_UP_RUNS + 1 are skipped
+        timer.fire(info, START + 150 * MINUTE + MINUTE / 2);
+        assertEquals(Lists.newArrayList(TimerService.MAX_CATCH_UP_RUNS + 1), timer.submitted);
+        assertEquals(150 - TimerService.MAX_CATCH_UP_RUNS - 1, info.getSkipped());
+        assertEquals(START + 151 * MINUTE, info.getNextExecution());
+    }
+
+    @Test
+    public void skipsExecutionsWhileThePreviousOneIsActive() {
+        TimerService.TaskInfo info = start(Schedule.every(1, TimeUnit.MINUTES));
+        timer.fire(info, START + MINUTE);
+        timer.fire(info, START + 2 * MINUTE);
+        assertEquals(Lists.newArrayList(1), timer.submitted);
+        assertEquals(1, info.getOverlaps());
+
+        // Once the first execution completed, the task is executed again
+        timer.perform(info, 1);
+        assertEquals(1, info.getExecutions());
+        timer.fire(info, START + 3 * MINUTE);
+        assertEquals(Lists.newArrayList(1, 1), timer.submitted);
+        assertEquals(1, info.getOverlaps());
+    }
+
+    @Test
+    public void overlappingExecutionsCanBePermitted() {
+        TimerService.TaskInfo info = start(Schedule.every(1, TimeUnit.MINUTES).allowOverlap());
+        timer.fire(info, START + MINUTE);
+        timer.fire(info, START + 2 * MINUTE);
+        assertEquals(Lists.newArrayList(1, 1), timer.submitted);
+        assertEquals(0, info.getOverlaps());
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.kernel.timer;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link TimingWheel}
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ */
+public class TestTimingWheel {
+
+    @Test
+    public void runsTasksInOrderOfTheirDeadline() throws InterruptedException {
+        // Use a small wheel so that some tasks need more than one round
+        TimingWheel wheel = new TimingWheel("test-wheel", 10, TimeUnit.MILLISECONDS, 8);
+        final List<Integer> order = Collections.synchronizedList(Lists.<Integer>newArrayList());
+        final CountDownLatch latch = new CountDownLatch(3);
+        for (final int delay : new int[]{250, 30, 120}) {
+            wheel.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    order.add(delay);
+                    latch.countDown();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+        TimingWheel.Timeout cancelled = wheel.schedule(new Runnable() {
+            @Override
+            public void run() {
+                order.add(-1);
+            }
+        }, 50, TimeUnit.MILLISECONDS);
+        cancelled.cancel();
+        long start = System.currentTimeMillis();
+        wheel.start();
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertTrue(System.currentTimeMillis() - start >= 240);
+            assertEquals(Lists.newArrayList(30, 120, 250), order);
+        } finally {
+            wheel.stop();
+        }
+    }
+}
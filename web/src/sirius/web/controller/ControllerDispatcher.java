@@ -15,8 +15,11 @@ import sirius.kernel.commons.PriorityCollector;
 import sirius.kernel.di.Injector;
 import sirius.kernel.di.std.Parts;
 import sirius.kernel.di.std.Register;
+import sirius.kernel.health.Average;
 import sirius.kernel.health.Exceptions;
 import sirius.kernel.health.Log;
+import sirius.web.health.MetricProvider;
+import sirius.web.health.MetricsCollector;
 import sirius.web.http.InputStreamHandler;
 import sirius.web.http.WebContext;
 import sirius.web.http.WebDispatcher;
@@ -33,11 +36,16 @@ import java.util.List;
  * @since 2013/11
  */
 @Register
-public class ControllerDispatcher implements WebDispatcher {
+public class ControllerDispatcher implements WebDispatcher, MetricProvider {
 
     protected static final Log LOG = Log.get("controller");
 
-    private List<Route> routes;
+    private RouteTree routes;
+
+    /*
+     * Contains the number of routes checked per routed request
+     */
+    private Average visitedRoutes = new Average();
 
     @Parts(Interceptor.class)
     private Collection<Interceptor> interceptors;
@@ -71,11 +79,21 @@ public class ControllerDispatcher implements WebDispatcher {
         return route(ctx, false);
     }
 
+    @Override
+    public void gather(MetricsCollector collector) {
+        collector.metric("controller-visited-routes", "Controller Routes per Lookup", visitedRoutes.getAvg(), null);
+    }
+
     private boolean route(final WebContext ctx, boolean preDispatch) {
-        for (final Route route : routes) {
+        String[] segments = Route.splitURI(ctx.getRequestedURI());
+        List<Route> candidates = routes.findCandidates(segments);
+        int visited = 0;
+        for (final Route route : candidates) {
+            visited++;
             try {
-                final List<Object> params = route.matches(ctx, ctx.getRequestedURI(), preDispatch);
+                final List<Object> params = route.matches(ctx, segments, preDispatch);
                 if (params != null) {
+                    visitedRoutes.addValue(visited);
                     // If a route is pre-dispatchable we inject an InputStream as last parameter of the
                     // call. This is also checked by the route-compiler
                     if (preDispatch) {
@@ -111,6 +129,7 @@ public class ControllerDispatcher implements WebDispatcher {
                     return true;
                 }
             } catch (final Throwable e) {
+                visitedRoutes.addValue(visited);
                 Async.executor("web-mvc").fork(new Runnable() {
                     @Override
                     public void run() {
@@ -122,6 +141,7 @@ public class ControllerDispatcher implements WebDispatcher {
                 return true;
             }
         }
+        visitedRoutes.addValue(visited);
         return false;
     }
 
@@ -139,7 +159,7 @@ public class ControllerDispatcher implements WebDispatcher {
     }
 
     /*
-     * Compiles all available controllers and their methods into a route table
+     * Compiles all available controllers and their methods into a route tree
      */
     private void buildRouter() {
         PriorityCollector<Route> collector = PriorityCollector.create();
@@ -155,7 +175,7 @@ public class ControllerDispatcher implements WebDispatcher {
             }
         }
 
-        routes = collector.getData();
+        routes = new RouteTree(collector.getData());
     }
 
     /*
@@ -39,13 +39,14 @@ class Route {
     private static final Pattern EXPR = Pattern.compile("(:|#|\\$)\\{?(.+?)}?");
 
     private String format;
-    private Pattern pattern;
+    private String[] segments;
     private List<Tuple<String, Object>> expressions = Lists.newArrayList();
     private Method successCallback;
     private String uri;
     private Class<?>[] parameterTypes;
     private Controller controller;
     private boolean preDispatchable;
+    private int index;
 
     /**
      * Compiles a method defined by a {@link Controller}
@@ -61,13 +62,12 @@ class Route {
         result.format = routed.value();
 
         String[] elements = routed.value().split("/");
-        StringBuilder finalPattern = new StringBuilder();
+        List<String> literals = Lists.newArrayList();
         int params = 0;
         for (String element : elements) {
             if (Strings.isFilled(element)) {
                 element = element.trim();
                 element = element.replace("\n", "").replace("\t", "");
-                finalPattern.append("/");
                 Matcher m = EXPR.matcher(element);
                 if (m.matches()) {
                     String key = m.group(1).intern();
@@ -77,11 +77,13 @@ class Route {
                     } else {
                         result.expressions.add(new Tuple<String, Object>(key, m.group(2)));
                     }
-                    finalPattern.append("([^/]+)");
+                    literals.add(null);
                 } else if ("*".equals(element)) {
-                    finalPattern.append("[^/]+");
+                    result.expressions.add(new Tuple<String, Object>("*", null));
+                    literals.add(null);
                 } else {
-                    finalPattern.append(Pattern.quote(element));
+                    result.expressions.add(null);
+                    literals.add(element);
                 }
             }
         }
@@ -102,62 +104,122 @@ class Route {
             throw new IllegalArgumentException(Strings.apply("Method needs '%s' as first parameter",
                                                              WebContext.class.getName()));
         }
-        if (Strings.isEmpty(finalPattern.toString())) {
-            finalPattern = new StringBuilder("/");
-        }
-        result.pattern = Pattern.compile(finalPattern.toString());
+        result.segments = literals.toArray(new String[literals.size()]);
         return result;
     }
 
 
+    /**
+     * Splits the given URI into its path segments as expected by {@link #matches(WebContext, String[], boolean)}.
+     * <p>
+     * Empty segments (caused by a trailing slash or double slashes) cannot be matched by any route, therefore
+     * <tt>null</tt> is returned in this case.
+     * </p>
+     *
+     * @param requestedURI the uri to split
+     * @return the path segments of the given uri or <tt>null</tt> if the uri cannot be matched by any route
+     */
+    protected static String[] splitURI(String requestedURI) {
+        if (requestedURI == null || !requestedURI.startsWith("/")) {
+            return null;
+        }
+        if (requestedURI.length() == 1) {
+            return new String[0];
+        }
+        String[] result = requestedURI.substring(1).split("/", -1);
+        for (String segment : result) {
+            if (segment.isEmpty()) {
+                return null;
+            }
+        }
+        return result;
+    }
+
     /**
      * Determines if this route matches the current request.
      *
-     * @param ctx          defines the current request
-     * @param requestedURI contains the request uri as string
-     * @param preDispatch
+     * @param ctx             defines the current request
+     * @param requestSegments contains the path segments of the request uri as computed by {@link #splitURI(String)}
+     * @param preDispatch     determines if the request is being pre-dispatched (its payload was not processed yet)
      * @return <tt>null</tt> if the route does not match or a list of extracted object from the URI as defined by the template
      */
-    protected List<Object> matches(WebContext ctx, String requestedURI, boolean preDispatch) {
+    protected List<Object> matches(WebContext ctx, String[] requestSegments, boolean preDispatch) {
         try {
             if (preDispatch && !this.preDispatchable) {
                 return null;
             }
-            Matcher m = pattern.matcher(requestedURI);
+            if (requestSegments.length != segments.length) {
+                return null;
+            }
             List<Object> result = new ArrayList<Object>(parameterTypes.length);
-            if (m.matches()) {
-
+            for (int i = 0; i < segments.length; i++) {
+                Tuple<String, Object> expr = expressions.get(i);
+                if (expr == null) {
+                    if (!segments[i].equals(requestSegments[i])) {
+                        return null;
+                    }
+                    continue;
+                }
+                if (expr.getFirst() == "*") {
+                    continue;
+                }
+                String value = URLDecoder.decode(requestSegments[i], Charsets.UTF_8.name());
                 // Compare NLS (translated texts...)
-                for (int i = 1; i <= m.groupCount(); i++) {
-                    Tuple<String, Object> expr = expressions.get(i - 1);
-                    String value = URLDecoder.decode(m.group(i), Charsets.UTF_8.name());
-                    if (expr.getFirst() == "$") {
-                        if (!NLS.get((String) expr.getSecond()).equalsIgnoreCase(value)) {
-                            return null;
-                        }
-                    } else if (expr.getFirst() == "#") {
-                        ctx.setAttribute((String) expr.getSecond(), value);
-                    } else if (expr.getFirst() == ":") {
-                        int idx = (Integer) expr.getSecond();
-                        if (idx == result.size() + 1) {
-                            result.add(Value.of(value).coerce(parameterTypes[idx], null));
-                        } else {
-                            while (result.size() < idx) {
-                                result.add(null);
-                            }
-                            result.set(idx - 1, Value.of(value).coerce(parameterTypes[idx - 1], null));
+                if (expr.getFirst() == "$") {
+                    if (!NLS.get((String) expr.getSecond()).equalsIgnoreCase(value)) {
+                        return null;
+                    }
+                } else if (expr.getFirst() == "#") {
+                    ctx.setAttribute((String) expr.getSecond(), value);
+                } else if (expr.getFirst() == ":") {
+                    int idx = (Integer) expr.getSecond();
+                    if (idx == result.size() + 1) {
+                        result.add(Value.of(value).coerce(parameterTypes[idx], null));
+                    } else {
+                        while (result.size() < idx) {
+                            result.add(null);
                         }
+                        result.set(idx - 1, Value.of(value).coerce(parameterTypes[idx - 1], null));
                     }
                 }
-                CallContext.getCurrent().addToMDC("route", format);
-                return result;
             }
-            return null;
+            CallContext.getCurrent().addToMDC("route", format);
+            return result;
         } catch (UnsupportedEncodingException e) {
             throw Exceptions.handle(WebServer.LOG, e);
         }
     }
 
+    /**
+     * Returns the path segments of this route.
+     * <p>
+     * Literal segments are returned as string, placeholders (<tt>:1</tt>, <tt>#attr</tt>, <tt>$nls</tt> or
+     * <tt>*</tt>) are represented as <tt>null</tt> as they match any non-empty segment.
+     * </p>
+     *
+     * @return the segments of this route
+     */
+    protected String[] getSegments() {
+        return segments;
+    }
+
+    /**
+     * Returns the position of this route in the list of all routes sorted by priority.
+     *
+     * @return the position of this route, where lower values are preferred
+     */
+    protected int getIndex() {
+        return index;
+    }
+
+    /**
+     * Sets the position of this route in the list of all routes sorted by priority.
+     *
+     * @param index the position of this route
+     */
+    protected void setIndex(int index) {
+        this.index = index;
+    }
 
     @Override
     public String toString() {
@@ -0,0 +1,134 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.web.controller;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles a list of {@link Route}s into a prefix tree over their path segments.
+ * <p>
+ * Instead of checking each route against a requested URI, the tree is walked segment by segment. Literal segments
+ * are looked up in a hash map, placeholders (<tt>:1</tt>, <tt>#attr</tt>, <tt>$nls</tt> and <tt>*</tt>) all match
+ * any single non-empty segment and are therefore merged into one child per node. Only the routes found at the end
+ * of this walk are returned as candidates, sorted by their priority.
+ * </p>
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ * @since 2014/02
+ */
+class RouteTree {
+
+    private static final Comparator<Route> BY_INDEX = new Comparator<Route>() {
+        @Override
+        public int compare(Route o1, Route o2) {
+            return o1.getIndex() - o2.getIndex();
+        }
+    };
+
+    /*
+     * Represents a node in the tree. Routes ending at this node are kept in priority order.
+     */
+    private static class Node {
+        private Map<String, Node> literals;
+        private Node placeholder;
+        private List<Route> routes;
+    }
+
+    private final Node root = new Node();
+
+    /**
+     * Creates a tree for the given routes.
+     * <p>
+     * The given list must be sorted by priority. The position of each route is stored in the route itself
+     * and used to restore this order for routes reached via different paths.
+     * </p>
+     *
+     * @param routes the routes to compile, sorted by priority
+     */
+    RouteTree(List<Route> routes) {
+        int index = 0;
+        for (Route route : routes) {
+            route.setIndex(index++);
+            add(route);
+        }
+    }
+
+    private void add(Route route) {
+        Node node = root;
+        for (String segment : route.getSegments()) {
+            if (segment == null) {
+                if (node.placeholder == null) {
+                    node.placeholder = new Node();
+                }
+                node = node.placeholder;
+            } else {
+                if (node.literals == null) {
+                    node.literals = Maps.newHashMap();
+                }
+                Node child = node.literals.get(segment);
+                if (child == null) {
+                    child = new Node();
+                    node.literals.put(segment, child);
+                }
+                node = child;
+            }
+        }
+        if (node.routes == null) {
+            node.routes = Lists.newArrayList();
+        }
+        node.routes.add(route);
+    }
+
+    /**
+     * Returns all routes which structurally match the given path segments.
+     * <p>
+     * Routes are returned in priority order. Each candidate still has to be checked using
+     * {@link Route#matches(sirius.web.http.WebContext, String[], boolean)} as translated texts and the
+     * pre-dispatch flag are not considered by the tree.
+     * </p>
+     *
+     * @param segments the path segments as computed by {@link Route#splitURI(String)}
+     * @return all candidate routes in priority order
+     */
+    List<Route> findCandidates(String[] segments) {
+        if (segments == null) {
+            return Collections.emptyList();
+        }
+        List<Route> result = Lists.newArrayList();
+        collect(root, segments, 0, result);
+        if (result.size() > 1) {
+            Collections.sort(result, BY_INDEX);
+        }
+        return result;
+    }
+
+    private void collect(Node node, String[] segments, int position, List<Route> result) {
+        if (position == segments.length) {
+            if (node.routes != null) {
+                result.addAll(node.routes);
+            }
+            return;
+        }
+        if (node.literals != null) {
+            Node child = node.literals.get(segments[position]);
+            if (child != null) {
+                collect(child, segments, position + 1, result);
+            }
+        }
+        if (node.placeholder != null) {
+            collect(node.placeholder, segments, position + 1, result);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.web.health;
+
+import sirius.kernel.cache.CacheManager;
+import sirius.kernel.cache.InvalidationBus;
+import sirius.kernel.di.std.Register;
+
+/**
+ * Reports the lag and the number of sent, received and dropped batches of the cache invalidation bus.
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ * @since 2014/02
+ */
+@Register
+public class CacheInvalidationMetricProvider implements MetricProvider {
+
+    @Override
+    public void gather(MetricsCollector collector) {
+        InvalidationBus bus = CacheManager.getInvalidationBus();
+        if (bus == null) {
+            return;
+        }
+        collector.metric("cache-invalidation-lag", "Cache Invalidation Lag", bus.getLag(), "ms");
+        collector.differentialMetric("cache-invalidation-sent",
+                                     "cache-invalidation-sent",
+                                     "Cache Invalidations Sent",
+                                     bus.getNumSent(),
+                                     "/min");
+        collector.differentialMetric("cache-invalidation-received",
+                                     "cache-invalidation-received",
+                                     "Cache Invalidations Received",
+                                     bus.getNumReceived(),
+                                     "/min");
+        collector.differentialMetric("cache-invalidation-dropped",
+                                     "cache-invalidation-dropped",
+                                     "Cache Invalidations Dropped",
+                                     bus.getNumDropped(),
+                                     "/min");
+    }
+}
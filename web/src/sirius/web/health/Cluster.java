@@ -9,39 +9,50 @@
 package sirius.web.health;
 
 
-import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.JSONArray;
-import com.alibaba.fastjson.JSONObject;
-import com.google.common.base.Charsets;
 import com.google.common.collect.Lists;
-import com.google.common.io.CharStreams;
+import com.ning.http.client.AsyncCompletionHandler;
+import com.ning.http.client.AsyncHttpClient;
+import com.ning.http.client.AsyncHttpClientConfig;
+import com.ning.http.client.ListenableFuture;
+import com.ning.http.client.Response;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
 import org.joda.time.DateTime;
+import org.joda.time.Duration;
 import sirius.kernel.Sirius;
 import sirius.kernel.async.CallContext;
 import sirius.kernel.commons.Strings;
+import sirius.kernel.commons.Watch;
+import sirius.kernel.di.Lifecycle;
 import sirius.kernel.di.std.ConfigValue;
 import sirius.kernel.di.std.Part;
 import sirius.kernel.di.std.Register;
 import sirius.kernel.health.Exceptions;
+import sirius.kernel.health.Histogram;
 import sirius.kernel.health.Log;
 import sirius.kernel.timer.EveryMinute;
 
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.URL;
-import java.net.URLConnection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Created with IntelliJ IDEA.
- * User: aha
- * Date: 27.12.13
- * Time: 16:22
- * To change this template use File | Settings | File Templates.
+ * Monitors the state of all nodes listed in <tt>health.cluster.nodes</tt>.
+ * <p>
+ * Once a minute, all nodes are polled concurrently (using non-blocking IO) for their <tt>system/node-info</tt>. All
+ * nodes which did not respond within <tt>health.cluster.timeout</tt> are considered to be failing. The round trip
+ * time of each node is reported as metric.
+ * </p>
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ * @since 2013/12
  */
-@Register(classes = {Cluster.class, EveryMinute.class})
-public class Cluster implements EveryMinute {
+@Register(classes = {Cluster.class, EveryMinute.class, MetricProvider.class, Lifecycle.class})
+public class Cluster implements EveryMinute, MetricProvider, Lifecycle {
 
     public static final Log LOG = Log.get("cluster");
 
@@ -52,6 +63,28 @@ public class Cluster implements EveryMinute {
     @ConfigValue("health.cluster.priority")
     private int priority;
 
+    @ConfigValue("health.cluster.timeout")
+    private Duration timeout;
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private AsyncHttpClient client;
+
+    /*
+     * Contains the outcome of polling a node
+     */
+    static class PollResult {
+        String name;
+        Metrics.MetricState nodeState;
+        Metrics.MetricState clusterState;
+        int priority;
+        List<Metric> metrics = Lists.newArrayList();
+        List<HistogramMetric> histograms = Lists.newArrayList();
+        long latency;
+        Throwable error;
+        volatile boolean completed;
+    }
+
     @Part
     private Metrics metrics;
 
@@ -115,45 +148,31 @@ public class Cluster implements EveryMinute {
         // Compute cluster state
         Metrics.MetricState newClusterState = newNodeState;
         LOG.FINE("Scanning cluster...");
-        for (NodeInfo info : getNodeInfos()) {
-            try {
-                LOG.FINE("Testing node: %s", info.getEndpoint());
-                URLConnection c = new URL(info.getEndpoint() + "/service/json/system/node-info").openConnection();
-                c.setConnectTimeout(10000);
-                c.setReadTimeout(10000);
-                c.setDoInput(true);
-                c.setDoOutput(false);
-                try (InputStream in = c.getInputStream()) {
-                    JSONObject response = JSON.parseObject(CharStreams.toString(new InputStreamReader(in,
-                                                                                                      Charsets.UTF_8)));
-                    info.setName(response.getString("name"));
-                    info.setNodeState(Metrics.MetricState.valueOf(response.getString("nodeState")));
-                    if (info.getNodeState().ordinal() > newClusterState.ordinal()) {
-                        newClusterState = info.getNodeState();
-                    }
-                    info.setClusterState(Metrics.MetricState.valueOf(response.getString("clusterState")));
-                    info.setPriority(response.getInteger("priority"));
-                    info.setLastPing(new DateTime());
-                    info.getMetrics().clear();
-                    JSONArray metrics = response.getJSONArray("metrics");
-                    for (int i = 0; i < metrics.size(); i++) {
-                        try {
-                            JSONObject metric = (JSONObject) metrics.get(i);
-                            Metric m = new Metric(metric.getString("name"),
-                                                  metric.getDoubleValue("value"),
-                                                  Metrics.MetricState.valueOf(metric.getString("state")),
-                                                  metric.getString("unit"));
-                            info.getMetrics().add(m);
-                        } catch (Throwable e) {
-                            // Ignore non-well-formed metrics...
-                            LOG.FINE(e);
-                        }
-                    }
-                    info.resetPingFailures();
-                    LOG.FINE("Node: %s is %s (%s)", info.getName(), info.getNodeState(), info.getClusterState());
+        List<NodeInfo> infos = getNodeInfos();
+        PollResult[] results = pollNodes(infos);
+        for (int i = 0; i < infos.size(); i++) {
+            NodeInfo info = infos.get(i);
+            PollResult result = results[i];
+            if (result.error == null) {
+                info.setName(result.name);
+                info.setNodeState(result.nodeState);
+                info.setClusterState(result.clusterState);
+                info.setPriority(result.priority);
+                info.setLastPing(new DateTime());
+                info.setLatency(result.latency);
+                info.setMetrics(result.metrics);
+                info.setHistograms(result.histograms);
+                info.resetPingFailures();
+                if (info.getNodeState().ordinal() > newClusterState.ordinal()) {
+                    newClusterState = info.getNodeState();
                 }
-            } catch (Throwable t) {
-                Exceptions.handle(LOG, t);
+                LOG.FINE("Node: %s is %s (%s)", info.getName(), info.getNodeState(), info.getClusterState());
+            } else {
+                Exceptions.handle()
+                          .to(LOG)
+                          .error(result.error)
+                          .withSystemErrorMessage("Cannot poll the cluster node %s: %s (%s)", info.getEndpoint())
+                          .handle();
                 info.setNodeState(Metrics.MetricState.RED);
                 info.setClusterState(Metrics.MetricState.RED);
                 newClusterState = Metrics.MetricState.RED;
@@ -178,6 +197,216 @@ public class Cluster implements EveryMinute {
         clusterState = newClusterState;
     }
 
+    /*
+     * Polls all given nodes concurrently and waits until either all responded or the timeout is reached
+     */
+    private PollResult[] pollNodes(List<NodeInfo> infos) {
+        final PollResult[] results = new PollResult[infos.size()];
+        final CountDownLatch latch = new CountDownLatch(infos.size());
+        List<ListenableFuture<PollResult>> futures = Lists.newArrayList();
+        for (int i = 0; i < infos.size(); i++) {
+            final PollResult result = new PollResult();
+            results[i] = result;
+            final Watch w = Watch.start();
+            String url = infos.get(i).getEndpoint() + "/service/json/system/node-info";
+            LOG.FINE("Testing node: %s", infos.get(i).getEndpoint());
+            try {
+                futures.add(getClient().prepareGet(url).execute(new AsyncCompletionHandler<PollResult>() {
+                    @Override
+                    public PollResult onCompleted(Response response) throws Exception {
+                        try {
+                            result.latency = w.elapsedMillis();
+                            if (response.getStatusCode() != 200) {
+                                throw new IOException("Unexpected HTTP status: " + response.getStatusCode());
+                            }
+                            try (InputStream in = response.getResponseBodyAsStream()) {
+                                parseNodeInfo(in, result);
+                            }
+                        } catch (Throwable e) {
+                            result.error = e;
+                        } finally {
+                            result.completed = true;
+                            latch.countDown();
+                        }
+                        return result;
+                    }
+
+                    @Override
+                    public void onThrowable(Throwable t) {
+                        result.error = t;
+                        result.completed = true;
+                        latch.countDown();
+                    }
+                }));
+            } catch (Throwable e) {
+                result.error = e;
+                result.completed = true;
+                latch.countDown();
+            }
+        }
+        try {
+            if (!latch.await(getTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                for (ListenableFuture<PollResult> future : futures) {
+                    future.cancel(true);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Nodes which did not respond in time are considered as failed. A response arriving later will only fill
+        // the discarded result.
+        for (int i = 0; i < results.length; i++) {
+            if (!results[i].completed) {
+                PollResult timedOut = new PollResult();
+                timedOut.error = new IOException(Strings.apply("No response within %d ms", getTimeoutMillis()));
+                results[i] = timedOut;
+            }
+        }
+        return results;
+    }
+
+    private long getTimeoutMillis() {
+        return timeout == null || timeout.getMillis() <= 0 ? TimeUnit.SECONDS.toMillis(10) : timeout.getMillis();
+    }
+
+    private synchronized AsyncHttpClient getClient() {
+        if (client == null) {
+            int timeoutMillis = (int) getTimeoutMillis();
+            client = new AsyncHttpClient(new AsyncHttpClientConfig.Builder().setAllowPoolingConnection(true)
+                                                                            .setConnectionTimeoutInMs(timeoutMillis)
+                                                                            .setRequestTimeoutInMs(timeoutMillis)
+                                                                            .build());
+        }
+        return client;
+    }
+
+    @Override
+    public void started() {
+    }
+
+    @Override
+    public synchronized void stopped() {
+        if (client != null) {
+            client.close();
+            client = null;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "cluster (Cluster Monitoring)";
+    }
+
+    /*
+     * Parses the response of the node-info service (see NodeInfoService) without building a JSON tree
+     */
+    static void parseNodeInfo(InputStream in, PollResult result) throws IOException {
+        JsonParser parser = JSON_FACTORY.createJsonParser(in);
+        try {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("name".equals(field)) {
+                    result.name = parser.getText();
+                } else if ("nodeState".equals(field)) {
+                    result.nodeState = Metrics.MetricState.valueOf(parser.getText());
+                } else if ("clusterState".equals(field)) {
+                    result.clusterState = Metrics.MetricState.valueOf(parser.getText());
+                } else if ("priority".equals(field)) {
+                    result.priority = parser.getIntValue();
+                } else if ("metrics".equals(field) && parser.getCurrentToken() == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        parseMetric(parser, result);
+                    }
+                } else if ("histograms".equals(field) && parser.getCurrentToken() == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        parseHistogram(parser, result);
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (result.nodeState == null || result.clusterState == null) {
+                throw new IOException("Incomplete node info");
+            }
+        } finally {
+            parser.close();
+        }
+    }
+
+    private static void parseMetric(JsonParser parser, PollResult result) throws IOException {
+        String name = null;
+        double value = 0d;
+        String unit = null;
+        String state = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("name".equals(field)) {
+                name = parser.getText();
+            } else if ("value".equals(field) && token != JsonToken.VALUE_NULL) {
+                value = parser.getValueAsDouble();
+            } else if ("unit".equals(field) && token != JsonToken.VALUE_NULL) {
+                unit = parser.getText();
+            } else if ("state".equals(field)) {
+                state = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        try {
+            result.metrics.add(new Metric(name, value, Metrics.MetricState.valueOf(state), unit));
+        } catch (Throwable e) {
+            // Ignore non-well-formed metrics...
+            LOG.FINE(e);
+        }
+    }
+
+    private static void parseHistogram(JsonParser parser, PollResult result) throws IOException {
+        String name = null;
+        String unit = null;
+        String data = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("name".equals(field)) {
+                name = parser.getText();
+            } else if ("unit".equals(field) && token != JsonToken.VALUE_NULL) {
+                unit = parser.getText();
+            } else if ("data".equals(field)) {
+                data = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (Strings.isEmpty(name) || Strings.isEmpty(data)) {
+            return;
+        }
+        try {
+            result.histograms.add(new HistogramMetric(name, unit, Histogram.Snapshot.parse(data)));
+        } catch (IllegalArgumentException e) {
+            // Ignore non-well-formed histograms...
+            LOG.FINE(e);
+        }
+    }
+
+    @Override
+    public void gather(MetricsCollector collector) {
+        for (NodeInfo info : Lists.newArrayList(getNodeInfos())) {
+            if (info.getPingFailures() == 0 && info.getLastPing() != null) {
+                collector.metric("cluster-latency",
+                                 "Cluster Latency: " + (Strings.isFilled(info.getName()) ?
+                                                        info.getName() :
+                                                        info.getEndpoint()),
+                                 info.getLatency(),
+                                 "ms");
+            }
+        }
+    }
+
     private void ensureAlertClusterFailure() {
         if (!isBestAvailableNode()) {
             // Check if a node with a better priority also detected the cluster failure and considers itself GREEN
@@ -0,0 +1,267 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.web.health;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import sirius.kernel.di.std.Part;
+import sirius.kernel.di.std.Register;
+import sirius.kernel.timer.EveryMinute;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Combines the metrics and histograms of all nodes of the cluster into cluster wide values.
+ * <p>
+ * The values of the local node are combined with the values reported by all nodes which responded to the last poll
+ * of the {@link Cluster}. For each metric, the sum, minimum, maximum and average across all nodes is computed.
+ * Histograms are merged, so that the reported percentiles are those of all requests handled by the cluster - not
+ * just the worst percentile of a single node.
+ * </p>
+ * <p>
+ * If other nodes are configured (<tt>health.cluster.nodes</tt>), the aggregated values are stored once a minute in
+ * the {@link MetricsDB} (prefixed with <tt>cluster-</tt>) so that they are available as time series.
+ * </p>
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ * @since 2014/02
+ */
+@Register(classes = {ClusterMetrics.class, EveryMinute.class})
+public class ClusterMetrics implements EveryMinute {
+
+    @Part
+    private Cluster cluster;
+
+    @Part
+    private Metrics metrics;
+
+    @Part
+    private MetricsDB metricsDB;
+
+    /**
+     * Determines how the values of the individual nodes are combined into the value reported for the cluster.
+     */
+    public static enum Aggregation {
+        /**
+         * The values of all nodes are summed up (used for rates and counters)
+         */
+        SUM,
+
+        /**
+         * The average of all nodes is used (used for utilizations given in percent)
+         */
+        AVG,
+
+        /**
+         * The maximal value of all nodes is used (used for durations)
+         */
+        MAX
+    }
+
+    /**
+     * Represents the values of a metric reported by all nodes of the cluster.
+     */
+    public static class AggregatedMetric implements Comparable<AggregatedMetric> {
+        private final String name;
+        private final String unit;
+        private int nodes;
+        private double sum;
+        private double min = Double.MAX_VALUE;
+        private double max = -Double.MAX_VALUE;
+
+        private AggregatedMetric(String name, String unit) {
+            this.name = name;
+            this.unit = unit;
+        }
+
+        private void add(double value) {
+            nodes++;
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getUnit() {
+            return unit;
+        }
+
+        /**
+         * Returns the number of nodes which reported this metric.
+         *
+         * @return the number of values which were aggregated
+         */
+        public int getNodes() {
+            return nodes;
+        }
+
+        public double getSum() {
+            return sum;
+        }
+
+        public double getMin() {
+            return min;
+        }
+
+        public double getMax() {
+            return max;
+        }
+
+        public double getAvg() {
+            return sum / nodes;
+        }
+
+        /**
+         * Returns the aggregation which is used by default, based on the unit of the metric.
+         *
+         * @return {@link Aggregation#AVG} for percentages, {@link Aggregation#MAX} for durations and
+         *         {@link Aggregation#SUM} for everything else
+         */
+        public Aggregation getAggregation() {
+            if ("%".equals(unit)) {
+                return Aggregation.AVG;
+            }
+            if ("ms".equals(unit)) {
+                return Aggregation.MAX;
+            }
+            return Aggregation.SUM;
+        }
+
+        /**
+         * Returns the value of the cluster based on the default aggregation.
+         *
+         * @return the value of the cluster as determined by {@link #getAggregation()}
+         */
+        public double getValue() {
+            switch (getAggregation()) {
+                case AVG:
+                    return getAvg();
+                case MAX:
+                    return getMax();
+                default:
+                    return getSum();
+            }
+        }
+
+        @Override
+        public int compareTo(AggregatedMetric o) {
+            if (o == null) {
+                return -1;
+            }
+            return name.compareTo(o.name);
+        }
+    }
+
+    /**
+     * Returns the number of nodes (including this one) whose values are contained in the aggregated values.
+     *
+     * @return the number of nodes which responded to the last poll of the cluster plus one for the local node
+     */
+    public int getNumberOfNodes() {
+        return getAvailableNodes().size() + 1;
+    }
+
+    /**
+     * Computes the aggregated values of all metrics of all available nodes.
+     *
+     * @return a list of all metrics known to at least one node, sorted by name
+     */
+    public List<AggregatedMetric> getMetrics() {
+        Map<String, AggregatedMetric> result = Maps.newTreeMap();
+        aggregate(result, metrics.getMetrics());
+        for (NodeInfo info : getAvailableNodes()) {
+            aggregate(result, info.getMetrics());
+        }
+        return Lists.newArrayList(result.values());
+    }
+
+    private void aggregate(Map<String, AggregatedMetric> result, List<Metric> metricsOfNode) {
+        for (Metric metric : metricsOfNode) {
+            AggregatedMetric aggregatedMetric = result.get(metric.getName());
+            if (aggregatedMetric == null) {
+                aggregatedMetric = new AggregatedMetric(metric.getName(), metric.getUnit());
+                result.put(metric.getName(), aggregatedMetric);
+            }
+            aggregatedMetric.add(metric.getValue());
+        }
+    }
+
+    /**
+     * Merges the histograms of all available nodes.
+     *
+     * @return a list of all histograms known to at least one node, sorted by name
+     */
+    public List<HistogramMetric> getHistograms() {
+        Map<String, HistogramMetric> result = Maps.newTreeMap();
+        merge(result, metrics.getHistograms());
+        for (NodeInfo info : getAvailableNodes()) {
+            merge(result, info.getHistograms());
+        }
+        return Lists.newArrayList(result.values());
+    }
+
+    private void merge(Map<String, HistogramMetric> result, List<HistogramMetric> histogramsOfNode) {
+        for (HistogramMetric histogram : histogramsOfNode) {
+            HistogramMetric current = result.get(histogram.getName());
+            if (current == null) {
+                result.put(histogram.getName(), histogram);
+            } else {
+                result.put(histogram.getName(),
+                           new HistogramMetric(current.getName(),
+                                               current.getUnit(),
+                                               current.getSnapshot().merge(histogram.getSnapshot())));
+            }
+        }
+    }
+
+    /*
+     * Returns all other nodes which responded to the last poll
+     */
+    private List<NodeInfo> getAvailableNodes() {
+        List<NodeInfo> result = Lists.newArrayList();
+        for (NodeInfo info : Lists.newArrayList(cluster.getNodeInfos())) {
+            if (info.getPingFailures() == 0 && info.getLastPing() != null) {
+                result.add(info);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void runTimer() throws Exception {
+        if (cluster.getNodeInfos().isEmpty()) {
+            return;
+        }
+        // Values computed from merged histograms are more accurate than aggregating the values derived from the
+        // histograms of each node (e.g. the p99 of each node). Therefore these are stored first and take precedence.
+        Set<String> stored = Sets.newHashSet();
+        for (HistogramMetric histogram : getHistograms()) {
+            store(stored, histogram.getName() + " (avg)", histogram.getSnapshot().getAvg());
+            store(stored, histogram.getName() + " (p50)", histogram.getSnapshot().getP50());
+            store(stored, histogram.getName() + " (p99)", histogram.getSnapshot().getP99());
+            store(stored, histogram.getName() + " (max)", histogram.getSnapshot().getMax());
+        }
+        for (AggregatedMetric metric : getMetrics()) {
+            store(stored, metric.getName(), metric.getValue());
+        }
+    }
+
+    private void store(Set<String> stored, String title, double value) {
+        String name = "cluster-" + MetricsDB.toMetricName(title);
+        if (stored.add(name)) {
+            metricsDB.storeNow(name, value);
+        }
+    }
+}
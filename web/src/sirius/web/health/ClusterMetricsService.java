@@ -0,0 +1,73 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.web.health;
+
+import sirius.kernel.di.std.Part;
+import sirius.kernel.di.std.Register;
+import sirius.kernel.health.Histogram;
+import sirius.kernel.xml.StructuredOutput;
+import sirius.web.services.ServiceCall;
+import sirius.web.services.StructuredService;
+
+/**
+ * Provides the metrics and histograms aggregated across all nodes of the cluster as JSON or XML.
+ * <p>
+ * For each metric, the sum, minimum, maximum and average across all nodes is reported along with the value
+ * determined by the default aggregation of the metric. For each histogram, the count and the percentiles of the
+ * merged distribution are reported.
+ * </p>
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ * @since 2014/02
+ * @see ClusterMetrics
+ */
+@Register(name = "system/cluster-metrics")
+public class ClusterMetricsService implements StructuredService {
+
+    @Part
+    private ClusterMetrics clusterMetrics;
+
+    @Override
+    public void call(ServiceCall call, StructuredOutput out) throws Exception {
+        out.beginResult();
+        out.property("nodes", clusterMetrics.getNumberOfNodes());
+        out.beginArray("metrics");
+        for (ClusterMetrics.AggregatedMetric metric : clusterMetrics.getMetrics()) {
+            out.beginObject("metric");
+            out.property("name", metric.getName());
+            out.property("unit", metric.getUnit());
+            out.property("nodes", metric.getNodes());
+            out.property("aggregation", metric.getAggregation().name());
+            out.property("value", metric.getValue());
+            out.property("sum", metric.getSum());
+            out.property("min", metric.getMin());
+            out.property("max", metric.getMax());
+            out.property("avg", metric.getAvg());
+            out.endObject();
+        }
+        out.endArray();
+        out.beginArray("histograms");
+        for (HistogramMetric histogram : clusterMetrics.getHistograms()) {
+            Histogram.Snapshot snapshot = histogram.getSnapshot();
+            out.beginObject("histogram");
+            out.property("name", histogram.getName());
+            out.property("unit", histogram.getUnit());
+            out.property("count", snapshot.getCount());
+            out.property("avg", snapshot.getAvg());
+            out.property("p50", snapshot.getP50());
+            out.property("p90", snapshot.getP90());
+            out.property("p99", snapshot.getP99());
+            out.property("p999", snapshot.getP999());
+            out.property("max", snapshot.getMax());
+            out.endObject();
+        }
+        out.endArray();
+        out.endResult();
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.web.health;
+
+import sirius.kernel.health.Histogram;
+
+/**
+ * Represents the distribution of the values recorded by a {@link Histogram} within the last minute.
+ * <p>
+ * In contrast to the percentiles reported as {@link Metric}, these can be combined across nodes.
+ * </p>
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ * @since 2014/02
+ */
+public class HistogramMetric implements Comparable<HistogramMetric> {
+    private final String name;
+    private final String unit;
+    private final Histogram.Snapshot snapshot;
+
+    /**
+     * Creates a new histogram metric.
+     *
+     * @param name     the title of the histogram
+     * @param unit     the unit of the recorded values (may be <tt>null</tt>)
+     * @param snapshot the recorded values
+     */
+    public HistogramMetric(String name, String unit, Histogram.Snapshot snapshot) {
+        this.name = name;
+        this.unit = unit;
+        this.snapshot = snapshot;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getUnit() {
+        return unit;
+    }
+
+    public Histogram.Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    @Override
+    public int compareTo(HistogramMetric o) {
+        if (o == null) {
+            return -1;
+        }
+        return name.compareTo(o.name);
+    }
+}
@@ -12,9 +12,12 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import sirius.kernel.Sirius;
 import sirius.kernel.commons.Collector;
+import sirius.kernel.commons.Strings;
 import sirius.kernel.commons.Tuple;
+import sirius.kernel.di.std.Part;
 import sirius.kernel.di.std.Parts;
 import sirius.kernel.di.std.Register;
+import sirius.kernel.health.Histogram;
 import sirius.kernel.timer.EveryMinute;
 
 import java.util.Collection;
@@ -35,6 +38,7 @@ public class Metrics implements EveryMinute {
     public void runTimer() throws Exception {
         synchronized (this) {
             final Collector<Metric> collector = Collector.create();
+            final List<HistogramMetric> histogramList = Lists.newArrayList();
             for (MetricProvider provider : providers) {
                 provider.gather(new MetricsCollector() {
                     @Override
@@ -54,11 +58,39 @@ public class Metrics implements EveryMinute {
                         }
                         differentials.put(id, currentValue);
                     }
+
+                    @Override
+                    public void percentiles(String limitType,
+                                            String title,
+                                            Histogram.Snapshot snapshot,
+                                            String unit) {
+                        metric(limitType + "-p50", title + " (p50)", snapshot.getP50(), unit);
+                        metric(limitType + "-p90", title + " (p90)", snapshot.getP90(), unit);
+                        metric(limitType + "-p99", title + " (p99)", snapshot.getP99(), unit);
+                        metric(limitType + "-p999", title + " (p99.9)", snapshot.getP999(), unit);
+                        metric(limitType + "-max", title + " (max)", snapshot.getMax(), unit);
+                    }
+
+                    @Override
+                    public void histogram(String limitType, String title, Histogram histogram, String unit) {
+                        Histogram.Snapshot snapshot = histogram.getAndReset();
+                        histogramList.add(new HistogramMetric(title, unit, snapshot));
+                        metric(limitType, title + " (avg)", snapshot.getAvg(), unit);
+                        percentiles(limitType, title, snapshot, unit);
+                    }
                 });
             }
             List<Metric> metricsList = collector.getData();
             Collections.sort(metricsList);
             metrics = metricsList;
+            Collections.sort(histogramList);
+            histograms = histogramList;
+            for (Metric metric : metricsList) {
+                String name = MetricsDB.toMetricName(metric.getName());
+                if (Strings.isFilled(name)) {
+                    metricsDB.storeNow(name, metric.getValue());
+                }
+            }
         }
     }
 
@@ -93,9 +125,13 @@ public class Metrics implements EveryMinute {
         GREEN, YELLOW, RED;
     }
 
+    @Part
+    private MetricsDB metricsDB;
+
     @Parts(MetricProvider.class)
     private Collection<MetricProvider> providers;
     private List<Metric> metrics = Lists.newArrayList();
+    private List<HistogramMetric> histograms = Lists.newArrayList();
     private Map<String, Tuple<Double, Double>> limits = Maps.newHashMap();
     private Map<String, Double> differentials = Maps.newHashMap();
 
@@ -103,5 +139,14 @@ public class Metrics implements EveryMinute {
         return Collections.unmodifiableList(metrics);
     }
 
+    /**
+     * Returns the distributions recorded by all histograms within the last minute.
+     *
+     * @return the histograms reported by all {@link MetricProvider}s during the last collection
+     */
+    public List<HistogramMetric> getHistograms() {
+        return Collections.unmodifiableList(histograms);
+    }
+
 
 }
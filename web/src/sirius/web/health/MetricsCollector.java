@@ -8,6 +8,8 @@
 
 package sirius.web.health;
 
+import sirius.kernel.health.Histogram;
+
 /**
  * Created with IntelliJ IDEA.
  * User: aha
@@ -20,4 +22,34 @@ public interface MetricsCollector {
     void metric(String limitType, String title, double value, String unit);
 
     void differentialMetric(String id, String limitType, String title, double currentValue, String unit);
+
+    /**
+     * Reports the 50th, 90th, 99th and 99.9th percentile as well as the maximal value of the given snapshot.
+     * <p>
+     * Each value is reported as separate metric. The limit type and the title are suffixed with <tt>-p50</tt>,
+     * <tt>-p90</tt>, <tt>-p99</tt>, <tt>-p999</tt> or <tt>-max</tt>.
+     * </p>
+     *
+     * @param limitType the limit type used as prefix for all reported metrics
+     * @param title     the title used as prefix for all reported metrics
+     * @param snapshot  the distribution of values to report
+     * @param unit      the unit of the recorded values
+     */
+    void percentiles(String limitType, String title, Histogram.Snapshot snapshot, String unit);
+
+    /**
+     * Reports the values recorded by the given histogram.
+     * <p>
+     * The collector decides how the histogram is read: The periodic collection of {@link Metrics} reports the
+     * average (suffixed with <tt>(avg)</tt>) and the {@link #percentiles(String, String, Histogram.Snapshot, String)}
+     * of all values recorded since its last run and then resets the histogram. Scrapes by monitoring systems report
+     * all values ever recorded without modifying the histogram.
+     * </p>
+     *
+     * @param limitType the limit type used for all reported metrics
+     * @param title     the title used as prefix for all reported metrics
+     * @param histogram the histogram to report
+     * @param unit      the unit of the recorded values
+     */
+    void histogram(String limitType, String title, Histogram histogram, String unit);
 }
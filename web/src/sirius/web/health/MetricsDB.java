@@ -14,11 +14,23 @@ import org.joda.time.DateTime;
 import sirius.kernel.commons.Strings;
 import sirius.kernel.di.Lifecycle;
 import sirius.kernel.di.std.ConfigValue;
+import sirius.kernel.di.std.Register;
 import sirius.kernel.health.Exceptions;
+import sirius.kernel.health.Log;
 import sirius.kernel.timer.EveryTenMinutes;
 
-import java.io.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -27,36 +39,211 @@ import java.util.Map;
  * <p>
  * This class provides a simple way of storing time dependent statistical values.
  * </p>
+ * <p>
+ * Each metric is stored in one file per month (<tt>[basedir]/[year]/[month]/[metric].mdb</tt>). After a short
+ * header, the file contains a fixed slot (a double) for each minute of the month. Therefore storing a value is a
+ * simple write into a memory mapped file. Empty slots contain <tt>NaN</tt>, which is written when the file is
+ * created. Therefore 0 is stored and aggregated like any other value.
+ * </p>
+ * <p>
+ * The minute slots are followed by rollups (min, max, sum and count) for each hour and each day of the month. These
+ * are updated whenever a value is stored, so that {@link #query(String, DateTime, DateTime, Resolution)} only needs
+ * to read 744 hourly or 31 daily slots per month instead of 44640 minutes. Queries read directly from read only
+ * mappings of the files without copying any data onto the heap. These mappings are kept for the most recently
+ * queried files, so that repeated queries do not map the same files over and over again.
+ * </p>
+ * <p>
+ * Files written by previous versions (a stream of index and value pairs without file extension) are converted once
+ * the system is started. The old file is kept with the extension <tt>.old</tt>.
+ * </p>
  */
+@Register(classes = {MetricsDB.class, Lifecycle.class, EveryTenMinutes.class})
 public class MetricsDB implements Lifecycle, EveryTenMinutes {
 
+    public static final Log LOG = Log.get("metrics");
+
+    /*
+     * Marks the file format and its version ("MDB2")
+     */
+    private static final int MAGIC = 0x4d444232;
+
+    /*
+     * Size of the header, which contains the MAGIC and is padded to 16 bytes
+     */
+    private static final int HEADER_SIZE = 16;
+
+    /*
+     * Number of minute slots per file: one for each minute of the longest month
+     */
+    private static final int SLOTS_PER_MONTH = 31 * 24 * 60;
+
+    /*
+     * Number of hourly rollups per file
+     */
+    private static final int HOURS_PER_MONTH = 31 * 24;
+
+    /*
+     * Number of daily rollups per file
+     */
+    private static final int DAYS_PER_MONTH = 31;
+
+    /*
+     * Size of a rollup: min, max and sum as double followed by the count as long
+     */
+    private static final int ROLLUP_SIZE = 32;
+
+    /*
+     * Positions of the sections within a file
+     */
+    private static final int MINUTES_OFFSET = HEADER_SIZE;
+    private static final int HOURS_OFFSET = MINUTES_OFFSET + SLOTS_PER_MONTH * 8;
+    private static final int DAYS_OFFSET = HOURS_OFFSET + HOURS_PER_MONTH * ROLLUP_SIZE;
+    private static final int FILE_SIZE = DAYS_OFFSET + DAYS_PER_MONTH * ROLLUP_SIZE;
+
+    /*
+     * File extension used by the current format
+     */
+    private static final String EXTENSION = ".mdb";
+
+    /*
+     * File extension used for converted files of the previous format
+     */
+    private static final String LEGACY_EXTENSION = ".old";
+
+    /*
+     * Max number of files for which a read only mapping is kept
+     */
+    private static final int MAX_READ_ONLY_BUFFERS = 64;
+
     @ConfigValue("health.metrics-basedir")
     private String statsBaseDir;
     private File basedir;
 
-    private Map<String, List<StatsEntry>> entries = Maps.newTreeMap();
+    /*
+     * Contains the mapped files of the current month, per metric
+     */
+    private final Map<String, MappedByteBuffer> buffers = Maps.newHashMap();
+    private String currentMonth;
 
-    private class StatsEntry implements Comparable<StatsEntry> {
-        protected DateTime timestamp;
-        protected double value;
+    /*
+     * Contains the read only mappings used by queries, per file. The least recently queried file is dropped once
+     * MAX_READ_ONLY_BUFFERS are kept.
+     */
+    private final Map<File, MappedByteBuffer> readOnlyBuffers =
+            new LinkedHashMap<File, MappedByteBuffer>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<File, MappedByteBuffer> eldest) {
+                    return size() > MAX_READ_ONLY_BUFFERS;
+                }
+            };
 
-        public StatsEntry(DateTime timestamp, double value) {
+    /**
+     * Creates a new database which uses the directory given in <tt>health.metrics-basedir</tt>.
+     */
+    public MetricsDB() {
+    }
+
+    /*
+     * Creates a database which stores its files in the given directory instead of the configured one
+     */
+    MetricsDB(File basedir) {
+        this.statsBaseDir = basedir.getAbsolutePath();
+    }
+
+    /**
+     * Determines the resolution of the data points returned by a query.
+     */
+    public enum Resolution {
+        /**
+         * One data point per minute as stored
+         */
+        MINUTE,
+
+        /**
+         * One data point per hour, computed using the hourly rollups
+         */
+        HOUR,
+
+        /**
+         * One data point per day, computed using the daily rollups
+         */
+        DAY
+    }
+
+    /**
+     * Represents an aggregated value of a metric as returned by a query.
+     */
+    public static class DataPoint {
+        private final DateTime timestamp;
+        private final double min;
+        private final double max;
+        private final double sum;
+        private final long count;
+
+        DataPoint(DateTime timestamp, double min, double max, double sum, long count) {
             this.timestamp = timestamp;
-            this.value = value;
+            this.min = min;
+            this.max = max;
+            this.sum = sum;
+            this.count = count;
+        }
+
+        /**
+         * Returns the start of the minute, hour or day represented by this data point.
+         *
+         * @return the start of the time span of this data point
+         */
+        public DateTime getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * Returns the smallest value stored within the time span.
+         *
+         * @return the minimal value
+         */
+        public double getMin() {
+            return min;
+        }
+
+        /**
+         * Returns the largest value stored within the time span.
+         *
+         * @return the maximal value
+         */
+        public double getMax() {
+            return max;
+        }
+
+        /**
+         * Returns the average of all values stored within the time span.
+         *
+         * @return the average value
+         */
+        public double getAvg() {
+            return count == 0 ? 0d : sum / count;
+        }
+
+        /**
+         * Returns the number of values (minutes) stored within the time span.
+         *
+         * @return the number of values aggregated by this data point
+         */
+        public long getCount() {
+            return count;
         }
 
         @Override
-        public int compareTo(StatsEntry o) {
-            if (o == null || o.timestamp == null) {
-                return 1;
-            }
-            return timestamp.compareTo(o.timestamp);
+        public String toString() {
+            return Strings.apply("%s: %s (%s - %s, %d values)", timestamp, getAvg(), min, max, count);
         }
     }
 
     @Override
     public void started() {
-
+        if (Strings.isFilled(statsBaseDir) && new File(statsBaseDir).exists()) {
+            convertLegacyFiles();
+        }
     }
 
     @Override
@@ -65,98 +252,192 @@ public class MetricsDB implements Lifecycle, EveryTenMinutes {
     }
 
     private void flushDatabase() {
-        synchronized (entries) {
-            if (Strings.isEmpty(statsBaseDir)) {
-                // If no directory is given, we abort
-                return;
+        synchronized (buffers) {
+            for (MappedByteBuffer buffer : buffers.values()) {
+                buffer.force();
             }
-            for (Map.Entry<String, List<StatsEntry>> entry : entries.entrySet()) {
-                appendStats(entry.getKey(), entry.getValue());
-            }
-            entries.clear();
         }
     }
 
-    private void appendStats(String key, List<StatsEntry> entries) {
-        ObjectOutputStream out = null;
-        DateTime lastFileDate = null;
-        int lastIndex = -1;
-        try {
-            try {
-                for (StatsEntry entry : entries) {
-                    if (entry.value != 0.0d) {
-                        if (out == null || !sameMonth(entry.timestamp, lastFileDate)) {
-                            if (out != null) {
-                                out.close();
-                                out = null;
-                            }
-                            File file = getFileForDate(key, entry.timestamp);
-                            lastFileDate = entry.timestamp;
-                            out = new ObjectOutputStream(new FileOutputStream(file, true));
-                            lastIndex = readLastIndexWritten(file);
-                        }
-                        int monthIndex = computeMinuteIndex(entry.timestamp);
-                        if (lastIndex == -1 || lastIndex < monthIndex) {
-                            out.writeInt(monthIndex);
-                            out.writeDouble(entry.value);
-                            lastIndex = monthIndex;
-                        }
-                    }
-                }
-            } finally {
-                if (out != null) {
-                    out.close();
-                }
+    /*
+     * Computes the slot of the given timestamp within its month
+     */
+    private static int computeMinuteIndex(DateTime timestamp) {
+        return 60 * 24 * (timestamp.dayOfMonth().get() - 1) + timestamp.minuteOfDay().get();
+    }
+
+    /*
+     * Returns the file for the given metric and month
+     */
+    private File getFile(String metric, int year, int month) {
+        return new File(new File(new File(getBasedir(), String.valueOf(year)), String.valueOf(month)),
+                        metric + EXTENSION);
+    }
+
+    private File getBasedir() {
+        if (basedir == null) {
+            basedir = new File(statsBaseDir);
+            if (!basedir.exists()) {
+                basedir.mkdirs();
             }
-        } catch (IOException e) {
-            Exceptions.handle(e);
         }
+
+        return basedir;
     }
 
-    private int computeMinuteIndex(DateTime timestamp) {
-        return 60 * 24 * (timestamp.dayOfMonth().get() - 1) + timestamp.minuteOfDay().get();
+    /*
+     * Returns the mapped file for the given metric and month. Creates and initializes the file if necessary.
+     */
+    private MappedByteBuffer getBuffer(String metric, DateTime timestamp) throws IOException {
+        int year = timestamp.year().get();
+        int month = timestamp.monthOfYear().get();
+        String monthKey = year + "/" + month;
+        if (!Strings.areEqual(monthKey, currentMonth)) {
+            // Writes for other months than the current one are rare, so we only keep one month mapped
+            flushDatabase();
+            buffers.clear();
+            currentMonth = monthKey;
+        }
+        MappedByteBuffer buffer = buffers.get(metric);
+        if (buffer == null) {
+            buffer = map(getFile(metric, year, month));
+            buffers.put(metric, buffer);
+        }
+        return buffer;
     }
 
-    private int readLastIndexWritten(File file) {
-        int lastIndex = -1;
-        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(file))) {
-            while (in.available() > 0) {
-                lastIndex = in.readInt();
-                in.readDouble();
+    /*
+     * Maps the given file into memory. New files are created with the header and empty (NaN) minute slots.
+     */
+    private MappedByteBuffer map(File file) throws IOException {
+        file.getParentFile().mkdirs();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            boolean created = raf.length() == 0;
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+            if (created) {
+                for (int minute = 0; minute < SLOTS_PER_MONTH; minute++) {
+                    buffer.putDouble(MINUTES_OFFSET + minute * 8, Double.NaN);
+                }
+                buffer.putInt(0, MAGIC);
+            } else if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("Invalid metrics file: " + file.getAbsolutePath());
             }
-        } catch (IOException ex) {
-            Exceptions.handle(ex);
+            return buffer;
         }
+    }
 
-        return lastIndex;
+    /*
+     * Returns the read only mapping of the given file. Maps the file if it is not mapped yet. Returns null if the
+     * file does not exist.
+     */
+    private MappedByteBuffer getReadOnlyBuffer(File file) throws IOException {
+        synchronized (readOnlyBuffers) {
+            MappedByteBuffer buffer = readOnlyBuffers.get(file);
+            if (buffer == null) {
+                buffer = mapReadOnly(file);
+                if (buffer != null) {
+                    readOnlyBuffers.put(file, buffer);
+                }
+            }
+            return buffer;
+        }
     }
 
-    private File getFileForDate(String metric, DateTime timestamp) {
-        return new File(new File(new File(getBasedir(), String.valueOf(timestamp.year().get())),
-                                 String.valueOf(timestamp.monthOfYear().get())), metric);
+    /*
+     * Maps the given file for reading. Returns null if the file does not exist.
+     */
+    private MappedByteBuffer mapReadOnly(File file) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        synchronized (buffers) {
+            // Files are created and extended while holding the lock, therefore we never see a partially created one
+            if (file.length() < FILE_SIZE) {
+                throw new IOException("Invalid metrics file: " + file.getAbsolutePath());
+            }
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, FILE_SIZE);
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("Invalid metrics file: " + file.getAbsolutePath());
+            }
+            return buffer;
+        }
     }
 
-    private File getBasedir() {
-        if (basedir == null) {
-            basedir = new File(statsBaseDir);
-            if (!basedir.exists()) {
-                basedir.mkdirs();
+    /*
+     * Recomputes the rollup of the given hour (counted from the start of the month) and of its day. Both are
+     * recomputed rather than updated incrementally, as a value stored for the same minute replaces the previous one.
+     */
+    private static void updateRollups(MappedByteBuffer buffer, int hour) {
+        double min = 0d;
+        double max = 0d;
+        double sum = 0d;
+        long count = 0;
+        for (int minute = hour * 60; minute < (hour + 1) * 60; minute++) {
+            double value = buffer.getDouble(MINUTES_OFFSET + minute * 8);
+            if (!Double.isNaN(value)) {
+                min = count == 0 ? value : Math.min(min, value);
+                max = count == 0 ? value : Math.max(max, value);
+                sum += value;
+                count++;
             }
         }
+        writeRollup(buffer, HOURS_OFFSET + hour * ROLLUP_SIZE, min, max, sum, count);
 
-        return basedir;
+        int day = hour / 24;
+        min = 0d;
+        max = 0d;
+        sum = 0d;
+        count = 0;
+        for (int h = day * 24; h < (day + 1) * 24; h++) {
+            int position = HOURS_OFFSET + h * ROLLUP_SIZE;
+            long hourCount = buffer.getLong(position + 24);
+            if (hourCount > 0) {
+                min = count == 0 ? buffer.getDouble(position) : Math.min(min, buffer.getDouble(position));
+                max = count == 0 ? buffer.getDouble(position + 8) : Math.max(max, buffer.getDouble(position + 8));
+                sum += buffer.getDouble(position + 16);
+                count += hourCount;
+            }
+        }
+        writeRollup(buffer, DAYS_OFFSET + day * ROLLUP_SIZE, min, max, sum, count);
     }
 
-    private boolean sameMonth(DateTime timestamp, DateTime lastDate) {
-        return timestamp.monthOfYear().get() == lastDate.monthOfYear().get() && timestamp.dayOfMonth().get() == lastDate
-                .dayOfMonth()
-                .get();
+    private static void writeRollup(MappedByteBuffer buffer,
+                                    int position,
+                                    double min,
+                                    double max,
+                                    double sum,
+                                    long count) {
+        buffer.putDouble(position, min);
+        buffer.putDouble(position + 8, max);
+        buffer.putDouble(position + 16, sum);
+        buffer.putLong(position + 24, count);
     }
 
+    /**
+     * Stores the given value for the given metric using the current time.
+     *
+     * @param metric the name of the metric. Must only consist of lowercase characters, digits, dashes and
+     *               underscores.
+     * @param value  the value to store
+     */
     public void storeNow(String metric, double value) {
         store(metric, new DateTime(), value);
     }
 
+    /**
+     * Stores the given value for the given metric and timestamp.
+     * <p>
+     * Values are stored with a resolution of one minute. Therefore a value stored for the same minute replaces the
+     * previous one. <tt>NaN</tt> is ignored, as it marks empty slots.
+     * </p>
+     *
+     * @param metric    the name of the metric. Must only consist of lowercase characters, digits, dashes and
+     *                  underscores.
+     * @param timestamp the timestamp of the value
+     * @param value     the value to store
+     */
     public void store(String metric, DateTime timestamp, double value) {
         if (!metric.matches("[a-z0-9\\-_]+")) {
             Exceptions.handle()
@@ -166,15 +447,256 @@ public class MetricsDB implements Lifecycle, EveryTenMinutes {
                       .handle();
             return;
         }
-        synchronized (entries) {
-            List<StatsEntry> list = entries.get(metric);
-            if (list == null) {
-                list = Lists.newArrayList();
-                entries.put(metric, list);
+        if (Double.isNaN(value) || Strings.isEmpty(statsBaseDir)) {
+            return;
+        }
+        synchronized (buffers) {
+            try {
+                MappedByteBuffer buffer = getBuffer(metric, timestamp);
+                int index = computeMinuteIndex(timestamp);
+                buffer.putDouble(MINUTES_OFFSET + index * 8, value);
+                updateRollups(buffer, index / 60);
+            } catch (IOException e) {
+                Exceptions.handle(e);
+            }
+        }
+    }
+
+    /**
+     * Reads the values of the given metric stored between <tt>from</tt> and <tt>to</tt>.
+     * <p>
+     * For {@link Resolution#HOUR} and {@link Resolution#DAY} the precomputed rollups are used, therefore a query
+     * spanning several months only reads a few kilobytes per month. Minutes, hours or days without any values are
+     * omitted.
+     * </p>
+     *
+     * @param metric     the name of the metric to read
+     * @param from       the start of the range (inclusive)
+     * @param to         the end of the range (inclusive)
+     * @param resolution determines whether minutes, hours or days are returned
+     * @return a list of data points ordered by their timestamp
+     */
+    public List<DataPoint> query(String metric, DateTime from, DateTime to, Resolution resolution) {
+        List<DataPoint> result = Lists.newArrayList();
+        if (Strings.isEmpty(statsBaseDir) || !metric.matches("[a-z0-9\\-_]+") || from.isAfter(to)) {
+            return result;
+        }
+        DateTime month = from.withDayOfMonth(1).withTimeAtStartOfDay();
+        while (!month.isAfter(to)) {
+            try {
+                MappedByteBuffer buffer =
+                        getReadOnlyBuffer(getFile(metric, month.year().get(), month.monthOfYear().get()));
+                if (buffer != null) {
+                    scanMonth(buffer, month, from, to, resolution, result);
+                }
+            } catch (IOException e) {
+                Exceptions.handle(LOG, e);
+            }
+            month = month.plusMonths(1);
+        }
+        return result;
+    }
+
+    /*
+     * Reads all slots of the given month (its mapped file) within the given range
+     */
+    private void scanMonth(MappedByteBuffer buffer,
+                           DateTime month,
+                           DateTime from,
+                           DateTime to,
+                           Resolution resolution,
+                           List<DataPoint> result) {
+        int minutesPerSlot = resolution == Resolution.DAY ? 24 * 60 : resolution == Resolution.HOUR ? 60 : 1;
+        int first = isSameMonth(month, from) ? computeMinuteIndex(from) / minutesPerSlot : 0;
+        int last = SLOTS_PER_MONTH / minutesPerSlot - 1;
+        if (isSameMonth(month, to)) {
+            last = computeMinuteIndex(to) / minutesPerSlot;
+        }
+        for (int slot = first; slot <= last; slot++) {
+            if (resolution == Resolution.MINUTE) {
+                double value = buffer.getDouble(MINUTES_OFFSET + slot * 8);
+                if (!Double.isNaN(value)) {
+                    result.add(new DataPoint(computeTimestamp(month, slot), value, value, value, 1));
+                }
+            } else {
+                int position = (resolution == Resolution.DAY ? DAYS_OFFSET : HOURS_OFFSET) + slot * ROLLUP_SIZE;
+                long count = buffer.getLong(position + 24);
+                if (count > 0) {
+                    result.add(new DataPoint(computeTimestamp(month, slot * minutesPerSlot),
+                                             buffer.getDouble(position),
+                                             buffer.getDouble(position + 8),
+                                             buffer.getDouble(position + 16),
+                                             count));
+                }
+            }
+        }
+    }
+
+    private static boolean isSameMonth(DateTime month, DateTime timestamp) {
+        return month.year().get() == timestamp.year().get()
+               && month.monthOfYear().get() == timestamp.monthOfYear().get();
+    }
+
+    /*
+     * Computes the timestamp of the given minute slot of the given month (inverse of computeMinuteIndex)
+     */
+    private static DateTime computeTimestamp(DateTime month, int minuteIndex) {
+        int minuteOfDay = minuteIndex % (24 * 60);
+        return new DateTime(month.year().get(),
+                            month.monthOfYear().get(),
+                            minuteIndex / (24 * 60) + 1,
+                            minuteOfDay / 60,
+                            minuteOfDay % 60,
+                            month.getChronology());
+    }
+
+    /**
+     * Returns the names of all metrics which have values stored for the current month.
+     *
+     * @return a sorted list of all metric names known for the current month
+     */
+    public List<String> getMetrics() {
+        List<String> result = Lists.newArrayList();
+        if (Strings.isEmpty(statsBaseDir)) {
+            return result;
+        }
+        DateTime now = new DateTime();
+        File[] files = getFile("metric", now.year().get(), now.monthOfYear().get()).getParentFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(EXTENSION)) {
+                    result.add(file.getName().substring(0, file.getName().length() - EXTENSION.length()));
+                }
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * Converts the given title of a metric into a valid metric name.
+     * <p>
+     * All characters are converted to lowercase and every sequence of characters other than letters and digits is
+     * replaced by a single dash.
+     * </p>
+     *
+     * @param title the title to convert (e.g. "HTTP Bytes-In")
+     * @return a valid name for the metric (e.g. "http-bytes-in")
+     */
+    public static String toMetricName(String title) {
+        String name = title.toLowerCase().replaceAll("[^a-z0-9]+", "-");
+        if (name.startsWith("-")) {
+            name = name.substring(1);
+        }
+        if (name.endsWith("-")) {
+            name = name.substring(0, name.length() - 1);
+        }
+        return name;
+    }
+
+    /*
+     * Converts all files of the previous format into the current one
+     */
+    private void convertLegacyFiles() {
+        File[] years = getBasedir().listFiles();
+        if (years == null) {
+            return;
+        }
+        int converted = 0;
+        for (File year : years) {
+            File[] months = year.listFiles();
+            if (!year.isDirectory() || months == null) {
+                continue;
+            }
+            for (File month : months) {
+                File[] files = month.listFiles();
+                if (!month.isDirectory() || files == null) {
+                    continue;
+                }
+                for (File file : files) {
+                    if (file.isFile() && file.getName().matches("[a-z0-9\\-_]+")) {
+                        if (convertLegacyFile(file, new File(month, file.getName() + EXTENSION))) {
+                            converted++;
+                        }
+                    }
+                }
+            }
+        }
+        if (converted > 0) {
+            LOG.INFO("Converted %d metric files into the current format", converted);
+        }
+    }
+
+    /*
+     * Converts a single file. The previous format was written by appending a new ObjectOutputStream for each flush.
+     * Therefore the file consists of several stream headers and block data records which contain index and value
+     * pairs.
+     */
+    private boolean convertLegacyFile(File legacyFile, File file) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(readBlockData(legacyFile)));
+            synchronized (buffers) {
+                MappedByteBuffer buffer = map(file);
+                while (in.available() >= 12) {
+                    int index = in.readInt();
+                    double value = in.readDouble();
+                    if (index >= 0 && index < SLOTS_PER_MONTH) {
+                        buffer.putDouble(MINUTES_OFFSET + index * 8, value);
+                    }
+                }
+                for (int hour = 0; hour < HOURS_PER_MONTH; hour++) {
+                    updateRollups(buffer, hour);
+                }
+                buffer.force();
+            }
+            if (!legacyFile.renameTo(new File(legacyFile.getParentFile(), legacyFile.getName() + LEGACY_EXTENSION))) {
+                LOG.WARN("Cannot rename converted metrics file: %s", legacyFile.getAbsolutePath());
+            }
+            return true;
+        } catch (Throwable e) {
+            Exceptions.handle()
+                      .to(LOG)
+                      .error(e)
+                      .withSystemErrorMessage("Cannot convert the metrics file %s: %s (%s)",
+                                              legacyFile.getAbsolutePath())
+                      .handle();
+            return false;
+        }
+    }
+
+    /*
+     * Extracts the payload of all block data records of a file written by one or more ObjectOutputStreams
+     */
+    private byte[] readBlockData(File file) throws IOException {
+        byte[] data = Files.readAllBytes(file.toPath());
+        ByteArrayOutputStream result = new ByteArrayOutputStream(data.length);
+        int pos = 0;
+        while (pos < data.length) {
+            int tc = data[pos] & 0xff;
+            if (tc == 0xac && pos + 3 < data.length && (data[pos + 1] & 0xff) == 0xed) {
+                // Stream header (magic and version) of an appended stream
+                pos += 4;
+            } else if (tc == 0x77 && pos + 1 < data.length) {
+                // Short block data record
+                int length = data[pos + 1] & 0xff;
+                result.write(data, pos + 2, Math.min(length, data.length - pos - 2));
+                pos += 2 + length;
+            } else if (tc == 0x7a && pos + 4 < data.length) {
+                // Long block data record
+                int length = ((data[pos + 1] & 0xff) << 24)
+                             | ((data[pos + 2] & 0xff) << 16)
+                             | ((data[pos + 3] & 0xff) << 8)
+                             | (data[pos + 4] & 0xff);
+                result.write(data, pos + 5, Math.min(length, data.length - pos - 5));
+                pos += 5 + length;
+            } else if (tc == 0x79) {
+                // Reset
+                pos++;
+            } else {
+                throw new IOException(Strings.apply("Unexpected record type %d at position %d", tc, pos));
             }
-            list.add(new StatsEntry(timestamp, value));
-            Collections.sort(list);
         }
+        return result.toByteArray();
     }
 
     @Override
@@ -0,0 +1,105 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.web.health;
+
+import org.joda.time.DateTime;
+import sirius.kernel.commons.Strings;
+import sirius.kernel.commons.Value;
+import sirius.kernel.di.std.Part;
+import sirius.kernel.di.std.Register;
+import sirius.kernel.xml.StructuredOutput;
+import sirius.web.services.ServiceCall;
+import sirius.web.services.StructuredService;
+
+import java.util.List;
+
+/**
+ * Provides the time series stored in the {@link MetricsDB} as JSON or XML.
+ * <p>
+ * Expects the parameter <tt>metric</tt> along with <tt>from</tt> and <tt>to</tt> (milliseconds since epoch, by
+ * default the last 24 hours) and an optional <tt>resolution</tt> (MINUTE, HOUR or DAY). If no resolution is given,
+ * it is chosen based on the length of the range. If no metric is given, all known metrics are listed.
+ * </p>
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ * @since 2014/02
+ */
+@Register(name = "system/metrics")
+public class MetricsDBService implements StructuredService {
+
+    @Part
+    private MetricsDB metricsDB;
+
+    /**
+     * Creates a new service which reads from the registered {@link MetricsDB}.
+     */
+    public MetricsDBService() {
+    }
+
+    /*
+     * Creates a service which reads from the given database instead of the registered one
+     */
+    MetricsDBService(MetricsDB metricsDB) {
+        this.metricsDB = metricsDB;
+    }
+
+    @Override
+    public void call(ServiceCall call, StructuredOutput out) throws Exception {
+        out.beginResult();
+        String metric = call.get("metric").asString();
+        if (Strings.isEmpty(metric)) {
+            out.beginArray("metrics");
+            for (String name : metricsDB.getMetrics()) {
+                out.property("metric", name);
+            }
+            out.endArray();
+            out.endResult();
+            return;
+        }
+        long now = System.currentTimeMillis();
+        DateTime to = new DateTime(call.get("to").asLong(now));
+        DateTime from = new DateTime(call.get("from").asLong(to.minusDays(1).getMillis()));
+        MetricsDB.Resolution resolution =
+                Value.of(call.get("resolution").toUpperCase()).asEnum(MetricsDB.Resolution.class);
+        if (resolution == null) {
+            resolution = determineResolution(from, to);
+        }
+        List<MetricsDB.DataPoint> points = metricsDB.query(metric, from, to, resolution);
+        out.property("metric", metric);
+        out.property("from", from.getMillis());
+        out.property("to", to.getMillis());
+        out.property("resolution", resolution.name());
+        out.beginArray("points");
+        for (MetricsDB.DataPoint point : points) {
+            out.beginObject("point");
+            out.property("timestamp", point.getTimestamp().getMillis());
+            out.property("min", point.getMin());
+            out.property("max", point.getMax());
+            out.property("avg", point.getAvg());
+            out.property("count", point.getCount());
+            out.endObject();
+        }
+        out.endArray();
+        out.endResult();
+    }
+
+    /*
+     * Picks a resolution which yields at most a few hundred data points
+     */
+    private MetricsDB.Resolution determineResolution(DateTime from, DateTime to) {
+        long hours = (to.getMillis() - from.getMillis()) / (1000 * 60 * 60);
+        if (hours <= 6) {
+            return MetricsDB.Resolution.MINUTE;
+        }
+        if (hours <= 24 * 14) {
+            return MetricsDB.Resolution.HOUR;
+        }
+        return MetricsDB.Resolution.DAY;
+    }
+}
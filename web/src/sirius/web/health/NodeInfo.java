@@ -26,9 +26,11 @@ public class NodeInfo {
     private String endpoint;
     private DateTime lastPing;
     private int pingFailures;
+    private long latency;
     private Metrics.MetricState nodeState;
     private Metrics.MetricState clusterState;
     private List<Metric> metrics = Lists.newArrayList();
+    private List<HistogramMetric> histograms = Lists.newArrayList();
 
 
     public String getName() {
@@ -83,6 +85,36 @@ public class NodeInfo {
         return metrics;
     }
 
+    protected void setMetrics(List<Metric> metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the histograms reported by this node during the last poll.
+     *
+     * @return the distributions recorded by the node within its last minute
+     */
+    public List<HistogramMetric> getHistograms() {
+        return histograms;
+    }
+
+    protected void setHistograms(List<HistogramMetric> histograms) {
+        this.histograms = histograms;
+    }
+
+    /**
+     * Returns the round trip time of the last successful poll of this node.
+     *
+     * @return the time in milliseconds the node took to respond
+     */
+    public long getLatency() {
+        return latency;
+    }
+
+    protected void setLatency(long latency) {
+        this.latency = latency;
+    }
+
     public int getPingFailures() {
         return pingFailures;
     }
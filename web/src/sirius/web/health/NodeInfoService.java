@@ -48,6 +48,15 @@ public class NodeInfoService implements StructuredService {
             out.endObject();
         }
         out.endArray();
+        out.beginArray("histograms");
+        for (HistogramMetric h : metrics.getHistograms()) {
+            out.beginObject("histogram");
+            out.property("name", h.getName());
+            out.property("unit", h.getUnit());
+            out.property("data", h.getSnapshot().toCompactString());
+            out.endObject();
+        }
+        out.endArray();
         out.endResult();
     }
 }
@@ -0,0 +1,183 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.web.health;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import sirius.kernel.async.Async;
+import sirius.kernel.commons.PriorityCollector;
+import sirius.kernel.commons.Strings;
+import sirius.kernel.di.std.ConfigValue;
+import sirius.kernel.di.std.Parts;
+import sirius.kernel.di.std.Register;
+import sirius.kernel.health.Exceptions;
+import sirius.kernel.health.Histogram;
+import sirius.web.http.Response;
+import sirius.web.http.WebContext;
+import sirius.web.http.WebDispatcher;
+
+import java.util.Collection;
+
+/**
+ * Provides all metrics in the OpenMetrics text format so that they can be scraped by Prometheus or compatible
+ * monitoring systems.
+ * <p>
+ * Responds to requests for <tt>health.openmetrics-path</tt> by asking all {@link MetricProvider}s for their current
+ * values. Metrics are reported as gauges, differential metrics as counters (their absolute value) and histograms
+ * with all values ever recorded. In contrast to {@link Metrics}, which collects all values once a minute, scraping
+ * does not modify any state. Therefore any scrape interval can be used.
+ * </p>
+ * <p>
+ * The output is rendered directly into a pooled buffer which is handed to netty. The size of the last output is used
+ * as initial capacity, so that the buffer is usually never resized.
+ * </p>
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ * @since 2014/02
+ */
+@Register
+public class OpenMetricsDispatcher implements WebDispatcher {
+
+    /*
+     * Content types of the OpenMetrics format and of the Prometheus text format, which is a subset of it
+     */
+    private static final String OPEN_METRICS_CONTENT_TYPE =
+            "application/openmetrics-text; version=1.0.0; charset=utf-8";
+    private static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    /*
+     * Upper bounds of the buckets reported for histograms
+     */
+    private static final long[] BUCKET_LIMITS = {1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 60000};
+
+    /*
+     * Quantiles reported for percentiles
+     */
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    @ConfigValue("health.openmetrics-path")
+    private String path;
+
+    @Parts(MetricProvider.class)
+    private Collection<MetricProvider> providers;
+
+    private volatile int lastSize = 4096;
+
+    @Override
+    public int getPriority() {
+        return PriorityCollector.DEFAULT_PRIORITY - 20;
+    }
+
+    @Override
+    public boolean preDispatch(WebContext ctx) throws Exception {
+        return false;
+    }
+
+    @Override
+    public boolean dispatch(final WebContext ctx) throws Exception {
+        if (Strings.isEmpty(path) || !path.equals(ctx.getRequestedURI())) {
+            return false;
+        }
+        Async.executor("openmetrics").fork(new Runnable() {
+            @Override
+            public void run() {
+                boolean openMetrics = ctx.getHeaderValue(HttpHeaders.Names.ACCEPT)
+                                         .asString()
+                                         .contains("application/openmetrics-text");
+                ByteBuf buffer = PooledByteBufAllocator.DEFAULT.directBuffer(lastSize);
+                boolean handedOff = false;
+                try {
+                    render(new OpenMetricsWriter(buffer, openMetrics));
+                    lastSize = buffer.readableBytes() + 1024;
+                    Response response = ctx.respondWith().notCached();
+                    // From now on, the response is responsible for releasing the buffer
+                    handedOff = true;
+                    response.buffer(HttpResponseStatus.OK,
+                                    openMetrics ? OPEN_METRICS_CONTENT_TYPE : PROMETHEUS_CONTENT_TYPE,
+                                    buffer);
+                } catch (Throwable e) {
+                    ctx.respondWith().error(HttpResponseStatus.INTERNAL_SERVER_ERROR, Exceptions.handle(e));
+                } finally {
+                    if (!handedOff) {
+                        buffer.release();
+                    }
+                }
+            }
+        }).dropOnOverload(new Runnable() {
+            @Override
+            public void run() {
+                ctx.respondWith().error(HttpResponseStatus.INTERNAL_SERVER_ERROR, "Request dropped - System overload!");
+            }
+        }).execute();
+        return true;
+    }
+
+    /*
+     * Asks all providers for their metrics and writes them
+     */
+    private void render(final OpenMetricsWriter writer) {
+        MetricsCollector collector = new MetricsCollector() {
+            @Override
+            public void metric(String limitType, String title, double value, String unit) {
+                String name = OpenMetricsWriter.toName(title);
+                if (writer.family(name, "gauge", title, unit)) {
+                    writer.sample(name, "", value);
+                }
+            }
+
+            @Override
+            public void differentialMetric(String id,
+                                           String limitType,
+                                           String title,
+                                           double currentValue,
+                                           String unit) {
+                String name = OpenMetricsWriter.toName(title);
+                if (writer.family(name, "counter", title, unit)) {
+                    writer.sample(name, "_total", currentValue);
+                }
+            }
+
+            @Override
+            public void percentiles(String limitType, String title, Histogram.Snapshot snapshot, String unit) {
+                String name = OpenMetricsWriter.toName(title);
+                if (writer.family(name, "summary", title, unit)) {
+                    for (double quantile : QUANTILES) {
+                        writer.sample(name, "", "quantile", quantile, snapshot.getPercentile(quantile * 100));
+                    }
+                    writer.sample(name, "_sum", snapshot.getSum());
+                    writer.sample(name, "_count", snapshot.getCount());
+                }
+            }
+
+            @Override
+            public void histogram(String limitType, String title, Histogram histogram, String unit) {
+                String name = OpenMetricsWriter.toName(title);
+                if (writer.family(name, "histogram", title, unit)) {
+                    Histogram.Snapshot snapshot = histogram.getTotal();
+                    for (long limit : BUCKET_LIMITS) {
+                        writer.sample(name, "_bucket", "le", limit, snapshot.getCountUpTo(limit));
+                    }
+                    writer.sample(name, "_bucket", "le", Double.POSITIVE_INFINITY, snapshot.getCount());
+                    writer.sample(name, "_sum", snapshot.getSum());
+                    writer.sample(name, "_count", snapshot.getCount());
+                }
+            }
+        };
+        for (MetricProvider provider : providers) {
+            try {
+                provider.gather(collector);
+            } catch (Throwable e) {
+                Exceptions.handle(e);
+            }
+        }
+        writer.eof();
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.web.health;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import io.netty.buffer.ByteBuf;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Writes metrics in the OpenMetrics text format (which is also understood by Prometheus) into a buffer.
+ * <p>
+ * All output is written directly into the given buffer. Numbers are formatted without creating intermediate strings
+ * and the metric names derived from titles are cached, so that rendering all metrics creates almost no garbage.
+ * </p>
+ * <p>
+ * Clients which do not accept OpenMetrics are served the Prometheus text format (version 0.0.4). This only differs
+ * for counters: the TYPE and HELP lines of these have to use the name of the sample (with the <tt>_total</tt>
+ * suffix) instead of the name of the family.
+ * </p>
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ * @since 2014/02
+ */
+class OpenMetricsWriter {
+
+    /*
+     * Caches the metric names computed for titles
+     */
+    private static final ConcurrentMap<String, String> names = Maps.newConcurrentMap();
+
+    private final ByteBuf out;
+    private final boolean openMetrics;
+    private final Set<String> families = Sets.newHashSet();
+    private final byte[] digits = new byte[20];
+
+    /**
+     * Creates a new writer which appends to the given buffer.
+     *
+     * @param out         the buffer to write to
+     * @param openMetrics <tt>true</tt> to write the OpenMetrics format, <tt>false</tt> to write the Prometheus text
+     *                    format (version 0.0.4)
+     */
+    OpenMetricsWriter(ByteBuf out, boolean openMetrics) {
+        this.out = out;
+        this.openMetrics = openMetrics;
+    }
+
+    /**
+     * Converts the given title into a valid metric name like <tt>http_bytes_in</tt>.
+     *
+     * @param title the title of the metric
+     * @return a valid metric name which only consists of lowercase letters, digits and underscores
+     */
+    static String toName(String title) {
+        String result = names.get(title);
+        if (result == null) {
+            result = MetricsDB.toMetricName(title).replace('-', '_');
+            if (result.isEmpty() || Character.isDigit(result.charAt(0))) {
+                result = "_" + result;
+            }
+            names.put(title, result);
+        }
+        return result;
+    }
+
+    /**
+     * Starts a new metric family by writing its TYPE and HELP lines.
+     *
+     * @param name the name of the family
+     * @param type the type of the family (gauge, counter, histogram or summary)
+     * @param help the description of the family
+     * @param unit the unit of all values of the family (may be <tt>null</tt>)
+     * @return <tt>true</tt> if the family was started, <tt>false</tt> if a family with the same name was already
+     *         written and therefore no samples must be written
+     */
+    boolean family(String name, String type, String help, String unit) {
+        if (!families.add(name)) {
+            return false;
+        }
+        String suffix = !openMetrics && "counter".equals(type) ? "_total" : "";
+        writeASCII("# TYPE ");
+        writeASCII(name);
+        writeASCII(suffix);
+        out.writeByte(' ');
+        writeASCII(type);
+        writeASCII("\n# HELP ");
+        writeASCII(name);
+        writeASCII(suffix);
+        out.writeByte(' ');
+        writeText(help);
+        if (unit != null && !unit.isEmpty()) {
+            writeASCII(" (");
+            writeText(unit);
+            out.writeByte(')');
+        }
+        out.writeByte('\n');
+        return true;
+    }
+
+    /**
+     * Writes a sample without labels.
+     *
+     * @param name   the name of the family
+     * @param suffix the suffix of the sample (like <tt>_total</tt> or <tt>_count</tt>) or an empty string
+     * @param value  the value of the sample
+     */
+    void sample(String name, String suffix, double value) {
+        writeASCII(name);
+        writeASCII(suffix);
+        out.writeByte(' ');
+        writeNumber(value);
+        out.writeByte('\n');
+    }
+
+    /**
+     * Writes a sample with a single label.
+     *
+     * @param name       the name of the family
+     * @param suffix     the suffix of the sample (like <tt>_bucket</tt>) or an empty string
+     * @param label      the name of the label (like <tt>le</tt> or <tt>quantile</tt>)
+     * @param labelValue the value of the label
+     * @param value      the value of the sample
+     */
+    void sample(String name, String suffix, String label, double labelValue, double value) {
+        writeASCII(name);
+        writeASCII(suffix);
+        out.writeByte('{');
+        writeASCII(label);
+        writeASCII("=\"");
+        writeNumber(labelValue);
+        writeASCII("\"} ");
+        writeNumber(value);
+        out.writeByte('\n');
+    }
+
+    /**
+     * Writes the mandatory end marker.
+     */
+    void eof() {
+        writeASCII("# EOF\n");
+    }
+
+    /*
+     * Writes a string which is known to only contain ASCII characters
+     */
+    private void writeASCII(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            out.writeByte(value.charAt(i));
+        }
+    }
+
+    /*
+     * Writes an arbitrary text as UTF-8 while escaping backslashes and line breaks
+     */
+    private void writeText(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\') {
+                writeASCII("\\\\");
+            } else if (c == '\n') {
+                writeASCII("\\n");
+            } else if (c < 0x80) {
+                out.writeByte(c);
+            } else if (c < 0x800) {
+                out.writeByte(0xc0 | (c >> 6));
+                out.writeByte(0x80 | (c & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                out.writeByte('?');
+            } else {
+                out.writeByte(0xe0 | (c >> 12));
+                out.writeByte(0x80 | ((c >> 6) & 0x3f));
+                out.writeByte(0x80 | (c & 0x3f));
+            }
+        }
+    }
+
+    /*
+     * Writes the given number. Integral values are written without creating any string.
+     */
+    private void writeNumber(double value) {
+        if (Double.isNaN(value)) {
+            writeASCII("NaN");
+        } else if (Double.isInfinite(value)) {
+            writeASCII(value > 0 ? "+Inf" : "-Inf");
+        } else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            writeLong((long) value);
+        } else {
+            writeASCII(Double.toString(value));
+        }
+    }
+
+    private void writeLong(long value) {
+        if (value < 0) {
+            out.writeByte('-');
+            value = -value;
+        }
+        int pos = digits.length;
+        do {
+            digits[--pos] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        out.writeBytes(digits, pos, digits.length - pos);
+    }
+}
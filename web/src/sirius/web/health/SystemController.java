@@ -46,12 +46,16 @@ public class SystemController implements Controller {
 
     @Routed("/system/logs")
     public void logs(WebContext ctx) {
-        ctx.respondWith().template("/view/system/logs.html", monitor.getMessages());
+        ctx.respondWith()
+           .template("/view/system/logs.html",
+                     monitor.getMessages(ctx.get("start").asInt(0), ctx.get("limit").asInt(Integer.MAX_VALUE)));
     }
 
     @Routed("/system/errors")
     public void errors(WebContext ctx) {
-        ctx.respondWith().template("/view/system/errors.html", monitor.getIncidents());
+        ctx.respondWith()
+           .template("/view/system/errors.html",
+                     monitor.getIncidents(ctx.get("start").asInt(0), ctx.get("limit").asInt(Integer.MAX_VALUE)));
     }
 
     @Routed("/system/ok")
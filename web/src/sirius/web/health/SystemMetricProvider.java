@@ -12,6 +12,7 @@ import org.hyperic.sigar.*;
 import sirius.kernel.async.CallContext;
 import sirius.kernel.di.std.Part;
 import sirius.kernel.di.std.Register;
+import sirius.kernel.health.AsyncLogging;
 import sirius.kernel.health.Exceptions;
 import sirius.kernel.health.Log;
 import sirius.kernel.health.MemoryBasedHealthMonitor;
@@ -58,6 +59,14 @@ public class SystemMetricProvider implements MetricProvider {
                                      "Unique Incidents",
                                      monitor.getNumUniqueIncidents(),
                                      "/min");
+        if (AsyncLogging.isEnabled()) {
+            collector.metric("sys-log-queue", "Log Queue Depth", AsyncLogging.getQueueDepth(), null);
+            collector.differentialMetric("sys-log-drops",
+                                         "sys-log-drops",
+                                         "Dropped Log Messages",
+                                         AsyncLogging.getNumDropped(),
+                                         "/min");
+        }
 
         try {
             if (sigarEnabled) {
@@ -23,14 +23,22 @@ public class AsyncInfoCommand implements Command {
 
     @Override
     public void execute(Output output, String... params) throws Exception {
-        output.apply("%-20s %8s %8s %16s %8s %8s", "POOL", "ACTIVE", "QUEUED", "TOTAL", "BLOCKED", "DROPPED");
+        output.apply("%-20s %-20s %8s %8s %16s %8s %8s",
+                     "POOL",
+                     "TYPE",
+                     "ACTIVE",
+                     "QUEUED",
+                     "TOTAL",
+                     "BLOCKED",
+                     "DROPPED");
         output.separator();
         for (AsyncExecutor exec : Async.getExecutors()) {
-            output.apply("%-20s %8d %8d %16d %8d %8d",
+            output.apply("%-20s %-20s %8d %8d %16d %8d %8d",
                          exec.getCategory(),
+                         exec.getType(),
                          exec.getActiveCount(),
-                         exec.getQueue().size(),
-                         exec.getCompletedTaskCount(),
+                         exec.getQueued(),
+                         exec.getExecuted(),
                          exec.getBlocked(),
                          exec.getDropped());
         }
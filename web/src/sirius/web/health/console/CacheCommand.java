@@ -11,6 +11,7 @@ package sirius.web.health.console;
 import sirius.kernel.cache.Cache;
 import sirius.kernel.cache.CacheManager;
 import sirius.kernel.di.std.Register;
+import sirius.kernel.nls.NLS;
 
 /**
  * Console command which reports statistics for all caches.
@@ -27,10 +28,28 @@ public class CacheCommand implements Command {
             output.apply("Flushing: %s", params[0]);
             output.blankLine();
         }
-        output.apply("%-53s %8s %8s %8s", "NAME", "SIZE", "MAX-SIZE", "HIT-RATE");
+        output.apply("%-30s %8s %8s %8s %10s %8s %8s %8s %6s",
+                     "NAME",
+                     "SIZE",
+                     "MAX-SIZE",
+                     "HIT-RATE",
+                     "OFF-HEAP",
+                     "OH-RATE",
+                     "EXPIRED",
+                     "LAG",
+                     "BATCH");
         output.separator();
         for (Cache<?, ?> c : CacheManager.getCaches()) {
-            output.apply("%-53s %8d %8d %8d", c.getName(), c.getSize(), c.getMaxSize(), c.getHitRate());
+            output.apply("%-30s %8d %8d %8d %10s %8d %8d %8s %6s",
+                         c.getName(),
+                         c.getSize(),
+                         c.getMaxSize(),
+                         c.getHitRate(),
+                         NLS.formatSize(c.getOffHeapBytes()),
+                         c.getOffHeapHitRate(),
+                         c.getNumExpired(),
+                         NLS.toUserString(Math.round(c.getExpiryLag())) + "ms",
+                         NLS.toUserString(Math.round(c.getAvgBatchSize())));
         }
         output.separator();
     }
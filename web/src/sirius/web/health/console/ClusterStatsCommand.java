@@ -0,0 +1,77 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.web.health.console;
+
+import sirius.kernel.commons.Amount;
+import sirius.kernel.commons.NumberFormat;
+import sirius.kernel.di.std.Part;
+import sirius.kernel.di.std.Register;
+import sirius.kernel.health.Histogram;
+import sirius.web.health.ClusterMetrics;
+import sirius.web.health.HistogramMetric;
+
+/**
+ * Console command which reports the metrics and histograms aggregated across all nodes of the cluster.
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ * @since 2014/02
+ */
+@Register(name = "cluster-stats")
+public class ClusterStatsCommand implements Command {
+
+    @Part
+    private ClusterMetrics clusterMetrics;
+
+    @Override
+    public void execute(Output output, String... params) throws Exception {
+        output.apply("Aggregated values of %d node(s)", clusterMetrics.getNumberOfNodes());
+        output.blankLine();
+        output.apply("%-30s %5s %12s %12s %12s %12s", "NAME", "AGGR", "VALUE", "MIN", "AVG", "MAX");
+        output.separator();
+        for (ClusterMetrics.AggregatedMetric metric : clusterMetrics.getMetrics()) {
+            output.apply("%-30s %5s %12s %12s %12s %12s",
+                         metric.getName(),
+                         metric.getAggregation(),
+                         format(metric.getValue(), metric.getUnit()),
+                         format(metric.getMin(), metric.getUnit()),
+                         format(metric.getAvg(), metric.getUnit()),
+                         format(metric.getMax(), metric.getUnit()));
+        }
+        output.separator();
+        output.blankLine();
+        output.apply("%-30s %8s %10s %10s %10s %10s %10s", "HISTOGRAM", "COUNT", "AVG", "P50", "P99", "P99.9", "MAX");
+        output.separator();
+        for (HistogramMetric histogram : clusterMetrics.getHistograms()) {
+            Histogram.Snapshot snapshot = histogram.getSnapshot();
+            output.apply("%-30s %8d %10s %10s %10s %10s %10s",
+                         histogram.getName(),
+                         snapshot.getCount(),
+                         format(snapshot.getAvg(), histogram.getUnit()),
+                         format(snapshot.getP50(), histogram.getUnit()),
+                         format(snapshot.getP99(), histogram.getUnit()),
+                         format(snapshot.getP999(), histogram.getUnit()),
+                         format(snapshot.getMax(), histogram.getUnit()));
+        }
+        output.separator();
+    }
+
+    private String format(double value, String unit) {
+        return Amount.of(value).toSmartRoundedString(NumberFormat.TWO_DECIMAL_PLACES).append(" ", unit).toString();
+    }
+
+    @Override
+    public String getName() {
+        return "cluster-stats";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Reports the metrics of all nodes of the cluster";
+    }
+}
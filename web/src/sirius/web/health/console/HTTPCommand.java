@@ -9,6 +9,7 @@
 package sirius.web.health.console;
 
 import sirius.kernel.di.std.Register;
+import sirius.kernel.health.Histogram;
 import sirius.kernel.nls.NLS;
 import sirius.web.http.ActiveHTTPConnection;
 import sirius.web.http.WebServer;
@@ -67,6 +68,10 @@ public class HTTPCommand implements Command {
             output.apply("%-20s %10d", "Client Errors", WebServer.getClientErrors());
             output.apply("%-20s %10d", "Server Errors", WebServer.getServerErrors());
             output.apply("%-20s %10s", "Avg. Response Time", NLS.toUserString(WebServer.getAvgResponseTime()) + " ms");
+            Histogram.Snapshot responseTimes = WebServer.getResponseTimes();
+            output.apply("%-20s %10s", "Response Time (p50)", responseTimes.getP50() + " ms");
+            output.apply("%-20s %10s", "Response Time (p99)", responseTimes.getP99() + " ms");
+            output.apply("%-20s %10s", "Response Time (max)", responseTimes.getMax() + " ms");
             output.separator();
         }
     }
@@ -10,10 +10,14 @@ package sirius.web.health.console;
 
 import sirius.kernel.di.std.Part;
 import sirius.kernel.di.std.Register;
+import sirius.kernel.health.Histogram;
+import sirius.kernel.nls.NLS;
 import sirius.kernel.timer.TimerService;
 
+import java.util.Date;
+
 /**
- * Console command which reports the last execution of the timer tasks.
+ * Console command which reports the last execution of the timer tasks along with the execution times of each task.
  * <p>It also permits to call an timer out of schedule</p>
  *
  * @author Andreas Haufler (aha@scireum.de)
@@ -28,7 +32,13 @@ public class TimerCommand implements Command {
     @Override
     public void execute(Output output, String... params) throws Exception {
         if (params.length == 0) {
-            output.line("Usage: timer all|oneMinute|tenMinutes|oneHour|everyDay");
+            output.line("Usage: timer all|oneMinute|tenMinutes|oneHour|everyDay|<class name of a task>");
+        } else if (params[0].contains(".")) {
+            if (ts.runTask(params[0])) {
+                output.apply("Executing %s...", params[0]);
+            } else {
+                output.apply("Unknown task: %s", params[0]);
+            }
         } else {
             if ("all".equalsIgnoreCase(params[0]) || "oneMinute".equalsIgnoreCase(params[0])) {
                 output.line("Executing one minute timers...");
@@ -54,6 +64,45 @@ public class TimerCommand implements Command {
         output.apply("%20s %-30s", "Ten-Minutes", ts.getLastTenMinutesExecution());
         output.apply("%20s %-30s", "One-Hour", ts.getLastHourExecution());
         output.separator();
+        output.blankLine();
+        output.apply("%-45s %-18s %6s %5s %5s %7s %7s %7s %-19s",
+                     "TASK",
+                     "SCHEDULE",
+                     "RUNS",
+                     "FAIL",
+                     "SKIP",
+                     "P50[ms]",
+                     "P99[ms]",
+                     "MAX[ms]",
+                     "NEXT");
+        output.separator();
+        for (TimerService.TaskInfo info : ts.getTasks()) {
+            Histogram.Snapshot snapshot = info.getDurations().getTotal();
+            output.apply("%-45s %-18s %6d %5d %5d %7d %7d %7d %-19s",
+                         shorten(info.getName()) + (info.isClusterSingleton() ? "*" : ""),
+                         info.getSchedule(),
+                         info.getExecutions(),
+                         info.getFailures(),
+                         info.getSkipped() + info.getOverlaps() + info.getDropped() + info.getLeaseMisses(),
+                         snapshot.getP50(),
+                         snapshot.getP99(),
+                         snapshot.getMax(),
+                         info.getNextExecution() == 0 ?
+                         "-" :
+                         NLS.toUserString(new Date(info.getNextExecution()), true));
+        }
+        output.separator();
+        output.line("* Cluster singleton - only executed by the node holding the lease");
+    }
+
+    /*
+     * Shortens the class name of a task to fit into its column
+     */
+    private String shorten(String name) {
+        if (name.length() <= 44) {
+            return name;
+        }
+        return "..." + name.substring(name.length() - 41);
     }
 
     @Override
@@ -9,9 +9,9 @@
 package sirius.web.health.console;
 
 import sirius.kernel.commons.Strings;
-import sirius.kernel.commons.Tuple;
+import sirius.kernel.commons.Value;
 import sirius.kernel.di.std.Register;
-import sirius.kernel.health.Average;
+import sirius.kernel.health.Histogram;
 import sirius.kernel.health.Microtiming;
 
 /**
@@ -28,7 +28,10 @@ public class TimingCommand implements Command {
 
     @Override
     public void execute(Output output, String... params) throws Exception {
-        if (params.length == 1 && Strings.isFilled(params[0])) {
+        if (params.length == 2 && "sample".equalsIgnoreCase(params[0])) {
+            Microtiming.setSampling(Value.of(params[1]).asInt(1));
+            output.apply("Recording every %d. timing...", Microtiming.getSampling());
+        } else if (params.length == 1 && Strings.isFilled(params[0])) {
             if ("enable".equalsIgnoreCase(params[0]) || "+".equalsIgnoreCase(params[0])) {
                 if (Microtiming.isEnabled()) {
                     generateOutput(output);
@@ -45,6 +48,7 @@ public class TimingCommand implements Command {
             } else {
                 output.line("Usage: timing enable|disable (You can use + and - for enable/disable).");
                 output.line("To enable tracing: timing trace <filter-expression>");
+                output.line("To only record every n-th timing: timing sample <n>");
             }
         } else {
             if (Microtiming.isEnabled()) {
@@ -62,17 +66,32 @@ public class TimingCommand implements Command {
      */
     protected void generateOutput(Output output) {
         long delta = System.currentTimeMillis() - Microtiming.getLastReset();
-        output.apply("%8s %9s %5s %5s %s", "AVG[ms]", "TOTAL[ms]", "RATIO", "COUNT", "NAME");
+        if (Microtiming.getSampling() > 1) {
+            output.apply("Recording every %d. timing", Microtiming.getSampling());
+        }
+        output.apply("%8s %8s %8s %8s %9s %5s %5s %s",
+                     "AVG[ms]",
+                     "P50[ms]",
+                     "P99[ms]",
+                     "MAX[ms]",
+                     "TOTAL[ms]",
+                     "RATIO",
+                     "COUNT",
+                     "NAME");
         output.separator();
-        for (Tuple<String, Average> timing : Microtiming.getTimings()) {
-            double totalTime = timing.getSecond().getAvg() / 1000d * timing.getSecond().getCount();
+        for (Microtiming.Timing timing : Microtiming.getTimings()) {
+            Histogram.Snapshot snapshot = timing.getSnapshot();
+            double totalTime = snapshot.getAvg() / 1000d * timing.getCount();
             double percentTime = (totalTime * 100d) / delta;
-            output.apply("%8.2f %9d %4.2f%% %5d %s",
-                         timing.getSecond().getAvg() / 1000d,
+            output.apply("%8.2f %8.2f %8.2f %8.2f %9d %4.2f%% %5d %s",
+                         snapshot.getAvg() / 1000d,
+                         snapshot.getP50() / 1000d,
+                         snapshot.getP99() / 1000d,
+                         snapshot.getMax() / 1000d,
                          Math.round(totalTime),
                          percentTime,
-                         timing.getSecond().getCount(),
-                         timing.getFirst());
+                         timing.getCount(),
+                         timing.getKey());
         }
         output.separator();
     }
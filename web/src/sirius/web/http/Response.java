@@ -889,6 +889,38 @@ public class Response {
         }
     }
 
+    /**
+     * Sends the given buffer as response.
+     * <p>
+     * This can be used to send content which was rendered directly into a (pooled) buffer without creating any
+     * intermediate strings or byte arrays. The buffer is released once it was written to the channel or if the
+     * response cannot be sent.
+     * </p>
+     *
+     * @param status      the HTTP status to send
+     * @param contentType the content type of the given data
+     * @param content     the data to send
+     */
+    public void buffer(HttpResponseStatus status, String contentType, ByteBuf content) {
+        boolean handedOff = false;
+        try {
+            setHeader(HttpHeaders.Names.CONTENT_TYPE, contentType);
+            setDateAndCacheHeaders(System.currentTimeMillis(),
+                                   cacheSeconds == null || Sirius.isDev() ? 0 : cacheSeconds,
+                                   isPrivate);
+            HttpResponse response = createFullResponse(status, true, content);
+            // Once committed, the buffer is released by commit (if it fails) or by netty
+            handedOff = true;
+            complete(commit(response));
+        } catch (Throwable e) {
+            internalServerError(e);
+        } finally {
+            if (!handedOff) {
+                content.release();
+            }
+        }
+    }
+
     /**
      * Renders the given Rythm template and sends the output as response.
      * <p>
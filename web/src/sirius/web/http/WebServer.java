@@ -27,8 +27,8 @@ import sirius.kernel.di.Lifecycle;
 import sirius.kernel.di.std.ConfigValue;
 import sirius.kernel.di.std.Context;
 import sirius.kernel.di.std.Register;
-import sirius.kernel.health.Average;
 import sirius.kernel.health.Exceptions;
+import sirius.kernel.health.Histogram;
 import sirius.kernel.health.Log;
 import sirius.kernel.timer.EveryTenSeconds;
 import sirius.web.health.MetricProvider;
@@ -222,7 +222,7 @@ public class WebServer implements Lifecycle, MetricProvider {
     protected static volatile long clientErrors = 0;
     protected static volatile long serverErrors = 0;
     protected static Map<WebServerHandler, WebServerHandler> openConnections = Maps.newConcurrentMap();
-    protected static Average responseTime = new Average();
+    protected static Histogram responseTime = new Histogram();
 
     /**
      * Returns the minimal value of free disk space accepted until an upload is aborted.
@@ -444,6 +444,18 @@ public class WebServer implements Lifecycle, MetricProvider {
         return responseTime.getAvg();
     }
 
+    /**
+     * Returns the distribution of the response times of the last requests.
+     * <p>
+     * The recorded response times are reset each time the system metrics are collected (every minute).
+     * </p>
+     *
+     * @return the distribution of the response times (in milliseconds) since the last reset
+     */
+    public static Histogram.Snapshot getResponseTimes() {
+        return responseTime.getSnapshot();
+    }
+
     @Override
     public void gather(MetricsCollector collector) {
         collector.differentialMetric("http-bytes-in", "http-bytes-in", "HTTP Bytes-In", bytesIn / 1024d, "KB");
@@ -463,7 +475,7 @@ public class WebServer implements Lifecycle, MetricProvider {
                                      serverErrors,
                                      null);
         collector.metric("http-open-connections", "HTTP Open Connections", openConnections.size(), null);
-        collector.metric("http-response-time", "HTTP Avg. Reponse Time", responseTime.getAvg(), "ms");
+        collector.histogram("http-response-time", "HTTP Reponse Time", responseTime, "ms");
         collector.metric("http-sessions", "HTTP Sessions", ServerSession.getSessions().size(), null);
     }
 
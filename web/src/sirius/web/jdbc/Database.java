@@ -12,11 +12,12 @@ import com.google.common.collect.Maps;
 import org.apache.commons.dbcp.BasicDataSource;
 import sirius.kernel.commons.Context;
 import sirius.kernel.commons.Strings;
+import sirius.kernel.commons.Watch;
 import sirius.kernel.di.std.Register;
 import sirius.kernel.extensions.Extension;
 import sirius.kernel.extensions.Extensions;
-import sirius.kernel.health.Average;
 import sirius.kernel.health.Counter;
+import sirius.kernel.health.Histogram;
 import sirius.kernel.health.Log;
 import sirius.web.health.MetricProvider;
 import sirius.web.health.MetricsCollector;
@@ -41,7 +42,7 @@ public class Database {
 
     protected static Counter numUses = new Counter();
     protected static Counter numQueries = new Counter();
-    protected static Average queryDuration = new Average();
+    protected static Histogram queryDuration = new Histogram();
 
     private final String name;
     private String driver;
@@ -55,6 +56,15 @@ public class Database {
     private String validationQuery;
     private BasicDataSource ds;
 
+    /*
+     * Records the execution of a query by a wrapped statement
+     */
+    static void recordQuery(Watch w, String sql) {
+        numQueries.inc();
+        queryDuration.addValue(w.elapsedMillis());
+        w.submitMicroTiming(sql);
+    }
+
     /**
      * Provides some metrics across all managed data sources.
      */
@@ -65,7 +75,7 @@ public class Database {
         public void gather(MetricsCollector collector) {
             collector.differentialMetric("jdbc-use", "db-uses", "JDBC Uses", numUses.getCount(), null);
             collector.differentialMetric("jdbc-queries", "db-queries", "JDBC Queries", numQueries.getCount(), null);
-            collector.metric("db-query-duration", "JDBC Query Duration", queryDuration.getAvg(), "ms");
+            collector.histogram("db-query-duration", "JDBC Query Duration", queryDuration, "ms");
         }
     }
 
@@ -109,6 +119,17 @@ public class Database {
         this.validationQuery = ext.get("validationQuery").asString();
     }
 
+    /*
+     * Creates a database for the given driver and url without reading the system configuration
+     */
+    Database(String name, String driver, String url) {
+        this.name = name;
+        this.driver = driver;
+        this.url = url;
+        this.maxActive = 10;
+        this.maxIdle = 1;
+    }
+
     /**
      * Provides access to the underlying {@link DataSource} representing the connection pool.
      * <p>
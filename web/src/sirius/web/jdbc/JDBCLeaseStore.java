@@ -0,0 +1,195 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.web.jdbc;
+
+import sirius.kernel.commons.Strings;
+import sirius.kernel.di.std.ConfigValue;
+import sirius.kernel.di.std.Register;
+import sirius.kernel.health.Exceptions;
+import sirius.kernel.timer.Lease;
+import sirius.kernel.timer.LeaseStore;
+
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+
+/**
+ * Stores the leases of {@link sirius.kernel.timer.ClusterSingleton} tasks in a database shared by all nodes.
+ * <p>
+ * Each lease is a row in the table <tt>timer.leases.jdbc.table</tt> of the database
+ * <tt>timer.leases.jdbc.database</tt>. A lease is acquired by a conditional UPDATE which only succeeds if the lease
+ * is expired or already held by the same node. Therefore the database guarantees that only one node holds a lease
+ * at any time. The table is created on first use if it doesn't exist yet:
+ * <pre>
+ * CREATE TABLE sirius_leases (
+ *     name VARCHAR(255) NOT NULL PRIMARY KEY,
+ *     owner VARCHAR(255) NOT NULL,
+ *     token BIGINT NOT NULL,
+ *     expires TIMESTAMP NOT NULL
+ * )
+ * </pre>
+ * </p>
+ * <p>
+ * As the clocks of the nodes might differ, only the clock of the database is used to compute and check the expiry
+ * of a lease. The requested expiry is therefore converted into a duration which is added to
+ * <tt>CURRENT_TIMESTAMP</tt> (with a resolution of seconds, rounded up) using the JDBC escape function
+ * <tt>TIMESTAMPADD</tt>.
+ * </p>
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ * @since 2014/02
+ */
+@Register(name = JDBCLeaseStore.NAME, classes = LeaseStore.class)
+public class JDBCLeaseStore implements LeaseStore {
+
+    /**
+     * Contains the name of this store as used in <tt>timer.leases.store</tt>
+     */
+    public static final String NAME = "jdbc";
+
+    @ConfigValue("timer.leases.jdbc.database")
+    private String databaseName;
+
+    @ConfigValue("timer.leases.jdbc.table")
+    private String table;
+
+    private volatile Database database;
+    private volatile boolean tableChecked;
+
+    /**
+     * Creates a new store which uses the database and table given in <tt>timer.leases.jdbc</tt>.
+     */
+    public JDBCLeaseStore() {
+    }
+
+    /*
+     * Creates a store which uses the given database and table instead of the configured ones
+     */
+    JDBCLeaseStore(Database database, String table) {
+        this.database = database;
+        this.table = table;
+    }
+
+    private Database getDatabase() throws SQLException {
+        Database db = database;
+        if (db == null) {
+            if (Strings.isEmpty(databaseName)) {
+                throw Exceptions.handle()
+                                .to(Database.LOG)
+                                .withSystemErrorMessage("No database is configured in timer.leases.jdbc.database")
+                                .handle();
+            }
+            db = Database.get(databaseName);
+            database = db;
+        }
+        if (!tableChecked) {
+            ensureTableExists(db);
+            tableChecked = true;
+        }
+        return db;
+    }
+
+    /*
+     * Creates the lease table if it cannot be queried
+     */
+    private void ensureTableExists(Database db) throws SQLException {
+        try {
+            db.createQuery("SELECT name FROM " + table + " WHERE 1 = 0").queryFirst();
+        } catch (SQLException e) {
+            Database.LOG.INFO("Creating the lease table %s in %s", table, databaseName);
+            db.createQuery("CREATE TABLE " + table + " (" +
+                                   "name VARCHAR(255) NOT NULL PRIMARY KEY, " +
+                                   "owner VARCHAR(255) NOT NULL, " +
+                                   "token BIGINT NOT NULL, " +
+                                   "expires TIMESTAMP NOT NULL)").executeUpdate();
+        }
+    }
+
+    /*
+     * Computes the expiry as seen by the database. The duration is rounded up to full seconds.
+     */
+    private static String expiresIn(long expires) {
+        long seconds = Math.max(0, (expires - System.currentTimeMillis() + 999) / 1000);
+        return "{fn TIMESTAMPADD(SQL_TSI_SECOND, " + seconds + ", CURRENT_TIMESTAMP)}";
+    }
+
+    /*
+     * Determines if the given error was caused by a duplicate key, which is reported using the SQL state class 23
+     * (integrity constraint violation)
+     */
+    private static boolean isDuplicateKey(SQLException e) {
+        return e instanceof SQLIntegrityConstraintViolationException ||
+               (e.getSQLState() != null && e.getSQLState().startsWith("23"));
+    }
+
+    @Override
+    public Lease tryAcquire(String name, String owner, long expires) throws Exception {
+        Database db = getDatabase();
+        // The token is assigned before the owner, as some databases (MySQL) use already updated values on the right
+        // hand side of subsequent assignments
+        int updated = db.createQuery("UPDATE " + table +
+                                             " SET token = CASE WHEN owner = ${owner} THEN token ELSE token + 1 END," +
+                                             " owner = ${owner}, expires = " + expiresIn(expires) +
+                                             " WHERE name = ${name}" +
+                                             " AND (owner = ${owner} OR expires <= CURRENT_TIMESTAMP)")
+                        .set("name", name)
+                        .set("owner", owner)
+                        .executeUpdate();
+        if (updated == 0) {
+            try {
+                db.createQuery("INSERT INTO " + table + " (name, owner, token, expires)" +
+                                       " VALUES (${name}, ${owner}, 1, " + expiresIn(expires) + ")")
+                  .set("name", name)
+                  .set("owner", owner)
+                  .executeUpdate();
+                return new Lease(name, owner, 1, expires);
+            } catch (SQLException e) {
+                if (!isDuplicateKey(e)) {
+                    throw Exceptions.handle()
+                                    .to(Database.LOG)
+                                    .error(e)
+                                    .withSystemErrorMessage("Cannot acquire the lease %s: %s (%s)", name)
+                                    .handle();
+                }
+                // The row already exists, therefore the lease is held by another node
+                Database.LOG.FINE(e);
+                return null;
+            }
+        }
+        Row row = db.createQuery("SELECT token FROM " + table + " WHERE name = ${name} AND owner = ${owner}")
+                    .set("name", name)
+                    .set("owner", owner)
+                    .queryFirst();
+        if (row == null) {
+            return null;
+        }
+        return new Lease(name, owner, row.getValue("token").asLong(0), expires);
+    }
+
+    @Override
+    public void release(Lease lease) throws Exception {
+        getDatabase().createQuery("UPDATE " + table + " SET expires = CURRENT_TIMESTAMP" +
+                                          " WHERE name = ${name} AND owner = ${owner} AND token = ${token}")
+                     .set("name", lease.getName())
+                     .set("owner", lease.getOwner())
+                     .set("token", lease.getToken())
+                     .executeUpdate();
+    }
+
+    @Override
+    public boolean isValid(Lease lease) throws Exception {
+        Row row = getDatabase().createQuery("SELECT token FROM " + table +
+                                                    " WHERE name = ${name} AND owner = ${owner}" +
+                                                    " AND token = ${token} AND expires > CURRENT_TIMESTAMP")
+                               .set("name", lease.getName())
+                               .set("owner", lease.getOwner())
+                               .set("token", lease.getToken())
+                               .queryFirst();
+        return row != null;
+    }
+}
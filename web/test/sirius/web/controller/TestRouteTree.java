@@ -0,0 +1,78 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.web.controller;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+import sirius.web.http.WebContext;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link RouteTree}
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ */
+public class TestRouteTree {
+
+    @Routed("/")
+    public void root(WebContext ctx) {
+    }
+
+    @Routed("/system/info")
+    public void info(WebContext ctx) {
+    }
+
+    @Routed("/system/:1")
+    public void system(WebContext ctx, String param) {
+    }
+
+    @Routed("/*/info")
+    public void wildcard(WebContext ctx) {
+    }
+
+    private RouteTree buildTree() throws Exception {
+        List<Route> routes = Lists.newArrayList();
+        for (String name : new String[]{"root", "info", "system", "wildcard"}) {
+            for (Method m : getClass().getMethods()) {
+                if (m.getName().equals(name)) {
+                    routes.add(Route.compile(m.getAnnotation(Routed.class), m.getParameterTypes()));
+                }
+            }
+        }
+        return new RouteTree(routes);
+    }
+
+    @Test
+    public void splitURI() {
+        assertArrayEquals(new String[0], Route.splitURI("/"));
+        assertArrayEquals(new String[]{"system", "info"}, Route.splitURI("/system/info"));
+        assertNull(Route.splitURI("/system/info/"));
+        assertNull(Route.splitURI("/system//info"));
+        assertNull(Route.splitURI(""));
+    }
+
+    @Test
+    public void findCandidates() throws Exception {
+        RouteTree tree = buildTree();
+        assertEquals(1, tree.findCandidates(Route.splitURI("/")).size());
+        List<Route> candidates = tree.findCandidates(Route.splitURI("/system/info"));
+        assertEquals(3, candidates.size());
+        assertEquals("/system/info", candidates.get(0).toString());
+        assertEquals("/system/:1", candidates.get(1).toString());
+        assertEquals("/*/info", candidates.get(2).toString());
+        assertEquals(1, tree.findCandidates(Route.splitURI("/system/test")).size());
+        assertEquals(1, tree.findCandidates(Route.splitURI("/other/info")).size());
+        assertTrue(tree.findCandidates(Route.splitURI("/other/test")).isEmpty());
+        assertTrue(tree.findCandidates(Route.splitURI("/system/info/")).isEmpty());
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.web.health;
+
+import com.google.common.base.Charsets;
+import org.junit.Test;
+import sirius.kernel.health.Histogram;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for the parser of the node info within {@link Cluster}
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ */
+public class TestCluster {
+
+    private Cluster.PollResult parse(String json) throws IOException {
+        Cluster.PollResult result = new Cluster.PollResult();
+        Cluster.parseNodeInfo(new ByteArrayInputStream(json.getBytes(Charsets.UTF_8)), result);
+        return result;
+    }
+
+    @Test
+    public void parsesValidNodeInfo() throws Exception {
+        Histogram histogram = new Histogram();
+        histogram.addValue(10);
+        histogram.addValue(20);
+        String data = histogram.getSnapshot().toCompactString();
+        Cluster.PollResult result = parse("{\"name\":\"node1\",\"nodeState\":\"GREEN\",\"clusterState\":\"YELLOW\"," +
+                                          "\"priority\":50,\"unknown\":{\"nested\":[1,2]}," +
+                                          "\"metrics\":[{\"name\":\"Heap\",\"value\":42.5,\"unit\":\"%\"," +
+                                          "\"state\":\"YELLOW\"},{\"name\":\"Broken\",\"value\":1," +
+                                          "\"state\":\"UNKNOWN\"}]," +
+                                          "\"histograms\":[{\"name\":\"HTTP\",\"unit\":\"ms\",\"data\":\"" +
+                                          data +
+                                          "\"}]}");
+        assertEquals("node1", result.name);
+        assertEquals(Metrics.MetricState.GREEN, result.nodeState);
+        assertEquals(Metrics.MetricState.YELLOW, result.clusterState);
+        assertEquals(50, result.priority);
+        // Metrics with an invalid state are skipped
+        assertEquals(1, result.metrics.size());
+        assertEquals("Heap", result.metrics.get(0).getName());
+        assertEquals(42.5d, result.metrics.get(0).getValue(), 0.0001d);
+        assertEquals(Metrics.MetricState.YELLOW, result.metrics.get(0).getState());
+        assertEquals(1, result.histograms.size());
+        assertEquals("HTTP", result.histograms.get(0).getName());
+        assertEquals(2, result.histograms.get(0).getSnapshot().getCount());
+        assertEquals(20, result.histograms.get(0).getSnapshot().getMax());
+    }
+
+    @Test
+    public void skipsMalformedHistograms() throws Exception {
+        Cluster.PollResult result = parse("{\"nodeState\":\"GREEN\",\"clusterState\":\"GREEN\"," +
+                                          "\"histograms\":[{\"name\":\"HTTP\",\"data\":\"garbage\"}," +
+                                          "{\"name\":\"Empty\"}]}");
+        assertTrue(result.histograms.isEmpty());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsIncompleteNodeInfo() throws Exception {
+        parse("{\"name\":\"node1\",\"nodeState\":\"GREEN\"}");
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsNonObjects() throws Exception {
+        parse("[1, 2, 3]");
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedResponses() throws Exception {
+        parse("{\"name\":\"node1\",\"nodeState\":\"GR");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownStates() throws Exception {
+        parse("{\"nodeState\":\"PURPLE\",\"clusterState\":\"GREEN\"}");
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.web.health;
+
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link MetricsDB}
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ */
+public class TestMetricsDB {
+
+    private File basedir;
+
+    @Before
+    public void createBasedir() throws Exception {
+        basedir = Files.createTempDirectory("metrics").toFile();
+    }
+
+    @After
+    public void deleteBasedir() {
+        delete(basedir);
+    }
+
+    private void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    @Test
+    public void storedValuesCanBeReadBack() {
+        MetricsDB db = new MetricsDB(basedir);
+        DateTime first = new DateTime(2014, 2, 3, 10, 15);
+        DateTime last = new DateTime(2014, 2, 28, 23, 59);
+        db.store("test", first, 1.5d);
+        db.store("test", first.plusMinutes(1), 2.5d);
+        // Zero values are stored like any other value
+        db.store("test", first.plusMinutes(2), 0d);
+        db.store("test", last, 42d);
+        db.stopped();
+        assertTrue(new File(basedir, "2014/2/test.mdb").exists());
+
+        // A new instance reads the values from the file
+        MetricsDB other = new MetricsDB(basedir);
+        List<MetricsDB.DataPoint> points =
+                other.query("test", first, last, MetricsDB.Resolution.MINUTE);
+        assertEquals(4, points.size());
+        assertEquals(first, points.get(0).getTimestamp());
+        assertEquals(1.5d, points.get(0).getAvg(), 0.0001d);
+        assertEquals(first.plusMinutes(1), points.get(1).getTimestamp());
+        assertEquals(2.5d, points.get(1).getAvg(), 0.0001d);
+        assertEquals(first.plusMinutes(2), points.get(2).getTimestamp());
+        assertEquals(0d, points.get(2).getAvg(), 0.0001d);
+        assertEquals(last, points.get(3).getTimestamp());
+        assertEquals(42d, points.get(3).getAvg(), 0.0001d);
+
+        // The range is inclusive on both ends and limited to the given minutes
+        assertEquals(1, other.query("test", first, first, MetricsDB.Resolution.MINUTE).size());
+        assertEquals(3,
+                     other.query("test", first.plusMinutes(1), last, MetricsDB.Resolution.MINUTE).size());
+        assertTrue(other.query("unknown", first, last, MetricsDB.Resolution.MINUTE).isEmpty());
+    }
+
+    @Test
+    public void queriesSpanMonths() {
+        MetricsDB db = new MetricsDB(basedir);
+        db.store("test", new DateTime(2013, 12, 31, 23, 0), 1d);
+        db.store("test", new DateTime(2014, 1, 1, 0, 0), 2d);
+        db.store("test", new DateTime(2014, 2, 1, 0, 0), 3d);
+        List<MetricsDB.DataPoint> points = db.query("test",
+                                                    new DateTime(2013, 12, 1, 0, 0),
+                                                    new DateTime(2014, 2, 28, 0, 0),
+                                                    MetricsDB.Resolution.DAY);
+        assertEquals(3, points.size());
+        assertEquals(new DateTime(2013, 12, 31, 0, 0), points.get(0).getTimestamp());
+        assertEquals(new DateTime(2014, 1, 1, 0, 0), points.get(1).getTimestamp());
+        assertEquals(new DateTime(2014, 2, 1, 0, 0), points.get(2).getTimestamp());
+    }
+
+    @Test
+    public void rollupsAggregateHoursAndDays() {
+        MetricsDB db = new MetricsDB(basedir);
+        DateTime hour = new DateTime(2014, 2, 3, 10, 0);
+        db.store("test", hour, 100d);
+        db.store("test", hour.plusMinutes(10), 2d);
+        db.store("test", hour.plusMinutes(20), 4d);
+        // Replaces the first value, which must also be removed from the rollups
+        db.store("test", hour, 6d);
+        db.store("test", hour.plusHours(1), 8d);
+
+        List<MetricsDB.DataPoint> hours =
+                db.query("test", hour, hour.plusHours(2), MetricsDB.Resolution.HOUR);
+        assertEquals(2, hours.size());
+        assertEquals(hour, hours.get(0).getTimestamp());
+        assertEquals(3, hours.get(0).getCount());
+        assertEquals(2d, hours.get(0).getMin(), 0.0001d);
+        assertEquals(6d, hours.get(0).getMax(), 0.0001d);
+        assertEquals(4d, hours.get(0).getAvg(), 0.0001d);
+        assertEquals(hour.plusHours(1), hours.get(1).getTimestamp());
+        assertEquals(1, hours.get(1).getCount());
+
+        List<MetricsDB.DataPoint> days = db.query("test",
+                                                  hour.withTimeAtStartOfDay(),
+                                                  hour.plusDays(1),
+                                                  MetricsDB.Resolution.DAY);
+        assertEquals(1, days.size());
+        assertEquals(hour.withTimeAtStartOfDay(), days.get(0).getTimestamp());
+        assertEquals(4, days.get(0).getCount());
+        assertEquals(2d, days.get(0).getMin(), 0.0001d);
+        assertEquals(8d, days.get(0).getMax(), 0.0001d);
+        assertEquals(5d, days.get(0).getAvg(), 0.0001d);
+    }
+
+    @Test
+    public void rollupsCountZeroValues() {
+        MetricsDB db = new MetricsDB(basedir);
+        DateTime hour = new DateTime(2014, 2, 3, 10, 0);
+        // One error within an hour which is otherwise free of errors
+        for (int minute = 0; minute < 60; minute++) {
+            db.store("errors", hour.plusMinutes(minute), minute == 30 ? 1d : 0d);
+        }
+        db.store("errors", hour.plusHours(1), 0d);
+
+        List<MetricsDB.DataPoint> hours =
+                db.query("errors", hour, hour.plusHours(1), MetricsDB.Resolution.HOUR);
+        assertEquals(2, hours.size());
+        assertEquals(60, hours.get(0).getCount());
+        assertEquals(0d, hours.get(0).getMin(), 0d);
+        assertEquals(1d, hours.get(0).getMax(), 0d);
+        assertEquals(1d / 60d, hours.get(0).getAvg(), 0.0001d);
+        assertEquals(1, hours.get(1).getCount());
+        assertEquals(0d, hours.get(1).getMax(), 0d);
+
+        List<MetricsDB.DataPoint> days = db.query("errors", hour, hour, MetricsDB.Resolution.DAY);
+        assertEquals(1, days.size());
+        assertEquals(61, days.get(0).getCount());
+        assertEquals(0d, days.get(0).getMin(), 0d);
+        assertEquals(1d / 61d, days.get(0).getAvg(), 0.0001d);
+
+        // Minutes without a value are still omitted
+        assertEquals(61, db.query("errors", hour.minusHours(1), hour.plusHours(2), MetricsDB.Resolution.MINUTE)
+                           .size());
+    }
+
+    @Test
+    public void legacyFilesAreConverted() throws Exception {
+        File month = new File(basedir, "2014/1");
+        month.mkdirs();
+        File legacyFile = new File(month, "legacy");
+        // The previous format appended a new ObjectOutputStream containing index and value pairs on each flush
+        writeLegacyValues(legacyFile, 0, 1d, 61, 2d);
+        writeLegacyValues(legacyFile, 60 * 24 * 30 + 60 * 23 + 59, 3d);
+
+        MetricsDB db = new MetricsDB(basedir);
+        db.started();
+
+        assertFalse(legacyFile.exists());
+        assertTrue(new File(month, "legacy.old").exists());
+        assertTrue(new File(month, "legacy.mdb").exists());
+        List<MetricsDB.DataPoint> points = db.query("legacy",
+                                                    new DateTime(2014, 1, 1, 0, 0),
+                                                    new DateTime(2014, 1, 31, 23, 59),
+                                                    MetricsDB.Resolution.MINUTE);
+        assertEquals(3, points.size());
+        assertEquals(new DateTime(2014, 1, 1, 0, 0), points.get(0).getTimestamp());
+        assertEquals(1d, points.get(0).getAvg(), 0.0001d);
+        assertEquals(new DateTime(2014, 1, 1, 1, 1), points.get(1).getTimestamp());
+        assertEquals(2d, points.get(1).getAvg(), 0.0001d);
+        assertEquals(new DateTime(2014, 1, 31, 23, 59), points.get(2).getTimestamp());
+        assertEquals(3d, points.get(2).getAvg(), 0.0001d);
+
+        // The rollups are computed during the conversion
+        List<MetricsDB.DataPoint> days = db.query("legacy",
+                                                  new DateTime(2014, 1, 1, 0, 0),
+                                                  new DateTime(2014, 1, 31, 0, 0),
+                                                  MetricsDB.Resolution.DAY);
+        assertEquals(2, days.size());
+        assertEquals(2, days.get(0).getCount());
+        assertEquals(1.5d, days.get(0).getAvg(), 0.0001d);
+    }
+
+    private void writeLegacyValues(File file, Object... indexAndValues) throws Exception {
+        ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file, true));
+        try {
+            for (int i = 0; i < indexAndValues.length; i += 2) {
+                out.writeInt((Integer) indexAndValues[i]);
+                out.writeDouble((Double) indexAndValues[i + 1]);
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
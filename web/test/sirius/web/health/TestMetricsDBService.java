@@ -0,0 +1,141 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.web.health;
+
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import sirius.kernel.xml.StructuredOutput;
+import sirius.web.http.WebContext;
+import sirius.web.services.JSONStructuredOutput;
+import sirius.web.services.ServiceCall;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link MetricsDBService} and the queries of {@link MetricsDB}
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ */
+public class TestMetricsDBService {
+
+    private File basedir;
+    private MetricsDB db;
+
+    @Before
+    public void createDatabase() throws Exception {
+        basedir = Files.createTempDirectory("metrics").toFile();
+        db = new MetricsDB(basedir);
+    }
+
+    @After
+    public void deleteDatabase() {
+        db.stopped();
+        for (File year : basedir.listFiles()) {
+            for (File month : year.listFiles()) {
+                for (File file : month.listFiles()) {
+                    file.delete();
+                }
+                month.delete();
+            }
+            year.delete();
+        }
+        basedir.delete();
+    }
+
+    /*
+     * Invokes the service using the given parameters (as name and value pairs) and returns the generated JSON
+     */
+    private String call(String... parameters) throws Exception {
+        WebContext ctx = new WebContext();
+        for (String key : new String[]{"metric", "from", "to", "resolution"}) {
+            ctx.setAttribute(key, "");
+        }
+        for (int i = 0; i < parameters.length; i += 2) {
+            ctx.setAttribute(parameters[i], parameters[i + 1]);
+        }
+        StringWriter writer = new StringWriter();
+        final JSONStructuredOutput out = new JSONStructuredOutput(writer, null);
+        ServiceCall call = new ServiceCall(ctx) {
+            @Override
+            protected StructuredOutput createOutput() {
+                return out;
+            }
+        };
+        new MetricsDBService(db).call(call, out);
+        return writer.toString();
+    }
+
+    @Test
+    public void listsMetricsOfTheCurrentMonth() throws Exception {
+        db.storeNow("b-metric", 1d);
+        db.storeNow("a-metric", 1d);
+        String result = call();
+        assertTrue(result, result.indexOf("\"a-metric\"") >= 0);
+        assertTrue(result, result.indexOf("\"a-metric\"") < result.indexOf("\"b-metric\""));
+    }
+
+    @Test
+    public void returnsPointsInTheRequestedResolution() throws Exception {
+        DateTime hour = new DateTime(2014, 2, 3, 10, 0);
+        db.store("test", hour, 2d);
+        db.store("test", hour.plusMinutes(30), 4d);
+        String result = call("metric",
+                             "test",
+                             "from",
+                             String.valueOf(hour.getMillis()),
+                             "to",
+                             String.valueOf(hour.plusHours(1).getMillis()),
+                             "resolution",
+                             "hour");
+        assertTrue(result, result.contains("\"resolution\":\"HOUR\""));
+        assertTrue(result, result.contains("\"timestamp\":" + hour.getMillis()));
+        assertTrue(result, result.contains("\"avg\":3.0"));
+        assertTrue(result, result.contains("\"count\":2"));
+    }
+
+    @Test
+    public void determinesResolutionByRange() throws Exception {
+        DateTime to = new DateTime(2014, 2, 3, 10, 0);
+        assertTrue(call("metric", "test", "to", String.valueOf(to.getMillis())).contains("\"resolution\":\"HOUR\""));
+        assertTrue(call("metric",
+                        "test",
+                        "from",
+                        String.valueOf(to.minusHours(1).getMillis()),
+                        "to",
+                        String.valueOf(to.getMillis())).contains("\"resolution\":\"MINUTE\""));
+        assertTrue(call("metric",
+                        "test",
+                        "from",
+                        String.valueOf(to.minusDays(30).getMillis()),
+                        "to",
+                        String.valueOf(to.getMillis())).contains("\"resolution\":\"DAY\""));
+    }
+
+    @Test
+    public void repeatedQueriesSeeNewValues() {
+        DateTime minute = new DateTime(2014, 2, 3, 10, 0);
+        db.store("test", minute, 1d);
+        assertEquals(1, db.query("test", minute, minute.plusHours(1), MetricsDB.Resolution.MINUTE).size());
+
+        // The file is already mapped for reading, new values must be visible nevertheless
+        db.store("test", minute.plusMinutes(1), 2d);
+        List<MetricsDB.DataPoint> points =
+                db.query("test", minute, minute.plusHours(1), MetricsDB.Resolution.MINUTE);
+        assertEquals(2, points.size());
+        assertEquals(2d, points.get(1).getAvg(), 0.0001d);
+        assertEquals(2, db.query("test", minute, minute.plusHours(1), MetricsDB.Resolution.HOUR).get(0).getCount());
+    }
+}
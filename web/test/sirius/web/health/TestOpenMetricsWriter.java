@@ -0,0 +1,50 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.web.health;
+
+import com.google.common.base.Charsets;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link OpenMetricsWriter}
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ */
+public class TestOpenMetricsWriter {
+
+    private String writeCounter(boolean openMetrics) {
+        ByteBuf buffer = Unpooled.buffer();
+        OpenMetricsWriter writer = new OpenMetricsWriter(buffer, openMetrics);
+        assertTrue(writer.family("http_requests", "counter", "HTTP Requests", null));
+        writer.sample("http_requests", "_total", 42);
+        assertFalse(writer.family("http_requests", "counter", "HTTP Requests", null));
+        writer.eof();
+        return buffer.toString(Charsets.UTF_8);
+    }
+
+    @Test
+    public void countersUseFamilyNameInOpenMetrics() {
+        assertEquals("# TYPE http_requests counter\n" +
+                     "# HELP http_requests HTTP Requests\n" +
+                     "http_requests_total 42\n" +
+                     "# EOF\n", writeCounter(true));
+    }
+
+    @Test
+    public void countersUseSampleNameInPrometheusFormat() {
+        assertEquals("# TYPE http_requests_total counter\n" +
+                     "# HELP http_requests_total HTTP Requests\n" +
+                     "http_requests_total 42\n" +
+                     "# EOF\n", writeCounter(false));
+    }
+}
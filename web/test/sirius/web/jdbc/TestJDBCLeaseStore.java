@@ -0,0 +1,102 @@
+/*
+ * Made with all the love in the world
+ * by scireum in Remshalden, Germany
+ *
+ * Copyright by scireum GmbH
+ * http://www.scireum.de - info@scireum.de
+ */
+
+package sirius.web.jdbc;
+
+import com.google.common.base.Strings;
+import org.junit.Before;
+import org.junit.Test;
+import sirius.kernel.health.HandledException;
+import sirius.kernel.timer.Lease;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link JDBCLeaseStore} using an embedded H2 database
+ *
+ * @author Andreas Haufler (aha@scireum.de)
+ */
+public class TestJDBCLeaseStore {
+
+    /*
+     * Row looks up columns by their exact label, therefore H2 must not convert them to upper case
+     */
+    private static final Database db =
+            new Database("leases", "org.h2.Driver", "jdbc:h2:mem:leases;DB_CLOSE_DELAY=-1;DATABASE_TO_UPPER=FALSE");
+    private static final AtomicInteger tables = new AtomicInteger();
+
+    private String table;
+    private JDBCLeaseStore store;
+
+    @Before
+    public void createStore() {
+        // Each test uses its own table, which is created by the store
+        table = "leases_" + tables.incrementAndGet();
+        store = new JDBCLeaseStore(db, table);
+    }
+
+    @Test
+    public void onlyOneNodeHoldsALease() throws Exception {
+        long now = System.currentTimeMillis();
+        Lease first = store.tryAcquire("cleanup", "node1", now + 60000);
+        assertNotNull(first);
+        assertNull(store.tryAcquire("cleanup", "node2", now + 60000));
+        assertNotNull(store.tryAcquire("other-task", "node2", now + 60000));
+
+        // Renewing keeps the fencing token
+        Lease renewed = store.tryAcquire("cleanup", "node1", now + 120000);
+        assertEquals(first.getToken(), renewed.getToken());
+        assertTrue(store.isValid(renewed));
+    }
+
+    @Test
+    public void expiredLeasesArePassedOnWithANewToken() throws Exception {
+        long now = System.currentTimeMillis();
+        Lease first = store.tryAcquire("cleanup", "node1", now - 1);
+        assertFalse(store.isValid(first));
+        Lease second = store.tryAcquire("cleanup", "node2", now + 60000);
+        assertNotNull(second);
+        assertTrue(second.getToken() > first.getToken());
+
+        // The former owner must not release the lease of the new one
+        store.release(first);
+        assertTrue(store.isValid(second));
+        store.release(second);
+        assertFalse(store.isValid(second));
+        assertNotNull(store.tryAcquire("cleanup", "node1", now + 60000));
+    }
+
+    @Test
+    public void expiryIsCheckedUsingTheDatabaseClock() throws Exception {
+        Lease first = store.tryAcquire("cleanup", "node1", System.currentTimeMillis() + 60000);
+        assertTrue(store.isValid(first));
+
+        // Lets the lease expire according to the database, even if the local expiry is still in the future
+        db.createQuery("UPDATE " + table + " SET expires = DATEADD('SECOND', -1, CURRENT_TIMESTAMP)").executeUpdate();
+        assertTrue(first.getExpires() > System.currentTimeMillis());
+        assertFalse(store.isValid(first));
+        assertNotNull(store.tryAcquire("cleanup", "node2", System.currentTimeMillis() + 60000));
+    }
+
+    @Test
+    public void storesTheExpiryRelativeToTheDatabaseClock() throws Exception {
+        store.tryAcquire("cleanup", "node1", System.currentTimeMillis() + 60000);
+        Row row = db.createQuery("SELECT DATEDIFF('SECOND', CURRENT_TIMESTAMP, expires) AS remaining FROM " + table)
+                    .queryFirst();
+        long remaining = row.getValue("remaining").asLong(0);
+        assertTrue("Remaining: " + remaining, remaining >= 58 && remaining <= 60);
+    }
+
+    @Test(expected = HandledException.class)
+    public void errorsOtherThanDuplicateKeysAreReported() throws Exception {
+        // The name is too long for the column, which must not be mistaken for a lease held by another node
+        store.tryAcquire(Strings.repeat("x", 300), "node1", System.currentTimeMillis() + 60000);
+    }
+}